@@ -924,6 +924,12 @@ public interface HornetQBuffer
     */
    void writeNullableSimpleString(SimpleString val);
 
+   /**
+    * Sets the specified SimpleString (potentially {@code null}) at the current {@code writerIndex} in the compact
+    * encoding of {@link org.hornetq.utils.CompactStringUtil}, which {@link #readNullableSimpleString()} reads back
+    */
+   void writeNullableCompactSimpleString(SimpleString val);
+
    /**
     * Sets the specified String (potentially {@code null}) at the current {@code writerIndex}
     */
@@ -934,6 +940,12 @@ public interface HornetQBuffer
     */
    void writeSimpleString(SimpleString val);
 
+   /**
+    * Sets the specified non-null SimpleString at the current {@code writerIndex} in the compact encoding of
+    * {@link org.hornetq.utils.CompactStringUtil}, which {@link #readSimpleString()} reads back
+    */
+   void writeCompactSimpleString(SimpleString val);
+
    /**
     * Sets the specified non-null String at the current {@code writerIndex}
     */
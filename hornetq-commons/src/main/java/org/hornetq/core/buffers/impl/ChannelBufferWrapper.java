@@ -17,6 +17,7 @@ import java.nio.ByteBuffer;
 
 import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.SimpleString;
+import org.hornetq.utils.CompactStringUtil;
 import org.hornetq.utils.DataConstants;
 import org.hornetq.utils.UTF8Util;
 import org.jboss.netty.buffer.ChannelBuffer;
@@ -67,6 +68,10 @@ public class ChannelBufferWrapper implements HornetQBuffer
    private SimpleString readSimpleStringInternal()
    {
       int len = buffer.readInt();
+      if (len < 0)
+      {
+         return CompactStringUtil.readCompact(len, this);
+      }
       byte[] data = new byte[len];
       buffer.readBytes(data);
       return new SimpleString(data);
@@ -123,6 +128,19 @@ public class ChannelBufferWrapper implements HornetQBuffer
       }
    }
 
+   public void writeNullableCompactSimpleString(final SimpleString val)
+   {
+      if (val == null)
+      {
+         buffer.writeByte(DataConstants.NULL);
+      }
+      else
+      {
+         buffer.writeByte(DataConstants.NOT_NULL);
+         CompactStringUtil.writeCompact(this, val);
+      }
+   }
+
    public void writeNullableString(final String val)
    {
       if (val == null)
@@ -141,6 +159,11 @@ public class ChannelBufferWrapper implements HornetQBuffer
       writeSimpleStringInternal(val);
    }
 
+   public void writeCompactSimpleString(final SimpleString val)
+   {
+      CompactStringUtil.writeCompact(this, val);
+   }
+
    private void writeSimpleStringInternal(final SimpleString val)
    {
       byte[] data = val.getData();
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package org.hornetq.utils;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.SimpleString;
+
+/**
+ * The compact encoding of a {@link SimpleString}.
+ *
+ * A SimpleString is normally encoded as an int length followed by its two bytes per char. The compact encoding stores
+ * one byte per char when every char is below 256 (Latin-1), and otherwise one to three bytes per char as in UTF-8 when
+ * that is smaller. Surrogates are encoded one char at a time so every SimpleString goes through unchanged.
+ *
+ * The compact encoding is flagged by a negative length: {@code ~(length << 1 | utf8)}, where length is the number of
+ * chars, followed for UTF-8 by the int number of bytes. The readers of {@link HornetQBuffer#readSimpleString()}
+ * understand both encodings, so it only takes a writer to opt in.
+ */
+public final class CompactStringUtil
+{
+   private CompactStringUtil()
+   {
+      // utility class
+   }
+
+   public static void writeCompact(final HornetQBuffer out, final SimpleString str)
+   {
+      byte[] data = str.getData();
+
+      int chars = data.length >> 1;
+
+      int utf8Size = utf8Size(data);
+
+      if (utf8Size < 0)
+      {
+         out.writeInt(~(chars << 1));
+
+         byte[] bytes = new byte[chars];
+
+         for (int i = 0; i < chars; i++)
+         {
+            bytes[i] = data[i << 1];
+         }
+
+         out.writeBytes(bytes);
+      }
+      else if (DataConstants.SIZE_INT + utf8Size < data.length)
+      {
+         out.writeInt(~(chars << 1 | 1));
+         out.writeInt(utf8Size);
+
+         byte[] bytes = new byte[utf8Size];
+
+         int pos = 0;
+
+         for (int i = 1; i < data.length; i += 2)
+         {
+            int c = data[i - 1] & 0xFF | (data[i] & 0xFF) << 8;
+
+            if (c < 0x80)
+            {
+               bytes[pos++] = (byte)c;
+            }
+            else if (c < 0x800)
+            {
+               bytes[pos++] = (byte)(0xC0 | c >> 6);
+               bytes[pos++] = (byte)(0x80 | c & 0x3F);
+            }
+            else
+            {
+               bytes[pos++] = (byte)(0xE0 | c >> 12);
+               bytes[pos++] = (byte)(0x80 | c >> 6 & 0x3F);
+               bytes[pos++] = (byte)(0x80 | c & 0x3F);
+            }
+         }
+
+         out.writeBytes(bytes);
+      }
+      else
+      {
+         out.writeInt(data.length);
+         out.writeBytes(data);
+      }
+   }
+
+   /**
+    * @return the number of bytes {@link #writeCompact(HornetQBuffer, SimpleString)} writes for the string
+    */
+   public static int sizeofCompact(final SimpleString str)
+   {
+      byte[] data = str.getData();
+
+      int utf8Size = utf8Size(data);
+
+      if (utf8Size < 0)
+      {
+         return DataConstants.SIZE_INT + (data.length >> 1);
+      }
+      else
+      {
+         return DataConstants.SIZE_INT + Math.min(DataConstants.SIZE_INT + utf8Size, data.length);
+      }
+   }
+
+   /**
+    * Reads the rest of a compact SimpleString.
+    *
+    * @param header the negative length already read from the buffer
+    */
+   public static SimpleString readCompact(final int header, final HornetQBuffer in)
+   {
+      int h = ~header;
+
+      int chars = h >>> 1;
+
+      byte[] data = new byte[chars << 1];
+
+      if ((h & 1) == 0)
+      {
+         byte[] bytes = new byte[chars];
+
+         in.readBytes(bytes);
+
+         for (int i = 0; i < chars; i++)
+         {
+            data[i << 1] = bytes[i];
+         }
+      }
+      else
+      {
+         byte[] bytes = new byte[in.readInt()];
+
+         in.readBytes(bytes);
+
+         int pos = 0;
+
+         for (int i = 0; i < chars; i++)
+         {
+            int b = bytes[pos++] & 0xFF;
+
+            int c;
+
+            if (b < 0x80)
+            {
+               c = b;
+            }
+            else if (b < 0xE0)
+            {
+               c = (b & 0x1F) << 6 | bytes[pos++] & 0x3F;
+            }
+            else
+            {
+               c = (b & 0x0F) << 12 | (bytes[pos++] & 0x3F) << 6;
+               c |= bytes[pos++] & 0x3F;
+            }
+
+            data[i << 1] = (byte)c;
+            data[(i << 1) + 1] = (byte)(c >> 8);
+         }
+      }
+
+      return new SimpleString(data);
+   }
+
+   /**
+    * @return the number of bytes of the chars of the string in UTF-8, or -1 if they all fit in Latin-1
+    */
+   private static int utf8Size(final byte[] data)
+   {
+      boolean latin1 = true;
+
+      int size = 0;
+
+      for (int i = 1; i < data.length; i += 2)
+      {
+         int c = data[i - 1] & 0xFF | (data[i] & 0xFF) << 8;
+
+         if (c >= 0x100)
+         {
+            latin1 = false;
+         }
+
+         size += c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+      }
+
+      return latin1 ? -1 : size;
+   }
+}
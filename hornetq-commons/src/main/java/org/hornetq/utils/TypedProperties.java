@@ -32,6 +32,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 
 import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.HornetQBuffers;
 import org.hornetq.api.core.HornetQPropertyConversionException;
 import org.hornetq.api.core.SimpleString;
 
@@ -42,6 +43,12 @@ import org.hornetq.api.core.SimpleString;
  * This implementation follows section 3.5.4 of the <i>Java Message Service<i> specification
  * (Version 1.1 April 12, 2002).
  * <p>
+ * Decoded properties are kept in their encoded form until they are changed or their names are needed: a
+ * property is then looked up by comparing its key with the encoded keys, through an index of the entries sorted by key
+ * when there are many of them, and only its value is read from the bytes. They are encoded again by copying the bytes,
+ * and copies of them share the bytes until they are changed. The keys of the properties are taken from a pool of recently decoded keys when
+ * the properties are turned into a map, so messages with the same property names share their keys.
+ * <p>
  * TODO - should have typed property getters and do conversions herein
  * @author <a href="mailto:tim.fox@jboss.com">Tim Fox</a>
  * @author <a href="mailto:clebert.suconic@jboss.com">Clebert Suconic</a>
@@ -51,8 +58,22 @@ public final class TypedProperties
 
    private static final SimpleString HQ_PROPNAME = new SimpleString("_HQ_");
 
+   // a power of 2
+   private static final int KEY_POOL_SIZE = 1024;
+
+   // above this number of encoded properties they are looked up through an index sorted by key
+   private static final int LINEAR_SEARCH_MAX = 8;
+
+   private static final SimpleString[] KEY_POOL = new SimpleString[KEY_POOL_SIZE];
+
    private Map<SimpleString, PropertyValue> properties;
 
+   // the number of properties followed by the properties as they were decoded, until properties is needed
+   private byte[] encoded;
+
+   // the offsets of the encoded properties sorted by key, once needed
+   private int[] index;
+
    private volatile int size;
 
    private boolean internalProperties;
@@ -67,13 +88,27 @@ public final class TypedProperties
       // Note we don't include the attributes or anything else since they already included in the memory estimate
       // of the ServerMessage
 
+      byte[] bytes = encoded;
+
+      if (bytes != null)
+      {
+         return size + 2 * DataConstants.SIZE_INT * readInt(bytes, 0);
+      }
+
       return properties == null ? 0 : size + 2 * DataConstants.SIZE_INT * properties.size();
    }
 
    public TypedProperties(final TypedProperties other)
    {
-      properties = other.properties == null ? null : new HashMap<SimpleString, PropertyValue>(other.properties);
-      size = other.size;
+      synchronized (other)
+      {
+         // the encoded properties are never changed so they can be shared
+         encoded = other.encoded;
+         index = other.index;
+         properties = other.properties == null ? null : new HashMap<SimpleString, PropertyValue>(other.properties);
+         size = other.size;
+         internalProperties = other.internalProperties;
+      }
    }
 
    public boolean hasInternalProperties()
@@ -149,7 +184,34 @@ public final class TypedProperties
 
    public void putTypedProperties(final TypedProperties otherProps)
    {
-      if (otherProps == null || otherProps.properties == null)
+      if (otherProps == null)
+      {
+         return;
+      }
+
+      byte[] otherEncoded;
+
+      synchronized (otherProps)
+      {
+         otherEncoded = otherProps.encoded;
+
+         if (otherEncoded != null && shareEncoded(otherProps))
+         {
+            return;
+         }
+      }
+
+      if (otherEncoded != null)
+      {
+         checkCreateProperties();
+         for (Entry<SimpleString, PropertyValue> otherEntry : decodeMap(otherEncoded).entrySet())
+         {
+            doPutValue(otherEntry.getKey(), otherEntry.getValue());
+         }
+         return;
+      }
+
+      if (otherProps.properties == null)
       {
          return;
       }
@@ -167,6 +229,96 @@ public final class TypedProperties
       return doGetProperty(key);
    }
 
+   /**
+    * Same as {@link #getIntProperty(SimpleString)} without boxing the value.
+    *
+    * @return defaultValue if there is no such property or its value is null
+    */
+   public int getIntProperty(final SimpleString key, final int defaultValue) throws HornetQPropertyConversionException
+   {
+      synchronized (this)
+      {
+         if (size == 0)
+         {
+            return defaultValue;
+         }
+
+         if (encoded != null)
+         {
+            int pos = findValue(key);
+
+            if (pos < 0 || encoded[pos] == NULL)
+            {
+               return defaultValue;
+            }
+            else if (encoded[pos] == INT)
+            {
+               return readInt(encoded, pos + 1);
+            }
+         }
+         else
+         {
+            PropertyValue val = properties.get(key);
+
+            if (val == null || val instanceof NullValue)
+            {
+               return defaultValue;
+            }
+            else if (val instanceof IntValue)
+            {
+               return ((IntValue)val).val;
+            }
+         }
+      }
+
+      return getIntProperty(key);
+   }
+
+   /**
+    * Same as {@link #getLongProperty(SimpleString)} without boxing the value.
+    *
+    * @return defaultValue if there is no such property or its value is null
+    */
+   public long getLongProperty(final SimpleString key, final long defaultValue) throws HornetQPropertyConversionException
+   {
+      synchronized (this)
+      {
+         if (size == 0)
+         {
+            return defaultValue;
+         }
+
+         if (encoded != null)
+         {
+            int pos = findValue(key);
+
+            if (pos < 0 || encoded[pos] == NULL)
+            {
+               return defaultValue;
+            }
+            else if (encoded[pos] == LONG)
+            {
+               return readLong(encoded, pos + 1);
+            }
+         }
+         else
+         {
+            PropertyValue val = properties.get(key);
+
+            if (val == null || val instanceof NullValue)
+            {
+               return defaultValue;
+            }
+            else if (val instanceof LongValue)
+            {
+               return ((LongValue)val).val;
+            }
+         }
+      }
+
+      return getLongProperty(key);
+   }
+
    public Boolean getBooleanProperty(final SimpleString key) throws HornetQPropertyConversionException
    {
       Object value = doGetProperty(key);
@@ -434,7 +586,7 @@ public final class TypedProperties
       }
       else
       {
-         return properties.containsKey(key);
+         return doContainsProperty(key);
       }
    }
 
@@ -446,6 +598,8 @@ public final class TypedProperties
       }
       else
       {
+         materialize();
+
          return properties.keySet();
       }
    }
@@ -457,105 +611,52 @@ public final class TypedProperties
       if (b == DataConstants.NULL)
       {
          properties = null;
+         encoded = null;
+         index = null;
       }
       else
       {
-         int numHeaders = buffer.readInt();
+         int start = buffer.readerIndex();
 
-         properties = new HashMap<SimpleString, PropertyValue>(numHeaders);
-         size = 0;
+         int numHeaders = buffer.readInt();
 
          for (int i = 0; i < numHeaders; i++)
          {
-            int len = buffer.readInt();
-            byte[] data = new byte[len];
-            buffer.readBytes(data);
-            SimpleString key = new SimpleString(data);
+            buffer.skipBytes(buffer.readInt());
 
             byte type = buffer.readByte();
 
-            PropertyValue val;
+            int valueSize = valueSize(type);
 
-            switch (type)
-            {
-               case NULL:
-               {
-                  val = new NullValue();
-                  doPutValue(key, val);
-                  break;
-               }
-               case CHAR:
-               {
-                  val = new CharValue(buffer);
-                  doPutValue(key, val);
-                  break;
-               }
-               case BOOLEAN:
-               {
-                  val = new BooleanValue(buffer);
-                  doPutValue(key, val);
-                  break;
-               }
-               case BYTE:
-               {
-                  val = new ByteValue(buffer);
-                  doPutValue(key, val);
-                  break;
-               }
-               case BYTES:
-               {
-                  val = new BytesValue(buffer);
-                  doPutValue(key, val);
-                  break;
-               }
-               case SHORT:
-               {
-                  val = new ShortValue(buffer);
-                  doPutValue(key, val);
-                  break;
-               }
-               case INT:
-               {
-                  val = new IntValue(buffer);
-                  doPutValue(key, val);
-                  break;
-               }
-               case LONG:
-               {
-                  val = new LongValue(buffer);
-                  doPutValue(key, val);
-                  break;
-               }
-               case FLOAT:
-               {
-                  val = new FloatValue(buffer);
-                  doPutValue(key, val);
-                  break;
-               }
-               case DOUBLE:
-               {
-                  val = new DoubleValue(buffer);
-                  doPutValue(key, val);
-                  break;
-               }
-               case STRING:
-               {
-                  val = new StringValue(buffer);
-                  doPutValue(key, val);
-                  break;
-               }
-               default:
-               {
-                  throw HornetQUtilBundle.BUNDLE.invalidType(type);
-               }
-            }
+            buffer.skipBytes(valueSize < 0 ? buffer.readInt() : valueSize);
+         }
+
+         int end = buffer.readerIndex();
+
+         buffer.readerIndex(start);
+
+         properties = null;
+         index = null;
+         encoded = new byte[end - start];
+         buffer.readBytes(encoded);
+         size = encoded.length - DataConstants.SIZE_INT;
+
+         if (hasInternalKey(encoded))
+         {
+            internalProperties = true;
          }
       }
    }
 
    public synchronized void encode(final HornetQBuffer buffer)
    {
-      if (properties == null)
+      if (encoded != null)
+      {
+         buffer.writeByte(DataConstants.NOT_NULL);
+
+         buffer.writeBytes(encoded);
+      }
+      else if (properties == null)
       {
          buffer.writeByte(DataConstants.NULL);
       }
@@ -579,7 +680,7 @@ public final class TypedProperties
 
    public int getEncodeSize()
    {
-      if (properties == null)
+      if (properties == null && encoded == null)
       {
          return DataConstants.SIZE_BYTE;
       }
@@ -589,9 +690,16 @@ public final class TypedProperties
       }
    }
 
-   public void clear()
+   public synchronized void clear()
    {
-      if (properties != null)
+      if (encoded != null)
+      {
+         encoded = null;
+         index = null;
+         properties = new HashMap<SimpleString, PropertyValue>();
+         size = 0;
+      }
+      else if (properties != null)
       {
          properties.clear();
       }
@@ -600,6 +708,8 @@ public final class TypedProperties
    @Override
    public String toString()
    {
+      materialize();
+
       return "TypedProperties[" + properties + "]";
    }
 
@@ -607,6 +717,8 @@ public final class TypedProperties
 
    private void checkCreateProperties()
    {
+      materialize();
+
       if (properties == null)
       {
          properties = new HashMap<SimpleString, PropertyValue>();
@@ -633,6 +745,16 @@ public final class TypedProperties
 
    private synchronized Object doRemoveProperty(final SimpleString key)
    {
+      if (encoded != null)
+      {
+         if (findValue(key) < 0)
+         {
+            return null;
+         }
+
+         materialize();
+      }
+
       if (properties == null)
       {
          return null;
@@ -659,6 +781,18 @@ public final class TypedProperties
          return null;
       }
 
+      if (encoded != null)
+      {
+         int pos = key instanceof SimpleString ? findValue((SimpleString)key) : -1;
+
+         if (pos < 0)
+         {
+            return null;
+         }
+
+         return readValue(encoded, pos);
+      }
+
       PropertyValue val = properties.get(key);
 
       if (val == null)
@@ -671,6 +805,424 @@ public final class TypedProperties
       }
    }
 
+   private synchronized boolean doContainsProperty(final SimpleString key)
+   {
+      if (encoded != null)
+      {
+         return findValue(key) >= 0;
+      }
+
+      return properties.containsKey(key);
+   }
+
+   /**
+    * Turns the encoded properties into the map of properties, the first time they are changed or their names are
+    * needed.
+    */
+   private synchronized void materialize()
+   {
+      if (encoded == null)
+      {
+         return;
+      }
+
+      properties = decodeMap(encoded);
+
+      encoded = null;
+      index = null;
+   }
+
+   /**
+    * Shares the encoded properties of other, if these properties are empty. They are copied once either is changed.
+    */
+   private synchronized boolean shareEncoded(final TypedProperties other)
+   {
+      if (encoded != null || properties != null && !properties.isEmpty())
+      {
+         return false;
+      }
+
+      encoded = other.encoded;
+      index = other.index;
+      properties = null;
+      size = other.size;
+
+      if (other.internalProperties)
+      {
+         internalProperties = true;
+      }
+
+      return true;
+   }
+
+   private static HashMap<SimpleString, PropertyValue> decodeMap(final byte[] bytes)
+   {
+      HornetQBuffer buffer = HornetQBuffers.wrappedBuffer(bytes);
+
+      int numHeaders = buffer.readInt();
+
+      HashMap<SimpleString, PropertyValue> map = new HashMap<SimpleString, PropertyValue>(numHeaders);
+
+      for (int i = 0; i < numHeaders; i++)
+      {
+         int len = buffer.readInt();
+
+         SimpleString key = internKey(bytes, buffer.readerIndex(), len);
+
+         buffer.skipBytes(len);
+
+         map.put(key, readValue(buffer));
+      }
+
+      return map;
+   }
+
+   /**
+    * @return the position of the type of the value of the key in the encoded properties, or -1 if there is no such
+    *         property
+    */
+   private int findValue(final SimpleString key)
+   {
+      byte[] bytes = encoded;
+
+      byte[] data = key.getData();
+
+      int numHeaders = readInt(bytes, 0);
+
+      if (numHeaders > LINEAR_SEARCH_MAX)
+      {
+         if (index == null)
+         {
+            index = buildIndex(bytes, numHeaders);
+         }
+
+         return searchIndex(bytes, index, data);
+      }
+
+      int pos = DataConstants.SIZE_INT;
+
+      for (int i = 0; i < numHeaders; i++)
+      {
+         int len = readInt(bytes, pos);
+
+         pos += DataConstants.SIZE_INT;
+
+         boolean found = len == data.length && equals(data, bytes, pos);
+
+         pos += len;
+
+         if (found)
+         {
+            return pos;
+         }
+
+         byte type = bytes[pos++];
+
+         int valueSize = valueSize(type);
+
+         pos += valueSize < 0 ? DataConstants.SIZE_INT + readInt(bytes, pos) : valueSize;
+      }
+
+      return -1;
+   }
+
+   /**
+    * @return the offsets of the encoded properties, sorted by key
+    */
+   private static int[] buildIndex(final byte[] bytes, final int numHeaders)
+   {
+      int[] offsets = new int[numHeaders];
+
+      int pos = DataConstants.SIZE_INT;
+
+      for (int i = 0; i < numHeaders; i++)
+      {
+         offsets[i] = pos;
+
+         pos += DataConstants.SIZE_INT + readInt(bytes, pos);
+
+         byte type = bytes[pos++];
+
+         int valueSize = valueSize(type);
+
+         pos += valueSize < 0 ? DataConstants.SIZE_INT + readInt(bytes, pos) : valueSize;
+      }
+
+      // an insertion sort, there are never many properties
+      for (int i = 1; i < numHeaders; i++)
+      {
+         int offset = offsets[i];
+
+         int j = i - 1;
+
+         while (j >= 0 && compareKeys(bytes, offsets[j], bytes, offset + DataConstants.SIZE_INT,
+                                      readInt(bytes, offset)) > 0)
+         {
+            offsets[j + 1] = offsets[j];
+            j--;
+         }
+
+         offsets[j + 1] = offset;
+      }
+
+      return offsets;
+   }
+
+   private static int searchIndex(final byte[] bytes, final int[] offsets, final byte[] data)
+   {
+      int low = 0;
+
+      int high = offsets.length - 1;
+
+      while (low <= high)
+      {
+         int mid = low + high >>> 1;
+
+         int cmp = compareKeys(bytes, offsets[mid], data, 0, data.length);
+
+         if (cmp < 0)
+         {
+            low = mid + 1;
+         }
+         else if (cmp > 0)
+         {
+            high = mid - 1;
+         }
+         else
+         {
+            return offsets[mid] + DataConstants.SIZE_INT + data.length;
+         }
+      }
+
+      return -1;
+   }
+
+   /**
+    * Compares the key of the encoded property at offset with the key of length len at keyOffset in keyBytes.
+    */
+   private static int compareKeys(final byte[] bytes,
+                                  final int offset,
+                                  final byte[] keyBytes,
+                                  final int keyOffset,
+                                  final int len)
+   {
+      int entryLen = readInt(bytes, offset);
+
+      int start = offset + DataConstants.SIZE_INT;
+
+      int min = Math.min(entryLen, len);
+
+      for (int i = 0; i < min; i++)
+      {
+         int cmp = (bytes[start + i] & 0xff) - (keyBytes[keyOffset + i] & 0xff);
+
+         if (cmp != 0)
+         {
+            return cmp;
+         }
+      }
+
+      return entryLen - len;
+   }
+
+   private static boolean hasInternalKey(final byte[] bytes)
+   {
+      byte[] prefix = HQ_PROPNAME.getData();
+
+      int numHeaders = readInt(bytes, 0);
+
+      int pos = DataConstants.SIZE_INT;
+
+      for (int i = 0; i < numHeaders; i++)
+      {
+         int len = readInt(bytes, pos);
+
+         pos += DataConstants.SIZE_INT;
+
+         if (len >= prefix.length && equals(prefix, bytes, pos))
+         {
+            return true;
+         }
+
+         pos += len;
+
+         byte type = bytes[pos++];
+
+         int valueSize = valueSize(type);
+
+         pos += valueSize < 0 ? DataConstants.SIZE_INT + readInt(bytes, pos) : valueSize;
+      }
+
+      return false;
+   }
+
+   /**
+    * @return the size of the encoded value after its type, or -1 if the value starts with its size as an int
+    */
+   private static int valueSize(final byte type)
+   {
+      switch (type)
+      {
+         case NULL:
+            return 0;
+         case CHAR:
+            return DataConstants.SIZE_CHAR;
+         case BOOLEAN:
+            return DataConstants.SIZE_BOOLEAN;
+         case BYTE:
+            return DataConstants.SIZE_BYTE;
+         case SHORT:
+            return DataConstants.SIZE_SHORT;
+         case INT:
+            return DataConstants.SIZE_INT;
+         case LONG:
+            return DataConstants.SIZE_LONG;
+         case FLOAT:
+            return DataConstants.SIZE_FLOAT;
+         case DOUBLE:
+            return DataConstants.SIZE_DOUBLE;
+         case BYTES:
+         case STRING:
+            return -1;
+         default:
+            throw HornetQUtilBundle.BUNDLE.invalidType(type);
+      }
+   }
+
+   /**
+    * @return the value of the encoded property whose type is at pos
+    */
+   private static Object readValue(final byte[] bytes, final int pos)
+   {
+      byte type = bytes[pos];
+
+      switch (type)
+      {
+         case NULL:
+            return null;
+         case CHAR:
+            return (char)readShort(bytes, pos + 1);
+         case BOOLEAN:
+            return bytes[pos + 1] != 0;
+         case BYTE:
+            return bytes[pos + 1];
+         case SHORT:
+            return readShort(bytes, pos + 1);
+         case INT:
+            return readInt(bytes, pos + 1);
+         case LONG:
+            return readLong(bytes, pos + 1);
+         case FLOAT:
+            return Float.intBitsToFloat(readInt(bytes, pos + 1));
+         case DOUBLE:
+            return Double.longBitsToDouble(readLong(bytes, pos + 1));
+         case BYTES:
+         case STRING:
+         {
+            int len = readInt(bytes, pos + 1);
+            byte[] data = new byte[len];
+            System.arraycopy(bytes, pos + 1 + DataConstants.SIZE_INT, data, 0, len);
+            return type == BYTES ? data : new SimpleString(data);
+         }
+         default:
+            throw HornetQUtilBundle.BUNDLE.invalidType(type);
+      }
+   }
+
+   private static PropertyValue readValue(final HornetQBuffer buffer)
+   {
+      byte type = buffer.readByte();
+
+      switch (type)
+      {
+         case NULL:
+            return new NullValue();
+         case CHAR:
+            return new CharValue(buffer);
+         case BOOLEAN:
+            return new BooleanValue(buffer);
+         case BYTE:
+            return new ByteValue(buffer);
+         case BYTES:
+            return new BytesValue(buffer);
+         case SHORT:
+            return new ShortValue(buffer);
+         case INT:
+            return new IntValue(buffer);
+         case LONG:
+            return new LongValue(buffer);
+         case FLOAT:
+            return new FloatValue(buffer);
+         case DOUBLE:
+            return new DoubleValue(buffer);
+         case STRING:
+            return new StringValue(buffer);
+         default:
+            throw HornetQUtilBundle.BUNDLE.invalidType(type);
+      }
+   }
+
+   /**
+    * @return the key with the given bytes from the pool, or a new key which replaces the one in its slot of the pool
+    */
+   private static SimpleString internKey(final byte[] bytes, final int offset, final int len)
+   {
+      int hash = 0;
+
+      for (int i = offset; i < offset + len; i++)
+      {
+         hash = 31 * hash + bytes[i];
+      }
+
+      int slot = (hash ^ hash >>> 16) & KEY_POOL_SIZE - 1;
+
+      SimpleString key = KEY_POOL[slot];
+
+      if (key != null && key.getData().length == len && equals(key.getData(), bytes, offset))
+      {
+         return key;
+      }
+
+      byte[] data = new byte[len];
+
+      System.arraycopy(bytes, offset, data, 0, len);
+
+      key = new SimpleString(data);
+
+      KEY_POOL[slot] = key;
+
+      return key;
+   }
+
+   private static boolean equals(final byte[] data, final byte[] bytes, final int offset)
+   {
+      for (int i = 0; i < data.length; i++)
+      {
+         if (data[i] != bytes[offset + i])
+         {
+            return false;
+         }
+      }
+
+      return true;
+   }
+
+   private static short readShort(final byte[] bytes, final int pos)
+   {
+      return (short)((bytes[pos] & 0xff) << 8 | bytes[pos + 1] & 0xff);
+   }
+
+   private static int readInt(final byte[] bytes, final int pos)
+   {
+      return (bytes[pos] & 0xff) << 24 | (bytes[pos + 1] & 0xff) << 16 | (bytes[pos + 2] & 0xff) << 8 |
+             bytes[pos + 3] & 0xff;
+   }
+
+   private static long readLong(final byte[] bytes, final int pos)
+   {
+      return (long)readInt(bytes, pos) << 32 | readInt(bytes, pos + 4) & 0xffffffffL;
+   }
+
    // Inner classes ------------------------------------------------------------------------------
 
    private static abstract class PropertyValue
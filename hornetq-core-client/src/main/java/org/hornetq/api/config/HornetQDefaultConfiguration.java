@@ -27,6 +27,7 @@ public final class HornetQDefaultConfiguration
    public static final String DEFAULT_JMX_DOMAIN = "org.hornetq";
    /** Used by the JBoss-AS integration code. */
    public static final boolean DEFAULT_PERSIST_DELIVERY_COUNT_BEFORE_DELIVERY = false;
+   public static final long DEFAULT_DELIVERY_COUNT_FLUSH_INTERVAL = 0; // in milliseconds
    /** Used by the JBoss-AS integration code. */
    public static final boolean DEFAULT_BACKUP = false;
    /** Used by the JBoss-AS integration code. */
@@ -56,9 +57,11 @@ public final class HornetQDefaultConfiguration
    public static final int DEFAULT_JOURNAL_FILE_SIZE = 10485760;
    public static final int DEFAULT_JOURNAL_COMPACT_MIN_FILES = 10;
    public static final int DEFAULT_JOURNAL_COMPACT_PERCENTAGE = 30;
+   public static final int DEFAULT_JOURNAL_LOAD_PARALLELISM = 1;
    public static final int DEFAULT_JOURNAL_MIN_FILES = 2;
    public static final int DEFAULT_JOURNAL_MAX_IO_AIO = 500;
    public static final int DEFAULT_JOURNAL_BUFFER_TIMEOUT_AIO = JournalConstants.DEFAULT_JOURNAL_BUFFER_TIMEOUT_AIO;
+   public static final boolean DEFAULT_JOURNAL_BUFFER_TIMEOUT_ADAPTIVE = false;
    public static final int DEFAULT_JOURNAL_BUFFER_SIZE_AIO = JournalConstants.DEFAULT_JOURNAL_BUFFER_SIZE_AIO;
    public static final int DEFAULT_JOURNAL_MAX_IO_NIO = 1;
    public static final int DEFAULT_JOURNAL_BUFFER_TIMEOUT_NIO = JournalConstants.DEFAULT_JOURNAL_BUFFER_TIMEOUT_NIO;
@@ -86,6 +89,7 @@ public final class HornetQDefaultConfiguration
    public static final int DEFAULT_MESSAGE_EXPIRY_THREAD_PRIORITY = 3;
    public static final int DEFAULT_ID_CACHE_SIZE = 20000;
    public static final boolean DEFAULT_PERSIST_ID_CACHE = true;
+   public static final boolean DEFAULT_OFF_HEAP_ID_CACHE = false;
    public static final boolean DEFAULT_CLUSTER_DUPLICATE_DETECTION = true;
    public static final boolean DEFAULT_CLUSTER_FORWARD_WHEN_NO_CONSUMERS = false;
    public static final int DEFAULT_CLUSTER_MAX_HOPS = 1;
@@ -103,10 +107,16 @@ public final class HornetQDefaultConfiguration
    public static final int DEFAULT_MEMORY_WARNING_THRESHOLD = 25;
    public static final long DEFAULT_MEMORY_MEASURE_INTERVAL = -1; // in milliseconds
    public static final long DEFAULT_FAILBACK_DELAY = 5000; // in milliseconds
+   public static final int DEFAULT_REPLICATION_BATCH_SIZE = 1;
+   public static final boolean DEFAULT_REPLICATION_SYNC_COMPRESSION = false;
    public static final boolean DEFAULT_CHECK_FOR_LIVE_SERVER = false;
    public static final boolean DEFAULT_MASK_PASSWORD = false;
    public static final long DEFAULT_CLUSTER_NOTIFICATION_INTERVAL = 1000;
    public static final int DEFAULT_CLUSTER_NOTIFICATION_ATTEMPTS = 2;
+   public static final boolean DEFAULT_CONCURRENT_QUEUE_REFERENCES = false;
+   public static final long DEFAULT_SCHEDULED_DELIVERY_WHEEL_TICK = -1; // in milliseconds
+   public static final int DEFAULT_REDISTRIBUTION_BATCH_SIZE = 100;
+   public static final int DEFAULT_REDISTRIBUTION_WINDOW_SIZE = 4;
 
    //properties passed to acceptor/connectors.
    public static final String PROP_MASK_PASSWORD = "hornetq.usemaskedpassword";
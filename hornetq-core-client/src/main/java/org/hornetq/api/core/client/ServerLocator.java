@@ -708,6 +708,18 @@ public interface ServerLocator
 
    void setCompressLargeMessage(boolean avoidLargeMessages);
 
+   /**
+    * Whether JMS text messages created through this locator write their body in the compact encoding of
+    * {@link org.hornetq.utils.CompactStringUtil}: one byte per char when all the chars are Latin-1, UTF-8 otherwise.
+    * <p>
+    * Only clients of a version that reads the compact encoding can consume such messages.
+    * <p>
+    * Value is {@code false} by default.
+    */
+   boolean isCompactTextMessages();
+
+   void setCompactTextMessages(boolean compactTextMessages);
+
    void addClusterTopologyListener(ClusterTopologyListener listener);
 
    void removeClusterTopologyListener(ClusterTopologyListener listener);
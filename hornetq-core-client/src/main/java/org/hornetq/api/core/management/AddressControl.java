@@ -62,6 +62,21 @@ public interface AddressControl
     */
    long getNumberOfBytesPerPage() throws Exception;
 
+   /**
+    * Returns the number of times a page of this address was found in the page cache.
+    */
+   long getPageCacheHits() throws Exception;
+
+   /**
+    * Returns the number of times a page of this address had to be read as it wasn't in the page cache.
+    */
+   long getPageCacheMisses() throws Exception;
+
+   /**
+    * Returns the number of pages of this address evicted from the page cache.
+    */
+   long getPageCacheEvictions() throws Exception;
+
    /**
     * Returns the names of all bindings (both queues and diverts) bound to this address
     */
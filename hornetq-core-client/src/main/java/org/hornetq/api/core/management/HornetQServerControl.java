@@ -85,6 +85,17 @@ public interface HornetQServerControl
     */
    long getSecurityInvalidationInterval();
 
+   /**
+    * Returns the number of security checks granted from the security cache.
+    */
+   long getSecurityCacheHits();
+
+   /**
+    * Returns the number of security checks that were not in the security cache and went to the
+    * security manager. The hit rate of the cache is hits / (hits + misses).
+    */
+   long getSecurityCacheMisses();
+
    /**
     * Returns whether security is enabled for this server.
     */
@@ -140,6 +151,16 @@ public interface HornetQServerControl
     */
    int getJournalBufferTimeout();
 
+   /**
+    * Returns the number of times the message journal flushed its internal buffer.
+    */
+   long getJournalFlushCount();
+
+   /**
+    * Returns the number of bytes the message journal flushed from its internal buffer.
+    */
+   long getJournalBytesFlushed();
+
    /**
     * do any clients failover on a server shutdown
     */
@@ -161,6 +182,22 @@ public interface HornetQServerControl
     */
    int getJournalCompactPercentage();
 
+   /**
+    * Returns the number of times the message journal was compacted.
+    */
+   long getJournalCompactCount();
+
+   /**
+    * Returns the number of bytes of message journal files released by compacting.
+    */
+   long getJournalCompactReclaimedBytes();
+
+   /**
+    * Returns the time (in milliseconds) compacting blocked appends to the message journal, summed over all the
+    * compactions.
+    */
+   long getJournalCompactPauseTime();
+
    /**
     * Returns whether this server is using persistence and store data.
     */
@@ -217,6 +254,24 @@ public interface HornetQServerControl
     */
    boolean isSharedStore();
 
+   /**
+    * Returns the number of bytes of data files this replicating backup received from its live
+    * server to synchronize with it.
+    */
+   long getReplicationSyncBytes();
+
+   /**
+    * Returns the number of bytes actually transferred for {@link #getReplicationSyncBytes()}, less
+    * when blocks of zeros were skipped or the data was compressed.
+    */
+   long getReplicationSyncBytesTransferred();
+
+   /**
+    * Returns the average number of bytes of data files per second this replicating backup
+    * synchronized with its live server.
+    */
+   long getReplicationSyncThroughput();
+
    /**
     * Returns the file system directory used to store paging files.
     */
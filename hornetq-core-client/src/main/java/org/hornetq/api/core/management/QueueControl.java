@@ -82,6 +82,16 @@ public interface QueueControl
     */
    long getMessagesAdded();
 
+   /**
+    * Returns the number of messages moved from this queue to other nodes of the cluster by redistribution.
+    */
+   long getMessagesRedistributed();
+
+   /**
+    * Returns the number of messages per second currently redistributed from this queue to other nodes of the cluster.
+    */
+   double getRedistributionRate();
+
    /**
     * Returns the expiry address associated to this queue.
     */
@@ -244,4 +244,7 @@ public interface HornetQClientMessageBundle
          , format = Message.Format.MESSAGE_FORMAT)
    HornetQInterceptorRejectedPacketException interceptorRejectedPacket(String interceptionResult);
 
+   @Message(id = 119082, value = "Error reading the file {0}", format = Message.Format.MESSAGE_FORMAT)
+   IllegalStateException errorReadingFile(String fileName, @Cause Exception e);
+
 }
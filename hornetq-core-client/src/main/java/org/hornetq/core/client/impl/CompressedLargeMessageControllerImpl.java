@@ -24,6 +24,7 @@ import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.client.HornetQClientLogger;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionReceiveContinuationMessage;
+import org.hornetq.utils.CompactStringUtil;
 import org.hornetq.utils.DataConstants;
 import org.hornetq.utils.HornetQBufferInputStream;
 import org.hornetq.utils.InflaterReader;
@@ -623,6 +624,10 @@ final class CompressedLargeMessageControllerImpl implements LargeMessageControll
    public SimpleString readSimpleString()
    {
       int len = readInt();
+      if (len < 0)
+      {
+         return CompactStringUtil.readCompact(len, this);
+      }
       byte[] data = new byte[len];
       readBytes(data);
       return new SimpleString(data);
@@ -690,6 +695,12 @@ final class CompressedLargeMessageControllerImpl implements LargeMessageControll
       throw new IllegalAccessError(OPERATION_NOT_SUPPORTED);
    }
 
+   @Override
+   public void writeNullableCompactSimpleString(final SimpleString val)
+   {
+      throw new IllegalAccessError(OPERATION_NOT_SUPPORTED);
+   }
+
    @Override
    public void writeNullableString(final String val)
    {
@@ -702,6 +713,12 @@ final class CompressedLargeMessageControllerImpl implements LargeMessageControll
       throw new IllegalAccessError(OPERATION_NOT_SUPPORTED);
    }
 
+   @Override
+   public void writeCompactSimpleString(final SimpleString val)
+   {
+      throw new IllegalAccessError(OPERATION_NOT_SUPPORTED);
+   }
+
    @Override
    public void writeString(final String val)
    {
@@ -36,6 +36,7 @@ import org.hornetq.core.client.HornetQClientLogger;
 import org.hornetq.core.client.HornetQClientMessageBundle;
 import org.hornetq.core.protocol.core.Packet;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionReceiveContinuationMessage;
+import org.hornetq.utils.CompactStringUtil;
 import org.hornetq.utils.DataConstants;
 import org.hornetq.utils.UTF8Util;
 import org.jboss.netty.buffer.ChannelBuffer;
@@ -1091,6 +1092,10 @@ public class LargeMessageControllerImpl implements LargeMessageController
    public SimpleString readSimpleString()
    {
       int len = readInt();
+      if (len < 0)
+      {
+         return CompactStringUtil.readCompact(len, this);
+      }
       byte[] data = new byte[len];
       readBytes(data);
       return new SimpleString(data);
@@ -1158,6 +1163,12 @@ public class LargeMessageControllerImpl implements LargeMessageController
       throw new IllegalAccessError(LargeMessageControllerImpl.READ_ONLY_ERROR_MESSAGE);
    }
 
+   @Override
+   public void writeNullableCompactSimpleString(final SimpleString val)
+   {
+      throw new IllegalAccessError(LargeMessageControllerImpl.READ_ONLY_ERROR_MESSAGE);
+   }
+
    @Override
    public void writeNullableString(final String val)
    {
@@ -1170,6 +1181,12 @@ public class LargeMessageControllerImpl implements LargeMessageController
       throw new IllegalAccessError(LargeMessageControllerImpl.READ_ONLY_ERROR_MESSAGE);
    }
 
+   @Override
+   public void writeCompactSimpleString(final SimpleString val)
+   {
+      throw new IllegalAccessError(LargeMessageControllerImpl.READ_ONLY_ERROR_MESSAGE);
+   }
+
    @Override
    public void writeString(final String val)
    {
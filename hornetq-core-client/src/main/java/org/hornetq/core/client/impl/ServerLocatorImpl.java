@@ -110,6 +110,8 @@ public final class ServerLocatorImpl implements ServerLocatorInternal, Discovery
 
    private boolean compressLargeMessage;
 
+   private boolean compactTextMessages;
+
    // if the system should shutdown the pool when shutting down
    private transient boolean shutdownPool;
 
@@ -479,6 +481,8 @@ public final class ServerLocatorImpl implements ServerLocatorInternal, Discovery
 
       compressLargeMessage = HornetQClient.DEFAULT_COMPRESS_LARGE_MESSAGES;
 
+      compactTextMessages = HornetQClient.DEFAULT_COMPACT_TEXT_MESSAGES;
+
       clusterConnection = false;
    }
 
@@ -1278,6 +1282,16 @@ public final class ServerLocatorImpl implements ServerLocatorInternal, Discovery
       this.compressLargeMessage = avoid;
    }
 
+   public boolean isCompactTextMessages()
+   {
+      return compactTextMessages;
+   }
+
+   public void setCompactTextMessages(boolean compactTextMessages)
+   {
+      this.compactTextMessages = compactTextMessages;
+   }
+
    private void checkWrite()
    {
       synchronized (stateGuard)
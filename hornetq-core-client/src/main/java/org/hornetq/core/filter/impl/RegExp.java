@@ -55,6 +55,11 @@ final class RegExp
       return re.matcher(str).matches();
    }
 
+   public boolean matches(final CharSequence str)
+   {
+      return re.matcher(str).matches();
+   }
+
    protected String adjustPattern(final String pattern, final Character escapeChar) throws Exception
    {
       int patternLen = pattern.length();
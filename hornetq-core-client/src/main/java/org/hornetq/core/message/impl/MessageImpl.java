@@ -23,12 +23,15 @@ import org.hornetq.api.core.HornetQBuffers;
 import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.HornetQPropertyConversionException;
 import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.buffers.impl.ChannelBufferWrapper;
 import org.hornetq.core.buffers.impl.ResetLimitWrappedHornetQBuffer;
 import org.hornetq.core.message.BodyEncoder;
 import org.hornetq.core.protocol.core.impl.PacketImpl;
 import org.hornetq.utils.DataConstants;
 import org.hornetq.utils.TypedProperties;
 import org.hornetq.utils.UUID;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
 
 /**
  * A concrete implementation of a message
@@ -517,6 +520,21 @@ public abstract class MessageImpl implements MessageInternal
       }
    }
 
+   /**
+    * Unlike {@link #getEncodedBuffer()} this never copies the message: the returned buffer is a read only view of the
+    * bytes of the buffer of the message, which is copied instead before the message is encoded again.
+    */
+   public synchronized HornetQBuffer getSharedEncodedBuffer()
+   {
+      HornetQBuffer buff = encodeToBuffer();
+
+      bufferUsed = true;
+
+      ChannelBuffer slice = buff.channelBuffer().slice(BUFFER_HEADER_SPACE, endOfMessagePosition - BUFFER_HEADER_SPACE);
+
+      return new ChannelBufferWrapper(ChannelBuffers.unmodifiableBuffer(slice));
+   }
+
    public void setAddressTransient(final SimpleString address)
    {
       this.address = address;
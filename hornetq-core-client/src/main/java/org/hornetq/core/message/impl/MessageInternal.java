@@ -49,6 +49,11 @@ public interface MessageInternal extends Message
 
    HornetQBuffer getEncodedBuffer();
 
+   /**
+    * @return the encoded message after the packet headers, sharing its bytes with the buffer of the message.
+    */
+   HornetQBuffer getSharedEncodedBuffer();
+
    int getHeadersAndPropertiesEncodeSize();
 
    HornetQBuffer getWholeBuffer();
@@ -35,6 +35,7 @@ import org.hornetq.core.protocol.core.CoreRemotingConnection;
 import org.hornetq.core.protocol.core.Packet;
 import org.hornetq.core.protocol.core.impl.wireformat.HornetQExceptionMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.PacketsConfirmedMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.SessionReceiveFileContinuationMessage;
 import org.hornetq.spi.core.protocol.RemotingConnection;
 
 /**
@@ -221,7 +222,22 @@ public final class ChannelImpl implements Channel
             HornetQClientLogger.LOGGER.trace("Sending packet nonblocking " + packet + " on channeID=" + id);
          }
 
-         HornetQBuffer buffer = packet.encode(connection);
+         HornetQBuffer buffer;
+
+         SessionReceiveFileContinuationMessage filePacket = null;
+
+         if (packet instanceof SessionReceiveFileContinuationMessage &&
+             connection.getTransportConnection().isFileTransferSupported())
+         {
+            // The body goes from the file to the socket, only the bytes around it are encoded
+            filePacket = (SessionReceiveFileContinuationMessage)packet;
+
+            buffer = filePacket.encodeHeader(connection);
+         }
+         else
+         {
+            buffer = packet.encode(connection);
+         }
 
          lock.lock();
 
@@ -264,7 +280,19 @@ public final class ChannelImpl implements Channel
 
          // The actual send must be outside the lock, or with OIO transport, the write can block if the tcp
          // buffer is full, preventing any incoming buffers being handled and blocking failover
-         connection.getTransportConnection().write(buffer, flush, batch);
+         if (filePacket != null)
+         {
+            connection.getTransportConnection().transferFile(buffer,
+                                                             filePacket.getFile(),
+                                                             filePacket.getPosition(),
+                                                             filePacket.getLength(),
+                                                             filePacket.encodeTrailer(connection),
+                                                             flush);
+         }
+         else
+         {
+            connection.getTransportConnection().write(buffer, flush, batch);
+         }
 
          return true;
       }
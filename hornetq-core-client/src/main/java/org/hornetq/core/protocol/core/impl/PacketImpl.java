@@ -188,6 +188,9 @@ public class PacketImpl implements Packet
 
    public static final byte SESS_UNIQUE_ADD_METADATA = 106;
 
+   public static final byte REPLICATION_BATCH = 107;
+
+   public static final byte REPLICATION_BATCH_RESPONSE = 108;
 
 
    // HA
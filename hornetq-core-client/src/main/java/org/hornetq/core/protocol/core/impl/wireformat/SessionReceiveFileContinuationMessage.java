@@ -0,0 +1,144 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.protocol.core.impl.wireformat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.core.client.HornetQClientMessageBundle;
+import org.hornetq.spi.core.protocol.RemotingConnection;
+import org.hornetq.utils.DataConstants;
+
+/**
+ * A {@link SessionReceiveContinuationMessage} whose body is a region of a file, read only when the packet is sent.
+ *
+ * On the wire it is the same packet, so the consumer decodes it as a {@link SessionReceiveContinuationMessage}. When
+ * the transport supports it the body isn't read into memory at all: the channel writes the {@link #encodeHeader
+ * header}, then the region of the file, then the {@link #encodeTrailer trailer}. Otherwise, or when the packet is
+ * replayed, the region is read by {@link #encode(RemotingConnection)} as for any other packet.
+ */
+public class SessionReceiveFileContinuationMessage extends SessionReceiveContinuationMessage
+{
+   private final File file;
+
+   private final long position;
+
+   private final int length;
+
+   public SessionReceiveFileContinuationMessage(final long consumerID,
+                                                final File file,
+                                                final long position,
+                                                final int length,
+                                                final boolean continues,
+                                                final boolean requiresResponse)
+   {
+      super(consumerID, null, continues, requiresResponse, SESSION_RECEIVE_CONTINUATION_BASE_SIZE + length);
+      this.file = file;
+      this.position = position;
+      this.length = length;
+   }
+
+   public File getFile()
+   {
+      return file;
+   }
+
+   public long getPosition()
+   {
+      return position;
+   }
+
+   public int getLength()
+   {
+      return length;
+   }
+
+   @Override
+   public byte[] getBody()
+   {
+      if (body == null)
+      {
+         body = readBody();
+      }
+      return body;
+   }
+
+   /**
+    * @return what goes on the wire before the bytes of the file, the length includes the file region and the trailer
+    */
+   public HornetQBuffer encodeHeader(final RemotingConnection connection)
+   {
+      HornetQBuffer buffer = connection.createBuffer(PACKET_HEADERS_SIZE + DataConstants.SIZE_INT);
+
+      buffer.writeInt(size - DataConstants.SIZE_INT);
+      buffer.writeByte(getType());
+      buffer.writeLong(getChannelID());
+      buffer.writeInt(length);
+
+      return buffer;
+   }
+
+   /**
+    * @return what goes on the wire after the bytes of the file
+    */
+   public HornetQBuffer encodeTrailer(final RemotingConnection connection)
+   {
+      HornetQBuffer buffer = connection.createBuffer(DataConstants.SIZE_BOOLEAN + DataConstants.SIZE_LONG);
+
+      buffer.writeBoolean(continues);
+      buffer.writeLong(getConsumerID());
+
+      return buffer;
+   }
+
+   @Override
+   public void encodeRest(final HornetQBuffer buffer)
+   {
+      buffer.writeInt(length);
+      buffer.writeBytes(getBody());
+      buffer.writeBoolean(continues);
+      buffer.writeLong(getConsumerID());
+   }
+
+   @Override
+   public String toString()
+   {
+      return getParentString() + ", file=" + file.getName() + ", position=" + position + ", length=" + length + "]";
+   }
+
+   private byte[] readBody()
+   {
+      try
+      {
+         RandomAccessFile randomFile = new RandomAccessFile(file, "r");
+         try
+         {
+            byte[] bytes = new byte[length];
+            randomFile.seek(position);
+            randomFile.readFully(bytes);
+            return bytes;
+         }
+         finally
+         {
+            randomFile.close();
+         }
+      }
+      catch (IOException e)
+      {
+         throw HornetQClientMessageBundle.BUNDLE.errorReadingFile(file.getName(), e);
+      }
+   }
+}
@@ -14,9 +14,12 @@
 package org.hornetq.core.protocol.core.impl.wireformat;
 
 import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.core.buffers.impl.ChannelBufferWrapper;
 import org.hornetq.core.message.impl.MessageInternal;
 import org.hornetq.spi.core.protocol.RemotingConnection;
 import org.hornetq.utils.DataConstants;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
 
 /**
  * @author <a href="mailto:tim.fox@jboss.com">Tim Fox</a>
@@ -58,33 +61,29 @@ public class SessionReceiveMessage extends MessagePacket
       return deliveryCount;
    }
 
+   /**
+    * The message itself is not copied: its bytes are shared with the buffer of the message, and by every delivery of the
+    * message, between the packet headers and the consumer ID and delivery count of this delivery.
+    */
    @Override
    public HornetQBuffer encode(final RemotingConnection connection)
    {
-      HornetQBuffer buffer = message.getEncodedBuffer();
+      HornetQBuffer messageBuffer = message.getSharedEncodedBuffer();
 
-      // Sanity check
-      if (buffer.writerIndex() != message.getEndOfMessagePosition())
-      {
-         throw new IllegalStateException("Wrong encode position");
-      }
-
-      buffer.writeLong(consumerID);
-      buffer.writeInt(deliveryCount);
-
-      size = buffer.writerIndex();
+      size = PACKET_HEADERS_SIZE + messageBuffer.readableBytes() + DataConstants.SIZE_LONG + DataConstants.SIZE_INT;
 
       // Write standard headers
 
-      int len = size - DataConstants.SIZE_INT;
-      buffer.setInt(0, len);
-      buffer.setByte(DataConstants.SIZE_INT, getType());
-      buffer.setLong(DataConstants.SIZE_INT + DataConstants.SIZE_BYTE, channelID);
+      ChannelBuffer headers = ChannelBuffers.buffer(PACKET_HEADERS_SIZE);
+      headers.writeInt(size - DataConstants.SIZE_INT);
+      headers.writeByte(getType());
+      headers.writeLong(channelID);
 
-      // Position reader for reading by Netty
-      buffer.setIndex(0, size);
+      ChannelBuffer delivery = ChannelBuffers.buffer(DataConstants.SIZE_LONG + DataConstants.SIZE_INT);
+      delivery.writeLong(consumerID);
+      delivery.writeInt(deliveryCount);
 
-      return buffer;
+      return new ChannelBufferWrapper(ChannelBuffers.wrappedBuffer(headers, messageBuffer.channelBuffer(), delivery));
    }
 
    @Override
@@ -13,6 +13,10 @@
 
 package org.hornetq.core.remoting.impl.netty;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Semaphore;
@@ -24,6 +28,7 @@ import org.hornetq.api.core.TransportConfiguration;
 import org.hornetq.core.buffers.impl.ChannelBufferWrapper;
 import org.hornetq.core.security.HornetQPrincipal;
 import org.hornetq.core.client.HornetQClientLogger;
+import org.hornetq.core.client.HornetQClientMessageBundle;
 import org.hornetq.spi.core.remoting.Connection;
 import org.hornetq.spi.core.remoting.ConnectionLifeCycleListener;
 import org.hornetq.spi.core.remoting.ReadyListener;
@@ -31,6 +36,9 @@ import org.hornetq.utils.ConcurrentHashSet;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.DefaultFileRegion;
+import org.jboss.netty.channel.FileRegion;
 import org.jboss.netty.handler.ssl.SslHandler;
 
 /**
@@ -56,6 +64,8 @@ public class NettyConnection implements Connection
 
    private final boolean directDeliver;
 
+   private final boolean fileTransferEnabled;
+
    private volatile HornetQBuffer batchBuffer;
 
    private final Map<String, Object> configuration;
@@ -73,6 +83,19 @@ public class NettyConnection implements Connection
                            final ConnectionLifeCycleListener listener,
                            boolean batchingEnabled,
                            boolean directDeliver)
+   {
+      this(configuration, channel, listener, batchingEnabled, directDeliver, false);
+   }
+
+   /**
+    * @param fileTransferEnabled whether files can be written straight to the channel, only for plain socket channels
+    */
+   public NettyConnection(final Map<String, Object> configuration,
+                           final Channel channel,
+                           final ConnectionLifeCycleListener listener,
+                           boolean batchingEnabled,
+                           boolean directDeliver,
+                           boolean fileTransferEnabled)
    {
       this.configuration = configuration;
 
@@ -83,6 +106,8 @@ public class NettyConnection implements Connection
       this.batchingEnabled = batchingEnabled;
 
       this.directDeliver = directDeliver;
+
+      this.fileTransferEnabled = fileTransferEnabled;
    }
 
    // Public --------------------------------------------------------
@@ -214,24 +239,7 @@ public class NettyConnection implements Connection
 
             if (flush)
             {
-               while (true)
-               {
-                  try
-                  {
-                     boolean ok = future.await(10000);
-
-                     if (!ok)
-                     {
-                        HornetQClientLogger.LOGGER.timeoutFlushingPacket();
-                     }
-
-                     break;
-                  }
-                  catch (InterruptedException e)
-                  {
-                     throw new HornetQInterruptedException(e);
-                  }
-               }
+               awaitFlush(future);
             }
          }
          finally
@@ -245,6 +253,79 @@ public class NettyConnection implements Connection
       }
    }
 
+   public boolean isFileTransferSupported()
+   {
+      return fileTransferEnabled;
+   }
+
+   public void transferFile(final HornetQBuffer header,
+                            final File file,
+                            final long position,
+                            final int count,
+                            final HornetQBuffer trailer,
+                            final boolean flush)
+   {
+      FileChannel fileChannel;
+
+      try
+      {
+         fileChannel = new RandomAccessFile(file, "r").getChannel();
+      }
+      catch (IOException e)
+      {
+         throw HornetQClientMessageBundle.BUNDLE.errorReadingFile(file.getName(), e);
+      }
+
+      // Netty closes the file once the region is transferred
+      final FileRegion region = new DefaultFileRegion(fileChannel, position, count, true);
+
+      try
+      {
+         writeLock.acquire();
+      }
+      catch (InterruptedException e)
+      {
+         region.releaseExternalResources();
+
+         throw new HornetQInterruptedException(e);
+      }
+
+      try
+      {
+         // Anything batched so far has to go before the header
+         if (batchBuffer != null && batchBuffer.readable())
+         {
+            channel.write(batchBuffer.channelBuffer());
+
+            batchBuffer = HornetQBuffers.dynamicBuffer(BATCHING_BUFFER_SIZE);
+         }
+
+         channel.write(header.channelBuffer());
+
+         channel.write(region).addListener(new ChannelFutureListener()
+         {
+            public void operationComplete(final ChannelFuture future) throws Exception
+            {
+               if (!future.isSuccess())
+               {
+                  region.releaseExternalResources();
+               }
+            }
+         });
+
+         ChannelFuture future = channel.write(trailer.channelBuffer());
+
+         if (flush)
+         {
+            awaitFlush(future);
+         }
+      }
+      finally
+      {
+         writeLock.release();
+      }
+   }
+
    public String getRemoteAddress()
    {
       return channel.getRemoteAddress().toString();
@@ -308,6 +389,28 @@ public class NettyConnection implements Connection
 
    // Private -------------------------------------------------------
 
+   private void awaitFlush(final ChannelFuture future)
+   {
+      while (true)
+      {
+         try
+         {
+            boolean ok = future.await(10000);
+
+            if (!ok)
+            {
+               HornetQClientLogger.LOGGER.timeoutFlushingPacket();
+            }
+
+            break;
+         }
+         catch (InterruptedException e)
+         {
+            throw new HornetQInterruptedException(e);
+         }
+      }
+   }
+
    // Inner classes -------------------------------------------------
 
 }
@@ -81,6 +81,8 @@ public class TransportConstants
 
    public static final String DIRECT_DELIVER = "direct-deliver";
 
+   public static final String LARGE_MESSAGE_FILE_TRANSFER = "large-message-file-transfer";
+
    public static final String CLUSTER_CONNECTION = "cluster-connection";
 
    public static final String STOMP_CONSUMERS_CREDIT = "stomp-consumer-credits";
@@ -144,6 +146,8 @@ public class TransportConstants
 
    public static final boolean DEFAULT_DIRECT_DELIVER = true;
 
+   public static final boolean DEFAULT_LARGE_MESSAGE_FILE_TRANSFER = true;
+
    public static final Set<String> ALLOWABLE_CONNECTOR_KEYS;
 
    public static final Set<String> ALLOWABLE_ACCEPTOR_KEYS;
@@ -175,6 +179,7 @@ public class TransportConstants
       allowableAcceptorKeys.add(TransportConstants.NIO_REMOTING_THREADS_PROPNAME);
       allowableAcceptorKeys.add(TransportConstants.BATCH_DELAY);
       allowableAcceptorKeys.add(TransportConstants.DIRECT_DELIVER);
+      allowableAcceptorKeys.add(TransportConstants.LARGE_MESSAGE_FILE_TRANSFER);
       allowableAcceptorKeys.add(TransportConstants.CLUSTER_CONNECTION);
       allowableAcceptorKeys.add(TransportConstants.STOMP_CONSUMERS_CREDIT);
       allowableAcceptorKeys.add(TransportConstants.CONNECTION_TTL);
@@ -13,6 +13,8 @@
 
 package org.hornetq.spi.core.remoting;
 
+import java.io.File;
+
 import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.TransportConfiguration;
 import org.hornetq.core.security.HornetQPrincipal;
@@ -55,6 +57,29 @@ public interface Connection
     */
    void write(HornetQBuffer buffer);
 
+   /**
+    * Whether {@link #transferFile(HornetQBuffer, File, long, int, HornetQBuffer, boolean)} can send the bytes of a file
+    * straight from the file to the socket. It can't when something on the way needs the bytes in memory, as SSL or HTTP.
+    * A connection that can't still implements it by reading the bytes of the file into the buffer it writes.
+    *
+    * @return true if files can be transferred on this connection
+    */
+   boolean isFileTransferSupported();
+
+   /**
+    * writes the header, count bytes of the file starting at position and then the trailer, as a single write that isn't
+    * batched. The bytes of the file aren't copied into memory, the file is opened by the connection and closed once
+    * its bytes are written.
+    *
+    * @param header the buffer to write before the bytes of the file
+    * @param file the file to read from
+    * @param position the position of the first byte to transfer
+    * @param count the number of bytes to transfer
+    * @param trailer the buffer to write after the bytes of the file
+    * @param flush whether to return only when everything has been physically written to the connection
+    */
+   void transferFile(HornetQBuffer header, File file, long position, int count, HornetQBuffer trailer, boolean flush);
+
    /**
     * Closes the connection.
     */
@@ -0,0 +1,475 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.utils;
+
+import java.lang.reflect.Array;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A thread safe priority linked list that doesn't use any monitor.
+ *
+ * Each priority level is split into shards, and each shard is a lock free singly linked list, so producers
+ * adding to different shards never contend on the same tail. Every element is stamped with a sequence when it is
+ * added and readers merge the shards of a level by that sequence, keeping FIFO order within a level. Elements
+ * added through {@link #addHead(Object, int)} take a decreasing sequence so they are always seen first.
+ *
+ * Removals are logical: the element is cleared from its node with a CAS and the node is unlinked later by whoever
+ * walks past it. Iterators are not registered on the list, and see elements added at the tail after they were
+ * created. As with {@link LinkedListImpl}, an iterator won't see elements added at the head after it has moved.
+ *
+ * @see PriorityLinkedListImpl
+ */
+public class ConcurrentPriorityLinkedListImpl<T> implements PriorityLinkedList<T>
+{
+   /**
+    * Chooses the shard an element goes to. Elements that must keep their relative order when read from different
+    * threads should be sent to the same shard.
+    */
+   public interface ShardSelector<T>
+   {
+      int select(T element);
+   }
+
+   /** Spreads producers over the shards by thread */
+   public static final ShardSelector<Object> THREAD_SHARD_SELECTOR = new ShardSelector<Object>()
+   {
+      public int select(final Object element)
+      {
+         return (int)Thread.currentThread().getId();
+      }
+   };
+
+   private final Shard<T>[][] levels;
+
+   private final ShardSelector<? super T> selector;
+
+   private final AtomicLong tailSequence = new AtomicLong(0);
+
+   private final AtomicLong headSequence = new AtomicLong(0);
+
+   private final AtomicInteger size = new AtomicInteger(0);
+
+   public ConcurrentPriorityLinkedListImpl(final int priorities)
+   {
+      this(priorities, Runtime.getRuntime().availableProcessors(), THREAD_SHARD_SELECTOR);
+   }
+
+   public ConcurrentPriorityLinkedListImpl(final int priorities,
+                                           final int shards,
+                                           final ShardSelector<? super T> selector)
+   {
+      if (shards <= 0)
+      {
+         throw new IllegalArgumentException("shards must be > 0");
+      }
+
+      this.selector = selector;
+
+      levels = (Shard<T>[][])Array.newInstance(Shard.class, priorities, shards);
+
+      for (int i = 0; i < priorities; i++)
+      {
+         for (int j = 0; j < shards; j++)
+         {
+            levels[i][j] = new Shard<T>();
+         }
+      }
+   }
+
+   public void addHead(final T t, final int priority)
+   {
+      size.incrementAndGet();
+
+      shard(t, priority).addHead(new Node<T>(t, headSequence.decrementAndGet()));
+   }
+
+   public void addTail(final T t, final int priority)
+   {
+      size.incrementAndGet();
+
+      shard(t, priority).addTail(new Node<T>(t, tailSequence.incrementAndGet()));
+   }
+
+   public T poll()
+   {
+      for (int i = levels.length - 1; i >= 0; i--)
+      {
+         Shard<T>[] shards = levels[i];
+
+         while (true)
+         {
+            Node<T> first = null;
+
+            for (Shard<T> shard : shards)
+            {
+               Node<T> node = shard.firstAfter(shard.head);
+
+               if (node != null && (first == null || node.sequence < first.sequence))
+               {
+                  first = node;
+               }
+            }
+
+            if (first == null)
+            {
+               break;
+            }
+
+            T t = first.item;
+
+            if (t != null && first.clear(t))
+            {
+               size.decrementAndGet();
+
+               return t;
+            }
+         }
+      }
+
+      return null;
+   }
+
+   public void clear()
+   {
+      for (Shard<T>[] shards : levels)
+      {
+         for (Shard<T> shard : shards)
+         {
+            Node<T> node = shard.head.next;
+
+            while (node != null)
+            {
+               T t = node.item;
+
+               if (t != null && node.clear(t))
+               {
+                  size.decrementAndGet();
+               }
+
+               node = node.next;
+            }
+
+            shard.firstAfter(shard.head);
+         }
+      }
+   }
+
+   public int size()
+   {
+      return size.get();
+   }
+
+   public boolean isEmpty()
+   {
+      return size.get() <= 0;
+   }
+
+   public LinkedListIterator<T> iterator()
+   {
+      return new ConcurrentPriorityIterator();
+   }
+
+   private Shard<T> shard(final T t, final int priority)
+   {
+      Shard<T>[] shards = levels[priority];
+
+      if (shards.length == 1)
+      {
+         return shards[0];
+      }
+
+      return shards[(selector.select(t) & Integer.MAX_VALUE) % shards.length];
+   }
+
+   private static final class Node<E>
+   {
+      private static final AtomicReferenceFieldUpdater<Node, Object> itemUpdater = AtomicReferenceFieldUpdater.newUpdater(Node.class,
+                                                                                                                       Object.class,
+                                                                                                                       "item");
+
+      private static final AtomicReferenceFieldUpdater<Node, Node> nextUpdater = AtomicReferenceFieldUpdater.newUpdater(Node.class,
+                                                                                                                     Node.class,
+                                                                                                                     "next");
+
+      final long sequence;
+
+      volatile E item;
+
+      volatile Node<E> next;
+
+      Node(final E item, final long sequence)
+      {
+         this.item = item;
+         this.sequence = sequence;
+      }
+
+      boolean clear(final E expected)
+      {
+         return itemUpdater.compareAndSet(this, expected, null);
+      }
+
+      boolean casNext(final Node<E> expected, final Node<E> update)
+      {
+         return nextUpdater.compareAndSet(this, expected, update);
+      }
+
+      @Override
+      public String toString()
+      {
+         return "Node, sequence = " + sequence + ", value = " + item;
+      }
+   }
+
+   /**
+    * A shard never unlinks its last node. That way an append can't be lost by landing on a node that has just been
+    * unlinked, and following the next references from any node, linked or not, always leads to the current tail.
+    */
+   private static final class Shard<E>
+   {
+      final Node<E> head = new Node<E>(null, Long.MIN_VALUE);
+
+      // Only a hint, appends walk forward from it until they find the real tail
+      volatile Node<E> tail = head;
+
+      void addHead(final Node<E> node)
+      {
+         while (true)
+         {
+            Node<E> first = head.next;
+
+            node.next = first;
+
+            if (head.casNext(first, node))
+            {
+               return;
+            }
+         }
+      }
+
+      void addTail(final Node<E> node)
+      {
+         Node<E> last = tail;
+
+         while (true)
+         {
+            Node<E> next = last.next;
+
+            if (next == null)
+            {
+               if (last.casNext(null, node))
+               {
+                  tail = node;
+                  return;
+               }
+            }
+            else
+            {
+               last = next;
+            }
+         }
+      }
+
+      /**
+       * @return the first node after {@code pred} still holding an element, unlinking the cleared nodes found on the
+       *         way
+       */
+      Node<E> firstAfter(final Node<E> pred)
+      {
+         Node<E> node = pred.next;
+
+         while (node != null && node.item == null)
+         {
+            Node<E> next = node.next;
+
+            if (next == null)
+            {
+               return null;
+            }
+
+            pred.casNext(node, next);
+
+            node = next;
+         }
+
+         return node;
+      }
+   }
+
+   private class ConcurrentPriorityIterator implements LinkedListIterator<T>
+   {
+      // The last node returned on each shard, or the shard head if nothing was returned from it yet
+      private final Node<T>[][] cursors;
+
+      private Node<T> last;
+
+      private Node<T> lastPred;
+
+      private Node<T> pending;
+
+      private int pendingLevel;
+
+      private int pendingShard;
+
+      private boolean repeat;
+
+      ConcurrentPriorityIterator()
+      {
+         cursors = (Node<T>[][])Array.newInstance(Node.class, levels.length, levels[0].length);
+
+         for (int i = 0; i < levels.length; i++)
+         {
+            for (int j = 0; j < levels[i].length; j++)
+            {
+               cursors[i][j] = levels[i][j].head;
+            }
+         }
+      }
+
+      public void repeat()
+      {
+         if (last == null)
+         {
+            throw new NoSuchElementException();
+         }
+
+         repeat = true;
+      }
+
+      public boolean hasNext()
+      {
+         if (repeat && last != null && last.item != null)
+         {
+            return true;
+         }
+
+         if (pending == null || pending.item == null)
+         {
+            pending = findNext();
+         }
+
+         return pending != null;
+      }
+
+      public T next()
+      {
+         if (repeat)
+         {
+            repeat = false;
+
+            if (last != null)
+            {
+               T t = last.item;
+
+               if (t != null)
+               {
+                  return t;
+               }
+            }
+         }
+
+         while (true)
+         {
+            if (pending == null || pending.item == null)
+            {
+               pending = findNext();
+
+               if (pending == null)
+               {
+                  throw new NoSuchElementException();
+               }
+            }
+
+            Node<T> node = pending;
+
+            pending = null;
+
+            lastPred = cursors[pendingLevel][pendingShard];
+
+            cursors[pendingLevel][pendingShard] = node;
+
+            T t = node.item;
+
+            if (t != null)
+            {
+               last = node;
+
+               return t;
+            }
+         }
+      }
+
+      public void remove()
+      {
+         if (last == null)
+         {
+            throw new NoSuchElementException();
+         }
+
+         T t = last.item;
+
+         if (t != null && last.clear(t))
+         {
+            size.decrementAndGet();
+
+            Node<T> next = last.next;
+
+            if (next != null)
+            {
+               lastPred.casNext(last, next);
+            }
+         }
+
+         last = null;
+
+         repeat = false;
+      }
+
+      public void close()
+      {
+         last = lastPred = pending = null;
+      }
+
+      private Node<T> findNext()
+      {
+         for (int i = levels.length - 1; i >= 0; i--)
+         {
+            Shard<T>[] shards = levels[i];
+
+            Node<T> first = null;
+
+            for (int j = 0; j < shards.length; j++)
+            {
+               Node<T> node = shards[j].firstAfter(cursors[i][j]);
+
+               if (node != null && (first == null || node.sequence < first.sequence))
+               {
+                  first = node;
+                  pendingLevel = i;
+                  pendingShard = j;
+               }
+            }
+
+            if (first != null)
+            {
+               return first;
+            }
+         }
+
+         return null;
+      }
+   }
+}
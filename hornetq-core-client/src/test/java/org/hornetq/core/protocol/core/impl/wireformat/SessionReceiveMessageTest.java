@@ -0,0 +1,93 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.protocol.core.impl.wireformat;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.Message;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.client.impl.ClientMessageImpl;
+import org.hornetq.core.protocol.core.impl.PacketImpl;
+
+/**
+ * Checks the deliveries of a message encoded by {@link SessionReceiveMessage} share the bytes of the message.
+ */
+public class SessionReceiveMessageTest extends TestCase
+{
+   private static final SimpleString PROPERTY = new SimpleString("prop");
+
+   public void testEncodeDeliveries() throws Exception
+   {
+      ClientMessageImpl message = new ClientMessageImpl(Message.TEXT_TYPE, true, 0, System.currentTimeMillis(), (byte)4, 1024);
+      message.getBodyBuffer().writeString("some body");
+      message.putIntProperty(PROPERTY, 123);
+
+      HornetQBuffer first = encode(message, 1, 10, 1);
+      HornetQBuffer second = encode(message, 2, 20, 3);
+
+      Assert.assertEquals(first.readableBytes(), second.readableBytes());
+
+      assertDelivery(first, 1, 10, 1);
+      assertDelivery(second, 2, 20, 3);
+
+      // the deliveries didn't change the message
+      assertDelivery(encode(message, 3, 30, 5), 3, 30, 5);
+
+      // a change of the message doesn't change the previous deliveries
+      message.putIntProperty(PROPERTY, 456);
+      HornetQBuffer changed = encode(message, 4, 40, 1);
+
+      assertDelivery(first, 1, 10, 1);
+
+      ClientMessageImpl received = assertDelivery(changed, 4, 40, 1);
+      Assert.assertEquals(456, (int)received.getIntProperty(PROPERTY));
+   }
+
+   private static HornetQBuffer encode(final ClientMessageImpl message,
+                                       final long channelID,
+                                       final long consumerID,
+                                       final int deliveryCount)
+   {
+      SessionReceiveMessage packet = new SessionReceiveMessage(consumerID, message, deliveryCount);
+      packet.setChannelID(channelID);
+      HornetQBuffer buffer = packet.encode(null);
+      Assert.assertEquals(packet.getPacketSize(), buffer.readableBytes());
+      return buffer;
+   }
+
+   private static ClientMessageImpl assertDelivery(final HornetQBuffer encoded,
+                                                   final long channelID,
+                                                   final long consumerID,
+                                                   final int deliveryCount)
+   {
+      HornetQBuffer buffer = encoded.copy(0, encoded.capacity());
+
+      Assert.assertEquals(buffer.readableBytes() - 4, buffer.readInt());
+      Assert.assertEquals(PacketImpl.SESS_RECEIVE_MSG, buffer.readByte());
+
+      ClientMessageImpl received = new ClientMessageImpl();
+      SessionReceiveMessage packet = new SessionReceiveMessage(received);
+      packet.decode(buffer);
+
+      Assert.assertEquals(channelID, packet.getChannelID());
+      Assert.assertEquals(consumerID, packet.getConsumerID());
+      Assert.assertEquals(deliveryCount, packet.getDeliveryCount());
+      Assert.assertEquals("some body", received.getBodyBuffer().readString());
+      Assert.assertTrue(received.containsProperty(PROPERTY));
+
+      return received;
+   }
+}
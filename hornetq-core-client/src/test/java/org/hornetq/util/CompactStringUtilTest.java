@@ -0,0 +1,89 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package org.hornetq.util;
+
+import junit.framework.TestCase;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.HornetQBuffers;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.utils.CompactStringUtil;
+
+public class CompactStringUtilTest extends TestCase
+{
+   public void testLatin1() throws Exception
+   {
+      // one byte per char, the int length on top
+      assertRoundTrip("{\"id\":12,\"name\":\"caf\u00e9\"}", 4 + 23);
+   }
+
+   public void testEmpty() throws Exception
+   {
+      assertRoundTrip("", 4);
+   }
+
+   public void testUTF8() throws Exception
+   {
+      // 10 ASCII chars and one char of 2 and 3 bytes, the two lengths on top
+      assertRoundTrip("0123456789\u0101\u4e2d", 4 + 4 + 10 + 2 + 3);
+   }
+
+   public void testSurrogates() throws Exception
+   {
+      assertRoundTrip("emoji \ud83d\ude00 and a lone \ud800 surrogate", -1);
+   }
+
+   public void testPlainWhenNotSmaller() throws Exception
+   {
+      // three bytes per char in UTF-8, the usual two bytes per char are smaller
+      assertRoundTrip("\u4e2d\u6587\u5b57", 4 + 6);
+   }
+
+   public void testNullable() throws Exception
+   {
+      HornetQBuffer buffer = HornetQBuffers.dynamicBuffer(16);
+
+      buffer.writeNullableCompactSimpleString(null);
+      buffer.writeNullableCompactSimpleString(new SimpleString("abc"));
+      buffer.writeNullableSimpleString(new SimpleString("abc"));
+
+      assertNull(buffer.readNullableSimpleString());
+      assertEquals(new SimpleString("abc"), buffer.readNullableSimpleString());
+      assertEquals(new SimpleString("abc"), buffer.readNullableSimpleString());
+      assertEquals(0, buffer.readableBytes());
+   }
+
+   private void assertRoundTrip(final String string, final int expectedSize)
+   {
+      SimpleString str = new SimpleString(string);
+
+      HornetQBuffer buffer = HornetQBuffers.dynamicBuffer(16);
+
+      buffer.writeCompactSimpleString(str);
+
+      if (expectedSize >= 0)
+      {
+         assertEquals(expectedSize, buffer.writerIndex());
+      }
+      assertEquals(buffer.writerIndex(), CompactStringUtil.sizeofCompact(str));
+
+      SimpleString read = buffer.readSimpleString();
+
+      assertEquals(0, buffer.readableBytes());
+      assertEquals(str, read);
+      assertEquals(str.hashCode(), read.hashCode());
+      assertEquals(string, read.toString());
+   }
+}
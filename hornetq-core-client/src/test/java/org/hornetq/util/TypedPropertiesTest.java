@@ -19,6 +19,7 @@ import junit.framework.TestCase;
 
 import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.HornetQBuffers;
+import org.hornetq.api.core.HornetQPropertyConversionException;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.tests.util.RandomUtil;
 import org.hornetq.tests.CoreUnitTestCase;
@@ -228,6 +229,179 @@ public class TypedPropertiesTest extends TestCase
       TypedPropertiesTest.assertEqualsTypeProperties(emptyProps, decodedProps);
    }
 
+   public void testDecodedLookup() throws Exception
+   {
+      SimpleString intKey = RandomUtil.randomSimpleString();
+      int intValue = RandomUtil.randomInt();
+      SimpleString stringKey = RandomUtil.randomSimpleString();
+      SimpleString stringValue = RandomUtil.randomSimpleString();
+      props.putBytesProperty(RandomUtil.randomSimpleString(), RandomUtil.randomBytes());
+      props.putIntProperty(intKey, intValue);
+      props.putSimpleStringProperty(stringKey, stringValue);
+      props.putNullValue(key);
+
+      HornetQBuffer buffer = HornetQBuffers.dynamicBuffer(1024);
+      props.encode(buffer);
+
+      TypedProperties decodedProps = new TypedProperties();
+      decodedProps.decode(buffer);
+
+      Assert.assertEquals(props.getEncodeSize(), decodedProps.getEncodeSize());
+      Assert.assertEquals(props.getMemoryOffset(), decodedProps.getMemoryOffset());
+      Assert.assertEquals(intValue, (int)decodedProps.getIntProperty(intKey));
+      Assert.assertEquals(stringValue, decodedProps.getSimpleStringProperty(stringKey));
+      Assert.assertTrue(decodedProps.containsProperty(key));
+      Assert.assertNull(decodedProps.getProperty(key));
+      Assert.assertFalse(decodedProps.containsProperty(RandomUtil.randomSimpleString()));
+      Assert.assertNull(decodedProps.getProperty(RandomUtil.randomSimpleString()));
+      Assert.assertNull(decodedProps.removeProperty(RandomUtil.randomSimpleString()));
+
+      // encoded again as they were decoded
+      HornetQBuffer copy = HornetQBuffers.dynamicBuffer(1024);
+      decodedProps.encode(copy);
+      buffer.readerIndex(0);
+      Assert.assertEquals(buffer.readableBytes(), copy.readableBytes());
+      while (buffer.readable())
+      {
+         Assert.assertEquals(buffer.readByte(), copy.readByte());
+      }
+
+      TypedProperties copyProps = new TypedProperties(decodedProps);
+
+      decodedProps.removeProperty(intKey);
+
+      Assert.assertFalse(decodedProps.containsProperty(intKey));
+      Assert.assertEquals(stringValue, decodedProps.getSimpleStringProperty(stringKey));
+      Assert.assertEquals(props.getEncodeSize() - SimpleString.sizeofString(intKey) - 5,
+                          decodedProps.getEncodeSize());
+
+      Assert.assertEquals(intValue, (int)copyProps.getIntProperty(intKey));
+      TypedPropertiesTest.assertEqualsTypeProperties(props, copyProps);
+   }
+
+   public void testDecodedKeysShared() throws Exception
+   {
+      props.putIntProperty(key, RandomUtil.randomInt());
+
+      HornetQBuffer buffer = HornetQBuffers.dynamicBuffer(1024);
+      props.encode(buffer);
+
+      TypedProperties decodedProps = new TypedProperties();
+      decodedProps.decode(buffer);
+
+      buffer.readerIndex(0);
+
+      TypedProperties otherProps = new TypedProperties();
+      otherProps.decode(buffer);
+
+      SimpleString decodedKey = decodedProps.getPropertyNames().iterator().next();
+
+      Assert.assertEquals(key, decodedKey);
+      Assert.assertSame(decodedKey, otherProps.getPropertyNames().iterator().next());
+   }
+
+   public void testDecodedManyProperties() throws Exception
+   {
+      SimpleString[] keys = new SimpleString[50];
+      for (int i = 0; i < keys.length; i++)
+      {
+         keys[i] = RandomUtil.randomSimpleString();
+         props.putIntProperty(keys[i], i);
+      }
+      props.putLongProperty(new SimpleString("a"), 1);
+      props.putLongProperty(new SimpleString("ab"), 2);
+      props.putLongProperty(new SimpleString(""), 3);
+
+      TypedProperties decodedProps = encodeDecode(props);
+
+      for (int i = 0; i < keys.length; i++)
+      {
+         Assert.assertEquals(i, (int)decodedProps.getIntProperty(keys[i]));
+      }
+      Assert.assertEquals(1L, (long)decodedProps.getLongProperty(new SimpleString("a")));
+      Assert.assertEquals(2L, (long)decodedProps.getLongProperty(new SimpleString("ab")));
+      Assert.assertEquals(3L, (long)decodedProps.getLongProperty(new SimpleString("")));
+      Assert.assertFalse(decodedProps.containsProperty(new SimpleString("abc")));
+      Assert.assertFalse(decodedProps.containsProperty(RandomUtil.randomSimpleString()));
+   }
+
+   public void testPrimitiveGetters() throws Exception
+   {
+      SimpleString intKey = RandomUtil.randomSimpleString();
+      SimpleString longKey = RandomUtil.randomSimpleString();
+      SimpleString byteKey = RandomUtil.randomSimpleString();
+      props.putIntProperty(intKey, 10);
+      props.putLongProperty(longKey, Long.MAX_VALUE - 1);
+      props.putByteProperty(byteKey, (byte)-3);
+      props.putNullValue(key);
+
+      TypedProperties[] all = new TypedProperties[] { props, encodeDecode(props) };
+
+      for (TypedProperties p : all)
+      {
+         Assert.assertEquals(10, p.getIntProperty(intKey, -1));
+         Assert.assertEquals(10L, p.getLongProperty(intKey, -1));
+         Assert.assertEquals(Long.MAX_VALUE - 1, p.getLongProperty(longKey, -1));
+         Assert.assertEquals(-3, p.getIntProperty(byteKey, -1));
+         Assert.assertEquals(-3L, p.getLongProperty(byteKey, -1));
+         Assert.assertEquals(-1, p.getIntProperty(key, -1));
+         Assert.assertEquals(-1L, p.getLongProperty(RandomUtil.randomSimpleString(), -1));
+
+         try
+         {
+            p.getIntProperty(longKey, -1);
+            Assert.fail("a long is not an int");
+         }
+         catch (HornetQPropertyConversionException expected)
+         {
+         }
+      }
+
+      Assert.assertEquals(-1, new TypedProperties().getIntProperty(intKey, -1));
+   }
+
+   public void testPutDecodedTypedProperties() throws Exception
+   {
+      SimpleString otherKey = RandomUtil.randomSimpleString();
+      props.putIntProperty(key, 1);
+      props.putSimpleStringProperty(otherKey, RandomUtil.randomSimpleString());
+
+      TypedProperties decodedProps = encodeDecode(props);
+
+      TypedProperties copy = new TypedProperties();
+      copy.putTypedProperties(decodedProps);
+
+      TypedPropertiesTest.assertEqualsTypeProperties(props, copy);
+
+      copy.putIntProperty(key, 2);
+
+      Assert.assertEquals(2, (int)copy.getIntProperty(key));
+      Assert.assertEquals(1, (int)decodedProps.getIntProperty(key));
+
+      TypedProperties merged = new TypedProperties();
+      SimpleString mergedKey = RandomUtil.randomSimpleString();
+      merged.putBooleanProperty(mergedKey, true);
+      merged.putIntProperty(key, 3);
+      merged.putTypedProperties(decodedProps);
+
+      Assert.assertEquals(1, (int)merged.getIntProperty(key));
+      Assert.assertTrue(merged.getBooleanProperty(mergedKey));
+      Assert.assertEquals(decodedProps.getProperty(otherKey), merged.getProperty(otherKey));
+      Assert.assertEquals(props.getEncodeSize() + SimpleString.sizeofString(mergedKey) + 2, merged.getEncodeSize());
+
+      TypedPropertiesTest.assertEqualsTypeProperties(props, decodedProps);
+   }
+
+   private static TypedProperties encodeDecode(final TypedProperties props)
+   {
+      HornetQBuffer buffer = HornetQBuffers.dynamicBuffer(1024);
+      props.encode(buffer);
+
+      TypedProperties decodedProps = new TypedProperties();
+      decodedProps.decode(buffer);
+      return decodedProps;
+   }
+
    @Override
    protected void setUp() throws Exception
    {
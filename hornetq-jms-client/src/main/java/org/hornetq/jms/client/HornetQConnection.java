@@ -498,6 +498,11 @@ public class HornetQConnection implements TopicConnection, QueueConnection
 
    // Package protected ----------------------------------------------------------------------------
 
+   boolean isCompactTextMessages()
+   {
+      return sessionFactory.getServerLocator().isCompactTextMessages();
+   }
+
    // Protected ------------------------------------------------------------------------------------
 
    // In case the user forgets to close the connection manually
@@ -548,6 +548,16 @@ public class HornetQConnectionFactory implements Serializable, Referenceable
       serverLocator.setCompressLargeMessage(avoidLargeMessages);
    }
 
+   public boolean isCompactTextMessages()
+   {
+      return serverLocator.isCompactTextMessages();
+   }
+
+   public void setCompactTextMessages(boolean compactTextMessages)
+   {
+      serverLocator.setCompactTextMessages(compactTextMessages);
+   }
+
    public void close()
    {
       ServerLocator locator0 = serverLocator;
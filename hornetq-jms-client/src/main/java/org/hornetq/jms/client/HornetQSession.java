@@ -179,6 +179,8 @@ public class HornetQSession implements QueueSession, TopicSession
 
       HornetQTextMessage msg = new HornetQTextMessage(session);
 
+      msg.setCompact(connection.isCompactTextMessages());
+
       msg.setText(null);
 
       return msg;
@@ -190,6 +192,8 @@ public class HornetQSession implements QueueSession, TopicSession
 
       HornetQTextMessage msg = new HornetQTextMessage(session);
 
+      msg.setCompact(connection.isCompactTextMessages());
+
       msg.setText(text);
 
       return msg;
@@ -50,6 +50,9 @@ public class HornetQTextMessage extends HornetQMessage implements TextMessage
    // methods are more efficient for a SimpleString
    private SimpleString text;
 
+   // whether the body is written in the compact encoding, the readers understand both
+   private boolean compact;
+
    // Static --------------------------------------------------------
 
    // Constructors --------------------------------------------------
@@ -101,7 +104,14 @@ public class HornetQTextMessage extends HornetQMessage implements TextMessage
          this.text = null;
       }
 
-      buff.writeNullableSimpleString(this.text);
+      if (compact)
+      {
+         buff.writeNullableCompactSimpleString(this.text);
+      }
+      else
+      {
+         buff.writeNullableSimpleString(this.text);
+      }
    }
 
    public String getText() throws JMSException
@@ -142,6 +152,11 @@ public class HornetQTextMessage extends HornetQMessage implements TextMessage
 
    // Package protected ---------------------------------------------
 
+   void setCompact(final boolean compact)
+   {
+      this.compact = compact;
+   }
+
    // Protected -----------------------------------------------------
 
    // Private -------------------------------------------------------
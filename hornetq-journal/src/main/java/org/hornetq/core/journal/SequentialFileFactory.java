@@ -78,4 +78,14 @@ public interface SequentialFileFactory
    void createDirs() throws Exception;
 
    void flush();
+
+   /**
+    * @return the number of times buffered writes were flushed to the files, 0 if the writes aren't buffered
+    */
+   long getFlushCount();
+
+   /**
+    * @return the number of bytes flushed to the files from the buffer
+    */
+   long getBytesFlushed();
 }
@@ -58,7 +58,11 @@ public abstract class AbstractJournalUpdateTask implements JournalReaderCallback
 
    private HornetQBuffer writingChannel;
 
-   private final Set<Long> recordsSnapshot = new ConcurrentHashSet<Long>();
+   // The records live when the task started, this set doesn't change
+   private final Set<Long> recordsSnapshot;
+
+   // Records that have to be considered live besides the snapshot
+   private final Set<Long> addedRecords = new ConcurrentHashSet<Long>();
 
    protected final List<JournalFile> newDataFiles = new ArrayList<JournalFile>();
 
@@ -77,7 +81,8 @@ public abstract class AbstractJournalUpdateTask implements JournalReaderCallback
       this.filesRepository = filesRepository;
       this.fileFactory = fileFactory;
       this.nextOrderingID = nextOrderingID;
-      this.recordsSnapshot.addAll(recordsSnapshot);
+      // not copied, so creating the task doesn't take longer with more records
+      this.recordsSnapshot = recordsSnapshot;
    }
 
    // Public --------------------------------------------------------
@@ -193,7 +198,7 @@ public abstract class AbstractJournalUpdateTask implements JournalReaderCallback
 
    public boolean lookupRecord(final long id)
    {
-      return recordsSnapshot.contains(id);
+      return recordsSnapshot.contains(id) || addedRecords.contains(id);
    }
 
    // Package protected ---------------------------------------------
@@ -224,7 +229,7 @@ public abstract class AbstractJournalUpdateTask implements JournalReaderCallback
 
    protected void addToRecordsSnaptshot(final long id)
    {
-      recordsSnapshot.add(id);
+      addedRecords.add(id);
    }
 
    /**
@@ -68,13 +68,14 @@ abstract class AbstractSequentialFileFactory implements SequentialFileFactory
                                         final int bufferSize,
                                         final int bufferTimeout,
                                         final boolean logRates,
+                                        final boolean adaptiveBufferTimeout,
                                         final IOCriticalErrorListener criticalErrorListener)
    {
       this.journalDir = journalDir;
 
       if (buffered)
       {
-         timedBuffer = new TimedBuffer(bufferSize, bufferTimeout, logRates);
+         timedBuffer = new TimedBuffer(bufferSize, bufferTimeout, logRates, adaptiveBufferTimeout);
       }
       else
       {
@@ -157,6 +158,16 @@ abstract class AbstractSequentialFileFactory implements SequentialFileFactory
       }
    }
 
+   public long getFlushCount()
+   {
+      return timedBuffer == null ? 0 : timedBuffer.getFlushCount();
+   }
+
+   public long getBytesFlushed()
+   {
+      return timedBuffer == null ? 0 : timedBuffer.getBytesFlushed();
+   }
+
    public void deactivateBuffer()
    {
       if (timedBuffer != null)
@@ -166,6 +166,8 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
    private volatile boolean autoReclaim = true;
 
+   private volatile int loadParallelism = 1;
+
    private final int userVersion;
 
    private final int minFiles;
@@ -178,8 +180,8 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
    private final JournalFilesRepository filesRepository;
 
-   // Compacting may replace this structure
-   private final ConcurrentMap<Long, JournalRecord> records = new ConcurrentHashMap<Long, JournalRecord>();
+   // Compacting replaces this structure
+   private volatile ConcurrentMap<Long, JournalRecord> records = new ConcurrentHashMap<Long, JournalRecord>();
 
    // Compacting may replace this structure
    private final ConcurrentMap<Long, JournalTransaction> transactions = new ConcurrentHashMap<Long, JournalTransaction>();
@@ -189,6 +191,13 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
    private final AtomicBoolean compactorEnabled = new AtomicBoolean();
 
+   private final AtomicLong compactCount = new AtomicLong();
+
+   private final AtomicLong compactReclaimedBytes = new AtomicLong();
+
+   // in nanoseconds
+   private final AtomicLong compactPauseTime = new AtomicLong();
+
    private ExecutorService filesExecutor = null;
 
    private ExecutorService compactorExecutor = null;
@@ -407,9 +416,21 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
       {
          final int filesize = (int)file.getFile().size();
 
-         wholeFileBuffer = fileFactory.newBuffer(filesize);
+         final int journalFileSize;
 
-         final int journalFileSize = file.getFile().read(wholeFileBuffer);
+         if (file.getFile() instanceof MappedSequentialFile)
+         {
+            // the records are decoded straight from the mapping, which is valid until the file is closed below
+            wholeFileBuffer = ((MappedSequentialFile)file.getFile()).readAll();
+
+            journalFileSize = wholeFileBuffer.limit();
+         }
+         else
+         {
+            wholeFileBuffer = fileFactory.newBuffer(filesize);
+
+            journalFileSize = file.getFile().read(wholeFileBuffer);
+         }
 
          if (journalFileSize != filesize)
          {
@@ -1471,14 +1492,22 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
          boolean previousReclaimValue = isAutoReclaim();
 
+         long compactStart = 0;
+
+         // the time appends were blocked
+         long pauseTime = 0;
+
       try
       {
          HornetQJournalLogger.LOGGER.debug("Starting compacting operation on journal");
 
          onCompactStart();
 
+         compactStart = System.nanoTime();
+
          // We need to guarantee that the journal is frozen for this short time
          // We don't freeze the journal as we compact, only for the short time where we replace records
+         long lockStart = System.nanoTime();
          journalLock.writeLock().lock();
          try
          {
@@ -1506,6 +1535,8 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
                return;
             }
 
+            // The snapshot is the current map, which isn't updated anymore as it is replaced by an empty one. This
+            // keeps the time the journal is locked independent of the number of records
             compactor = new JournalCompactor(fileFactory,
                                              this,
                                              filesRepository,
@@ -1520,11 +1551,12 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
             // We will calculate the new records during compacting, what will take the position the records will take
             // after compacting
-            records.clear();
+            records = new ConcurrentHashMap<Long, JournalRecord>();
          }
          finally
          {
             journalLock.writeLock().unlock();
+            pauseTime += System.nanoTime() - lockStart;
          }
 
          Collections.sort(dataFilesToProcess, new JournalFileComparator());
@@ -1560,6 +1592,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
          SequentialFile controlFile = createControlFile(dataFilesToProcess, compactor.getNewDataFiles(), null);
 
+         lockStart = System.nanoTime();
          journalLock.writeLock().lock();
          try
          {
@@ -1570,11 +1603,12 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
             newDatafiles = localCompactor.getNewDataFiles();
 
-            // Restore newRecords created during compacting
-            for (Map.Entry<Long, JournalRecord> newRecordEntry : localCompactor.getNewRecords().entrySet())
-            {
-               records.put(newRecordEntry.getKey(), newRecordEntry.getValue());
-            }
+            // The compacted records become the records of the journal, with the records added during compacting
+            ConcurrentMap<Long, JournalRecord> compactedRecords = localCompactor.getNewRecords();
+
+            compactedRecords.putAll(records);
+
+            records = compactedRecords;
 
             // Restore compacted dataFiles
             for (int i = newDatafiles.size() - 1; i >= 0; i--)
@@ -1625,12 +1659,25 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
          finally
          {
             journalLock.writeLock().unlock();
+            pauseTime += System.nanoTime() - lockStart;
          }
 
          // At this point the journal is unlocked. We keep renaming files while the journal is already operational
          renameFiles(dataFilesToProcess, newDatafiles);
          deleteControlFile(controlFile);
 
+         long reclaimed = (long)(dataFilesToProcess.size() - newDatafiles.size()) * fileSize;
+
+         compactCount.incrementAndGet();
+         compactReclaimedBytes.addAndGet(reclaimed);
+
+         HornetQJournalLogger.LOGGER.journalCompacted(filesRepository.getFilePrefix(),
+                                                      dataFilesToProcess.size(),
+                                                      newDatafiles.size(),
+                                                      reclaimed,
+                                                      TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - compactStart),
+                                                      TimeUnit.NANOSECONDS.toMillis(pauseTime));
+
          HornetQJournalLogger.LOGGER.debug("Finished compacting on journal");
 
       }
@@ -1650,6 +1697,8 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
             compactor = null;
          }
          setAutoReclaim(previousReclaimValue);
+
+         compactPauseTime.addAndGet(pauseTime);
          }
       }
       finally
@@ -1732,283 +1781,313 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
       final Map<Long, TransactionHolder> loadTransactions = new LinkedHashMap<Long, TransactionHolder>();
 
+      final long loadStart = System.nanoTime();
+
       final List<JournalFile> orderedFiles = orderFiles();
 
       filesRepository.calculateNextfileID(orderedFiles);
 
+      final long filesEnd = System.nanoTime();
+
+      final JournalParallelReader parallelReader = loadParallelism > 1 && orderedFiles.size() > 1
+         ? new JournalParallelReader(fileFactory, orderedFiles, loadParallelism) : null;
+
       int lastDataPos = JournalImpl.SIZE_HEADER;
 
       // AtomicLong is used only as a reference, not as an Atomic value
       final AtomicLong maxID = new AtomicLong(-1);
 
-      for (final JournalFile file : orderedFiles)
+      try
       {
-         JournalImpl.trace("Loading file " + file.getFile().getFileName());
-
-         final AtomicBoolean hasData = new AtomicBoolean(false);
-
-         int resultLastPost = JournalImpl.readJournalFile(fileFactory, file, new JournalReaderCallback()
+         for (final JournalFile file : orderedFiles)
          {
+            JournalImpl.trace("Loading file " + file.getFile().getFileName());
 
-            private void checkID(final long id)
-            {
-               if (id > maxID.longValue())
-               {
-                  maxID.set(id);
-               }
-            }
+            final AtomicBoolean hasData = new AtomicBoolean(false);
 
-            public void onReadAddRecord(final RecordInfo info) throws Exception
+            JournalReaderCallback reader = new JournalReaderCallback()
             {
-               checkID(info.id);
-
-               hasData.set(true);
 
-               loadManager.addRecord(info);
-
-               records.put(info.id, new JournalRecord(file, info.data.length + JournalImpl.SIZE_ADD_RECORD + 1));
-            }
+               private void checkID(final long id)
+               {
+                  if (id > maxID.longValue())
+                  {
+                     maxID.set(id);
+                  }
+               }
 
-            public void onReadUpdateRecord(final RecordInfo info) throws Exception
-            {
-               checkID(info.id);
+               public void onReadAddRecord(final RecordInfo info) throws Exception
+               {
+                  checkID(info.id);
 
-               hasData.set(true);
+                  hasData.set(true);
 
-               loadManager.updateRecord(info);
+                  loadManager.addRecord(info);
 
-               JournalRecord posFiles = records.get(info.id);
+                  records.put(info.id, new JournalRecord(file, info.data.length + JournalImpl.SIZE_ADD_RECORD + 1));
+               }
 
-               if (posFiles != null)
+               public void onReadUpdateRecord(final RecordInfo info) throws Exception
                {
-                  // It's legal for this to be null. The file(s) with the may
-                  // have been deleted
-                  // just leaving some updates in this file
+                  checkID(info.id);
 
-                  posFiles.addUpdateFile(file, info.data.length + JournalImpl.SIZE_ADD_RECORD + 1); // +1 = compact
-                  // count
-               }
-            }
+                  hasData.set(true);
 
-            public void onReadDeleteRecord(final long recordID) throws Exception
-            {
-               hasData.set(true);
+                  loadManager.updateRecord(info);
 
-               loadManager.deleteRecord(recordID);
+                  JournalRecord posFiles = records.get(info.id);
 
-               JournalRecord posFiles = records.remove(recordID);
+                  if (posFiles != null)
+                  {
+                     // It's legal for this to be null. The file(s) with the may
+                     // have been deleted
+                     // just leaving some updates in this file
 
-               if (posFiles != null)
-               {
-                  posFiles.delete(file);
+                     posFiles.addUpdateFile(file, info.data.length + JournalImpl.SIZE_ADD_RECORD + 1); // +1 = compact
+                     // count
+                  }
                }
-            }
-
-            public void onReadUpdateRecordTX(final long transactionID, final RecordInfo info) throws Exception
-            {
-               onReadAddRecordTX(transactionID, info);
-            }
 
-            public void onReadAddRecordTX(final long transactionID, final RecordInfo info) throws Exception
-            {
+               public void onReadDeleteRecord(final long recordID) throws Exception
+               {
+                  hasData.set(true);
 
-               checkID(info.id);
+                  loadManager.deleteRecord(recordID);
 
-               hasData.set(true);
+                  JournalRecord posFiles = records.remove(recordID);
 
-               TransactionHolder tx = loadTransactions.get(transactionID);
+                  if (posFiles != null)
+                  {
+                     posFiles.delete(file);
+                  }
+               }
 
-               if (tx == null)
+               public void onReadUpdateRecordTX(final long transactionID, final RecordInfo info) throws Exception
                {
-                  tx = new TransactionHolder(transactionID);
-
-                  loadTransactions.put(transactionID, tx);
+                  onReadAddRecordTX(transactionID, info);
                }
 
-               tx.recordInfos.add(info);
-
-               JournalTransaction tnp = transactions.get(transactionID);
-
-               if (tnp == null)
+               public void onReadAddRecordTX(final long transactionID, final RecordInfo info) throws Exception
                {
-                  tnp = new JournalTransaction(transactionID, JournalImpl.this);
 
-                  transactions.put(transactionID, tnp);
-               }
+                  checkID(info.id);
 
-               tnp.addPositive(file, info.id, info.data.length + JournalImpl.SIZE_ADD_RECORD_TX + 1); // +1 = compact
-               // count
-            }
+                  hasData.set(true);
 
-            public void onReadDeleteRecordTX(final long transactionID, final RecordInfo info) throws Exception
-            {
-               hasData.set(true);
+                  TransactionHolder tx = loadTransactions.get(transactionID);
 
-               TransactionHolder tx = loadTransactions.get(transactionID);
+                  if (tx == null)
+                  {
+                     tx = new TransactionHolder(transactionID);
 
-               if (tx == null)
-               {
-                  tx = new TransactionHolder(transactionID);
+                     loadTransactions.put(transactionID, tx);
+                  }
 
-                  loadTransactions.put(transactionID, tx);
-               }
+                  tx.recordInfos.add(info);
 
-               tx.recordsToDelete.add(info);
+                  JournalTransaction tnp = transactions.get(transactionID);
 
-               JournalTransaction tnp = transactions.get(transactionID);
+                  if (tnp == null)
+                  {
+                     tnp = new JournalTransaction(transactionID, JournalImpl.this);
 
-               if (tnp == null)
-               {
-                  tnp = new JournalTransaction(transactionID, JournalImpl.this);
+                     transactions.put(transactionID, tnp);
+                  }
 
-                  transactions.put(transactionID, tnp);
+                  tnp.addPositive(file, info.id, info.data.length + JournalImpl.SIZE_ADD_RECORD_TX + 1); // +1 = compact
+                  // count
                }
 
-               tnp.addNegative(file, info.id);
+               public void onReadDeleteRecordTX(final long transactionID, final RecordInfo info) throws Exception
+               {
+                  hasData.set(true);
 
-            }
+                  TransactionHolder tx = loadTransactions.get(transactionID);
 
-            public void onReadPrepareRecord(final long transactionID, final byte[] extraData, final int numberOfRecords) throws Exception
-            {
-               hasData.set(true);
+                  if (tx == null)
+                  {
+                     tx = new TransactionHolder(transactionID);
 
-               TransactionHolder tx = loadTransactions.get(transactionID);
+                     loadTransactions.put(transactionID, tx);
+                  }
 
-               if (tx == null)
-               {
-                  // The user could choose to prepare empty transactions
-                  tx = new TransactionHolder(transactionID);
+                  tx.recordsToDelete.add(info);
 
-                  loadTransactions.put(transactionID, tx);
-               }
+                  JournalTransaction tnp = transactions.get(transactionID);
 
-               tx.prepared = true;
+                  if (tnp == null)
+                  {
+                     tnp = new JournalTransaction(transactionID, JournalImpl.this);
+
+                     transactions.put(transactionID, tnp);
+                  }
 
-               tx.extraData = extraData;
+                  tnp.addNegative(file, info.id);
 
-               JournalTransaction journalTransaction = transactions.get(transactionID);
+               }
 
-               if (journalTransaction == null)
+               public void onReadPrepareRecord(final long transactionID, final byte[] extraData, final int numberOfRecords) throws Exception
                {
-                  journalTransaction = new JournalTransaction(transactionID, JournalImpl.this);
+                  hasData.set(true);
 
-                  transactions.put(transactionID, journalTransaction);
-               }
+                  TransactionHolder tx = loadTransactions.get(transactionID);
 
-               boolean healthy = checkTransactionHealth(file, journalTransaction, orderedFiles, numberOfRecords);
+                  if (tx == null)
+                  {
+                     // The user could choose to prepare empty transactions
+                     tx = new TransactionHolder(transactionID);
 
-               if (healthy)
-               {
-                  journalTransaction.prepare(file);
-               }
-               else
-               {
-                  HornetQJournalLogger.LOGGER.preparedTXIncomplete(transactionID);
-                  tx.invalid = true;
-               }
-            }
+                     loadTransactions.put(transactionID, tx);
+                  }
 
-            public void onReadCommitRecord(final long transactionID, final int numberOfRecords) throws Exception
-            {
-               TransactionHolder tx = loadTransactions.remove(transactionID);
+                  tx.prepared = true;
 
-               // The commit could be alone on its own journal-file and the
-               // whole transaction body was reclaimed but not the
-               // commit-record
-               // So it is completely legal to not find a transaction at this
-               // point
-               // If we can't find it, we assume the TX was reclaimed and we
-               // ignore this
-               if (tx != null)
-               {
-                  JournalTransaction journalTransaction = transactions.remove(transactionID);
+                  tx.extraData = extraData;
+
+                  JournalTransaction journalTransaction = transactions.get(transactionID);
 
                   if (journalTransaction == null)
                   {
-                     throw new IllegalStateException("Cannot find tx " + transactionID);
+                     journalTransaction = new JournalTransaction(transactionID, JournalImpl.this);
+
+                     transactions.put(transactionID, journalTransaction);
                   }
 
                   boolean healthy = checkTransactionHealth(file, journalTransaction, orderedFiles, numberOfRecords);
 
                   if (healthy)
                   {
-                     for (RecordInfo txRecord : tx.recordInfos)
+                     journalTransaction.prepare(file);
+                  }
+                  else
+                  {
+                     HornetQJournalLogger.LOGGER.preparedTXIncomplete(transactionID);
+                     tx.invalid = true;
+                  }
+               }
+
+               public void onReadCommitRecord(final long transactionID, final int numberOfRecords) throws Exception
+               {
+                  TransactionHolder tx = loadTransactions.remove(transactionID);
+
+                  // The commit could be alone on its own journal-file and the
+                  // whole transaction body was reclaimed but not the
+                  // commit-record
+                  // So it is completely legal to not find a transaction at this
+                  // point
+                  // If we can't find it, we assume the TX was reclaimed and we
+                  // ignore this
+                  if (tx != null)
+                  {
+                     JournalTransaction journalTransaction = transactions.remove(transactionID);
+
+                     if (journalTransaction == null)
+                     {
+                        throw new IllegalStateException("Cannot find tx " + transactionID);
+                     }
+
+                     boolean healthy = checkTransactionHealth(file, journalTransaction, orderedFiles, numberOfRecords);
+
+                     if (healthy)
                      {
-                        if (txRecord.isUpdate)
+                        for (RecordInfo txRecord : tx.recordInfos)
                         {
-                           loadManager.updateRecord(txRecord);
+                           if (txRecord.isUpdate)
+                           {
+                              loadManager.updateRecord(txRecord);
+                           }
+                           else
+                           {
+                              loadManager.addRecord(txRecord);
+                           }
                         }
-                        else
+
+                        for (RecordInfo deleteValue : tx.recordsToDelete)
                         {
-                           loadManager.addRecord(txRecord);
+                           loadManager.deleteRecord(deleteValue.id);
                         }
-                     }
 
-                     for (RecordInfo deleteValue : tx.recordsToDelete)
-                     {
-                        loadManager.deleteRecord(deleteValue.id);
+                        journalTransaction.commit(file);
                      }
+                     else
+                     {
+                        HornetQJournalLogger.LOGGER.txMissingElements(transactionID);
 
-                     journalTransaction.commit(file);
-                  }
-                  else
-                  {
-                     HornetQJournalLogger.LOGGER.txMissingElements(transactionID);
+                        journalTransaction.forget();
+                     }
 
-                     journalTransaction.forget();
+                     hasData.set(true);
                   }
 
-                  hasData.set(true);
                }
 
-            }
-
-            public void onReadRollbackRecord(final long transactionID) throws Exception
-            {
-               TransactionHolder tx = loadTransactions.remove(transactionID);
-
-               // The rollback could be alone on its own journal-file and the
-               // whole transaction body was reclaimed but the commit-record
-               // So it is completely legal to not find a transaction at this
-               // point
-               if (tx != null)
+               public void onReadRollbackRecord(final long transactionID) throws Exception
                {
-                  JournalTransaction tnp = transactions.remove(transactionID);
+                  TransactionHolder tx = loadTransactions.remove(transactionID);
 
-                  if (tnp == null)
+                  // The rollback could be alone on its own journal-file and the
+                  // whole transaction body was reclaimed but the commit-record
+                  // So it is completely legal to not find a transaction at this
+                  // point
+                  if (tx != null)
                   {
-                     throw new IllegalStateException("Cannot find tx " + transactionID);
-                  }
+                     JournalTransaction tnp = transactions.remove(transactionID);
+
+                     if (tnp == null)
+                     {
+                        throw new IllegalStateException("Cannot find tx " + transactionID);
+                     }
+
+                     // There is no need to validate summaries/holes on
+                     // Rollbacks.. We will ignore the data anyway.
+                     tnp.rollback(file);
 
-                  // There is no need to validate summaries/holes on
-                  // Rollbacks.. We will ignore the data anyway.
-                  tnp.rollback(file);
+                     hasData.set(true);
+                  }
+               }
 
+               public void markAsDataFile(final JournalFile file)
+               {
                   hasData.set(true);
                }
-            }
 
-            public void markAsDataFile(final JournalFile file)
+            };
+
+            int resultLastPost;
+
+            if (parallelReader != null)
             {
-               hasData.set(true);
+               resultLastPost = parallelReader.next().replay(reader);
+            }
+            else
+            {
+               resultLastPost = JournalImpl.readJournalFile(fileFactory, file, reader);
             }
 
-         });
-
-         if (hasData.get())
-         {
-            lastDataPos = resultLastPost;
-            filesRepository.addDataFileOnBottom(file);
-         }
-         else
-         {
-            if (changeData)
+            if (hasData.get())
+            {
+               lastDataPos = resultLastPost;
+               filesRepository.addDataFileOnBottom(file);
+            }
+            else
             {
-               // Empty dataFiles with no data
-               filesRepository.addFreeFile(file, false, false);
+               if (changeData)
+               {
+                  // Empty dataFiles with no data
+                  filesRepository.addFreeFile(file, false, false);
+               }
             }
          }
       }
+      finally
+      {
+         if (parallelReader != null)
+         {
+            parallelReader.close();
+         }
+      }
+
+      final long recordsEnd = System.nanoTime();
 
       if (replicationSync == JournalState.SYNCING)
       {
@@ -2021,6 +2100,8 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
       setJournalState(JournalState.LOADED);
 
+      final long currentFileEnd = System.nanoTime();
+
       for (TransactionHolder transaction : loadTransactions.values())
       {
          if ((!transaction.prepared || transaction.invalid) && replicationSync != JournalState.SYNCING_UP_TO_DATE)
@@ -2057,8 +2138,24 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
          }
       }
 
+      final long transactionsEnd = System.nanoTime();
+
       checkReclaimStatus();
 
+      final long loadEnd = System.nanoTime();
+
+      HornetQJournalLogger.LOGGER.journalLoaded(filesRepository.getFilePrefix(),
+                                                orderedFiles.size(),
+                                                TimeUnit.NANOSECONDS.toMillis(loadEnd - loadStart),
+                                                TimeUnit.NANOSECONDS.toMillis(filesEnd - loadStart),
+                                                TimeUnit.NANOSECONDS.toMillis(recordsEnd - filesEnd),
+                                                parallelReader == null ? 1 : loadParallelism,
+                                                TimeUnit.NANOSECONDS.toMillis(parallelReader == null ? recordsEnd - filesEnd
+                                                                                                    : parallelReader.getReadTime()),
+                                                TimeUnit.NANOSECONDS.toMillis(currentFileEnd - recordsEnd),
+                                                TimeUnit.NANOSECONDS.toMillis(transactionsEnd - currentFileEnd),
+                                                TimeUnit.NANOSECONDS.toMillis(loadEnd - transactionsEnd));
+
       return new JournalLoadInformation(records.size(), maxID.longValue());
    }
 
@@ -2181,6 +2278,50 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
       });
    }
 
+   /**
+    * Sets the number of threads reading the files on load. With more than one thread the files are read and
+    * validated concurrently while their records are applied in file order, so the journal ends up in the same state
+    * as with a single thread.
+    */
+   public void setLoadParallelism(final int loadParallelism)
+   {
+      if (loadParallelism < 1)
+      {
+         throw new IllegalArgumentException("Invalid journal load parallelism " + loadParallelism);
+      }
+
+      this.loadParallelism = loadParallelism;
+   }
+
+   public int getLoadParallelism()
+   {
+      return loadParallelism;
+   }
+
+   /**
+    * @return the number of times the journal was compacted
+    */
+   public long getCompactCount()
+   {
+      return compactCount.get();
+   }
+
+   /**
+    * @return the number of bytes of data files released by compacting
+    */
+   public long getCompactReclaimedBytes()
+   {
+      return compactReclaimedBytes.get();
+   }
+
+   /**
+    * @return the time (in milliseconds) compacting blocked appends to the journal, summed over all the compactions
+    */
+   public long getCompactPauseTime()
+   {
+      return TimeUnit.NANOSECONDS.toMillis(compactPauseTime.get());
+   }
+
    // TestableJournal implementation
    // --------------------------------------------------------------
 
@@ -0,0 +1,328 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.journal.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hornetq.core.journal.RecordInfo;
+import org.hornetq.core.journal.SequentialFileFactory;
+
+/**
+ * Reads and validates the files of a journal on several threads, ahead of the load that applies their records.
+ *
+ * Each file is parsed by {@link JournalImpl#readJournalFile(SequentialFileFactory, JournalFile, JournalReaderCallback)}
+ * into a list of the callbacks it made, which {@link #next()} returns in file order so the load replays them exactly
+ * as if it had read the file itself. At most two files per thread are read ahead, which bounds the memory used by
+ * the records waiting to be replayed.
+ *
+ * @see JournalImpl#setLoadParallelism(int)
+ */
+final class JournalParallelReader
+{
+   private final SequentialFileFactory fileFactory;
+
+   private final List<JournalFile> files;
+
+   private final int readAhead;
+
+   private final ExecutorService executor;
+
+   private final LinkedList<Future<FileRecords>> pending = new LinkedList<Future<FileRecords>>();
+
+   private final AtomicLong readTime = new AtomicLong();
+
+   private int submitted;
+
+   JournalParallelReader(final SequentialFileFactory fileFactory, final List<JournalFile> files, final int threads)
+   {
+      this.fileFactory = fileFactory;
+
+      this.files = files;
+
+      readAhead = threads * 2;
+
+      final AtomicInteger count = new AtomicInteger();
+
+      ThreadFactory factory = new ThreadFactory()
+      {
+         public Thread newThread(final Runnable r)
+         {
+            Thread thread = new Thread(r, "JournalImpl::LoadReader-" + count.incrementAndGet());
+
+            thread.setDaemon(true);
+
+            return thread;
+         }
+      };
+
+      ThreadPoolExecutor pool = new ThreadPoolExecutor(threads,
+                                                       threads,
+                                                       1,
+                                                       TimeUnit.SECONDS,
+                                                       new LinkedBlockingQueue<Runnable>(),
+                                                       factory);
+
+      // the threads go away by themselves if the load fails before close is called
+      pool.allowCoreThreadTimeOut(true);
+
+      executor = pool;
+
+      while (submitted < files.size() && submitted < readAhead)
+      {
+         submit();
+      }
+   }
+
+   /**
+    * @return the records of the next file, in the order of the files given to the constructor
+    */
+   FileRecords next() throws Exception
+   {
+      Future<FileRecords> future = pending.removeFirst();
+
+      if (submitted < files.size())
+      {
+         submit();
+      }
+
+      try
+      {
+         return future.get();
+      }
+      catch (ExecutionException e)
+      {
+         if (e.getCause() instanceof Exception)
+         {
+            throw (Exception)e.getCause();
+         }
+
+         throw e;
+      }
+   }
+
+   /**
+    * @return the time spent reading files, summed over all the threads, in nanoseconds
+    */
+   long getReadTime()
+   {
+      return readTime.get();
+   }
+
+   void close()
+   {
+      executor.shutdownNow();
+   }
+
+   private void submit()
+   {
+      final JournalFile file = files.get(submitted++);
+
+      pending.add(executor.submit(new Callable<FileRecords>()
+      {
+         public FileRecords call() throws Exception
+         {
+            long start = System.nanoTime();
+
+            try
+            {
+               FileRecords records = new FileRecords(file);
+
+               records.lastDataPos = JournalImpl.readJournalFile(fileFactory, file, records);
+
+               return records;
+            }
+            finally
+            {
+               readTime.addAndGet(System.nanoTime() - start);
+            }
+         }
+      }));
+   }
+
+   /**
+    * The callbacks made while reading one file
+    */
+   static final class FileRecords implements JournalReaderCallback
+   {
+      private static final byte ADD = 0;
+
+      private static final byte UPDATE = 1;
+
+      private static final byte DELETE = 2;
+
+      private static final byte ADD_TX = 3;
+
+      private static final byte UPDATE_TX = 4;
+
+      private static final byte DELETE_TX = 5;
+
+      private static final byte PREPARE = 6;
+
+      private static final byte COMMIT = 7;
+
+      private static final byte ROLLBACK = 8;
+
+      private static final byte DATA_FILE = 9;
+
+      private final JournalFile file;
+
+      private final List<Event> events = new ArrayList<Event>();
+
+      private int lastDataPos;
+
+      FileRecords(final JournalFile file)
+      {
+         this.file = file;
+      }
+
+      /**
+       * Makes the callbacks made while reading the file, in the same order
+       *
+       * @return the position after the last valid record of the file, as returned by readJournalFile
+       */
+      int replay(final JournalReaderCallback reader) throws Exception
+      {
+         for (Event event : events)
+         {
+            switch (event.type)
+            {
+               case ADD:
+                  reader.onReadAddRecord(event.info);
+                  break;
+               case UPDATE:
+                  reader.onReadUpdateRecord(event.info);
+                  break;
+               case DELETE:
+                  reader.onReadDeleteRecord(event.id);
+                  break;
+               case ADD_TX:
+                  reader.onReadAddRecordTX(event.id, event.info);
+                  break;
+               case UPDATE_TX:
+                  reader.onReadUpdateRecordTX(event.id, event.info);
+                  break;
+               case DELETE_TX:
+                  reader.onReadDeleteRecordTX(event.id, event.info);
+                  break;
+               case PREPARE:
+                  reader.onReadPrepareRecord(event.id, event.extraData, event.numberOfRecords);
+                  break;
+               case COMMIT:
+                  reader.onReadCommitRecord(event.id, event.numberOfRecords);
+                  break;
+               case ROLLBACK:
+                  reader.onReadRollbackRecord(event.id);
+                  break;
+               default:
+                  reader.markAsDataFile(file);
+            }
+         }
+
+         return lastDataPos;
+      }
+
+      public void onReadAddRecord(final RecordInfo info)
+      {
+         events.add(new Event(ADD, 0, info));
+      }
+
+      public void onReadUpdateRecord(final RecordInfo info)
+      {
+         events.add(new Event(UPDATE, 0, info));
+      }
+
+      public void onReadDeleteRecord(final long recordID)
+      {
+         events.add(new Event(DELETE, recordID, null));
+      }
+
+      public void onReadAddRecordTX(final long transactionID, final RecordInfo info)
+      {
+         events.add(new Event(ADD_TX, transactionID, info));
+      }
+
+      public void onReadUpdateRecordTX(final long transactionID, final RecordInfo info)
+      {
+         events.add(new Event(UPDATE_TX, transactionID, info));
+      }
+
+      public void onReadDeleteRecordTX(final long transactionID, final RecordInfo info)
+      {
+         events.add(new Event(DELETE_TX, transactionID, info));
+      }
+
+      public void onReadPrepareRecord(final long transactionID, final byte[] extraData, final int numberOfRecords)
+      {
+         Event event = new Event(PREPARE, transactionID, null);
+
+         event.extraData = extraData;
+
+         event.numberOfRecords = numberOfRecords;
+
+         events.add(event);
+      }
+
+      public void onReadCommitRecord(final long transactionID, final int numberOfRecords)
+      {
+         Event event = new Event(COMMIT, transactionID, null);
+
+         event.numberOfRecords = numberOfRecords;
+
+         events.add(event);
+      }
+
+      public void onReadRollbackRecord(final long transactionID)
+      {
+         events.add(new Event(ROLLBACK, transactionID, null));
+      }
+
+      public void markAsDataFile(final JournalFile file)
+      {
+         events.add(new Event(DATA_FILE, 0, null));
+      }
+   }
+
+   private static final class Event
+   {
+      final byte type;
+
+      // the record id, or the transaction id for transactional records
+      final long id;
+
+      final RecordInfo info;
+
+      byte[] extraData;
+
+      int numberOfRecords;
+
+      Event(final byte type, final long id, final RecordInfo info)
+      {
+         this.type = type;
+         this.id = id;
+         this.info = info;
+      }
+   }
+}
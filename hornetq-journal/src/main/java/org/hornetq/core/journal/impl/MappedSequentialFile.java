@@ -0,0 +1,617 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.journal.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hornetq.api.core.HornetQExceptionType;
+import org.hornetq.api.core.HornetQIOErrorException;
+import org.hornetq.core.journal.IOAsyncTask;
+import org.hornetq.core.journal.SequentialFile;
+import org.hornetq.core.journal.SequentialFileFactory;
+import org.hornetq.journal.HornetQJournalBundle;
+import org.hornetq.journal.HornetQJournalLogger;
+
+/**
+ * A SequentialFile writing and reading through a memory mapping of the whole file.
+ *
+ * The TimedBuffer copies its records straight into the mapping (see {@link #newBuffer(int, int)}), so a flush is
+ * only a {@link MappedByteBuffer#force()}, done on the writer executor when there is one, like the NIO writes.
+ *
+ * Files written past their end, such as page files, are grown by {@link #GROWTH} bytes at a time and truncated back
+ * to what was written when closed.
+ *
+ * @see MappedSequentialFileFactory
+ */
+public class MappedSequentialFile extends AbstractSequentialFile
+{
+   // Constants -----------------------------------------------------
+
+   public static final int GROWTH = 1024 * 1024;
+
+   // Attributes ----------------------------------------------------
+
+   private FileChannel channel;
+
+   private RandomAccessFile rfile;
+
+   // the whole file, or more when it is being grown. Replaced when it needs to grow
+   private MappedByteBuffer mapped;
+
+   // the size of the file when opened or filled, anything past it and past the written data is truncated on close
+   private long allocatedSize;
+
+   private boolean grown;
+
+   // the file was extended since its last sync, its size has to be synced too
+   private boolean resized;
+
+   // what the TimedBuffer is filling, see newBuffer
+   private ByteBuffer pendingBuffer;
+
+   // the forces running outside of the lock, the mapping isn't unmapped while there is one
+   private final AtomicInteger forcing = new AtomicInteger(0);
+
+   /** The write semaphore here is only used when writing asynchronously */
+   private Semaphore maxIOSemaphore;
+
+   private final int defaultMaxIO;
+
+   private int maxIO;
+
+   public MappedSequentialFile(final SequentialFileFactory factory,
+                               final String directory,
+                               final String fileName,
+                               final int maxIO,
+                               final Executor writerExecutor)
+   {
+      super(directory, new File(directory + "/" + fileName), factory, writerExecutor);
+      defaultMaxIO = maxIO;
+   }
+
+   public MappedSequentialFile(final SequentialFileFactory factory,
+                               final File file,
+                               final int maxIO,
+                               final Executor writerExecutor)
+   {
+      super(file.getParent(), new File(file.getPath()), factory, writerExecutor);
+      defaultMaxIO = maxIO;
+   }
+
+   public int getAlignment()
+   {
+      return 1;
+   }
+
+   public int calculateBlockStart(final int position) throws Exception
+   {
+      return position;
+   }
+
+   public synchronized boolean isOpen()
+   {
+      return channel != null;
+   }
+
+   public synchronized void open() throws Exception
+   {
+      open(defaultMaxIO, true);
+   }
+
+   public synchronized void open(final int maxIO, final boolean useExecutor) throws Exception
+   {
+      try
+      {
+         rfile = new RandomAccessFile(getFile(), "rw");
+
+         channel = rfile.getChannel();
+
+         fileSize = channel.size();
+      }
+      catch (IOException e)
+      {
+         factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+         throw e;
+      }
+
+      allocatedSize = fileSize;
+
+      grown = false;
+
+      resized = false;
+
+      // like a new channel, reads and writes start at the beginning of the file
+      position.set(0);
+
+      if (writerExecutor != null && useExecutor)
+      {
+         maxIOSemaphore = new Semaphore(maxIO);
+         this.maxIO = maxIO;
+      }
+   }
+
+   public synchronized void fill(final int position, final int size, final byte fillCharacter) throws Exception
+   {
+      ByteBuffer bb = ByteBuffer.allocate(size);
+
+      for (int i = 0; i < size; i++)
+      {
+         bb.put(fillCharacter);
+      }
+
+      bb.flip();
+
+      channel.write(bb, position);
+
+      channel.force(false);
+
+      fileSize = channel.size();
+
+      allocatedSize = Math.max(allocatedSize, fileSize);
+   }
+
+   public synchronized void waitForClose() throws Exception
+   {
+      while (isOpen())
+      {
+         wait();
+      }
+   }
+
+   @Override
+   public synchronized void close() throws Exception
+   {
+      super.close();
+
+      if (maxIOSemaphore != null)
+      {
+         while (!maxIOSemaphore.tryAcquire(maxIO, 60, TimeUnit.SECONDS))
+         {
+            HornetQJournalLogger.LOGGER.errorClosingFile(getFileName());
+         }
+      }
+
+      maxIOSemaphore = null;
+
+      // the forces of the writer executor are done once all the permits are taken, not the ones of sync()
+      while (forcing.get() > 0)
+      {
+         wait();
+      }
+
+      if (mapped != null)
+      {
+         MappedSequentialFile.unmap(mapped);
+
+         mapped = null;
+      }
+
+      pendingBuffer = null;
+
+      if (channel != null)
+      {
+         if (grown)
+         {
+            channel.truncate(Math.max(allocatedSize, fileSize));
+
+            channel.force(true);
+         }
+
+         channel.close();
+      }
+
+      if (rfile != null)
+      {
+         rfile.close();
+      }
+
+      channel = null;
+
+      rfile = null;
+
+      notifyAll();
+   }
+
+   public int read(final ByteBuffer bytes) throws Exception
+   {
+      return read(bytes, null);
+   }
+
+   public synchronized int read(final ByteBuffer bytes, final IOAsyncTask callback) throws Exception
+   {
+      try
+      {
+         if (channel == null)
+         {
+            throw new Exception("File " + this.getFileName() + " has a null channel");
+         }
+
+         // reads move the same position as writes, as on a file channel
+         long start = position.get();
+
+         int bytesRead = (int)Math.min(bytes.remaining(), fileSize - start);
+
+         if (bytesRead <= 0)
+         {
+            bytesRead = -1;
+         }
+         else
+         {
+            ByteBuffer source = map(start + bytesRead).duplicate();
+
+            source.limit((int)start + bytesRead);
+
+            source.position((int)start);
+
+            bytes.put(source);
+
+            position.addAndGet(bytesRead);
+         }
+
+         if (callback != null)
+         {
+            callback.done();
+         }
+
+         bytes.flip();
+
+         return bytesRead;
+      }
+      catch (IOException e)
+      {
+         if (callback != null)
+         {
+            callback.onError(HornetQExceptionType.IO_ERROR.getCode(), e.getLocalizedMessage());
+         }
+
+         factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+
+         throw e;
+      }
+   }
+
+   /**
+    * @return a read only view of the whole file, valid until the file is closed
+    */
+   public synchronized ByteBuffer readAll() throws Exception
+   {
+      if (channel == null)
+      {
+         throw new Exception("File " + this.getFileName() + " has a null channel");
+      }
+
+      ByteBuffer view = map(fileSize).asReadOnlyBuffer();
+
+      view.limit((int)fileSize);
+
+      return view;
+   }
+
+   public void sync() throws IOException
+   {
+      MappedByteBuffer toSync;
+
+      FileChannel resizedChannel = null;
+
+      synchronized (this)
+      {
+         toSync = mapped;
+
+         if (toSync != null)
+         {
+            forcing.incrementAndGet();
+         }
+
+         if (resized)
+         {
+            resizedChannel = channel;
+
+            resized = false;
+         }
+      }
+
+      if (toSync != null)
+      {
+         try
+         {
+            toSync.force();
+         }
+         finally
+         {
+            synchronized (this)
+            {
+               if (forcing.decrementAndGet() == 0)
+               {
+                  notifyAll();
+               }
+            }
+         }
+      }
+
+      if (resizedChannel != null)
+      {
+         resizedChannel.force(false);
+      }
+   }
+
+   public synchronized long size() throws Exception
+   {
+      if (channel == null)
+      {
+         return getFile().length();
+      }
+      else
+      {
+         return fileSize;
+      }
+   }
+
+   @Override
+   public String toString()
+   {
+      return "MappedSequentialFile " + getFile();
+   }
+
+   public SequentialFile cloneFile()
+   {
+      return new MappedSequentialFile(factory, getFile(), maxIO, writerExecutor);
+   }
+
+   public void writeDirect(final ByteBuffer bytes, final boolean sync, final IOAsyncTask callback)
+   {
+      if (callback == null)
+      {
+         throw new NullPointerException("callback parameter need to be set");
+      }
+
+      try
+      {
+         internalWrite(bytes, sync, callback);
+      }
+      catch (Exception e)
+      {
+         callback.onError(HornetQExceptionType.GENERIC_EXCEPTION.getCode(), e.getMessage());
+      }
+   }
+
+   public void writeDirect(final ByteBuffer bytes, final boolean sync) throws Exception
+   {
+      internalWrite(bytes, sync, null);
+   }
+
+   public void writeInternal(final ByteBuffer bytes) throws Exception
+   {
+      internalWrite(bytes, true, null);
+   }
+
+   /**
+    * Hands the TimedBuffer the part of the mapping its records go to, so they are copied only once.
+    */
+   @Override
+   protected synchronized ByteBuffer newBuffer(final int size, final int limit)
+   {
+      try
+      {
+         long start = position.get();
+
+         ByteBuffer buffer = map(start + limit).duplicate();
+
+         buffer.position((int)start);
+
+         buffer.limit((int)start + limit);
+
+         pendingBuffer = buffer.slice();
+
+         return pendingBuffer;
+      }
+      catch (IOException e)
+      {
+         factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+
+         // the records will be copied by writeDirect
+         return super.newBuffer(limit, limit);
+      }
+   }
+
+   // Private -------------------------------------------------------
+
+   private void internalWrite(final ByteBuffer bytes, final boolean sync, final IOAsyncTask callback) throws Exception
+   {
+      final MappedByteBuffer toSync;
+
+      synchronized (this)
+      {
+         if (!isOpen())
+         {
+            if (callback != null)
+            {
+               callback.onError(HornetQExceptionType.IO_ERROR.getCode(), "File not opened");
+            }
+            else
+            {
+               throw HornetQJournalBundle.BUNDLE.fileNotOpened();
+            }
+            return;
+         }
+
+         long start = position.get();
+
+         int length = bytes.remaining();
+
+         try
+         {
+            if (bytes == pendingBuffer)
+            {
+               // the TimedBuffer already put the records in place
+               pendingBuffer = null;
+            }
+            else
+            {
+               ByteBuffer target = map(start + length).duplicate();
+
+               target.position((int)start);
+
+               target.put(bytes);
+            }
+         }
+         catch (IOException e)
+         {
+            factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+
+            if (callback != null)
+            {
+               callback.onError(HornetQExceptionType.IO_ERROR.getCode(), e.getMessage());
+               return;
+            }
+
+            throw e;
+         }
+
+         position.addAndGet(length);
+
+         fileSize = Math.max(fileSize, start + length);
+
+         if (sync && maxIOSemaphore != null && callback != null)
+         {
+            // forced on the executor, see below
+            toSync = mapped;
+
+            if (toSync != null)
+            {
+               forcing.incrementAndGet();
+            }
+         }
+         else
+         {
+            toSync = null;
+         }
+      }
+
+      if (maxIOSemaphore == null || callback == null)
+      {
+         if (sync)
+         {
+            sync();
+         }
+
+         if (callback != null)
+         {
+            callback.done();
+         }
+      }
+      else
+      {
+         // This is a flow control on writing, just like maxAIO on libaio
+         maxIOSemaphore.acquire();
+
+         writerExecutor.execute(new Runnable()
+         {
+            public void run()
+            {
+               try
+               {
+                  if (toSync != null)
+                  {
+                     // the mapping the data was written to may have been replaced since. It stays valid while
+                     // referenced and forcing it forces the same pages
+                     try
+                     {
+                        toSync.force();
+                     }
+                     finally
+                     {
+                        // close() takes all the permits before looking at forcing, no need to notify it
+                        forcing.decrementAndGet();
+                     }
+                  }
+
+                  callback.done();
+               }
+               catch (Throwable e)
+               {
+                  HornetQJournalLogger.LOGGER.errorSubmittingWrite(e);
+                  callback.onError(HornetQExceptionType.IO_ERROR.getCode(), e.getMessage());
+               }
+               finally
+               {
+                  maxIOSemaphore.release();
+               }
+            }
+         });
+      }
+   }
+
+   /**
+    * @return the mapping, covering at least the file up to end
+    */
+   private MappedByteBuffer map(final long end) throws IOException
+   {
+      if (mapped != null && end <= mapped.capacity())
+      {
+         return mapped;
+      }
+
+      long size = Math.max(end, fileSize);
+
+      if (size > allocatedSize)
+      {
+         size = (size + GROWTH - 1) / GROWTH * GROWTH;
+
+         grown = true;
+
+         resized = true;
+      }
+
+      if (size > Integer.MAX_VALUE)
+      {
+         throw new IOException("File " + getFileName() + " is too large to be mapped: " + size);
+      }
+
+      // the previous mapping is left to the GC, a pending sync may still be using it
+      mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+      return mapped;
+   }
+
+   /**
+    * Releases the mapping now instead of when the buffer is collected, so closed files don't keep their pages mapped.
+    */
+   private static void unmap(final MappedByteBuffer buffer)
+   {
+      try
+      {
+         Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+         cleanerMethod.setAccessible(true);
+         Object cleaner = cleanerMethod.invoke(buffer);
+         if (cleaner != null)
+         {
+            cleaner.getClass().getMethod("clean").invoke(cleaner);
+         }
+      }
+      catch (Throwable e)
+      {
+         // not available on this VM, the GC will release it
+      }
+   }
+}
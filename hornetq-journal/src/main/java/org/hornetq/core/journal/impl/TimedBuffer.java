@@ -43,6 +43,9 @@ public class TimedBuffer
    // The number of tries on sleep before switching to spin
    public static final int MAX_CHECKS_ON_SLEEP = 20;
 
+   // The shortest timeout used by an adaptive buffer, in nanoseconds
+   public static final int MIN_ADAPTIVE_TIMEOUT = 10000;
+
    // Attributes ----------------------------------------------------
 
    private TimedBufferObserver bufferObserver;
@@ -64,6 +67,19 @@ public class TimedBuffer
 
    private volatile int timeout;
 
+   // the configured timeout. An adaptive buffer never waits longer than this
+   private final int maxTimeout;
+
+   private final boolean adaptive;
+
+   // Averages of the time a sync takes and of the time between two sync requests, in nanoseconds.
+   // They are only used as a hint for the timeout, so they are not updated atomically
+   private volatile long syncTime;
+
+   private volatile long syncInterval;
+
+   private long lastSyncRequest;
+
    // used to measure sync requests. When a sync is requested, it shouldn't take more than timeout to happen
    private volatile boolean pendingSync = false;
 
@@ -100,6 +116,16 @@ public class TimedBuffer
    // Public --------------------------------------------------------
 
    public TimedBuffer(final int size, final int timeout, final boolean logRates)
+   {
+      this(size, timeout, logRates, false);
+   }
+
+   /**
+    * @param adaptive if true, timeout is only the longest time a sync may wait. The buffer measures how long its
+    *           syncs take and how often they are requested, and waits just long enough to group the syncs requested
+    *           while the disk is busy
+    */
+   public TimedBuffer(final int size, final int timeout, final boolean logRates, final boolean adaptive)
    {
       bufferSize = size;
 
@@ -120,6 +146,10 @@ public class TimedBuffer
       callbacks = new ArrayList<IOAsyncTask>();
 
       this.timeout = timeout;
+
+      maxTimeout = timeout;
+
+      this.adaptive = adaptive;
    }
 
    // for Debug purposes
@@ -283,6 +313,18 @@ public class TimedBuffer
 
       if (sync)
       {
+         if (adaptive)
+         {
+            long now = System.nanoTime();
+
+            if (lastSyncRequest != 0)
+            {
+               syncInterval = TimedBuffer.average(syncInterval, now - lastSyncRequest);
+            }
+
+            lastSyncRequest = now;
+         }
+
          pendingSync = true;
 
          startSpin();
@@ -312,10 +354,7 @@ public class TimedBuffer
          {
             int pos = buffer.writerIndex();
 
-            if (logRates)
-            {
-               bytesFlushed.addAndGet(pos);
-            }
+            bytesFlushed.addAndGet(pos);
 
             ByteBuffer bufferToFlush = bufferObserver.newBuffer(bufferSize, pos);
 
@@ -325,6 +364,12 @@ public class TimedBuffer
 
             bufferToFlush.put(buffer.toByteBuffer().array(), 0, pos);
 
+            if (adaptive && pendingSync)
+            {
+               // the callbacks are completed in order, so this one is done once the sync is done
+               callbacks.add(new SyncTimeCallback(System.nanoTime()));
+            }
+
             bufferObserver.flushBuffer(bufferToFlush, pendingSync, callbacks);
 
             stopSpin();
@@ -343,14 +388,98 @@ public class TimedBuffer
       }
    }
 
+   /**
+    * @return the number of times the buffer was written to the file
+    */
+   public long getFlushCount()
+   {
+      return flushesDone.get();
+   }
+
+   /**
+    * @return the number of bytes written to the file
+    */
+   public long getBytesFlushed()
+   {
+      return bytesFlushed.get();
+   }
+
+   /**
+    * @return the time a sync may currently wait for more records, in nanoseconds
+    */
+   public int getTimeout()
+   {
+      return timeout;
+   }
+
+   public boolean isAdaptive()
+   {
+      return adaptive;
+   }
+
    // Package protected ---------------------------------------------
 
    // Protected -----------------------------------------------------
 
    // Private -------------------------------------------------------
 
+   /**
+    * Waiting for more syncs only pays if some are going to be requested while waiting. In that case the buffer
+    * waits as long as a sync takes, since the syncs requested meanwhile couldn't reach the disk sooner anyway.
+    */
+   private void syncDone(final long time)
+   {
+      long average = TimedBuffer.average(syncTime, time);
+
+      syncTime = average;
+
+      long interval = syncInterval;
+
+      long newTimeout;
+
+      if (interval == 0 || interval > average)
+      {
+         newTimeout = MIN_ADAPTIVE_TIMEOUT;
+      }
+      else
+      {
+         newTimeout = average;
+      }
+
+      timeout = (int)Math.max(Math.min(newTimeout, maxTimeout), Math.min(MIN_ADAPTIVE_TIMEOUT, maxTimeout));
+   }
+
+   private static long average(final long average, final long sample)
+   {
+      if (average == 0)
+      {
+         return sample;
+      }
+
+      return average + (sample - average) / 8;
+   }
+
    // Inner classes -------------------------------------------------
 
+   private final class SyncTimeCallback implements IOAsyncTask
+   {
+      private final long start;
+
+      SyncTimeCallback(final long start)
+      {
+         this.start = start;
+      }
+
+      public void done()
+      {
+         syncDone(System.nanoTime() - start);
+      }
+
+      public void onError(final int errorCode, final String errorMessage)
+      {
+      }
+   }
+
    private class LogRatesTimerTask extends TimerTask
    {
       private boolean closed;
@@ -404,26 +533,28 @@ public class TimedBuffer
       int failedChecks = 0;
       long timeBefore = 0;
 
-      final int sleepMillis = timeout / 1000000; // truncates
-      final int sleepNanos = timeout % 1000000;
+      // the shortest sleep that overshot an adaptive timeout. Shorter timeouts are spun instead
+      long sleepGranularity = 0;
 
 
       public void run()
       {
          long lastFlushTime = 0;
 
+         boolean slept = false;
+
          while (!closed)
          {
             // We flush on the timer if there are pending syncs there and we've waited at least one
             // timeout since the time of the last flush.
             // Effectively flushing "resets" the timer
-            // On the timeout verification, notice that we ignore the timeout check if we are using sleep
+            // On the timeout verification, notice that we ignore the timeout check if we have just slept
 
             if (pendingSync)
             {
-               if (isUseSleep())
+               if (slept)
                {
-                  // if using sleep, we will always flush
+                  // if we slept the timeout, we will always flush
                   flush();
                lastFlushTime = System.nanoTime();
                }
@@ -437,7 +568,7 @@ public class TimedBuffer
 
             }
 
-            sleepIfPossible();
+            slept = sleepIfPossible();
 
             try
             {
@@ -457,20 +588,34 @@ public class TimedBuffer
       /**
        * We will attempt to use sleep only if the system supports nano-sleep
        * we will on that case verify up to MAX_CHECKS if nano sleep is behaving well.
-       * if more than 50% of the checks have failed we will cancel the sleep and just use regular spin
+       * if more than 50% of the checks have failed we will cancel the sleep and just use regular spin.
+       * The shorter timeouts of an adaptive buffer are checked on every sleep, and are spun once a sleep overshot them
+       * @return whether the timeout was slept
        */
-      private void sleepIfPossible()
+      private boolean sleepIfPossible()
       {
          if (isUseSleep())
          {
-            if (checks < MAX_CHECKS_ON_SLEEP)
+            final int sleepTimeout = timeout;
+
+            final boolean adaptiveTimeout = sleepTimeout < maxTimeout;
+
+            if (adaptiveTimeout && sleepTimeout < sleepGranularity)
+            {
+               // below the granularity of sleep, e.g. 10 microseconds usually take a millisecond
+               return false;
+            }
+
+            final boolean check = adaptiveTimeout || checks < MAX_CHECKS_ON_SLEEP;
+
+            if (check)
             {
                timeBefore = System.nanoTime();
             }
 
             try
             {
-               sleep(sleepMillis, sleepNanos);
+               sleep(sleepTimeout / 1000000, sleepTimeout % 1000000);
             }
             catch (InterruptedException e)
             {
@@ -480,19 +625,31 @@ public class TimedBuffer
             {
                setUseSleep(false);
                HornetQJournalLogger.LOGGER.warn(e.getMessage() + ", disabling sleep on TimedBuffer, using spin now", e);
+
+               return false;
             }
 
-            if (checks < MAX_CHECKS_ON_SLEEP)
+            if (check)
             {
                long realTimeSleep = System.nanoTime() - timeBefore;
 
                // I'm letting the real time to be up to 50% than the requested sleep.
-               if (realTimeSleep > timeout * 1.5)
+               boolean failed = realTimeSleep > sleepTimeout * 1.5;
+
+               if (adaptiveTimeout)
+               {
+                  if (failed && (sleepGranularity == 0 || realTimeSleep < sleepGranularity))
+                  {
+                     sleepGranularity = realTimeSleep;
+                  }
+               }
+               else
+               if (failed)
                {
                   failedChecks++;
                }
 
-               if (++checks >= MAX_CHECKS_ON_SLEEP)
+               if (!adaptiveTimeout && ++checks >= MAX_CHECKS_ON_SLEEP)
                {
                   if (failedChecks > MAX_CHECKS_ON_SLEEP * 0.5)
                   {
@@ -501,7 +658,11 @@ public class TimedBuffer
                   }
                }
             }
+
+            return true;
          }
+
+         return false;
       }
 
       public void close()
@@ -97,6 +97,17 @@ public interface HornetQJournalLogger extends BasicLogger
    @Message(id = 141009, value = "A Free File is less than the maximum data", format = Message.Format.MESSAGE_FORMAT)
    void fileTooSmall();
 
+   @LogMessage(level = Logger.Level.DEBUG)
+   @Message(id = 141010, value = "Journal {0} loaded {1} files in {2} ms: ordering files {3} ms, records {4} ms (read on {5} threads in {6} ms), current file {7} ms, transactions {8} ms, reclaim {9} ms",
+            format = Message.Format.MESSAGE_FORMAT)
+   void journalLoaded(String prefix, Integer files, Long total, Long ordering, Long records, Integer threads,
+                      Long read, Long currentFile, Long transactions, Long reclaim);
+
+   @LogMessage(level = Logger.Level.DEBUG)
+   @Message(id = 141011, value = "Journal {0} compacted {1} files into {2}, releasing {3} bytes, in {4} ms of which appends were blocked {5} ms",
+            format = Message.Format.MESSAGE_FORMAT)
+   void journalCompacted(String prefix, Integer files, Integer newFiles, Long reclaimed, Long total, Long pause);
+
    @LogMessage(level = Logger.Level.WARN)
    @Message(id = 142000, value = "You have a native library with a different version than expected", format = Message.Format.MESSAGE_FORMAT)
    void incompatibleNativeLibrary();
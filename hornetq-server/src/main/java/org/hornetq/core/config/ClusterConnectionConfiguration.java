@@ -72,6 +72,8 @@ public final class ClusterConnectionConfiguration implements Serializable
 
    private final int clusterNotificationAttempts;
 
+   private String loadBalancingPolicyClassName;
+
    public ClusterConnectionConfiguration(final String name,
                                          final String address,
                                          final String connectorName,
@@ -450,6 +452,23 @@ public final class ClusterConnectionConfiguration implements Serializable
       return clusterNotificationAttempts;
    }
 
+   /**
+    * @return the class name of the {@link org.hornetq.core.postoffice.BindingsLoadBalancingPolicy}
+    *         used to route between the nodes, or null for round robin
+    */
+   public String getLoadBalancingPolicyClassName()
+   {
+      return loadBalancingPolicyClassName;
+   }
+
+   /**
+    * @param loadBalancingPolicyClassName the loadBalancingPolicyClassName to set
+    */
+   public void setLoadBalancingPolicyClassName(String loadBalancingPolicyClassName)
+   {
+      this.loadBalancingPolicyClassName = loadBalancingPolicyClassName;
+   }
+
    @Override
    public int hashCode()
    {
@@ -468,6 +487,7 @@ public final class ClusterConnectionConfiguration implements Serializable
       result = prime * result + ((discoveryGroupName == null) ? 0 : discoveryGroupName.hashCode());
       result = prime * result + (duplicateDetection ? 1231 : 1237);
       result = prime * result + (forwardWhenNoConsumers ? 1231 : 1237);
+      result = prime * result + ((loadBalancingPolicyClassName == null) ? 0 : loadBalancingPolicyClassName.hashCode());
       result = prime * result + maxHops;
       result = prime * result + (int)(maxRetryInterval ^ (maxRetryInterval >>> 32));
       result = prime * result + minLargeMessageSize;
@@ -532,6 +552,13 @@ public final class ClusterConnectionConfiguration implements Serializable
          return false;
       if (forwardWhenNoConsumers != other.forwardWhenNoConsumers)
          return false;
+      if (loadBalancingPolicyClassName == null)
+      {
+         if (other.loadBalancingPolicyClassName != null)
+            return false;
+      }
+      else if (!loadBalancingPolicyClassName.equals(other.loadBalancingPolicyClassName))
+         return false;
       if (maxHops != other.maxHops)
          return false;
       if (maxRetryInterval != other.maxRetryInterval)
@@ -86,6 +86,73 @@ public interface Configuration extends Serializable
     */
    void setPersistDeliveryCountBeforeDelivery(boolean persistDeliveryCountBeforeDelivery);
 
+   /**
+    * Returns the interval (in milliseconds) at which the delivery counts of redelivered messages are stored in the
+    * journal, a reference redelivered several times in an interval costing a single update. 0 stores each delivery
+    * count as it changes.
+    * <br>
+    * Default value is {@value org.hornetq.api.config.HornetQDefaultConfiguration#DEFAULT_DELIVERY_COUNT_FLUSH_INTERVAL}.
+    */
+   long getDeliveryCountFlushInterval();
+
+   /**
+    * Sets the interval (in milliseconds) at which the delivery counts of redelivered messages are stored in the
+    * journal.
+    */
+   void setDeliveryCountFlushInterval(long interval);
+
+   /**
+    * Returns whether queues keep their message references in a lock free, sharded store so producers don't
+    * contend on the queue lock. Delivery to the consumers still takes the queue lock.
+    * <br>
+    * Default value is {@value org.hornetq.api.config.HornetQDefaultConfiguration#DEFAULT_CONCURRENT_QUEUE_REFERENCES}.
+    */
+   boolean isConcurrentQueueReferences();
+
+   /**
+    * Sets whether queues keep their message references in a lock free, sharded store.
+    */
+   void setConcurrentQueueReferences(boolean concurrentQueueReferences);
+
+   /**
+    * Returns the tick (in milliseconds) of the timing wheel holding scheduled messages, {@code -1} if every scheduled
+    * message gets its own task on the scheduled thread pool.
+    * <br>
+    * Default value is {@value org.hornetq.api.config.HornetQDefaultConfiguration#DEFAULT_SCHEDULED_DELIVERY_WHEEL_TICK}.
+    */
+   long getScheduledDeliveryWheelTick();
+
+   /**
+    * Sets the tick (in milliseconds) of the timing wheel holding scheduled messages.
+    */
+   void setScheduledDeliveryWheelTick(long tick);
+
+   /**
+    * Returns the number of messages moved to other nodes of the cluster in one transaction when a
+    * queue is redistributed.
+    * <br>
+    * Default value is {@value org.hornetq.api.config.HornetQDefaultConfiguration#DEFAULT_REDISTRIBUTION_BATCH_SIZE}.
+    */
+   int getRedistributionBatchSize();
+
+   /**
+    * Sets the number of messages moved to other nodes of the cluster in one transaction when a
+    * queue is redistributed.
+    */
+   void setRedistributionBatchSize(int redistributionBatchSize);
+
+   /**
+    * Returns how many batches of a queue being redistributed may wait for the storage at the same time.
+    * <br>
+    * Default value is {@value org.hornetq.api.config.HornetQDefaultConfiguration#DEFAULT_REDISTRIBUTION_WINDOW_SIZE}.
+    */
+   int getRedistributionWindowSize();
+
+   /**
+    * Sets how many batches of a queue being redistributed may wait for the storage at the same time.
+    */
+   void setRedistributionWindowSize(int redistributionWindowSize);
+
    /**
     * Returns {@code true} if this server is a backup, {@code false} if it is a live server.
     * <br>
@@ -487,6 +554,18 @@ public interface Configuration extends Serializable
     */
    void setPersistIDCache(boolean persist);
 
+   /**
+    * Returns whether the duplicate ID caches are kept off heap, in memory allocated up front for the whole cache.
+    * <br>
+    * Default value is {@value org.hornetq.api.config.HornetQDefaultConfiguration#DEFAULT_OFF_HEAP_ID_CACHE}.
+    */
+   boolean isOffHeapIDCache();
+
+   /**
+    * Sets whether the duplicate ID caches are kept off heap.
+    */
+   void setOffHeapIDCache(boolean offHeap);
+
    // Journal related attributes ------------------------------------------------------------
 
    /**
@@ -599,6 +678,18 @@ public interface Configuration extends Serializable
     */
    void setJournalCompactPercentage(int percentage);
 
+   /**
+    * Returns the number of threads reading the journal files when the journal is loaded.
+    * <br>
+    * Default value is {@value org.hornetq.api.config.HornetQDefaultConfiguration#DEFAULT_JOURNAL_LOAD_PARALLELISM}.
+    */
+   int getJournalLoadParallelism();
+
+   /**
+    * Sets the number of threads reading the journal files when the journal is loaded.
+    */
+   void setJournalLoadParallelism(int parallelism);
+
    /**
     * Returns the number of journal files to pre-create.
     * <br>
@@ -673,6 +764,19 @@ public interface Configuration extends Serializable
     */
    void setJournalBufferTimeout_NIO(int journalBufferTimeout);
 
+   /**
+    * Returns whether the journal adapts the time it waits to flush its buffer to the time its syncs take,
+    * the buffer timeout being then the longest it may wait.
+    * <br>
+    * Default value is {@value org.hornetq.api.config.HornetQDefaultConfiguration#DEFAULT_JOURNAL_BUFFER_TIMEOUT_ADAPTIVE}.
+    */
+   boolean isJournalBufferTimeoutAdaptive();
+
+   /**
+    * Sets whether the journal adapts the time it waits to flush its buffer to the time its syncs take.
+    */
+   void setJournalBufferTimeoutAdaptive(boolean adaptive);
+
    /**
     * Returns the buffer size (in bytes) for NIO.
     * <br>
@@ -959,4 +1063,32 @@ public interface Configuration extends Serializable
     * @return name of the cluster configuration to use
     */
    String getReplicationClustername();
+
+   /**
+    * Returns the maximum number of journal operations a live server sends to its replicating
+    * backup in one packet, 1 sending each operation on its own.
+    * <br>
+    * Default value is {@value org.hornetq.api.config.HornetQDefaultConfiguration#DEFAULT_REPLICATION_BATCH_SIZE}.
+    */
+   int getReplicationBatchSize();
+
+   /**
+    * Sets the maximum number of journal operations a live server sends to its replicating backup in
+    * one packet.
+    */
+   void setReplicationBatchSize(int batchSize);
+
+   /**
+    * Returns whether a live server compresses the data files it sends to synchronize a replicating
+    * backup.
+    * <br>
+    * Default value is {@value org.hornetq.api.config.HornetQDefaultConfiguration#DEFAULT_REPLICATION_SYNC_COMPRESSION}.
+    */
+   boolean isReplicationSyncCompression();
+
+   /**
+    * Sets whether a live server compresses the data files it sends to synchronize a replicating
+    * backup.
+    */
+   void setReplicationSyncCompression(boolean compression);
 }
@@ -70,6 +70,16 @@ public class ConfigurationImpl implements Configuration
    private boolean persistDeliveryCountBeforeDelivery =
             HornetQDefaultConfiguration.DEFAULT_PERSIST_DELIVERY_COUNT_BEFORE_DELIVERY;
 
+   private long deliveryCountFlushInterval = HornetQDefaultConfiguration.DEFAULT_DELIVERY_COUNT_FLUSH_INTERVAL;
+
+   private boolean concurrentQueueReferences = HornetQDefaultConfiguration.DEFAULT_CONCURRENT_QUEUE_REFERENCES;
+
+   private long scheduledDeliveryWheelTick = HornetQDefaultConfiguration.DEFAULT_SCHEDULED_DELIVERY_WHEEL_TICK;
+
+   private int redistributionBatchSize = HornetQDefaultConfiguration.DEFAULT_REDISTRIBUTION_BATCH_SIZE;
+
+   private int redistributionWindowSize = HornetQDefaultConfiguration.DEFAULT_REDISTRIBUTION_WINDOW_SIZE;
+
    private int scheduledThreadPoolMaxSize = HornetQDefaultConfiguration.DEFAULT_SCHEDULED_THREAD_POOL_MAX_SIZE;
 
    private int threadPoolMaxSize = HornetQDefaultConfiguration.DEFAULT_THREAD_POOL_MAX_SIZE;
@@ -94,6 +104,8 @@ public class ConfigurationImpl implements Configuration
 
    private boolean persistIDCache = HornetQDefaultConfiguration.DEFAULT_PERSIST_ID_CACHE;
 
+   private boolean offHeapIDCache = HornetQDefaultConfiguration.DEFAULT_OFF_HEAP_ID_CACHE;
+
    private List<String> incomingInterceptorClassNames = new ArrayList<String>();
 
    private List<String> outgoingInterceptorClassNames = new ArrayList<String>();
@@ -142,6 +154,8 @@ public class ConfigurationImpl implements Configuration
 
    protected int journalCompactPercentage = HornetQDefaultConfiguration.DEFAULT_JOURNAL_COMPACT_PERCENTAGE;
 
+   protected int journalLoadParallelism = HornetQDefaultConfiguration.DEFAULT_JOURNAL_LOAD_PARALLELISM;
+
    protected int journalFileSize = HornetQDefaultConfiguration.DEFAULT_JOURNAL_FILE_SIZE;
 
    protected int journalMinFiles = HornetQDefaultConfiguration.DEFAULT_JOURNAL_MIN_FILES;
@@ -158,6 +172,8 @@ public class ConfigurationImpl implements Configuration
 
    protected int journalBufferTimeout_NIO = HornetQDefaultConfiguration.DEFAULT_JOURNAL_BUFFER_TIMEOUT_NIO;
 
+   protected boolean journalBufferTimeoutAdaptive = HornetQDefaultConfiguration.DEFAULT_JOURNAL_BUFFER_TIMEOUT_ADAPTIVE;
+
    protected int journalBufferSize_NIO = HornetQDefaultConfiguration.DEFAULT_JOURNAL_BUFFER_SIZE_NIO;
 
    protected boolean logJournalWriteRate = HornetQDefaultConfiguration.DEFAULT_JOURNAL_LOG_WRITE_RATE;
@@ -213,6 +229,10 @@ public class ConfigurationImpl implements Configuration
 
    private String replicationClusterName;
 
+   private int replicationBatchSize = HornetQDefaultConfiguration.DEFAULT_REPLICATION_BATCH_SIZE;
+
+   private boolean replicationSyncCompression = HornetQDefaultConfiguration.DEFAULT_REPLICATION_SYNC_COMPRESSION;
+
    // Public -------------------------------------------------------------------------
 
    public boolean isClustered()
@@ -278,6 +298,56 @@ public class ConfigurationImpl implements Configuration
       this.persistDeliveryCountBeforeDelivery = persistDeliveryCountBeforeDelivery;
    }
 
+   public long getDeliveryCountFlushInterval()
+   {
+      return deliveryCountFlushInterval;
+   }
+
+   public void setDeliveryCountFlushInterval(final long interval)
+   {
+      deliveryCountFlushInterval = interval;
+   }
+
+   public boolean isConcurrentQueueReferences()
+   {
+      return concurrentQueueReferences;
+   }
+
+   public void setConcurrentQueueReferences(final boolean concurrentQueueReferences)
+   {
+      this.concurrentQueueReferences = concurrentQueueReferences;
+   }
+
+   public long getScheduledDeliveryWheelTick()
+   {
+      return scheduledDeliveryWheelTick;
+   }
+
+   public void setScheduledDeliveryWheelTick(final long tick)
+   {
+      scheduledDeliveryWheelTick = tick;
+   }
+
+   public int getRedistributionBatchSize()
+   {
+      return redistributionBatchSize;
+   }
+
+   public void setRedistributionBatchSize(final int redistributionBatchSize)
+   {
+      this.redistributionBatchSize = redistributionBatchSize;
+   }
+
+   public int getRedistributionWindowSize()
+   {
+      return redistributionWindowSize;
+   }
+
+   public void setRedistributionWindowSize(final int redistributionWindowSize)
+   {
+      this.redistributionWindowSize = redistributionWindowSize;
+   }
+
    public void setBackup(final boolean backup)
    {
       this.backup = backup;
@@ -487,6 +557,16 @@ public class ConfigurationImpl implements Configuration
       persistIDCache = persist;
    }
 
+   public boolean isOffHeapIDCache()
+   {
+      return offHeapIDCache;
+   }
+
+   public void setOffHeapIDCache(final boolean offHeap)
+   {
+      offHeapIDCache = offHeap;
+   }
+
    public String getBindingsDirectory()
    {
       return bindingsDirectory;
@@ -821,6 +901,16 @@ public class ConfigurationImpl implements Configuration
       journalCompactPercentage = percentage;
    }
 
+   public int getJournalLoadParallelism()
+   {
+      return journalLoadParallelism;
+   }
+
+   public void setJournalLoadParallelism(final int parallelism)
+   {
+      journalLoadParallelism = parallelism;
+   }
+
    public long getServerDumpInterval()
    {
       return serverDumpInterval;
@@ -901,6 +991,16 @@ public class ConfigurationImpl implements Configuration
       journalBufferTimeout_NIO = journalBufferTimeout;
    }
 
+   public boolean isJournalBufferTimeoutAdaptive()
+   {
+      return journalBufferTimeoutAdaptive;
+   }
+
+   public void setJournalBufferTimeoutAdaptive(final boolean adaptive)
+   {
+      journalBufferTimeoutAdaptive = adaptive;
+   }
+
    public int getJournalBufferSize_NIO()
    {
       return journalBufferSize_NIO;
@@ -1034,6 +1134,26 @@ public class ConfigurationImpl implements Configuration
       return replicationClusterName;
    }
 
+   public int getReplicationBatchSize()
+   {
+      return replicationBatchSize;
+   }
+
+   public void setReplicationBatchSize(final int batchSize)
+   {
+      replicationBatchSize = batchSize;
+   }
+
+   public boolean isReplicationSyncCompression()
+   {
+      return replicationSyncCompression;
+   }
+
+   public void setReplicationSyncCompression(final boolean compression)
+   {
+      replicationSyncCompression = compression;
+   }
+
    @Override
    public int hashCode()
    {
@@ -1075,8 +1195,10 @@ public class ConfigurationImpl implements Configuration
       result = prime * result + journalBufferSize_NIO;
       result = prime * result + journalBufferTimeout_AIO;
       result = prime * result + journalBufferTimeout_NIO;
+      result = prime * result + (journalBufferTimeoutAdaptive ? 1231 : 1237);
       result = prime * result + journalCompactMinFiles;
       result = prime * result + journalCompactPercentage;
+      result = prime * result + journalLoadParallelism;
       result = prime * result + ((journalDirectory == null) ? 0 : journalDirectory.hashCode());
       result = prime * result + journalFileSize;
       result = prime * result + journalMaxIO_AIO;
@@ -1108,10 +1230,18 @@ public class ConfigurationImpl implements Configuration
                         ((outgoingInterceptorClassNames == null) ? 0 : outgoingInterceptorClassNames.hashCode());
       result = prime * result + ((pagingDirectory == null) ? 0 : pagingDirectory.hashCode());
       result = prime * result + (persistDeliveryCountBeforeDelivery ? 1231 : 1237);
+      result = prime * result + (int)(deliveryCountFlushInterval ^ (deliveryCountFlushInterval >>> 32));
+      result = prime * result + (concurrentQueueReferences ? 1231 : 1237);
+      result = prime * result + (int)(scheduledDeliveryWheelTick ^ (scheduledDeliveryWheelTick >>> 32));
+      result = prime * result + redistributionBatchSize;
+      result = prime * result + redistributionWindowSize;
       result = prime * result + (persistIDCache ? 1231 : 1237);
+      result = prime * result + (offHeapIDCache ? 1231 : 1237);
       result = prime * result + (persistenceEnabled ? 1231 : 1237);
       result = prime * result + ((queueConfigurations == null) ? 0 : queueConfigurations.hashCode());
       result = prime * result + ((replicationClusterName == null) ? 0 : replicationClusterName.hashCode());
+      result = prime * result + replicationBatchSize;
+      result = prime * result + (replicationSyncCompression ? 1231 : 1237);
       result = prime * result + (runSyncSpeedTest ? 1231 : 1237);
       result = prime * result + scheduledThreadPoolMaxSize;
       result = prime * result + (securityEnabled ? 1231 : 1237);
@@ -1275,10 +1405,14 @@ public class ConfigurationImpl implements Configuration
          return false;
       if (journalBufferTimeout_NIO != other.journalBufferTimeout_NIO)
          return false;
+      if (journalBufferTimeoutAdaptive != other.journalBufferTimeoutAdaptive)
+         return false;
       if (journalCompactMinFiles != other.journalCompactMinFiles)
          return false;
       if (journalCompactPercentage != other.journalCompactPercentage)
          return false;
+      if (journalLoadParallelism != other.journalLoadParallelism)
+         return false;
       if (journalDirectory == null)
       {
          if (other.journalDirectory != null)
@@ -1373,8 +1507,20 @@ public class ConfigurationImpl implements Configuration
          return false;
       if (persistDeliveryCountBeforeDelivery != other.persistDeliveryCountBeforeDelivery)
          return false;
+      if (deliveryCountFlushInterval != other.deliveryCountFlushInterval)
+         return false;
+      if (concurrentQueueReferences != other.concurrentQueueReferences)
+         return false;
+      if (scheduledDeliveryWheelTick != other.scheduledDeliveryWheelTick)
+         return false;
+      if (redistributionBatchSize != other.redistributionBatchSize)
+         return false;
+      if (redistributionWindowSize != other.redistributionWindowSize)
+         return false;
       if (persistIDCache != other.persistIDCache)
          return false;
+      if (offHeapIDCache != other.offHeapIDCache)
+         return false;
       if (persistenceEnabled != other.persistenceEnabled)
          return false;
       if (queueConfigurations == null)
@@ -1391,6 +1537,10 @@ public class ConfigurationImpl implements Configuration
       }
       else if (!replicationClusterName.equals(other.replicationClusterName))
          return false;
+      if (replicationBatchSize != other.replicationBatchSize)
+         return false;
+      if (replicationSyncCompression != other.replicationSyncCompression)
+         return false;
       if (runSyncSpeedTest != other.runSyncSpeedTest)
          return false;
       if (scheduledThreadPoolMaxSize != other.scheduledThreadPoolMaxSize)
@@ -196,6 +196,15 @@ public final class FileConfigurationParser
       config.setReplicationClustername(XMLConfigurationUtil.getString(e, "replication-clustername", null,
                                                                       Validators.NO_CHECK));
 
+      config.setReplicationBatchSize(XMLConfigurationUtil.getInteger(e,
+                                                                     "replication-batch-size",
+                                                                     config.getReplicationBatchSize(),
+                                                                     Validators.GT_ZERO));
+
+      config.setReplicationSyncCompression(XMLConfigurationUtil.getBoolean(e,
+                                                                           "replication-sync-compression",
+                                                                           config.isReplicationSyncCompression()));
+
       config.setBackup(XMLConfigurationUtil.getBoolean(e, "backup", config.isBackup()));
 
       config.setSharedStore(XMLConfigurationUtil.getBoolean(e, "shared-store", config.isSharedStore()));
@@ -213,6 +222,30 @@ public final class FileConfigurationParser
                                                                                    "persist-delivery-count-before-delivery",
                                                                                    config.isPersistDeliveryCountBeforeDelivery()));
 
+      config.setDeliveryCountFlushInterval(XMLConfigurationUtil.getLong(e,
+                                                                        "delivery-count-flush-interval",
+                                                                        config.getDeliveryCountFlushInterval(),
+                                                                        Validators.GE_ZERO));
+
+      config.setConcurrentQueueReferences(XMLConfigurationUtil.getBoolean(e,
+                                                                          "concurrent-queue-references",
+                                                                          config.isConcurrentQueueReferences()));
+
+      config.setScheduledDeliveryWheelTick(XMLConfigurationUtil.getLong(e,
+                                                                        "scheduled-delivery-wheel-tick",
+                                                                        config.getScheduledDeliveryWheelTick(),
+                                                                        Validators.MINUS_ONE_OR_GT_ZERO));
+
+      config.setRedistributionBatchSize(XMLConfigurationUtil.getInteger(e,
+                                                                        "redistribution-batch-size",
+                                                                        config.getRedistributionBatchSize(),
+                                                                        Validators.GT_ZERO));
+
+      config.setRedistributionWindowSize(XMLConfigurationUtil.getInteger(e,
+                                                                         "redistribution-window-size",
+                                                                         config.getRedistributionWindowSize(),
+                                                                         Validators.GT_ZERO));
+
       config.setScheduledThreadPoolMaxSize(XMLConfigurationUtil.getInteger(e,
                                                                            "scheduled-thread-pool-max-size",
                                                                            config.getScheduledThreadPoolMaxSize(),
@@ -275,6 +308,8 @@ public final class FileConfigurationParser
 
       config.setPersistIDCache(XMLConfigurationUtil.getBoolean(e, "persist-id-cache", config.isPersistIDCache()));
 
+      config.setOffHeapIDCache(XMLConfigurationUtil.getBoolean(e, "off-heap-id-cache", config.isOffHeapIDCache()));
+
       config.setManagementAddress(new SimpleString(XMLConfigurationUtil.getString(e,
                                                                                   "management-address",
                                                                                   config.getManagementAddress()
@@ -507,6 +542,10 @@ public final class FileConfigurationParser
       {
          config.setJournalType(JournalType.NIO);
       }
+      else if (s.equals(JournalType.MAPPED.toString()))
+      {
+         config.setJournalType(JournalType.MAPPED);
+      }
       else if (s.equals(JournalType.ASYNCIO.toString()))
       {
          // https://jira.jboss.org/jira/browse/HORNETQ-295
@@ -574,6 +613,10 @@ public final class FileConfigurationParser
          config.setJournalMaxIO_NIO(journalMaxIO);
       }
 
+      config.setJournalBufferTimeoutAdaptive(XMLConfigurationUtil.getBoolean(e,
+                                                                             "journal-buffer-timeout-adaptive",
+                                                                             config.isJournalBufferTimeoutAdaptive()));
+
       config.setJournalMinFiles(XMLConfigurationUtil.getInteger(e,
                                                                 "journal-min-files",
                                                                 config.getJournalMinFiles(),
@@ -589,6 +632,11 @@ public final class FileConfigurationParser
                                                                          config.getJournalCompactPercentage(),
                                                                          Validators.PERCENTAGE));
 
+      config.setJournalLoadParallelism(XMLConfigurationUtil.getInteger(e,
+                                                                       "journal-load-parallelism",
+                                                                       config.getJournalLoadParallelism(),
+                                                                       Validators.GT_ZERO));
+
       config.setLogJournalWriteRate(XMLConfigurationUtil.getBoolean(e,
                                                                     "log-journal-write-rate",
                                                                     HornetQDefaultConfiguration.DEFAULT_JOURNAL_LOG_WRITE_RATE));
@@ -1148,6 +1196,8 @@ public final class FileConfigurationParser
 
       int clusterNotificationAttempts = XMLConfigurationUtil.getInteger(e, "notification-attempts", HornetQDefaultConfiguration.DEFAULT_CLUSTER_NOTIFICATION_ATTEMPTS, Validators.GT_ZERO);
 
+      String loadBalancingPolicyClassName = XMLConfigurationUtil.getString(e, "load-balancing-policy-class-name", null, Validators.NO_CHECK);
+
       String discoveryGroupName = null;
 
       List<String> staticConnectorNames = new ArrayList<String>();
@@ -1212,6 +1262,8 @@ public final class FileConfigurationParser
                                                      clusterNotificationAttempts);
       }
 
+      config.setLoadBalancingPolicyClassName(loadBalancingPolicyClassName);
+
       mainConfig.getClusterConfigurations().add(config);
    }
 
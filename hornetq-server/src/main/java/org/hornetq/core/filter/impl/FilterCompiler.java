@@ -0,0 +1,1156 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.filter.impl;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.hornetq.api.core.FilterConstants;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.client.HornetQClientMessageBundle;
+import org.hornetq.core.server.ServerMessage;
+
+/**
+ * Compiles the expression built by {@link FilterParser} into a tree of {@link Evaluator}s.
+ *
+ * An {@link Operator} tree keeps the values of its identifiers and its intermediate results in its own fields, so only
+ * one thread at a time can evaluate it. Evaluators don't hold any state: identifiers are resolved once to a header
+ * accessor or to a property lookup with a pre-hashed key, numbers are compared as primitives without being converted
+ * to Long or Double first, and LIKE patterns are prepared up front.
+ *
+ * The results are the same as {@link Operator#apply()}, including the cases where it throws an exception.
+ *
+ * @see FilterImpl
+ */
+final class FilterCompiler
+{
+   private static final int NULL = 0;
+
+   private static final int DOUBLE = Operator.DOUBLE;
+
+   private static final int LONG = Operator.LONG;
+
+   private static final int BOOLEAN = Operator.BOOLEAN;
+
+   private static final int SIMPLE_STRING = Operator.SIMPLE_STRING;
+
+   private FilterCompiler()
+   {
+   }
+
+   /**
+    * @param expression an {@link Operator}, an {@link Identifier} or a literal, as returned by {@link FilterParser}
+    */
+   static Evaluator compile(final Object expression) throws Exception
+   {
+      if (expression instanceof Operator)
+      {
+         return compileOperator((Operator)expression);
+      }
+      else if (expression instanceof Identifier)
+      {
+         return compileIdentifier(((Identifier)expression).getName());
+      }
+      else
+      {
+         return new Constant(expression);
+      }
+   }
+
+   /**
+    * The compiled form of an expression. Implementations are immutable and can be evaluated concurrently.
+    */
+   abstract static class Evaluator
+   {
+      // The source expression, only used for error messages
+      private final Object expression;
+
+      Evaluator(final Object expression)
+      {
+         this.expression = expression;
+      }
+
+      /**
+       * @return a Boolean, a Number or a SimpleString, or null if the value is unknown
+       */
+      abstract Object evaluate(ServerMessage message) throws Exception;
+
+      /**
+       * @return the type of the value as defined by {@link Operator}
+       */
+      final int kind(final Object value) throws Exception
+      {
+         if (value == null)
+         {
+            return NULL;
+         }
+
+         Class<?> clazz = value.getClass();
+
+         if (clazz == SimpleString.class)
+         {
+            return SIMPLE_STRING;
+         }
+         else if (clazz == Double.class || clazz == Float.class)
+         {
+            return DOUBLE;
+         }
+         else if (clazz == Long.class || clazz == Integer.class || clazz == Short.class || clazz == Byte.class)
+         {
+            return LONG;
+         }
+         else if (clazz == Boolean.class)
+         {
+            return BOOLEAN;
+         }
+
+         throw new Exception("Bad Object: '" + clazz.getName() + "' for operation: " + expression);
+      }
+
+      final Exception badObject(final int kind)
+      {
+         return new Exception("Bad Object: '" + Operator.getClassName(kind) + "' for operation: " + expression);
+      }
+
+      final Exception badObject(final int expected, final int kind)
+      {
+         return new Exception("Bad Object: expected '" + Operator.getClassName(expected) +
+                              "' got '" +
+                              Operator.getClassName(kind) +
+                              "' for operation: " +
+                              expression);
+      }
+
+      final boolean booleanValue(final Object value) throws Exception
+      {
+         int kind = kind(value);
+
+         if (kind != BOOLEAN)
+         {
+            throw badObject(kind);
+         }
+
+         return ((Boolean)value).booleanValue();
+      }
+
+      @Override
+      public String toString()
+      {
+         return String.valueOf(expression);
+      }
+   }
+
+   // Private -------------------------------------------------------
+
+   private static Evaluator compileOperator(final Operator operator) throws Exception
+   {
+      int operation = operator.getOperation();
+
+      switch (operation)
+      {
+         case Operator.EQUAL:
+            return new Equal(operator, compile(operator.getOper1()), compile(operator.getOper2()));
+         case Operator.DIFFERENT:
+            return new Different(operator, compile(operator.getOper1()), compile(operator.getOper2()));
+         case Operator.NOT:
+            return new Not(operator, compile(operator.getOper1()));
+         case Operator.AND:
+            return new And(operator, compile(operator.getOper1()), compile(operator.getOper2()));
+         case Operator.OR:
+            return new Or(operator, compile(operator.getOper1()), compile(operator.getOper2()));
+         case Operator.GT:
+         case Operator.GE:
+         case Operator.LT:
+         case Operator.LE:
+            return compileComparison(operator, operation, compile(operator.getOper1()), compile(operator.getOper2()));
+         case Operator.ADD:
+         case Operator.SUB:
+         case Operator.MUL:
+         case Operator.DIV:
+            return new Arithmetic(operator, operation, compile(operator.getOper1()), compile(operator.getOper2()));
+         case Operator.NEG:
+            return new Neg(operator, compile(operator.getOper1()));
+         case Operator.BETWEEN:
+         {
+            Evaluator value = compile(operator.getOper1());
+            return new Between(compileComparison(operator, Operator.GE, value, compile(operator.getOper2())),
+                               compileComparison(operator, Operator.LE, value, compile(operator.getOper3())),
+                               false);
+         }
+         case Operator.NOT_BETWEEN:
+         {
+            Evaluator value = compile(operator.getOper1());
+            return new Between(compileComparison(operator, Operator.LT, value, compile(operator.getOper2())),
+                               compileComparison(operator, Operator.GT, value, compile(operator.getOper3())),
+                               true);
+         }
+         case Operator.LIKE:
+         case Operator.NOT_LIKE:
+            return new Like(operator,
+                            compile(operator.getOper1()),
+                            compile(operator.getOper2()),
+                            null,
+                            operation == Operator.NOT_LIKE);
+         case Operator.LIKE_ESCAPE:
+         case Operator.NOT_LIKE_ESCAPE:
+            return new Like(operator,
+                            compile(operator.getOper1()),
+                            compile(operator.getOper2()),
+                            compile(operator.getOper3()),
+                            operation == Operator.NOT_LIKE_ESCAPE);
+         case Operator.IS_NULL:
+         case Operator.IS_NOT_NULL:
+            return new IsNull(operator, compile(operator.getOper1()), operation == Operator.IS_NOT_NULL);
+         case Operator.IN:
+         case Operator.NOT_IN:
+            return new In(operator,
+                          compile(operator.getOper1()),
+                          (Set<?>)operator.getOper2(),
+                          operation == Operator.NOT_IN);
+         default:
+            throw HornetQClientMessageBundle.BUNDLE.noOperationMapped(operation);
+      }
+   }
+
+   private static Evaluator compileComparison(final Operator operator,
+                                              final int operation,
+                                              final Evaluator left,
+                                              final Evaluator right) throws Exception
+   {
+      if (left instanceof LongHeader && right instanceof Constant)
+      {
+         Object constant = ((Constant)right).value;
+
+         int kind = right.kind(constant);
+
+         if (kind == LONG || kind == DOUBLE)
+         {
+            return new HeaderComparison(operator, operation, (LongHeader)left, kind, (Number)constant);
+         }
+      }
+
+      return new Comparison(operator, operation, left, right);
+   }
+
+   private static Evaluator compileIdentifier(final SimpleString name)
+   {
+      if (name.startsWith(FilterConstants.HORNETQ_PREFIX))
+      {
+         if (FilterConstants.HORNETQ_USERID.equals(name))
+         {
+            return new UserIDHeader(name);
+         }
+         else if (FilterConstants.HORNETQ_PRIORITY.equals(name))
+         {
+            return new PriorityHeader(name);
+         }
+         else if (FilterConstants.HORNETQ_TIMESTAMP.equals(name))
+         {
+            return new TimestampHeader(name);
+         }
+         else if (FilterConstants.HORNETQ_DURABLE.equals(name))
+         {
+            return new DurableHeader(name);
+         }
+         else if (FilterConstants.HORNETQ_EXPIRATION.equals(name))
+         {
+            return new ExpirationHeader(name);
+         }
+         else if (FilterConstants.HORNETQ_SIZE.equals(name))
+         {
+            return new SizeHeader(name);
+         }
+      }
+
+      return new Property(name);
+   }
+
+   private static boolean compare(final int operation, final long value1, final long value2)
+   {
+      switch (operation)
+      {
+         case Operator.EQUAL:
+            return value1 == value2;
+         case Operator.DIFFERENT:
+            return value1 != value2;
+         case Operator.GT:
+            return value1 > value2;
+         case Operator.GE:
+            return value1 >= value2;
+         case Operator.LT:
+            return value1 < value2;
+         default:
+            return value1 <= value2;
+      }
+   }
+
+   private static boolean compare(final int operation, final double value1, final double value2)
+   {
+      switch (operation)
+      {
+         case Operator.EQUAL:
+            return value1 == value2;
+         case Operator.DIFFERENT:
+            return value1 != value2;
+         case Operator.GT:
+            return value1 > value2;
+         case Operator.GE:
+            return value1 >= value2;
+         case Operator.LT:
+            return value1 < value2;
+         default:
+            return value1 <= value2;
+      }
+   }
+
+   /**
+    * Both kinds must be LONG or DOUBLE
+    */
+   private static boolean compare(final int operation,
+                                  final int kind1,
+                                  final Number value1,
+                                  final int kind2,
+                                  final Number value2)
+   {
+      if (kind1 == LONG && kind2 == LONG)
+      {
+         return compare(operation, value1.longValue(), value2.longValue());
+      }
+
+      if (operation == Operator.GE && kind1 == DOUBLE && kind2 == LONG)
+      {
+         // Operator.ge() compares a double to a long as two longs
+         return compare(operation, value1.longValue(), value2.longValue());
+      }
+
+      return compare(operation,
+                     kind1 == LONG ? value1.longValue() : value1.doubleValue(),
+                     kind2 == LONG ? value2.longValue() : value2.doubleValue());
+   }
+
+   // Inner classes -------------------------------------------------
+
+   private static final class Constant extends Evaluator
+   {
+      final Object value;
+
+      Constant(final Object value)
+      {
+         super(value);
+
+         this.value = value;
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message)
+      {
+         return value;
+      }
+   }
+
+   private static final class Property extends Evaluator
+   {
+      private final SimpleString name;
+
+      Property(final SimpleString name)
+      {
+         super(name);
+
+         this.name = name;
+
+         // SimpleString caches its hash, compute it once here rather than on the first lookup
+         name.hashCode();
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message)
+      {
+         return message.getObjectProperty(name);
+      }
+   }
+
+   /**
+    * A numeric header, which can be read without being boxed
+    */
+   private abstract static class LongHeader extends Evaluator
+   {
+      LongHeader(final SimpleString name)
+      {
+         super(name);
+      }
+
+      abstract long longValue(ServerMessage message);
+
+      @Override
+      final Object evaluate(final ServerMessage message)
+      {
+         return Long.valueOf(longValue(message));
+      }
+   }
+
+   private static final class PriorityHeader extends LongHeader
+   {
+      PriorityHeader(final SimpleString name)
+      {
+         super(name);
+      }
+
+      @Override
+      long longValue(final ServerMessage message)
+      {
+         return message.getPriority();
+      }
+   }
+
+   private static final class TimestampHeader extends LongHeader
+   {
+      TimestampHeader(final SimpleString name)
+      {
+         super(name);
+      }
+
+      @Override
+      long longValue(final ServerMessage message)
+      {
+         return message.getTimestamp();
+      }
+   }
+
+   private static final class ExpirationHeader extends LongHeader
+   {
+      ExpirationHeader(final SimpleString name)
+      {
+         super(name);
+      }
+
+      @Override
+      long longValue(final ServerMessage message)
+      {
+         return message.getExpiration();
+      }
+   }
+
+   private static final class SizeHeader extends LongHeader
+   {
+      SizeHeader(final SimpleString name)
+      {
+         super(name);
+      }
+
+      @Override
+      long longValue(final ServerMessage message)
+      {
+         return message.getEncodeSize();
+      }
+   }
+
+   private static final class DurableHeader extends Evaluator
+   {
+      DurableHeader(final SimpleString name)
+      {
+         super(name);
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message)
+      {
+         return message.isDurable() ? FilterConstants.DURABLE : FilterConstants.NON_DURABLE;
+      }
+   }
+
+   private static final class UserIDHeader extends Evaluator
+   {
+      UserIDHeader(final SimpleString name)
+      {
+         super(name);
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message)
+      {
+         // It's the stringified (hex) representation of a user id that can be used in a selector expression
+         return new SimpleString("ID:" + message.getUserID());
+      }
+   }
+
+   private static final class Equal extends Evaluator
+   {
+      private final Evaluator left;
+
+      private final Evaluator right;
+
+      Equal(final Operator operator, final Evaluator left, final Evaluator right)
+      {
+         super(operator);
+
+         this.left = left;
+         this.right = right;
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message) throws Exception
+      {
+         Object value1 = left.evaluate(message);
+
+         if (value1 == null)
+         {
+            return Boolean.FALSE;
+         }
+
+         int kind1 = kind(value1);
+
+         Object value2 = right.evaluate(message);
+
+         int kind2 = kind(value2);
+
+         if (kind1 == LONG || kind1 == DOUBLE)
+         {
+            if (value2 == null)
+            {
+               return null;
+            }
+
+            if (kind2 == LONG || kind2 == DOUBLE)
+            {
+               return Boolean.valueOf(compare(Operator.EQUAL, kind1, (Number)value1, kind2, (Number)value2));
+            }
+
+            return Boolean.FALSE;
+         }
+
+         if (value2 == null)
+         {
+            return Boolean.FALSE;
+         }
+
+         if (kind2 != kind1)
+         {
+            throw badObject(kind1, kind2);
+         }
+
+         return Boolean.valueOf(value1.equals(value2));
+      }
+   }
+
+   private static final class Different extends Evaluator
+   {
+      private final Evaluator left;
+
+      private final Evaluator right;
+
+      Different(final Operator operator, final Evaluator left, final Evaluator right)
+      {
+         super(operator);
+
+         this.left = left;
+         this.right = right;
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message) throws Exception
+      {
+         Object value1 = left.evaluate(message);
+
+         int kind1 = kind(value1);
+
+         Object value2 = right.evaluate(message);
+
+         int kind2 = kind(value2);
+
+         if (value1 == null)
+         {
+            return value2 == null ? Boolean.FALSE : Boolean.TRUE;
+         }
+
+         if (value2 == null)
+         {
+            return null;
+         }
+
+         if (kind1 == LONG || kind1 == DOUBLE)
+         {
+            if (kind2 == LONG || kind2 == DOUBLE)
+            {
+               return Boolean.valueOf(compare(Operator.DIFFERENT, kind1, (Number)value1, kind2, (Number)value2));
+            }
+
+            return Boolean.FALSE;
+         }
+
+         if (kind2 != kind1)
+         {
+            throw badObject(kind1, kind2);
+         }
+
+         return Boolean.valueOf(!value1.equals(value2));
+      }
+   }
+
+   /**
+    * GT, GE, LT and LE
+    */
+   private static final class Comparison extends Evaluator
+   {
+      private final int operation;
+
+      private final Evaluator left;
+
+      private final Evaluator right;
+
+      Comparison(final Operator operator, final int operation, final Evaluator left, final Evaluator right)
+      {
+         super(operator);
+
+         this.operation = operation;
+         this.left = left;
+         this.right = right;
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message) throws Exception
+      {
+         Object value1 = left.evaluate(message);
+
+         if (value1 == null)
+         {
+            return null;
+         }
+
+         int kind1 = kind(value1);
+
+         if (kind1 != LONG && kind1 != DOUBLE)
+         {
+            return Boolean.FALSE;
+         }
+
+         Object value2 = right.evaluate(message);
+
+         if (value2 == null)
+         {
+            return null;
+         }
+
+         int kind2 = kind(value2);
+
+         if (kind2 != LONG && kind2 != DOUBLE)
+         {
+            return Boolean.FALSE;
+         }
+
+         return Boolean.valueOf(compare(operation, kind1, (Number)value1, kind2, (Number)value2));
+      }
+   }
+
+   /**
+    * A numeric header compared to a numeric literal, e.g. HQPriority &gt; 4
+    */
+   private static final class HeaderComparison extends Evaluator
+   {
+      private final int operation;
+
+      private final LongHeader header;
+
+      private final boolean longConstant;
+
+      private final long longValue;
+
+      private final double doubleValue;
+
+      HeaderComparison(final Operator operator,
+                       final int operation,
+                       final LongHeader header,
+                       final int kind,
+                       final Number constant)
+      {
+         super(operator);
+
+         this.operation = operation;
+         this.header = header;
+         longConstant = kind == LONG;
+         longValue = constant.longValue();
+         doubleValue = constant.doubleValue();
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message)
+      {
+         long value = header.longValue(message);
+
+         if (longConstant)
+         {
+            return Boolean.valueOf(compare(operation, value, longValue));
+         }
+
+         return Boolean.valueOf(compare(operation, value, doubleValue));
+      }
+   }
+
+   private static final class Between extends Evaluator
+   {
+      private final Evaluator lower;
+
+      private final Evaluator upper;
+
+      private final boolean not;
+
+      /**
+       * @param lower value &gt;= low, or value &lt; low for NOT BETWEEN
+       * @param upper value &lt;= high, or value &gt; high for NOT BETWEEN
+       */
+      Between(final Evaluator lower, final Evaluator upper, final boolean not)
+      {
+         super(lower);
+
+         this.lower = lower;
+         this.upper = upper;
+         this.not = not;
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message) throws Exception
+      {
+         Object result = lower.evaluate(message);
+
+         if (result == null || ((Boolean)result).booleanValue() == not)
+         {
+            return result;
+         }
+
+         return upper.evaluate(message);
+      }
+   }
+
+   private static final class Not extends Evaluator
+   {
+      private final Evaluator operand;
+
+      Not(final Operator operator, final Evaluator operand)
+      {
+         super(operator);
+
+         this.operand = operand;
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message) throws Exception
+      {
+         Object value = operand.evaluate(message);
+
+         if (value == null)
+         {
+            return null;
+         }
+
+         return booleanValue(value) ? Boolean.FALSE : Boolean.TRUE;
+      }
+   }
+
+   private static final class And extends Evaluator
+   {
+      private final Evaluator left;
+
+      private final Evaluator right;
+
+      And(final Operator operator, final Evaluator left, final Evaluator right)
+      {
+         super(operator);
+
+         this.left = left;
+         this.right = right;
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message) throws Exception
+      {
+         Object value1 = left.evaluate(message);
+
+         if (value1 != null && !booleanValue(value1))
+         {
+            return Boolean.FALSE;
+         }
+
+         Object value2 = right.evaluate(message);
+
+         if (value2 == null)
+         {
+            return null;
+         }
+
+         if (!booleanValue(value2))
+         {
+            return Boolean.FALSE;
+         }
+
+         return value1 == null ? null : Boolean.TRUE;
+      }
+   }
+
+   /**
+    * <pre>
+    * | OR   |   T   |   F   |   U
+    * +------+-------+-------+--------
+    * |  T   |   T   |   T   |   T
+    * |  F   |   T   |   F   |   U
+    * |  U   |   T   |   U   |   U
+    * +------+-------+-------+-------
+    * </pre>
+    */
+   private static final class Or extends Evaluator
+   {
+      private final Evaluator left;
+
+      private final Evaluator right;
+
+      Or(final Operator operator, final Evaluator left, final Evaluator right)
+      {
+         super(operator);
+
+         this.left = left;
+         this.right = right;
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message) throws Exception
+      {
+         Object value1 = left.evaluate(message);
+
+         if (value1 != null && booleanValue(value1))
+         {
+            return Boolean.TRUE;
+         }
+
+         Object value2 = right.evaluate(message);
+
+         if (value2 != null && booleanValue(value2))
+         {
+            return Boolean.TRUE;
+         }
+
+         return value1 == null || value2 == null ? null : Boolean.FALSE;
+      }
+   }
+
+   /**
+    * ADD, SUB, MUL and DIV
+    */
+   private static final class Arithmetic extends Evaluator
+   {
+      private final int operation;
+
+      private final Evaluator left;
+
+      private final Evaluator right;
+
+      Arithmetic(final Operator operator, final int operation, final Evaluator left, final Evaluator right)
+      {
+         super(operator);
+
+         this.operation = operation;
+         this.left = left;
+         this.right = right;
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message) throws Exception
+      {
+         Object value1 = left.evaluate(message);
+
+         int kind1 = kind(value1);
+
+         Object value2 = right.evaluate(message);
+
+         int kind2 = kind(value2);
+
+         if (value1 == null || value2 == null)
+         {
+            return null;
+         }
+
+         if (kind1 != LONG && kind1 != DOUBLE)
+         {
+            throw badObject(kind1);
+         }
+
+         if (kind2 != LONG && kind2 != DOUBLE)
+         {
+            throw badObject(kind2);
+         }
+
+         if (kind1 == LONG && kind2 == LONG)
+         {
+            long long1 = ((Number)value1).longValue();
+            long long2 = ((Number)value2).longValue();
+
+            switch (operation)
+            {
+               case Operator.ADD:
+                  return Long.valueOf(long1 + long2);
+               case Operator.SUB:
+                  return Long.valueOf(long1 - long2);
+               case Operator.MUL:
+                  return Long.valueOf(long1 * long2);
+               default:
+                  return Long.valueOf(long1 / long2);
+            }
+         }
+
+         double double1 = ((Number)value1).doubleValue();
+         double double2 = ((Number)value2).doubleValue();
+
+         switch (operation)
+         {
+            case Operator.ADD:
+               return Double.valueOf(double1 + double2);
+            case Operator.SUB:
+               return Double.valueOf(double1 - double2);
+            case Operator.MUL:
+               return Double.valueOf(double1 * double2);
+            default:
+               return Double.valueOf(double1 / double2);
+         }
+      }
+   }
+
+   private static final class Neg extends Evaluator
+   {
+      private final Evaluator operand;
+
+      Neg(final Operator operator, final Evaluator operand)
+      {
+         super(operator);
+
+         this.operand = operand;
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message) throws Exception
+      {
+         Object value = operand.evaluate(message);
+
+         if (value == null)
+         {
+            return null;
+         }
+
+         switch (kind(value))
+         {
+            case DOUBLE:
+               return Double.valueOf(-((Number)value).doubleValue());
+            case LONG:
+               return Long.valueOf(-((Number)value).longValue());
+            default:
+               throw badObject(kind(value));
+         }
+      }
+   }
+
+   /**
+    * LIKE, NOT LIKE, LIKE ESCAPE and NOT LIKE ESCAPE
+    */
+   private static final class Like extends Evaluator
+   {
+      private final Evaluator value;
+
+      private final Evaluator pattern;
+
+      private final Evaluator escape;
+
+      private final boolean not;
+
+      // Prepared once the first time the pattern is known, the same as Operator does
+      private volatile RegExp regExp;
+
+      Like(final Operator operator,
+           final Evaluator value,
+           final Evaluator pattern,
+           final Evaluator escape,
+           final boolean not)
+      {
+         super(operator);
+
+         this.value = value;
+         this.pattern = pattern;
+         this.escape = escape;
+         this.not = not;
+
+         if (pattern instanceof Constant && (escape == null || escape instanceof Constant))
+         {
+            Object value2 = ((Constant)pattern).value;
+            Object value3 = escape == null ? null : ((Constant)escape).value;
+
+            if (value2 != null && (escape == null || value3 != null))
+            {
+               try
+               {
+                  regExp = prepare(value2, value3);
+               }
+               catch (Exception e)
+               {
+                  // It will be thrown again, and logged, every time the filter is evaluated
+               }
+            }
+         }
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message) throws Exception
+      {
+         Object value1 = value.evaluate(message);
+
+         if (value1 == null)
+         {
+            return null;
+         }
+
+         int kind1 = kind(value1);
+
+         if (kind1 != SIMPLE_STRING)
+         {
+            throw badObject(kind1);
+         }
+
+         RegExp re = regExp;
+
+         if (re == null)
+         {
+            Object value2 = pattern.evaluate(message);
+
+            if (value2 == null)
+            {
+               return Boolean.FALSE;
+            }
+
+            Object value3 = null;
+
+            if (escape != null)
+            {
+               value3 = escape.evaluate(message);
+
+               if (value3 == null)
+               {
+                  return null;
+               }
+            }
+
+            re = prepare(value2, value3);
+
+            regExp = re;
+         }
+
+         boolean result = re.matches((SimpleString)value1);
+
+         return result != not ? Boolean.TRUE : Boolean.FALSE;
+      }
+
+      /**
+       * @param escapeValue null if there is no ESCAPE clause
+       */
+      private RegExp prepare(final Object patternValue, final Object escapeValue) throws Exception
+      {
+         int kind2 = kind(patternValue);
+
+         if (kind2 != SIMPLE_STRING)
+         {
+            throw badObject(kind2);
+         }
+
+         Character escapeChar = null;
+
+         if (escapeValue != null)
+         {
+            int kind3 = kind(escapeValue);
+
+            if (kind3 != SIMPLE_STRING)
+            {
+               throw badObject(kind3);
+            }
+
+            SimpleString escapeString = (SimpleString)escapeValue;
+
+            if (escapeString.length() != 1)
+            {
+               throw new Exception("LIKE ESCAPE: Bad escape character " + escapeString.toString());
+            }
+
+            escapeChar = Character.valueOf(escapeString.charAt(0));
+         }
+
+         return new RegExp(patternValue.toString(), escapeChar);
+      }
+   }
+
+   private static final class IsNull extends Evaluator
+   {
+      private final Evaluator operand;
+
+      private final boolean not;
+
+      IsNull(final Operator operator, final Evaluator operand, final boolean not)
+      {
+         super(operator);
+
+         this.operand = operand;
+         this.not = not;
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message) throws Exception
+      {
+         Object value = operand.evaluate(message);
+
+         // the type is checked even though only the nullness is used
+         kind(value);
+
+         return (value == null) != not ? Boolean.TRUE : Boolean.FALSE;
+      }
+   }
+
+   private static final class In extends Evaluator
+   {
+      private final Evaluator operand;
+
+      private final Set<?> set;
+
+      private final boolean not;
+
+      In(final Operator operator, final Evaluator operand, final Set<?> set, final boolean not)
+      {
+         super(operator);
+
+         this.operand = operand;
+         this.set = new HashSet<Object>(set);
+         this.not = not;
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message) throws Exception
+      {
+         Object value = operand.evaluate(message);
+
+         if (value == null)
+         {
+            return not ? null : Boolean.FALSE;
+         }
+
+         int kind = kind(value);
+
+         if (kind != SIMPLE_STRING)
+         {
+            throw badObject(kind);
+         }
+
+         return set.contains(value) != not ? Boolean.TRUE : Boolean.FALSE;
+      }
+   }
+}
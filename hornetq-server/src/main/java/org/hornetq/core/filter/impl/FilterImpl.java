@@ -16,7 +16,6 @@ package org.hornetq.core.filter.impl;
 import java.util.HashMap;
 import java.util.Map;
 
-import org.hornetq.api.core.FilterConstants;
 import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.filter.Filter;
@@ -62,11 +61,7 @@ public class FilterImpl implements Filter
 
    private final SimpleString sfilterString;
 
-   private final Map<SimpleString, Identifier> identifiers = new HashMap<SimpleString, Identifier>();
-
-   private final Object result;
-
-   private final Class<? extends Object> resultType;
+   private final FilterCompiler.Evaluator evaluator;
 
    // Static ---------------------------------------------------------
 
@@ -103,9 +98,19 @@ public class FilterImpl implements Filter
 
       try
       {
-         result = new FilterParser().parse(sfilterString, identifiers);
+         Map<SimpleString, Identifier> identifiers = new HashMap<SimpleString, Identifier>();
+
+         Object result = new FilterParser().parse(sfilterString, identifiers);
 
-         resultType = result.getClass();
+         if (result instanceof Identifier || result instanceof Operator)
+         {
+            evaluator = FilterCompiler.compile(result);
+         }
+         else
+         {
+            // a literal on its own never matches
+            evaluator = null;
+         }
       }
       catch (Throwable e)
       {
@@ -122,44 +127,19 @@ public class FilterImpl implements Filter
       return sfilterString;
    }
 
-   public synchronized boolean match(final ServerMessage message)
+   public boolean match(final ServerMessage message)
    {
       try
       {
-         // Set the identifiers values
-
-         for (Identifier id : identifiers.values())
+         if (evaluator == null)
          {
-            Object val = null;
-
-            if (id.getName().startsWith(FilterConstants.HORNETQ_PREFIX))
-            {
-               // Look it up as header fields
-               val = getHeaderFieldValue(message, id.getName());
-            }
-
-            if (val == null)
-            {
-               val = message.getObjectProperty(id.getName());
-            }
-
-            id.setValue(val);
-
+            throw new Exception("Bad object type: " + sfilterString);
          }
 
-         if (resultType.equals(Identifier.class))
-         {
-            return (Boolean)((Identifier)result).getValue();
-         }
-         else if (resultType.equals(Operator.class))
-         {
-            Operator op = (Operator)result;
-            return (Boolean)op.apply();
-         }
-         else
-         {
-            throw new Exception("Bad object type: " + result);
-         }
+         Object value = evaluator.evaluate(message);
+
+         // An unknown result doesn't match
+         return value != null && (Boolean)value;
       }
       catch (Exception e)
       {
@@ -203,39 +183,4 @@ public class FilterImpl implements Filter
    {
       return "FilterImpl [sfilterString=" + sfilterString + "]";
    }
-
-   // Private --------------------------------------------------------------------------
-
-   private Object getHeaderFieldValue(final ServerMessage msg, final SimpleString fieldName)
-   {
-      if (FilterConstants.HORNETQ_USERID.equals(fieldName))
-      {
-         // It's the stringified (hex) representation of a user id that can be used in a selector expression
-         return new SimpleString("ID:" + msg.getUserID());
-      }
-      else if (FilterConstants.HORNETQ_PRIORITY.equals(fieldName))
-      {
-         return Integer.valueOf(msg.getPriority());
-      }
-      else if (FilterConstants.HORNETQ_TIMESTAMP.equals(fieldName))
-      {
-         return msg.getTimestamp();
-      }
-      else if (FilterConstants.HORNETQ_DURABLE.equals(fieldName))
-      {
-         return msg.isDurable() ? FilterConstants.DURABLE : FilterConstants.NON_DURABLE;
-      }
-      else if (FilterConstants.HORNETQ_EXPIRATION.equals(fieldName))
-      {
-         return msg.getExpiration();
-      }
-      else if (FilterConstants.HORNETQ_SIZE.equals(fieldName))
-      {
-         return msg.getEncodeSize();
-      }
-      else
-      {
-         return null;
-      }
-   }
 }
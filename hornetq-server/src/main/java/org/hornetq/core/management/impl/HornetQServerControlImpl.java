@@ -54,8 +54,10 @@ import org.hornetq.core.persistence.config.PersistedAddressSetting;
 import org.hornetq.core.persistence.config.PersistedRoles;
 import org.hornetq.core.postoffice.PostOffice;
 import org.hornetq.core.remoting.server.RemotingService;
+import org.hornetq.core.replication.ReplicationEndpoint;
 import org.hornetq.core.security.CheckType;
 import org.hornetq.core.security.Role;
+import org.hornetq.core.security.SecurityStore;
 import org.hornetq.core.server.HornetQMessageBundle;
 import org.hornetq.core.server.HornetQServer;
 import org.hornetq.core.server.JournalType;
@@ -275,6 +277,84 @@ public class HornetQServerControlImpl extends AbstractControl implements HornetQ
       }
    }
 
+   public long getReplicationSyncBytes()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         ReplicationEndpoint endpoint = server.getReplicationEndpoint();
+         return endpoint == null ? 0 : endpoint.getSyncBytes();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getReplicationSyncBytesTransferred()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         ReplicationEndpoint endpoint = server.getReplicationEndpoint();
+         return endpoint == null ? 0 : endpoint.getSyncBytesTransferred();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getReplicationSyncThroughput()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         ReplicationEndpoint endpoint = server.getReplicationEndpoint();
+         return endpoint == null ? 0 : endpoint.getSyncThroughput();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalFlushCount()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return server.getStorageManager().getMessageJournalFlushCount();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalBytesFlushed()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return server.getStorageManager().getMessageJournalBytesFlushed();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
    public void setFailoverOnServerShutdown(boolean failoverOnServerShutdown)
    {
       checkStarted();
@@ -397,6 +477,51 @@ public class HornetQServerControlImpl extends AbstractControl implements HornetQ
       }
    }
 
+   public long getJournalCompactCount()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return server.getStorageManager().getMessageJournalCompactCount();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalCompactReclaimedBytes()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return server.getStorageManager().getMessageJournalCompactReclaimedBytes();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalCompactPauseTime()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return server.getStorageManager().getMessageJournalCompactPauseTime();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
    public boolean isPersistenceEnabled()
    {
       checkStarted();
@@ -487,6 +612,38 @@ public class HornetQServerControlImpl extends AbstractControl implements HornetQ
       }
    }
 
+   public long getSecurityCacheHits()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         SecurityStore securityStore = server.getSecurityStore();
+         return securityStore == null ? 0 : securityStore.getCacheHits();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getSecurityCacheMisses()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         SecurityStore securityStore = server.getSecurityStore();
+         return securityStore == null ? 0 : securityStore.getCacheMisses();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
    public boolean isClustered()
    {
       checkStarted();
@@ -257,6 +257,36 @@ public class QueueControlImpl extends AbstractControl implements QueueControl
       }
    }
 
+   public long getMessagesRedistributed()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return queue.getMessagesRedistributed();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public double getRedistributionRate()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return queue.getRedistributionRate();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
    public long getID()
    {
       checkStarted();
@@ -14,7 +14,6 @@
 package org.hornetq.core.paging.cursor;
 
 import org.hornetq.core.paging.PagedMessage;
-import org.hornetq.utils.SoftValueHashMap;
 
 /**
  * A PageCache
@@ -23,7 +22,7 @@ import org.hornetq.utils.SoftValueHashMap;
  *
  *
  */
-public interface PageCache extends SoftValueHashMap.ValueCache
+public interface PageCache
 {
    long getPageId();
 
@@ -33,6 +32,11 @@ public interface PageCache extends SoftValueHashMap.ValueCache
 
    PagedMessage[] getMessages();
 
+   /**
+    * @return the memory used by the messages of this cache, 0 until they are set
+    */
+   long getMemoryEstimate();
+
    /**
     * @return whether this cache is still being updated
     */
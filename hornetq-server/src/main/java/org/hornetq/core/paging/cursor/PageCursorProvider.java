@@ -28,6 +28,12 @@ public interface PageCursorProvider
 
    PageCache getPageCache(long pageNr);
 
+   /**
+    * Reads the page into the cache in the background, if it isn't cached yet. Called by the subscriptions as they get
+    * near the end of the previous page.
+    */
+   void prefetchPageCache(long pageNr);
+
    PagedReference newReference(final PagePosition pos, final PagedMessage msg, PageSubscription sub);
 
    void addPageCache(PageCache cache);
@@ -40,8 +46,17 @@ public interface PageCursorProvider
 
    PageSubscription createSubscription(long queueId, Filter filter, boolean durable);
 
+   /**
+    * Decodes only this message when its page isn't in the cache
+    */
    PagedMessage getMessage(PagePosition pos) throws Exception;
 
+   /**
+    * @return the number of messages of a page, without reading the page when it isn't in the cache, or -1 if the page
+    *         doesn't exist
+    */
+   int getNumberOfMessages(long pageNr);
+
    void processReload() throws Exception;
 
    void stop();
@@ -62,6 +77,26 @@ public interface PageCursorProvider
 
    void setCacheMaxSize(int size);
 
+   /**
+    * @param bytes the maximum memory used by the messages of the cached pages, 0 for no limit
+    */
+   void setCacheMaxBytes(long bytes);
+
+   /**
+    * @return the number of times a page was found in the cache
+    */
+   long getCacheHits();
+
+   /**
+    * @return the number of times a page had to be read as it wasn't in the cache
+    */
+   long getCacheMisses();
+
+   /**
+    * @return the number of pages evicted from the cache to respect its maximum size
+    */
+   long getCacheEvictions();
+
    /**
     * @param pageCursorImpl
     */
@@ -133,14 +133,7 @@ public class PagedReferenceImpl implements PagedReference
       if (deliveryTime == null)
       {
          ServerMessage msg = getMessage();
-         if (msg.containsProperty(Message.HDR_SCHEDULED_DELIVERY_TIME))
-         {
-            deliveryTime = getMessage().getLongProperty(Message.HDR_SCHEDULED_DELIVERY_TIME);
-         }
-         else
-         {
-            deliveryTime = 0l;
-         }
+         deliveryTime = msg.getTypedProperties().getLongProperty(Message.HDR_SCHEDULED_DELIVERY_TIME, 0);
       }
       return deliveryTime;
    }
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.paging.cursor.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.hornetq.core.paging.cursor.PageCache;
+import org.hornetq.core.server.HornetQServerLogger;
+
+/**
+ * The page caches of a {@link PageCursorProviderImpl}, by page id.
+ *
+ * Once there are more than maxElements caches, or the messages of the caches take more than maxBytes of memory, the
+ * least recently used caches are evicted. Live caches are never evicted and don't count against maxBytes as they are
+ * still growing, and the most recently used cache is always kept so a page bigger than maxBytes is still read only once.
+ * A value of zero or less disables a limit.
+ *
+ * This class is not thread safe, the provider synchronizes on it.
+ */
+final class PageCacheLRU
+{
+   private final boolean isTrace = HornetQServerLogger.LOGGER.isTraceEnabled();
+
+   // in access order, the least recently used cache first
+   private final LinkedHashMap<Long, PageCache> caches = new LinkedHashMap<Long, PageCache>(16, 0.75f, true);
+
+   private int maxElements;
+
+   private long maxBytes;
+
+   private long evictions;
+
+   PageCacheLRU(final int maxElements, final long maxBytes)
+   {
+      this.maxElements = maxElements;
+      this.maxBytes = maxBytes;
+   }
+
+   /**
+    * @return the cache of the page, which becomes the most recently used one, or null if the page isn't cached
+    */
+   PageCache get(final long pageId)
+   {
+      return caches.get(pageId);
+   }
+
+   /**
+    * Unlike {@link #get(long)} this doesn't change the order of eviction
+    */
+   boolean contains(final long pageId)
+   {
+      return caches.containsKey(pageId);
+   }
+
+   void put(final long pageId, final PageCache cache)
+   {
+      caches.put(pageId, cache);
+      checkSize();
+   }
+
+   PageCache remove(final long pageId)
+   {
+      return caches.remove(pageId);
+   }
+
+   int size()
+   {
+      return caches.size();
+   }
+
+   Collection<PageCache> values()
+   {
+      return new ArrayList<PageCache>(caches.values());
+   }
+
+   void setMaxElements(final int maxElements)
+   {
+      this.maxElements = maxElements;
+      checkSize();
+   }
+
+   void setMaxBytes(final long maxBytes)
+   {
+      this.maxBytes = maxBytes;
+      checkSize();
+   }
+
+   long getEvictions()
+   {
+      return evictions;
+   }
+
+   /**
+    * Evicts caches until the limits are respected again. To be called when the size of a cache changes, as after it
+    * was read.
+    */
+   void checkSize()
+   {
+      if (maxElements <= 0 && maxBytes <= 0)
+      {
+         return;
+      }
+
+      int elements = caches.size();
+
+      long bytes = 0;
+
+      for (PageCache cache : caches.values())
+      {
+         if (!cache.isLive())
+         {
+            bytes += cache.getMemoryEstimate();
+         }
+      }
+
+      // the last one is the most recently used
+      int candidates = elements - 1;
+
+      Iterator<PageCache> iter = caches.values().iterator();
+
+      while (candidates-- > 0 && (maxElements > 0 && elements > maxElements || maxBytes > 0 && bytes > maxBytes))
+      {
+         PageCache cache = iter.next();
+
+         if (cache.isLive())
+         {
+            continue;
+         }
+
+         iter.remove();
+
+         elements--;
+         bytes -= cache.getMemoryEstimate();
+         evictions++;
+
+         if (isTrace)
+         {
+            HornetQServerLogger.LOGGER.trace("Evicting " + cache + " from the page cache, " + elements + " caches and " +
+                                             bytes + " bytes remaining");
+         }
+      }
+   }
+}
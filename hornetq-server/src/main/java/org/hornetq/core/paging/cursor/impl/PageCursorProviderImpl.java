@@ -15,11 +15,14 @@ package org.hornetq.core.paging.cursor.impl;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.hornetq.core.filter.Filter;
 import org.hornetq.core.paging.PagedMessage;
@@ -31,12 +34,13 @@ import org.hornetq.core.paging.cursor.PageSubscription;
 import org.hornetq.core.paging.cursor.PagedReference;
 import org.hornetq.core.paging.cursor.PagedReferenceImpl;
 import org.hornetq.core.paging.impl.Page;
+import org.hornetq.core.paging.impl.PageReader;
 import org.hornetq.core.persistence.StorageManager;
 import org.hornetq.core.server.HornetQServerLogger;
 import org.hornetq.core.transaction.Transaction;
 import org.hornetq.core.transaction.impl.TransactionImpl;
 import org.hornetq.utils.FutureLatch;
-import org.hornetq.utils.SoftValueHashMap;
+
 /**
  * A PageProviderIMpl
  *
@@ -53,6 +57,8 @@ public class PageCursorProviderImpl implements PageCursorProvider
 
    boolean isTrace = HornetQServerLogger.LOGGER.isTraceEnabled();
 
+   private static final int MAX_PAGE_READERS = 10;
+
    // Attributes ----------------------------------------------------
 
    /**
@@ -67,7 +73,23 @@ public class PageCursorProviderImpl implements PageCursorProvider
    // This is the same executor used at the PageStoreImpl. One Executor per pageStore
    private final Executor executor;
 
-   private final SoftValueHashMap<Long, PageCache> softCache;
+   private final PageCacheLRU cacheMap;
+
+   // the index of pages read one message at a time, see getMessage
+   private final Map<Long, PageReader> readers = new LinkedHashMap<Long, PageReader>(16, 0.75f, true)
+   {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<Long, PageReader> eldest)
+      {
+         return size() > PageCursorProviderImpl.MAX_PAGE_READERS;
+      }
+   };
+
+   private final AtomicLong cacheHits = new AtomicLong();
+
+   private final AtomicLong cacheMisses = new AtomicLong();
 
    private final ConcurrentMap<Long, PageSubscription> activeCursors = new ConcurrentHashMap<Long, PageSubscription>();
 
@@ -79,11 +101,20 @@ public class PageCursorProviderImpl implements PageCursorProvider
                                  final StorageManager storageManager,
                                  final Executor executor,
                                  final int maxCacheSize)
+   {
+      this(pagingStore, storageManager, executor, maxCacheSize, 0);
+   }
+
+   public PageCursorProviderImpl(final PagingStore pagingStore,
+                                 final StorageManager storageManager,
+                                 final Executor executor,
+                                 final int maxCacheSize,
+                                 final long maxCacheBytes)
    {
       this.pagingStore = pagingStore;
       this.storageManager = storageManager;
       this.executor = executor;
-      this.softCache = new SoftValueHashMap<Long, PageCache>(maxCacheSize);
+      this.cacheMap = new PageCacheLRU(maxCacheSize, maxCacheBytes);
    }
 
    // Public --------------------------------------------------------
@@ -113,7 +144,44 @@ public class PageCursorProviderImpl implements PageCursorProvider
 
    public PagedMessage getMessage(final PagePosition pos) throws Exception
    {
-      PageCache cache = getPageCache(pos.getPageNr());
+      PageCache cache;
+      synchronized (cacheMap)
+      {
+         cache = cacheMap.get(pos.getPageNr());
+      }
+
+      if (cache == null && pos.getPageNr() < pagingStore.getCurrentWritingPage())
+      {
+         // decode only this message instead of reading the whole page into the cache
+         PageReader reader = getPageReader(pos.getPageNr());
+
+         PagedMessage msg = null;
+
+         if (reader != null)
+         {
+            cacheMisses.incrementAndGet();
+
+            storageManager.beforePageRead();
+            try
+            {
+               msg = reader.getMessage(pos.getMessageNr(), storageManager);
+            }
+            finally
+            {
+               storageManager.afterPageRead();
+            }
+         }
+
+         if (msg == null)
+         {
+            // sanity check, this should never happen unless there's a bug
+            throw new IllegalStateException("Invalid messageNumber passed = " + pos + " on " + reader);
+         }
+
+         return msg;
+      }
+
+      cache = getPageCache(pos.getPageNr());
 
       if (cache == null || pos.getMessageNr() >= cache.getNumberOfMessages())
       {
@@ -124,6 +192,24 @@ public class PageCursorProviderImpl implements PageCursorProvider
       return cache.getMessage(pos.getMessageNr());
    }
 
+   public int getNumberOfMessages(final long pageId)
+   {
+      PageCache cache;
+      synchronized (cacheMap)
+      {
+         cache = cacheMap.get(pageId);
+      }
+
+      if (cache != null)
+      {
+         return cache.getNumberOfMessages();
+      }
+
+      PageReader reader = getPageReader(pageId);
+
+      return reader == null ? -1 : reader.getNumberOfMessages();
+   }
+
    public PagedReference newReference(final PagePosition pos,
                                       final PagedMessage msg,
                                       final PageSubscription subscription)
@@ -132,19 +218,58 @@ public class PageCursorProviderImpl implements PageCursorProvider
    }
 
    public PageCache getPageCache(final long pageId)
+   {
+      return getPageCache(pageId, false);
+   }
+
+   public void prefetchPageCache(final long pageId)
+   {
+      synchronized (cacheMap)
+      {
+         // the current page is already in the cache as a live cache
+         if (pageId >= pagingStore.getCurrentWritingPage() || cacheMap.contains(pageId))
+         {
+            return;
+         }
+      }
+
+      executor.execute(new Runnable()
+      {
+         public void run()
+         {
+            try
+            {
+               if (pagingStore.isStarted())
+               {
+                  getPageCache(pageId, true);
+               }
+            }
+            catch (Throwable e)
+            {
+               // the subscription will read the page again when it gets there, and report any error then
+               HornetQServerLogger.LOGGER.debug("Couldn't prefetch page " + pageId + " on " + pagingStore.getAddress(), e);
+            }
+         }
+      });
+   }
+
+   /**
+    * @param prefetch whether the page is read ahead of its use, which doesn't count as a hit or miss
+    */
+   private PageCache getPageCache(final long pageId, final boolean prefetch)
    {
       try
       {
          boolean needToRead = false;
          PageCache cache = null;
-         synchronized (softCache)
+         synchronized (cacheMap)
          {
             if (pageId > pagingStore.getCurrentWritingPage())
             {
                return null;
             }
 
-            cache = softCache.get(pageId);
+            cache = cacheMap.get(pageId);
             if (cache == null)
             {
                if (!pagingStore.checkPageFileExists((int)pageId))
@@ -161,7 +286,19 @@ public class PageCursorProviderImpl implements PageCursorProvider
                {
                   HornetQServerLogger.LOGGER.trace("adding " + pageId +  " into cursor = " + this.pagingStore.getAddress());
                }
-               softCache.put(pageId, cache);
+               cacheMap.put(pageId, cache);
+            }
+         }
+
+         if (!prefetch)
+         {
+            if (needToRead)
+            {
+               cacheMisses.incrementAndGet();
+            }
+            else
+            {
+               cacheHits.incrementAndGet();
             }
          }
 
@@ -195,6 +332,12 @@ public class PageCursorProviderImpl implements PageCursorProvider
                storageManager.afterPageRead();
                cache.unlock();
             }
+
+            // the size of the messages is only known now
+            synchronized (cacheMap)
+            {
+               cacheMap.checkSize();
+            }
          }
 
          return cache;
@@ -207,22 +350,51 @@ public class PageCursorProviderImpl implements PageCursorProvider
 
    public void addPageCache(PageCache cache)
    {
-      synchronized (softCache)
+      synchronized (cacheMap)
       {
-         softCache.put(cache.getPageId(), cache);
+         cacheMap.put(cache.getPageId(), cache);
       }
    }
 
    public void setCacheMaxSize(final int size)
    {
-      softCache.setMaxElements(size);
+      synchronized (cacheMap)
+      {
+         cacheMap.setMaxElements(size);
+      }
+   }
+
+   public void setCacheMaxBytes(final long bytes)
+   {
+      synchronized (cacheMap)
+      {
+         cacheMap.setMaxBytes(bytes);
+      }
+   }
+
+   public long getCacheHits()
+   {
+      return cacheHits.get();
+   }
+
+   public long getCacheMisses()
+   {
+      return cacheMisses.get();
+   }
+
+   public long getCacheEvictions()
+   {
+      synchronized (cacheMap)
+      {
+         return cacheMap.getEvictions();
+      }
    }
 
    public int getCacheSize()
    {
-      synchronized (softCache)
+      synchronized (cacheMap)
       {
-         return softCache.size();
+         return cacheMap.size();
       }
    }
 
@@ -492,9 +664,9 @@ public class PageCursorProviderImpl implements PageCursorProvider
          {
             PageCache cache;
             PagedMessage[] pgdMessages;
-            synchronized (softCache)
+            synchronized (cacheMap)
             {
-               cache = softCache.get((long)depagedPage.getPageId());
+               cache = cacheMap.get((long)depagedPage.getPageId());
             }
 
             if (isTrace)
@@ -538,9 +710,14 @@ public class PageCursorProviderImpl implements PageCursorProvider
             depagedPage.delete(pgdMessages);
             onDeletePage(depagedPage);
 
-            synchronized (softCache)
+            synchronized (cacheMap)
+            {
+               cacheMap.remove((long)depagedPage.getPageId());
+            }
+
+            synchronized (readers)
             {
-               softCache.remove((long)depagedPage.getPageId());
+               readers.remove((long)depagedPage.getPageId());
             }
          }
       }
@@ -603,7 +780,12 @@ public class PageCursorProviderImpl implements PageCursorProvider
    public void printDebug()
    {
       System.out.println("Debug information for PageCursorProviderImpl:");
-      for (PageCache cache : softCache.values())
+      Collection<PageCache> caches;
+      synchronized (cacheMap)
+      {
+         caches = cacheMap.values();
+      }
+      for (PageCache cache : caches)
       {
          System.out.println("Cache " + cache);
       }
@@ -613,6 +795,50 @@ public class PageCursorProviderImpl implements PageCursorProvider
 
    // Protected -----------------------------------------------------
 
+   /**
+    * @return a reader of the page, which must not be the page being written, or null if the page doesn't exist
+    */
+   private PageReader getPageReader(final long pageId)
+   {
+      try
+      {
+         PageReader reader;
+         synchronized (readers)
+         {
+            reader = readers.get(pageId);
+         }
+
+         if (reader == null)
+         {
+            if (!pagingStore.checkPageFileExists((int)pageId))
+            {
+               return null;
+            }
+
+            storageManager.beforePageRead();
+            try
+            {
+               reader = PageReader.open(pagingStore.createPage((int)pageId));
+            }
+            finally
+            {
+               storageManager.afterPageRead();
+            }
+
+            synchronized (readers)
+            {
+               readers.put(pageId, reader);
+            }
+         }
+
+         return reader;
+      }
+      catch (Exception e)
+      {
+         throw new RuntimeException("Couldn't complete paging due to an IO Exception on Paging - " + e.getMessage(), e);
+      }
+   }
+
    /* Protected as we may let test cases to instrument the test */
    protected PageCacheImpl createPageCache(final long pageId) throws Exception
    {
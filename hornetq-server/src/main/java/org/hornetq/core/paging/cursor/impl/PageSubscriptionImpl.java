@@ -409,6 +409,13 @@ class PageSubscriptionImpl implements PageSubscription
 
          if (serverMessage != null)
          {
+            // a quarter of the page before its end, so the next page is read while this one is consumed
+            int numberOfMessages = cache.getNumberOfMessages();
+            if (!cache.isLive() && retPos.getMessageNr() == numberOfMessages - 1 - numberOfMessages / 4)
+            {
+               cursorProvider.prefetchPageCache(retPos.getPageNr() + 1);
+            }
+
             return cursorProvider.newReference(retPos, serverMessage, this);
          }
          else
@@ -839,7 +846,18 @@ class PageSubscriptionImpl implements PageSubscription
       {
          PageCursorInfo pageInfo = consumedPages.get(pageNr);
 
-         if (create && pageInfo == null)
+         if (create && pageInfo == null && pageNr < pageStore.getCurrentWritingPage())
+         {
+            // the page is complete, its number of messages is enough
+            int numberOfMessages = cursorProvider.getNumberOfMessages(pageNr);
+            if (numberOfMessages < 0)
+            {
+               return null;
+            }
+            pageInfo = new PageCursorInfo(pageNr, numberOfMessages, null);
+            consumedPages.put(pageNr, pageInfo);
+         }
+         else if (create && pageInfo == null)
          {
             PageCache cache = cursorProvider.getPageCache(pageNr);
             if (cache == null)
@@ -15,6 +15,7 @@ package org.hornetq.core.paging.impl;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -23,6 +24,7 @@ import org.hornetq.api.core.HornetQBuffers;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.journal.SequentialFile;
 import org.hornetq.core.journal.SequentialFileFactory;
+import org.hornetq.core.journal.impl.MappedSequentialFile;
 import org.hornetq.core.paging.PagedMessage;
 import org.hornetq.core.paging.cursor.LivePageCache;
 import org.hornetq.core.persistence.StorageManager;
@@ -48,6 +50,14 @@ public class Page implements Comparable<Page>
 
    private static final byte END_BYTE = (byte)'}';
 
+   /**
+    * The extension of the index of a page, written next to the page file when the page is closed
+    */
+   public static final String INDEX_EXTENSION = "index";
+
+   // number of messages and size of the page file the index was written for
+   private static final int INDEX_HEADER_SIZE = DataConstants.SIZE_INT + DataConstants.SIZE_LONG;
+
    // Attributes ----------------------------------------------------
 
    private final int pageId;
@@ -71,6 +81,16 @@ public class Page implements Comparable<Page>
 
    private final SimpleString storeName;
 
+   /**
+    * The position of each record written or read by this instance, to write the index on close.
+    * offsets[numberOfOffsets] is the end of the last record.
+    */
+   private int[] offsets = new int[16];
+
+   private int numberOfOffsets;
+
+   private boolean written;
+
    public Page(final SimpleString storeName,
                    final StorageManager storageManager,
                    final SequentialFileFactory factory,
@@ -108,6 +128,8 @@ public class Page implements Comparable<Page>
 
       ArrayList<PagedMessage> messages = new ArrayList<PagedMessage>();
 
+      numberOfOffsets = 0;
+
       size.set((int)file.size());
       // Using direct buffer, as described on https://jira.jboss.org/browse/HORNETQ-467
       ByteBuffer directBuffer = storage.allocateDirectBuffer((int)file.size());
@@ -154,6 +176,7 @@ public class Page implements Comparable<Page>
                         HornetQServerLogger.LOGGER.trace("Reading message " + msg + " on pageId=" + this.pageId + " for address=" + storeName);
                      }
                      messages.add(msg);
+                     addOffset(position, fileBuffer.readerIndex());
                   }
                   else
                   {
@@ -162,6 +185,14 @@ public class Page implements Comparable<Page>
                   }
                }
             }
+            else if (file instanceof MappedSequentialFile && isGrowthPadding(fileBuffer, position))
+            {
+               // The zeros a memory mapped page file is grown with, left when the server stopped before the file
+               // was truncated on close. The next records go where they start. Zeros anywhere else are corruption
+               size.set(position);
+               file.position(position);
+               break;
+            }
             else
             {
                markFileAsSuspect(file.getFileName(), position, messages.size());
@@ -202,6 +233,10 @@ public class Page implements Comparable<Page>
 
       buffer.rewind();
 
+      addOffset(size.get(), size.get() + buffer.limit());
+
+      written = true;
+
       file.writeDirect(buffer, false);
 
       if (pageCache != null)
@@ -242,9 +277,178 @@ public class Page implements Comparable<Page>
          // leave it to the soft cache to decide when to release it now
          pageCache = null;
       }
+      // the index is only complete if this instance knows all the records since the start of the file
+      if (written && !suspiciousRecords && offsets[0] == 0)
+      {
+         writeIndex();
+         written = false;
+      }
       file.close();
    }
 
+   /**
+    * Reads the position of each record of the page from its index, which the page file must be open to validate.
+    *
+    * @return the position of each record followed by the end of the last one, or null if there is no index for the
+    *         current content of the page file, as when the server crashed before the page was closed
+    */
+   public int[] readIndex() throws Exception
+   {
+      SequentialFile indexFile = fileFactory.createSequentialFile(getIndexFileName(), 1);
+
+      if (!indexFile.exists())
+      {
+         return null;
+      }
+
+      indexFile.open();
+      try
+      {
+         int indexSize = (int)indexFile.size();
+
+         if (indexSize < INDEX_HEADER_SIZE)
+         {
+            return null;
+         }
+
+         ByteBuffer buffer = ByteBuffer.allocate(indexSize);
+
+         indexFile.position(0);
+
+         if (indexFile.read(buffer) != indexSize)
+         {
+            return null;
+         }
+
+         int messages = buffer.getInt(0);
+
+         if (buffer.getLong(DataConstants.SIZE_INT) != file.size() ||
+             indexSize != INDEX_HEADER_SIZE + (messages + 1) * DataConstants.SIZE_INT)
+         {
+            return null;
+         }
+
+         int[] indexOffsets = new int[messages + 1];
+
+         for (int i = 0; i <= messages; i++)
+         {
+            indexOffsets[i] = buffer.getInt(INDEX_HEADER_SIZE + i * DataConstants.SIZE_INT);
+         }
+
+         return indexOffsets;
+      }
+      finally
+      {
+         indexFile.close();
+      }
+   }
+
+   /**
+    * Finds the position of each record by reading only the record headers of the page file, which must be open.
+    * Like {@link #read(StorageManager)} this stops at the first invalid record.
+    *
+    * @return the position of each record followed by the end of the last one
+    */
+   public synchronized int[] scanOffsets() throws Exception
+   {
+      int[] scanned = new int[16];
+
+      int messages = 0;
+
+      long fileSize = file.size();
+
+      ByteBuffer header = ByteBuffer.allocate(DataConstants.SIZE_BYTE + DataConstants.SIZE_INT);
+
+      ByteBuffer end = ByteBuffer.allocate(DataConstants.SIZE_BYTE);
+
+      int position = 0;
+
+      while (position + Page.SIZE_RECORD < fileSize)
+      {
+         header.clear();
+         file.position(position);
+         file.read(header);
+
+         if (header.get(0) != Page.START_BYTE)
+         {
+            break;
+         }
+
+         int messageSize = header.getInt(DataConstants.SIZE_BYTE);
+
+         int endPosition = position + DataConstants.SIZE_BYTE + DataConstants.SIZE_INT + messageSize;
+
+         if (messageSize < 0 || endPosition >= fileSize)
+         {
+            break;
+         }
+
+         end.clear();
+         file.position(endPosition);
+         file.read(end);
+
+         if (end.get(0) != Page.END_BYTE)
+         {
+            break;
+         }
+
+         if (messages + 1 == scanned.length)
+         {
+            scanned = Arrays.copyOf(scanned, scanned.length * 2);
+         }
+
+         scanned[messages++] = position;
+
+         position = endPosition + DataConstants.SIZE_BYTE;
+      }
+
+      scanned[messages] = position;
+
+      return Arrays.copyOf(scanned, messages + 1);
+   }
+
+   /**
+    * Decodes the record between two positions of the page file, which must be open.
+    */
+   public synchronized PagedMessage readMessage(final int start, final int end, final StorageManager storage) throws Exception
+   {
+      ByteBuffer directBuffer = storage.allocateDirectBuffer(end - start);
+
+      try
+      {
+         file.position(start);
+         file.read(directBuffer);
+
+         directBuffer.rewind();
+
+         HornetQBuffer fileBuffer = HornetQBuffers.wrappedBuffer(directBuffer);
+         fileBuffer.writerIndex(end - start);
+
+         if (fileBuffer.readByte() != Page.START_BYTE)
+         {
+            throw new IllegalStateException("Invalid record at " + start + " on " + file.getFileName());
+         }
+
+         fileBuffer.readInt();
+
+         PagedMessage msg = new PagedMessageImpl();
+         msg.decode(fileBuffer);
+
+         if (fileBuffer.readByte() != Page.END_BYTE)
+         {
+            throw new IllegalStateException("Invalid record at " + start + " on " + file.getFileName());
+         }
+
+         msg.initMessage(storage);
+
+         return msg;
+      }
+      finally
+      {
+         storage.freeDirectBuffer(directBuffer);
+      }
+   }
+
    public boolean isLive()
    {
       return pageCache != null;
@@ -280,6 +484,8 @@ public class Page implements Comparable<Page>
 
       try
       {
+         fileFactory.createSequentialFile(getIndexFileName(), 1).delete();
+
          if (suspiciousRecords)
          {
             HornetQServerLogger.LOGGER.pageInvalid(file.getFileName(), file.getFileName());
@@ -361,6 +567,71 @@ public class Page implements Comparable<Page>
       return true;
    }
 
+   private void addOffset(final int start, final int end)
+   {
+      if (numberOfOffsets + 1 == offsets.length)
+      {
+         offsets = Arrays.copyOf(offsets, offsets.length * 2);
+      }
+      offsets[numberOfOffsets++] = start;
+      offsets[numberOfOffsets] = end;
+   }
+
+   private void writeIndex()
+   {
+      SequentialFile indexFile = fileFactory.createSequentialFile(getIndexFileName(), 1);
+
+      try
+      {
+         ByteBuffer buffer = fileFactory.newBuffer(INDEX_HEADER_SIZE + (numberOfOffsets + 1) * DataConstants.SIZE_INT);
+
+         HornetQBuffer wrap = HornetQBuffers.wrappedBuffer(buffer);
+         wrap.clear();
+
+         wrap.writeInt(numberOfOffsets);
+         wrap.writeLong(size.get());
+         for (int i = 0; i <= numberOfOffsets; i++)
+         {
+            wrap.writeInt(offsets[i]);
+         }
+
+         buffer.rewind();
+
+         // any previous index was written for less messages, so it is entirely overwritten
+         indexFile.open();
+         indexFile.position(0);
+         indexFile.writeDirect(buffer, false);
+         indexFile.close();
+      }
+      catch (Exception e)
+      {
+         // the page will be scanned when it's read without its index
+         HornetQServerLogger.LOGGER.warn("Couldn't write the index of " + this, e);
+      }
+   }
+
+   private String getIndexFileName()
+   {
+      String fileName = file.getFileName();
+
+      return fileName.substring(0, fileName.lastIndexOf('.') + 1) + Page.INDEX_EXTENSION;
+   }
+
+   /**
+    * @return true if there are only zeros from position to the end of the buffer
+    */
+   private static boolean isGrowthPadding(final HornetQBuffer buffer, final int position)
+   {
+      for (int i = position; i < buffer.capacity(); i++)
+      {
+         if (buffer.getByte(i) != 0)
+         {
+            return false;
+         }
+      }
+      return true;
+   }
+
    /**
     * @param position
     * @param msgNumber
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.paging.impl;
+
+import org.hornetq.core.paging.PagedMessage;
+import org.hornetq.core.persistence.StorageManager;
+
+/**
+ * Decodes the messages of a page one at a time, by message number, instead of reading the whole page as
+ * {@link Page#read(StorageManager)} does.
+ *
+ * The position of each record comes from the index written when the page was closed, or from a scan of the record
+ * headers when the page has no valid index, as for a page written before a crash. The page file is only open while a
+ * message is read, so readers can be kept around for pages that aren't in the page cache.
+ *
+ * Only for pages that are not being written anymore.
+ */
+public final class PageReader
+{
+   private final Page page;
+
+   private final int[] offsets;
+
+   private PageReader(final Page page, final int[] offsets)
+   {
+      this.page = page;
+      this.offsets = offsets;
+   }
+
+   public static PageReader open(final Page page) throws Exception
+   {
+      page.open();
+      try
+      {
+         int[] offsets = page.readIndex();
+
+         if (offsets == null)
+         {
+            offsets = page.scanOffsets();
+         }
+
+         return new PageReader(page, offsets);
+      }
+      finally
+      {
+         page.getFile().close();
+      }
+   }
+
+   public long getPageId()
+   {
+      return page.getPageId();
+   }
+
+   public int getNumberOfMessages()
+   {
+      return offsets.length - 1;
+   }
+
+   /**
+    * @return the message, or null if there is no such message on the page
+    */
+   public synchronized PagedMessage getMessage(final int messageNumber, final StorageManager storage) throws Exception
+   {
+      if (messageNumber < 0 || messageNumber >= getNumberOfMessages())
+      {
+         return null;
+      }
+
+      page.open();
+      try
+      {
+         return page.readMessage(offsets[messageNumber], offsets[messageNumber + 1], storage);
+      }
+      finally
+      {
+         page.getFile().close();
+      }
+   }
+
+   @Override
+   public String toString()
+   {
+      return "PageReader::page=" + page.getPageId() + " numberOfMessages = " + getNumberOfMessages();
+   }
+}
@@ -174,7 +174,8 @@ public class PagingStoreImpl implements PagingStore
       this.cursorProvider = new PageCursorProviderImpl(this,
          this.storageManager,
          executor,
-         addressSettings.getPageCacheMaxSize());
+         addressSettings.getPageCacheMaxSize(),
+         addressSettings.getPageCacheMaxSize() * addressSettings.getPageSizeBytes());
 
    }
 
@@ -192,6 +193,8 @@ public class PagingStoreImpl implements PagingStore
       if (cursorProvider != null)
       {
          cursorProvider.setCacheMaxSize(addressSettings.getPageCacheMaxSize());
+
+         cursorProvider.setCacheMaxBytes(addressSettings.getPageCacheMaxSize() * addressSettings.getPageSizeBytes());
       }
    }
 
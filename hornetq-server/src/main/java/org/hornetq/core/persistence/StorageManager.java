@@ -147,6 +147,12 @@ public interface StorageManager extends HornetQComponent
 
    void storeReference(long queueID, long messageID, boolean last) throws Exception;
 
+   /**
+    * Stores the references of a message to several queues in a single record. Acknowledgements are still stored per
+    * queue with {@link #storeAcknowledge(long, long)}.
+    */
+   void storeReferences(long[] queueIDs, long messageID, boolean last) throws Exception;
+
    void deleteMessage(long messageID) throws Exception;
 
    void storeAcknowledge(long queueID, long messageID) throws Exception;
@@ -165,6 +171,8 @@ public interface StorageManager extends HornetQComponent
 
    void storeReferenceTransactional(long txID, long queueID, long messageID) throws Exception;
 
+   void storeReferencesTransactional(long txID, long[] queueIDs, long messageID) throws Exception;
+
    void storeAcknowledgeTransactional(long txID, long queueID, long messageID) throws Exception;
 
    void storeCursorAcknowledgeTransactional(long txID, long queueID, PagePosition position) throws Exception;
@@ -288,6 +296,31 @@ public interface StorageManager extends HornetQComponent
     */
    Journal getMessageJournal();
 
+   /**
+    * @return the number of times the message journal flushed its buffer to disk
+    */
+   long getMessageJournalFlushCount();
+
+   /**
+    * @return the number of bytes the message journal flushed from its buffer to disk
+    */
+   long getMessageJournalBytesFlushed();
+
+   /**
+    * @return the number of times the message journal was compacted
+    */
+   long getMessageJournalCompactCount();
+
+   /**
+    * @return the number of bytes of message journal files released by compacting
+    */
+   long getMessageJournalCompactReclaimedBytes();
+
+   /**
+    * @return the time (in milliseconds) compacting blocked appends to the message journal
+    */
+   long getMessageJournalCompactPauseTime();
+
    /**
     * @see JournalStorageManager#startReplication(ReplicationManager, PagingManager, String,
     *      boolean)
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package org.hornetq.core.persistence.impl.journal;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.hornetq.core.journal.IOCompletion;
+import org.hornetq.core.journal.Journal;
+import org.hornetq.core.persistence.impl.journal.JournalStorageManager.DeliveryCountUpdateEncoding;
+import org.hornetq.core.server.MessageReference;
+
+/**
+ * The references whose delivery count changed since the last flush, for a {@link JournalStorageManager} with a
+ * delivery count flush interval.
+ *
+ * A reference redelivered several times between two flushes is stored once, with its latest count. The references of
+ * a message are dropped when the reference is acknowledged or the message deleted, and as the flush appends the
+ * records of a message while holding its lock, no update is appended after the acknowledgement or the delete of the
+ * message record.
+ */
+final class DeliveryCountTracker
+{
+   private final ConcurrentMap<Long, PendingCounts> pending = new ConcurrentHashMap<Long, PendingCounts>();
+
+   void add(final MessageReference ref)
+   {
+      long messageID = ref.getMessage().getMessageID();
+
+      while (true)
+      {
+         PendingCounts counts = pending.get(messageID);
+
+         if (counts == null)
+         {
+            counts = new PendingCounts();
+
+            PendingCounts existing = pending.putIfAbsent(messageID, counts);
+
+            if (existing != null)
+            {
+               counts = existing;
+            }
+         }
+
+         synchronized (counts)
+         {
+            // otherwise it was flushed or deleted meanwhile, and a new one is needed
+            if (!counts.removed)
+            {
+               counts.refs.put(ref.getQueue().getID(), ref);
+               return;
+            }
+         }
+      }
+   }
+
+   /**
+    * To be called before the acknowledgement of the reference is stored.
+    */
+   void remove(final long messageID, final long queueID)
+   {
+      PendingCounts counts = pending.get(messageID);
+
+      if (counts != null)
+      {
+         synchronized (counts)
+         {
+            counts.refs.remove(queueID);
+         }
+      }
+   }
+
+   /**
+    * To be called before the message record is deleted.
+    */
+   void remove(final long messageID)
+   {
+      PendingCounts counts = pending.remove(messageID);
+
+      if (counts != null)
+      {
+         synchronized (counts)
+         {
+            counts.removed = true;
+            counts.refs.clear();
+         }
+      }
+   }
+
+   int size()
+   {
+      return pending.size();
+   }
+
+   /**
+    * Appends an update record for each pending reference whose delivery count isn't stored yet.
+    *
+    * @return the number of records appended
+    */
+   int flush(final Journal journal, final boolean sync, final IOCompletion context) throws Exception
+   {
+      int stored = 0;
+
+      for (Map.Entry<Long, PendingCounts> entry : pending.entrySet())
+      {
+         long messageID = entry.getKey();
+
+         PendingCounts counts = entry.getValue();
+
+         synchronized (counts)
+         {
+            if (counts.removed)
+            {
+               continue;
+            }
+
+            counts.removed = true;
+
+            pending.remove(messageID, counts);
+
+            for (MessageReference ref : counts.refs.values())
+            {
+               int deliveryCount = ref.getDeliveryCount();
+
+               if (deliveryCount != ref.getPersistedCount())
+               {
+                  ref.setPersistedCount(deliveryCount);
+
+                  journal.appendUpdateRecord(messageID,
+                                             JournalRecordIds.UPDATE_DELIVERY_COUNT,
+                                             new DeliveryCountUpdateEncoding(ref.getQueue().getID(), deliveryCount),
+                                             sync,
+                                             context);
+                  stored++;
+               }
+            }
+         }
+      }
+
+      return stored;
+   }
+
+   private static final class PendingCounts
+   {
+      // by queue ID
+      final Map<Long, MessageReference> refs = new HashMap<Long, MessageReference>(2);
+
+      boolean removed;
+   }
+}
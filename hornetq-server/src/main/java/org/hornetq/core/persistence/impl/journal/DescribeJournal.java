@@ -7,9 +7,11 @@ import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.ADD_LAR
 import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.ADD_LARGE_MESSAGE_PENDING;
 import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.ADD_MESSAGE;
 import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.ADD_REF;
+import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.ADD_REFS;
 import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.DUPLICATE_ID;
 import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.HEURISTIC_COMPLETION;
 import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.ID_COUNTER_RECORD;
+import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.LARGE_MESSAGE_BODY;
 import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.PAGE_CURSOR_COMPLETE;
 import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.PAGE_CURSOR_COUNTER_INC;
 import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.PAGE_CURSOR_COUNTER_VALUE;
@@ -50,12 +52,14 @@ import org.hornetq.core.persistence.impl.journal.JournalStorageManager.CursorAck
 import org.hornetq.core.persistence.impl.journal.JournalStorageManager.DeliveryCountUpdateEncoding;
 import org.hornetq.core.persistence.impl.journal.JournalStorageManager.DuplicateIDEncoding;
 import org.hornetq.core.persistence.impl.journal.JournalStorageManager.HeuristicCompletionEncoding;
+import org.hornetq.core.persistence.impl.journal.JournalStorageManager.LargeMessageBodyEncoding;
 import org.hornetq.core.persistence.impl.journal.JournalStorageManager.LargeMessageEncoding;
 import org.hornetq.core.persistence.impl.journal.JournalStorageManager.PageCountRecord;
 import org.hornetq.core.persistence.impl.journal.JournalStorageManager.PageCountRecordInc;
 import org.hornetq.core.persistence.impl.journal.JournalStorageManager.PageUpdateTXEncoding;
 import org.hornetq.core.persistence.impl.journal.JournalStorageManager.PendingLargeMessageEncoding;
 import org.hornetq.core.persistence.impl.journal.JournalStorageManager.RefEncoding;
+import org.hornetq.core.persistence.impl.journal.JournalStorageManager.RefsEncoding;
 import org.hornetq.core.persistence.impl.journal.JournalStorageManager.ScheduledDeliveryEncoding;
 import org.hornetq.core.server.LargeServerMessage;
 import org.hornetq.core.server.ServerMessage;
@@ -230,6 +234,13 @@ public final class DescribeJournal
                messageRefCounts.put(ref.refEncoding.queueID, count + 1);
             }
          }
+         else if (info.getUserRecordType() == JournalRecordIds.ADD_REFS)
+         {
+            for (long queueID : ((ReferencesDescribe)o).refsEncoding.queueIDs)
+            {
+               incrementCount(messageRefCounts, queueID);
+            }
+         }
          else if (info.getUserRecordType() == JournalRecordIds.ACKNOWLEDGE_REF)
          {
             AckDescribe ref = (AckDescribe)o;
@@ -274,6 +285,13 @@ public final class DescribeJournal
                   preparedMessageRefCount.put(ref.refEncoding.queueID, count + 1);
                }
             }
+            else if (info.getUserRecordType() == JournalRecordIds.ADD_REFS)
+            {
+               for (long queueID : ((ReferencesDescribe)o).refsEncoding.queueIDs)
+               {
+                  incrementCount(preparedMessageRefCount, queueID);
+               }
+            }
          }
 
          for (RecordInfo info : tx.recordsToDelete)
@@ -310,6 +328,12 @@ public final class DescribeJournal
       journal.stop();
    }
 
+   private static void incrementCount(final Map<Long, Integer> counts, final long queueID)
+   {
+      Integer count = counts.get(queueID);
+      counts.put(queueID, count == null ? 1 : count + 1);
+   }
+
    private static String describeRecord(RecordInfo info)
    {
       return "recordID=" + info.id + ";userRecordType=" + info.userRecordType + ";isUpdate=" + info.isUpdate + ";" +
@@ -369,6 +393,13 @@ public final class DescribeJournal
 
             return new MessageDescribe(largeMessage);
          }
+         case LARGE_MESSAGE_BODY:
+         {
+            LargeMessageBodyEncoding bodyEncoding = new LargeMessageBodyEncoding();
+            bodyEncoding.decode(buffer);
+
+            return bodyEncoding;
+         }
          case ADD_MESSAGE:
          {
             ServerMessage message = new ServerMessageImpl(rec, 50);
@@ -384,6 +415,13 @@ public final class DescribeJournal
             return new ReferenceDescribe(encoding);
          }
 
+         case ADD_REFS:
+         {
+            final RefsEncoding encoding = new RefsEncoding();
+            encoding.decode(buffer);
+            return new ReferencesDescribe(encoding);
+         }
+
          case ACKNOWLEDGE_REF:
          {
             final RefEncoding encoding = new RefEncoding();
@@ -556,6 +594,22 @@ public final class DescribeJournal
 
    }
 
+   public static final class ReferencesDescribe
+   {
+      public RefsEncoding refsEncoding;
+
+      public ReferencesDescribe(RefsEncoding refsEncoding)
+      {
+         this.refsEncoding = refsEncoding;
+      }
+
+      @Override
+      public String toString()
+      {
+         return "AddRefs;" + refsEncoding;
+      }
+   }
+
    public static final class ReferenceDescribe
    {
       public RefEncoding refEncoding;
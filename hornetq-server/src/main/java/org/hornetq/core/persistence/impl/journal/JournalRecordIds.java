@@ -66,4 +66,15 @@ public final class JournalRecordIds
    public static final byte PAGE_CURSOR_COUNTER_INC = 41;
 
    public static final byte PAGE_CURSOR_COMPLETE = 42;
+
+   /**
+    * The references of a message to all the durable queues of an address it was routed to, in place of an
+    * {@link #ADD_REF} record per queue.
+    */
+   public static final byte ADD_REFS = 43;
+
+   /**
+    * The messages sharing the body file of a large message, as a copy of a large message uses the body of the original.
+    */
+   public static final byte LARGE_MESSAGE_BODY = 44;
 }
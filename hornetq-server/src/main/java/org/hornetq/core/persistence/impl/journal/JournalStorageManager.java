@@ -43,7 +43,9 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.transaction.xa.Xid;
@@ -70,6 +72,7 @@ import org.hornetq.core.journal.TransactionFailureCallback;
 import org.hornetq.core.journal.impl.AIOSequentialFileFactory;
 import org.hornetq.core.journal.impl.JournalFile;
 import org.hornetq.core.journal.impl.JournalImpl;
+import org.hornetq.core.journal.impl.MappedSequentialFileFactory;
 import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
 import org.hornetq.core.message.impl.MessageInternal;
 import org.hornetq.core.paging.PageTransactionInfo;
@@ -80,6 +83,7 @@ import org.hornetq.core.paging.cursor.PagePosition;
 import org.hornetq.core.paging.cursor.PageSubscription;
 import org.hornetq.core.paging.cursor.PagedReferenceImpl;
 import org.hornetq.core.paging.cursor.impl.PagePositionImpl;
+import org.hornetq.core.paging.impl.Page;
 import org.hornetq.core.paging.impl.PageTransactionInfoImpl;
 import org.hornetq.core.paging.impl.PagingStoreImpl;
 import org.hornetq.core.persistence.GroupingInfo;
@@ -171,7 +175,7 @@ public class JournalStorageManager implements StorageManager
 
    private Journal bindingsJournal;
 
-   private final Journal originalMessageJournal;
+   private final JournalImpl originalMessageJournal;
 
    private final Journal originalBindingsJournal;
 
@@ -186,6 +190,13 @@ public class JournalStorageManager implements StorageManager
 
    private ExecutorService singleThreadExecutor;
 
+   private final long deliveryCountFlushInterval;
+
+   /** The redelivered references waiting for the next flush, null unless there is a delivery count flush interval */
+   private final DeliveryCountTracker deliveryCountTracker;
+
+   private ScheduledExecutorService deliveryCountFlushExecutor;
+
    private final boolean syncTransactional;
 
    private final boolean syncNonTransactional;
@@ -202,7 +213,9 @@ public class JournalStorageManager implements StorageManager
 
    private final String largeMessagesDirectory;
 
-   private boolean journalLoaded = false;
+   private final LargeMessageBodies largeMessageBodies = new LargeMessageBodies();
+
+   private volatile boolean journalLoaded = false;
 
    // Persisted core configuration
    private final Map<SimpleString, PersistedRoles> mapPersistedRoles =
@@ -223,7 +236,8 @@ public class JournalStorageManager implements StorageManager
 
       executor = executorFactory.getExecutor();
 
-      if (config.getJournalType() != JournalType.NIO && config.getJournalType() != JournalType.ASYNCIO)
+      if (config.getJournalType() != JournalType.NIO && config.getJournalType() != JournalType.ASYNCIO &&
+               config.getJournalType() != JournalType.MAPPED)
       {
          throw HornetQMessageBundle.BUNDLE.invalidJournal();
       }
@@ -240,7 +254,7 @@ public class JournalStorageManager implements StorageManager
 
       SequentialFileFactory bindingsFF = new NIOSequentialFileFactory(bindingsDir, criticalErrorListener);
 
-      Journal localBindings = new JournalImpl(1024 * 1024,
+      JournalImpl localBindings = new JournalImpl(1024 * 1024,
          2,
          config.getJournalCompactMinFiles(),
          config.getJournalCompactPercentage(),
@@ -249,6 +263,8 @@ public class JournalStorageManager implements StorageManager
          "bindings",
          1);
 
+      localBindings.setLoadParallelism(config.getJournalLoadParallelism());
+
       bindingsJournal = localBindings;
       originalBindingsJournal = localBindings;
 
@@ -271,6 +287,7 @@ public class JournalStorageManager implements StorageManager
             config.getJournalBufferSize_AIO(),
             config.getJournalBufferTimeout_AIO(),
             config.isLogJournalWriteRate(),
+            config.isJournalBufferTimeoutAdaptive(),
             criticalErrorListener);
       }
       else if (config.getJournalType() == JournalType.NIO)
@@ -281,6 +298,18 @@ public class JournalStorageManager implements StorageManager
             config.getJournalBufferSize_NIO(),
             config.getJournalBufferTimeout_NIO(),
             config.isLogJournalWriteRate(),
+            config.isJournalBufferTimeoutAdaptive(),
+            criticalErrorListener);
+      }
+      else if (config.getJournalType() == JournalType.MAPPED)
+      {
+         HornetQServerLogger.LOGGER.journalUseMapped();
+         journalFF = new MappedSequentialFileFactory(journalDir,
+            true,
+            config.getJournalBufferSize_NIO(),
+            config.getJournalBufferTimeout_NIO(),
+            config.isLogJournalWriteRate(),
+            config.isJournalBufferTimeoutAdaptive(),
             criticalErrorListener);
       }
       else
@@ -290,7 +319,7 @@ public class JournalStorageManager implements StorageManager
 
       idGenerator = new BatchingIDGenerator(0, JournalStorageManager.CHECKPOINT_BATCH_SIZE, this);
 
-      Journal localMessage = new JournalImpl(config.getJournalFileSize(),
+      JournalImpl localMessage = new JournalImpl(config.getJournalFileSize(),
          config.getJournalMinFiles(),
          config.getJournalCompactMinFiles(),
          config.getJournalCompactPercentage(),
@@ -300,6 +329,8 @@ public class JournalStorageManager implements StorageManager
          config.getJournalType() == JournalType.ASYNCIO ? config.getJournalMaxIO_AIO()
             : config.getJournalMaxIO_NIO());
 
+      localMessage.setLoadParallelism(config.getJournalLoadParallelism());
+
       messageJournal = localMessage;
       originalMessageJournal = localMessage;
 
@@ -309,6 +340,10 @@ public class JournalStorageManager implements StorageManager
 
       perfBlastPages = config.getJournalPerfBlastPages();
 
+      deliveryCountFlushInterval = config.getDeliveryCountFlushInterval();
+
+      deliveryCountTracker = deliveryCountFlushInterval > 0 ? new DeliveryCountTracker() : null;
+
       if (config.getPageMaxConcurrentIO() != 1)
       {
          pageMaxConcurrentIO = new Semaphore(config.getPageMaxConcurrentIO());
@@ -887,6 +922,20 @@ public class JournalStorageManager implements StorageManager
       }
    }
 
+   public void storeReferences(final long[] queueIDs, final long messageID, final boolean last) throws Exception
+   {
+      readLock();
+      try
+      {
+         messageJournal.appendUpdateRecord(messageID, JournalRecordIds.ADD_REFS, new RefsEncoding(queueIDs), last &&
+            syncNonTransactional, getContext(last && syncNonTransactional));
+      }
+      finally
+      {
+         readUnLock();
+      }
+   }
+
    @Override
    public void readLock()
    {
@@ -904,6 +953,10 @@ public class JournalStorageManager implements StorageManager
       readLock();
       try
       {
+         if (deliveryCountTracker != null)
+         {
+            deliveryCountTracker.remove(messageID, queueID);
+         }
          messageJournal.appendUpdateRecord(messageID, JournalRecordIds.ACKNOWLEDGE_REF, new RefEncoding(queueID),
             syncNonTransactional, getContext(syncNonTransactional));
       }
@@ -941,6 +994,10 @@ public class JournalStorageManager implements StorageManager
          // If these deletes are synchronized, we would build up messages on the Executor
          // increasing chances of losing deletes.
          // The StorageManager should verify messages without references
+         if (deliveryCountTracker != null)
+         {
+            deliveryCountTracker.remove(messageID);
+         }
          messageJournal.appendDeleteRecord(messageID, false, getContext(false));
       }
       finally
@@ -1094,12 +1151,31 @@ public class JournalStorageManager implements StorageManager
       }
    }
 
+   public void storeReferencesTransactional(final long txID, final long[] queueIDs, final long messageID)
+      throws Exception
+   {
+      readLock();
+      try
+      {
+         messageJournal.appendUpdateRecordTransactional(txID, messageID, JournalRecordIds.ADD_REFS,
+            new RefsEncoding(queueIDs));
+      }
+      finally
+      {
+         readUnLock();
+      }
+   }
+
    public void storeAcknowledgeTransactional(final long txID, final long queueID, final long messageID)
       throws Exception
    {
       readLock();
       try
       {
+         if (deliveryCountTracker != null)
+         {
+            deliveryCountTracker.remove(messageID, queueID);
+         }
          messageJournal.appendUpdateRecordTransactional(txID, messageID, JournalRecordIds.ACKNOWLEDGE_REF,
             new RefEncoding(queueID));
       }
@@ -1353,6 +1429,13 @@ public class JournalStorageManager implements StorageManager
          return;
       }
 
+      if (deliveryCountTracker != null)
+      {
+         // stored with the next flush
+         deliveryCountTracker.add(ref);
+         return;
+      }
+
       ref.setPersistedCount(ref.getDeliveryCount());
       DeliveryCountUpdateEncoding updateInfo =
          new DeliveryCountUpdateEncoding(ref.getQueue().getID(), ref.getDeliveryCount());
@@ -1371,6 +1454,32 @@ public class JournalStorageManager implements StorageManager
       }
    }
 
+   /**
+    * Stores the delivery counts of the references redelivered since the last flush, when there is a delivery count
+    * flush interval.
+    */
+   public void flushDeliveryCounts()
+   {
+      if (deliveryCountTracker == null)
+      {
+         return;
+      }
+
+      readLock();
+      try
+      {
+         deliveryCountTracker.flush(messageJournal, syncNonTransactional, getContext(syncNonTransactional));
+      }
+      catch (Exception e)
+      {
+         HornetQServerLogger.LOGGER.errorFlushingDeliveryCounts(e);
+      }
+      finally
+      {
+         readUnLock();
+      }
+   }
+
    public void storeAddressSetting(PersistedAddressSetting addressSetting) throws Exception
    {
       deleteAddressSetting(addressSetting.getAddressMatch());
@@ -1487,9 +1596,18 @@ public class JournalStorageManager implements StorageManager
       try
       {
 
+         LargeMessageTXFailureCallback failureCallback = new LargeMessageTXFailureCallback(messages);
+
          JournalLoadInformation info = messageJournal.load(records,
             preparedTransactions,
-            new LargeMessageTXFailureCallback(messages));
+            failureCallback);
+
+         // the shared bodies are needed before any large message is parsed
+         loadLargeMessageBodies(records);
+
+         Set<Long> goneBodyUsers = getGoneLargeMessageBodyUsers(records, preparedTransactions);
+
+         failureCallback.deleteLargeMessages();
 
          ArrayList<LargeServerMessage> largeMessages = new ArrayList<LargeServerMessage>();
 
@@ -1531,6 +1649,11 @@ public class JournalStorageManager implements StorageManager
                   }
                   break;
                }
+               case JournalRecordIds.LARGE_MESSAGE_BODY:
+               {
+                  // already loaded
+                  break;
+               }
                case JournalRecordIds.ADD_LARGE_MESSAGE:
                {
                   LargeServerMessage largeMessage = parseLargeMessage(messages, buff);
@@ -1553,30 +1676,24 @@ public class JournalStorageManager implements StorageManager
                }
                case JournalRecordIds.ADD_REF:
                {
-                  long messageID = record.id;
-
                   RefEncoding encoding = new RefEncoding();
 
                   encoding.decode(buff);
 
-                  Map<Long, AddMessageRecord> queueMessages = queueMap.get(encoding.queueID);
-
-                  if (queueMessages == null)
-                  {
-                     queueMessages = new LinkedHashMap<Long, AddMessageRecord>();
+                  loadReference(queueMap, messages, record.id, encoding.queueID);
 
-                     queueMap.put(encoding.queueID, queueMessages);
-                  }
+                  break;
+               }
+               case JournalRecordIds.ADD_REFS:
+               {
+                  RefsEncoding encoding = new RefsEncoding();
 
-                  ServerMessage message = messages.get(messageID);
+                  encoding.decode(buff);
 
-                  if (message == null)
+                  // each queue gets its reference at the position of the record, as with one ADD_REF per queue
+                  for (long queueID : encoding.queueIDs)
                   {
-                     HornetQServerLogger.LOGGER.cannotFindMessage(record.id);
-                  }
-                  else
-                  {
-                     queueMessages.put(messageID, new AddMessageRecord(message));
+                     loadReference(queueMap, messages, record.id, queueID);
                   }
 
                   break;
@@ -1898,6 +2015,8 @@ public class JournalStorageManager implements StorageManager
             }
          }
 
+         releaseGoneLargeMessageBodyUsers(goneBodyUsers, pagingManager);
+
          for (ServerMessage msg : messages.values())
          {
             if (msg.getRefCount() == 0)
@@ -1945,6 +2064,61 @@ public class JournalStorageManager implements StorageManager
       }
    }
 
+   /**
+    * Adds the reference of a message to a queue, in the order the references were loaded
+    */
+   private static void loadReference(final Map<Long, Map<Long, AddMessageRecord>> queueMap,
+                                     final Map<Long, ServerMessage> messages,
+                                     final long messageID,
+                                     final long queueID)
+   {
+      Map<Long, AddMessageRecord> queueMessages = queueMap.get(queueID);
+
+      if (queueMessages == null)
+      {
+         queueMessages = new LinkedHashMap<Long, AddMessageRecord>();
+
+         queueMap.put(queueID, queueMessages);
+      }
+
+      ServerMessage message = messages.get(messageID);
+
+      if (message == null)
+      {
+         HornetQServerLogger.LOGGER.cannotFindMessage(messageID);
+      }
+      else
+      {
+         queueMessages.put(messageID, new AddMessageRecord(message));
+      }
+   }
+
+   private static void loadPreparedReference(final PostOffice postOffice,
+                                             final Map<Long, Queue> queues,
+                                             final Transaction tx,
+                                             final Map<Long, ServerMessage> messages,
+                                             final long messageID,
+                                             final long queueID) throws Exception
+   {
+      Queue queue = queues.get(queueID);
+
+      if (queue == null)
+      {
+         HornetQServerLogger.LOGGER.journalMessageInPreparedTX(queueID);
+      }
+      else
+      {
+         ServerMessage message = messages.get(messageID);
+
+         if (message == null)
+         {
+            throw new IllegalStateException("Cannot find message with id " + messageID);
+         }
+
+         postOffice.reroute(message, queue, tx);
+      }
+   }
+
    /**
     * @param queueID
     * @param pageSubscriptions
@@ -2210,6 +2384,25 @@ public class JournalStorageManager implements StorageManager
          true,
          getThisClassLoader()));
 
+      if (deliveryCountTracker != null)
+      {
+         deliveryCountFlushExecutor =
+            Executors.newSingleThreadScheduledExecutor(new HornetQThreadFactory("HornetQ-DeliveryCount-Flush",
+               true,
+               getThisClassLoader()));
+
+         deliveryCountFlushExecutor.scheduleWithFixedDelay(new Runnable()
+         {
+            public void run()
+            {
+               if (journalLoaded)
+               {
+                  flushDeliveryCounts();
+               }
+            }
+         }, deliveryCountFlushInterval, deliveryCountFlushInterval, TimeUnit.MILLISECONDS);
+      }
+
       bindingsJournal.start();
 
       messageJournal.start();
@@ -2239,6 +2432,18 @@ public class JournalStorageManager implements StorageManager
          return;
       }
 
+      if (deliveryCountFlushExecutor != null)
+      {
+         deliveryCountFlushExecutor.shutdown();
+         deliveryCountFlushExecutor.awaitTermination(10, TimeUnit.SECONDS);
+         deliveryCountFlushExecutor = null;
+
+         if (!ioCriticalError && journalLoaded)
+         {
+            flushDeliveryCounts();
+         }
+      }
+
       if (!ioCriticalError && journalLoaded && idGenerator != null)
       {
          // Must call close to make sure last id is persisted
@@ -2322,16 +2527,49 @@ public class JournalStorageManager implements StorageManager
       return bindingsJournal;
    }
 
+   public long getMessageJournalFlushCount()
+   {
+      return journalFF.getFlushCount();
+   }
+
+   public long getMessageJournalBytesFlushed()
+   {
+      return journalFF.getBytesFlushed();
+   }
+
+   public long getMessageJournalCompactCount()
+   {
+      return originalMessageJournal.getCompactCount();
+   }
+
+   public long getMessageJournalCompactReclaimedBytes()
+   {
+      return originalMessageJournal.getCompactReclaimedBytes();
+   }
+
+   public long getMessageJournalCompactPauseTime()
+   {
+      return originalMessageJournal.getCompactPauseTime();
+   }
+
    // Package protected ---------------------------------------------
 
    // This should be accessed from this package only
-   void deleteLargeMessageFile(final LargeServerMessage largeServerMessageImpl) throws HornetQException
+   void deleteLargeMessageFile(final LargeServerMessage largeServerMessageImpl) throws Exception
    {
       final SequentialFile file = largeServerMessageImpl.getFile();
       if (file == null)
       {
          return;
       }
+
+      final long bodyID = releaseLargeMessageBody(largeServerMessageImpl);
+      if (bodyID < 0)
+      {
+         // other messages still use the body
+         return;
+      }
+
       Runnable deleteAction = new Runnable()
       {
          public void run()
@@ -2343,7 +2581,7 @@ public class JournalStorageManager implements StorageManager
                {
                   if (replicator != null)
                   {
-                     replicator.largeMessageDelete(largeServerMessageImpl.getMessageID());
+                     replicator.largeMessageDelete(bodyID);
                   }
                   file.delete();
                }
@@ -2370,6 +2608,41 @@ public class JournalStorageManager implements StorageManager
       }
    }
 
+   /**
+    * Makes the copy of a large message use the body file of the message, instead of a copy of the file.
+    */
+   void shareLargeMessageBody(final LargeServerMessage message, final long copyID) throws Exception
+   {
+      readLock();
+      try
+      {
+         synchronized (largeMessageBodies)
+         {
+            LargeMessageBodies.Body body = largeMessageBodies.share(message.getMessageID(), copyID);
+
+            if (message.isDurable())
+            {
+               storeLargeMessageBody(body);
+            }
+         }
+      }
+      finally
+      {
+         readUnLock();
+      }
+   }
+
+   /**
+    * @return the ID of the message the body file of this message was written for
+    */
+   long getLargeMessageBodyID(final long messageID)
+   {
+      synchronized (largeMessageBodies)
+      {
+         return largeMessageBodies.getBodyID(messageID);
+      }
+   }
+
    SequentialFile createFileForLargeMessage(final long messageID, final boolean durable)
    {
       if (durable)
@@ -2391,6 +2664,267 @@ public class JournalStorageManager implements StorageManager
 
    // Private ----------------------------------------------------------------------------------
 
+   void loadLargeMessageBodies(final List<RecordInfo> records)
+   {
+      synchronized (largeMessageBodies)
+      {
+         largeMessageBodies.clear();
+
+         for (RecordInfo record : records)
+         {
+            if (record.getUserRecordType() == JournalRecordIds.LARGE_MESSAGE_BODY)
+            {
+               LargeMessageBodyEncoding encoding = new LargeMessageBodyEncoding();
+
+               encoding.decode(HornetQBuffers.wrappedBuffer(record.data));
+
+               largeMessageBodies.load(record.id, encoding);
+            }
+         }
+      }
+   }
+
+   /**
+    * The records of the shared bodies aren't synced, so after a crash a body may still list messages that were deleted.
+    *
+    * @return the messages using a shared body that have no message or pending large message record, they may still be
+    *         paged
+    */
+   private Set<Long> getGoneLargeMessageBodyUsers(final List<RecordInfo> records,
+                                                  final List<PreparedTransactionInfo> preparedTransactions)
+   {
+      Set<Long> gone;
+
+      synchronized (largeMessageBodies)
+      {
+         gone = largeMessageBodies.getUsers();
+      }
+
+      if (!gone.isEmpty())
+      {
+         removeStoredMessages(gone, records);
+
+         for (PreparedTransactionInfo preparedTransaction : preparedTransactions)
+         {
+            removeStoredMessages(gone, preparedTransaction.records);
+         }
+      }
+
+      return gone;
+   }
+
+   /**
+    * Releases the messages using a shared body that are gone, and deletes the bodies nobody uses anymore with their
+    * file.
+    */
+   private void releaseGoneLargeMessageBodyUsers(final Set<Long> gone, final PagingManager pagingManager) throws Exception
+   {
+      if (gone.isEmpty())
+      {
+         return;
+      }
+
+      if (pagingManager != null)
+      {
+         try
+         {
+            removePagedMessages(gone, pagingManager);
+         }
+         catch (Exception e)
+         {
+            // without knowing which messages are paged no body can be released
+            HornetQServerLogger.LOGGER.debug("Could not read the pages to release the shared large message bodies", e);
+
+            return;
+         }
+      }
+
+      synchronized (largeMessageBodies)
+      {
+         for (Long messageID : gone)
+         {
+            LargeMessageBodies.Body body = largeMessageBodies.getBody(messageID);
+
+            if (body == null || !largeMessageBodies.release(body, messageID))
+            {
+               continue;
+            }
+
+            HornetQServerLogger.LOGGER.largeMessageBodyUserGone(messageID, body.bodyID);
+
+            storeLargeMessageBody(body);
+
+            if (body.users.isEmpty())
+            {
+               SequentialFile file = createFileForLargeMessage(body.bodyID, true);
+
+               if (file.exists())
+               {
+                  file.delete();
+               }
+            }
+         }
+      }
+   }
+
+   /**
+    * Removes the messages that have a message or a pending large message record.
+    */
+   private static void removeStoredMessages(final Set<Long> messageIDs, final List<RecordInfo> records)
+   {
+      for (RecordInfo record : records)
+      {
+         switch (record.getUserRecordType())
+         {
+            case JournalRecordIds.ADD_LARGE_MESSAGE:
+            case JournalRecordIds.ADD_MESSAGE:
+            {
+               messageIDs.remove(record.id);
+               break;
+            }
+            case JournalRecordIds.ADD_LARGE_MESSAGE_PENDING:
+            {
+               PendingLargeMessageEncoding pending = new PendingLargeMessageEncoding();
+
+               pending.decode(HornetQBuffers.wrappedBuffer(record.data));
+
+               messageIDs.remove(pending.largeMessageID);
+               break;
+            }
+            default:
+               // no-op
+         }
+      }
+   }
+
+   /**
+    * Removes the messages still on some page.
+    */
+   private void removePagedMessages(final Set<Long> messageIDs, final PagingManager pagingManager) throws Exception
+   {
+      for (SimpleString storeName : pagingManager.getStoreNames())
+      {
+         PagingStore store = pagingManager.getPageStore(storeName);
+
+         if (store == null)
+         {
+            continue;
+         }
+
+         for (long pageId = store.getFirstPage(); pageId <= store.getCurrentWritingPage(); pageId++)
+         {
+            if (!store.checkPageFileExists((int)pageId))
+            {
+               continue;
+            }
+
+            Page page = store.createPage((int)pageId);
+
+            page.open();
+
+            List<PagedMessage> messages;
+
+            try
+            {
+               messages = page.read(this);
+            }
+            finally
+            {
+               page.close();
+            }
+
+            for (PagedMessage message : messages)
+            {
+               message.initMessage(this);
+
+               messageIDs.remove(message.getMessage().getMessageID());
+            }
+
+            if (messageIDs.isEmpty())
+            {
+               return;
+            }
+         }
+      }
+   }
+
+   /**
+    * @return the ID of the body file to delete, or -1 if other messages still use the body of the message
+    */
+   private long releaseLargeMessageBody(final LargeServerMessage message) throws Exception
+   {
+      readLock();
+      try
+      {
+         synchronized (largeMessageBodies)
+         {
+            LargeMessageBodies.Body body = largeMessageBodies.getBody(message.getMessageID());
+
+            if (body == null)
+            {
+               return largeMessageBodies.isUsed(message.getMessageID()) ? -1 : message.getMessageID();
+            }
+
+            if (largeMessageBodies.release(body, message.getMessageID()) && message.isDurable())
+            {
+               storeLargeMessageBody(body);
+            }
+
+            return body.users.isEmpty() ? body.bodyID : -1;
+         }
+      }
+      finally
+      {
+         readUnLock();
+      }
+   }
+
+   /**
+    * To be called holding the lock of largeMessageBodies, so the records of a body are appended in order.
+    */
+   private void storeLargeMessageBody(final LargeMessageBodies.Body body) throws Exception
+   {
+      if (body.users.isEmpty())
+      {
+         if (body.recordID >= 0)
+         {
+            messageJournal.appendDeleteRecord(body.recordID, false, getContext(false));
+         }
+
+         return;
+      }
+
+      long[] users = new long[body.users.size()];
+
+      int i = 0;
+
+      for (Long user : body.users)
+      {
+         users[i++] = user;
+      }
+
+      LargeMessageBodyEncoding encoding = new LargeMessageBodyEncoding(body.bodyID, users);
+
+      if (body.recordID < 0)
+      {
+         body.recordID = idGenerator.generateID();
+
+         messageJournal.appendAddRecord(body.recordID,
+                                        JournalRecordIds.LARGE_MESSAGE_BODY,
+                                        encoding,
+                                        false,
+                                        getContext(false));
+      }
+      else
+      {
+         messageJournal.appendUpdateRecord(body.recordID,
+                                           JournalRecordIds.LARGE_MESSAGE_BODY,
+                                           encoding,
+                                           false,
+                                           getContext(false));
+      }
+   }
+
    private void checkAndCreateDir(final String dir, final boolean create)
    {
       File f = new File(dir);
@@ -2425,7 +2959,8 @@ public class JournalStorageManager implements StorageManager
 
       messageEncoding.decode(buff);
 
-      if (largeMessage.containsProperty(Message.HDR_ORIG_MESSAGE_ID))
+      if (largeMessage.containsProperty(Message.HDR_ORIG_MESSAGE_ID) &&
+         getLargeMessageBodyID(largeMessage.getMessageID()) == largeMessage.getMessageID())
       {
          // for compatibility: couple with old behaviour, copying the old file to avoid message loss
          long originalMessageID = largeMessage.getLongProperty(Message.HDR_ORIG_MESSAGE_ID);
@@ -2503,28 +3038,23 @@ public class JournalStorageManager implements StorageManager
                }
                case JournalRecordIds.ADD_REF:
                {
-                  long messageID = record.id;
-
                   RefEncoding encoding = new RefEncoding();
 
                   encoding.decode(buff);
 
-                  Queue queue = queues.get(encoding.queueID);
+                  loadPreparedReference(postOffice, queues, tx, messages, record.id, encoding.queueID);
 
-                  if (queue == null)
-                  {
-                     HornetQServerLogger.LOGGER.journalMessageInPreparedTX(encoding.queueID);
-                  }
-                  else
-                  {
-                     ServerMessage message = messages.get(messageID);
+                  break;
+               }
+               case JournalRecordIds.ADD_REFS:
+               {
+                  RefsEncoding encoding = new RefsEncoding();
 
-                     if (message == null)
-                     {
-                        throw new IllegalStateException("Cannot find message with id " + messageID);
-                     }
+                  encoding.decode(buff);
 
-                     postOffice.reroute(message, queue, tx);
+                  for (long queueID : encoding.queueIDs)
+                  {
+                     loadPreparedReference(postOffice, queues, tx, messages, record.id, queueID);
                   }
 
                   break;
@@ -3230,6 +3760,108 @@ public class JournalStorageManager implements StorageManager
       }
    }
 
+   /**
+    * The references of a message to several queues, see {@link JournalRecordIds#ADD_REFS}
+    */
+   public static class RefsEncoding implements EncodingSupport
+   {
+      public long[] queueIDs;
+
+      public RefsEncoding()
+      {
+         super();
+      }
+
+      public RefsEncoding(final long[] queueIDs)
+      {
+         this.queueIDs = queueIDs;
+      }
+
+      public void decode(final HornetQBuffer buffer)
+      {
+         queueIDs = new long[buffer.readInt()];
+
+         for (int i = 0; i < queueIDs.length; i++)
+         {
+            queueIDs[i] = buffer.readLong();
+         }
+      }
+
+      public void encode(final HornetQBuffer buffer)
+      {
+         buffer.writeInt(queueIDs.length);
+
+         for (long queueID : queueIDs)
+         {
+            buffer.writeLong(queueID);
+         }
+      }
+
+      public int getEncodeSize()
+      {
+         return DataConstants.SIZE_INT + DataConstants.SIZE_LONG * queueIDs.length;
+      }
+
+      @Override
+      public String toString()
+      {
+         return "RefsEncoding [queueIDs=" + Arrays.toString(queueIDs) + "]";
+      }
+   }
+
+   public static class LargeMessageBodyEncoding implements EncodingSupport
+   {
+      public long bodyID;
+
+      public long[] users;
+
+      public LargeMessageBodyEncoding()
+      {
+         super();
+      }
+
+      public LargeMessageBodyEncoding(final long bodyID, final long[] users)
+      {
+         this.bodyID = bodyID;
+         this.users = users;
+      }
+
+      public void decode(final HornetQBuffer buffer)
+      {
+         bodyID = buffer.readLong();
+
+         users = new long[buffer.readInt()];
+
+         for (int i = 0; i < users.length; i++)
+         {
+            users[i] = buffer.readLong();
+         }
+      }
+
+      public void encode(final HornetQBuffer buffer)
+      {
+         buffer.writeLong(bodyID);
+
+         buffer.writeInt(users.length);
+
+         for (long user : users)
+         {
+            buffer.writeLong(user);
+         }
+      }
+
+      public int getEncodeSize()
+      {
+         return DataConstants.SIZE_LONG + DataConstants.SIZE_INT + DataConstants.SIZE_LONG * users.length;
+      }
+
+      @Override
+      public String toString()
+      {
+         return "LargeMessageBodyEncoding [bodyID=" + bodyID + ", users=" + Arrays.toString(users) + "]";
+      }
+   }
+
    public static class PageUpdateTXEncoding implements EncodingSupport
    {
 
@@ -3564,6 +4196,9 @@ public class JournalStorageManager implements StorageManager
    {
       private final Map<Long, ServerMessage> messages;
 
+      // only deleted once the shared bodies are loaded
+      private final List<RecordInfo> largeMessageRecords = new ArrayList<RecordInfo>();
+
       public LargeMessageTXFailureCallback(final Map<Long, ServerMessage> messages)
       {
          super();
@@ -3578,19 +4213,27 @@ public class JournalStorageManager implements StorageManager
          {
             if (record.userRecordType == ADD_LARGE_MESSAGE)
             {
-               byte[] data = record.data;
+               largeMessageRecords.add(record);
+            }
+         }
+      }
 
-               HornetQBuffer buff = HornetQBuffers.wrappedBuffer(data);
+      void deleteLargeMessages()
+      {
+         for (RecordInfo record : largeMessageRecords)
+         {
+            byte[] data = record.data;
 
-               try
-               {
-                  LargeServerMessage serverMessage = parseLargeMessage(messages, buff);
-                  serverMessage.decrementDelayDeletionCount();
-               }
-               catch (Exception e)
-               {
-                  HornetQServerLogger.LOGGER.journalError(e);
-               }
+            HornetQBuffer buff = HornetQBuffers.wrappedBuffer(data);
+
+            try
+            {
+               LargeServerMessage serverMessage = parseLargeMessage(messages, buff);
+               serverMessage.decrementDelayDeletionCount();
+            }
+            catch (Exception e)
+            {
+               HornetQServerLogger.LOGGER.journalError(e);
             }
          }
       }
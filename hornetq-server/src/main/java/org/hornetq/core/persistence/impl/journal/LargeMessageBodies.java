@@ -0,0 +1,194 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package org.hornetq.core.persistence.impl.journal;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.hornetq.core.persistence.impl.journal.JournalStorageManager.LargeMessageBodyEncoding;
+
+/**
+ * The large message bodies shared by several messages, as a copy of a large message uses the body file of the original
+ * instead of a copy of it.
+ *
+ * A body file keeps the name of the message it was written for and is deleted once every message sharing it is
+ * deleted. The messages sharing a body are stored on a {@link JournalRecordIds#LARGE_MESSAGE_BODY} record, so they are
+ * known again after a restart whether they were stored on the journal or paged. Messages that never shared their body
+ * aren't tracked.
+ *
+ * This class is not thread safe, the {@link JournalStorageManager} synchronizes on it.
+ */
+final class LargeMessageBodies
+{
+   // message ID -> the body it shares or shared, while the body is used
+   private final Map<Long, Body> bodiesByMessage = new HashMap<Long, Body>();
+
+   // body ID -> the body, while some message still uses it
+   private final Map<Long, Body> bodies = new HashMap<Long, Body>();
+
+   /**
+    * @return the ID of the message the body file of this message was written for
+    */
+   long getBodyID(final long messageID)
+   {
+      Body body = bodiesByMessage.get(messageID);
+
+      return body == null ? messageID : body.bodyID;
+   }
+
+   /**
+    * @return true if the body file written for this message is still used by some message
+    */
+   boolean isUsed(final long bodyID)
+   {
+      return bodies.containsKey(bodyID);
+   }
+
+   /**
+    * Adds the copy to the messages using the body of the message.
+    */
+   Body share(final long messageID, final long copyID)
+   {
+      Body body = bodiesByMessage.get(messageID);
+
+      if (body == null)
+      {
+         body = new Body(messageID);
+
+         bodies.put(messageID, body);
+
+         addUser(body, messageID);
+      }
+
+      addUser(body, copyID);
+
+      return body;
+   }
+
+   /**
+    * @return the body the message shares or shared, or null if it didn't share its body or the body isn't used anymore
+    */
+   Body getBody(final long messageID)
+   {
+      return bodiesByMessage.get(messageID);
+   }
+
+   /**
+    * Removes the message from the messages using the body. The message still resolves to the body until the body isn't
+    * used anymore, as other instances of a paged message may still read it.
+    *
+    * @return false if the message was already released
+    */
+   boolean release(final Body body, final long messageID)
+   {
+      if (!body.users.remove(messageID))
+      {
+         return false;
+      }
+
+      body.released.add(messageID);
+
+      if (body.users.isEmpty())
+      {
+         bodies.remove(body.bodyID);
+
+         for (Long released : body.released)
+         {
+            bodiesByMessage.remove(released);
+         }
+      }
+
+      return true;
+   }
+
+   /**
+    * Reloads a body from its record, the last record read for a body replacing the previous ones.
+    */
+   void load(final long recordID, final LargeMessageBodyEncoding encoding)
+   {
+      Body body = bodies.get(encoding.bodyID);
+
+      if (body == null)
+      {
+         body = new Body(encoding.bodyID);
+
+         bodies.put(encoding.bodyID, body);
+      }
+      else
+      {
+         for (Long user : body.users)
+         {
+            bodiesByMessage.remove(user);
+         }
+
+         body.users.clear();
+      }
+
+      body.recordID = recordID;
+
+      for (long user : encoding.users)
+      {
+         addUser(body, user);
+      }
+   }
+
+   /**
+    * @return the messages using some body
+    */
+   Set<Long> getUsers()
+   {
+      Set<Long> users = new HashSet<Long>();
+
+      for (Body body : bodies.values())
+      {
+         users.addAll(body.users);
+      }
+
+      return users;
+   }
+
+   void clear()
+   {
+      bodiesByMessage.clear();
+      bodies.clear();
+   }
+
+   private void addUser(final Body body, final long messageID)
+   {
+      body.users.add(messageID);
+
+      bodiesByMessage.put(messageID, body);
+   }
+
+   static final class Body
+   {
+      final long bodyID;
+
+      // the ID of its LARGE_MESSAGE_BODY record, -1 until it is stored
+      long recordID = -1;
+
+      final Set<Long> users = new LinkedHashSet<Long>();
+
+      final Set<Long> released = new HashSet<Long>();
+
+      Body(final long bodyID)
+      {
+         this.bodyID = bodyID;
+      }
+   }
+}
@@ -51,10 +51,6 @@ public final class LargeServerMessageImpl extends ServerMessageImpl implements L
    // We should only use the NIO implementation on the Journal
    private SequentialFile file;
 
-   // set when a copyFrom is called
-   // The actual copy is done when finishCopy is called
-   private SequentialFile pendingCopy;
-
    private long bodySize = -1;
 
    private final AtomicInteger delayDeletionCount = new AtomicInteger(0);
@@ -299,7 +295,7 @@ public final class LargeServerMessageImpl extends ServerMessageImpl implements L
    @Override
    public synchronized ServerMessage copy()
    {
-      SequentialFile newfile = storageManager.createFileForLargeMessage(messageID, durable);
+      SequentialFile newfile = createFile();
 
       ServerMessage newMessage = new LargeServerMessageImpl(this,
                                                             properties,
@@ -308,54 +304,26 @@ public final class LargeServerMessageImpl extends ServerMessageImpl implements L
       return newMessage;
    }
 
-   public void copyFrom(final SequentialFile fileSource) throws Exception
-   {
-      this.bodySize = -1;
-      this.pendingCopy = fileSource;
-   }
-
-
-   @Override
-   public void finishCopy() throws Exception
-   {
-      if (pendingCopy != null)
-      {
-         SequentialFile copyTo = createFile();
-         try
-         {
-            this.pendingRecordID = storageManager.storePendingLargeMessage(this.messageID);
-            copyTo.open();
-            pendingCopy.open();
-            pendingCopy.copyTo(copyTo);
-         }
-         finally
-         {
-            copyTo.close();
-            pendingCopy.close();
-            pendingCopy = null;
-         }
-
-         closeFile();
-         bodySize = -1;
-         file = null;
-      }
-   }
-
    /**
-    * The copy of the file itself will be done later by {@link LargeServerMessageImpl#finishCopy()}
-    * */
+    * The copy uses the body file of this message, which is only deleted once both messages are deleted. Like a message
+    * being sent, it is stored as pending until it is routed.
+    */
    @Override
    public synchronized ServerMessage copy(final long newID)
    {
       try
       {
-         SequentialFile newfile = storageManager.createFileForLargeMessage(newID, durable);
-
          LargeServerMessageImpl newMessage = new LargeServerMessageImpl(this,
                                                                properties,
-                                                               newfile,
+                                                               null,
                                                                newID);
-         newMessage.copyFrom(createFile());
+         if (durable)
+         {
+            newMessage.setPendingRecordID(storageManager.storePendingLargeMessage(newID));
+         }
+
+         storageManager.shareLargeMessageBody(this, newID);
+
          return newMessage;
       }
       catch (Exception e)
@@ -423,7 +391,7 @@ public final class LargeServerMessageImpl extends ServerMessageImpl implements L
     */
    protected SequentialFile createFile()
    {
-      return storageManager.createFileForLargeMessage(getMessageID(), durable);
+      return storageManager.createFileForLargeMessage(storageManager.getLargeMessageBodyID(getMessageID()), durable);
    }
 
    protected void openFile() throws Exception
@@ -18,6 +18,7 @@ import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.ACKNOWL
 import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.ADD_LARGE_MESSAGE;
 import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.ADD_MESSAGE;
 import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.ADD_REF;
+import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.ADD_REFS;
 import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.PAGE_TRANSACTION;
 import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.QUEUE_BINDING_RECORD;
 
@@ -67,10 +68,12 @@ import org.hornetq.core.paging.impl.PagingStoreFactoryNIO;
 import org.hornetq.core.persistence.StorageManager;
 import org.hornetq.core.persistence.impl.journal.DescribeJournal.MessageDescribe;
 import org.hornetq.core.persistence.impl.journal.DescribeJournal.ReferenceDescribe;
+import org.hornetq.core.persistence.impl.journal.DescribeJournal.ReferencesDescribe;
 import org.hornetq.core.persistence.impl.journal.JournalStorageManager.AckDescribe;
 import org.hornetq.core.persistence.impl.journal.JournalStorageManager.CursorAckRecordEncoding;
 import org.hornetq.core.persistence.impl.journal.JournalStorageManager.PageUpdateTXEncoding;
 import org.hornetq.core.persistence.impl.journal.JournalStorageManager.PersistentQueueBindingEncoding;
+import org.hornetq.core.persistence.impl.journal.JournalStorageManager.RefEncoding;
 import org.hornetq.core.persistence.impl.nullpm.NullStorageManager;
 import org.hornetq.core.server.HornetQServerLogger;
 import org.hornetq.core.server.JournalType;
@@ -254,6 +257,9 @@ public final class XmlDataExporter
 
       ((JournalImpl) messageJournal).load(records, preparedTransactions, transactionFailureCallback, false);
 
+      // so the bodies of large messages sharing the body of another message can be read
+      storageManager.loadLargeMessageBodies(records);
+
       // Since we don't use these nullify the reference so that the garbage collector can clean them up
       preparedTransactions = null;
 
@@ -287,6 +293,19 @@ public final class XmlDataExporter
                map.put(ref.refEncoding.queueID, ref);
             }
          }
+         else if (info.getUserRecordType() == ADD_REFS)
+         {
+            HashMap<Long, ReferenceDescribe> map = messageRefs.get(info.id);
+            if (map == null)
+            {
+               map = new HashMap<Long, ReferenceDescribe>();
+               messageRefs.put(info.id, map);
+            }
+            for (long queueID : ((ReferencesDescribe) o).refsEncoding.queueIDs)
+            {
+               map.put(queueID, new ReferenceDescribe(new RefEncoding(queueID)));
+            }
+         }
          else if (info.getUserRecordType() == ACKNOWLEDGE_REF)
          {
             acks.add(info);
@@ -162,11 +162,22 @@ public class NullStorageManager implements StorageManager
    {
    }
 
+   @Override
+   public void storeReferences(final long[] queueIDs, final long messageID, final boolean last) throws Exception
+   {
+   }
+
    @Override
    public void storeReferenceTransactional(final long txID, final long queueID, final long messageID) throws Exception
    {
    }
 
+   @Override
+   public void storeReferencesTransactional(final long txID, final long[] queueIDs, final long messageID)
+      throws Exception
+   {
+   }
+
    @Override
    public void storeAcknowledge(final long queueID, final long messageID) throws Exception
    {
@@ -544,6 +555,36 @@ public class NullStorageManager implements StorageManager
       return null;
    }
 
+   @Override
+   public long getMessageJournalFlushCount()
+   {
+      return 0;
+   }
+
+   @Override
+   public long getMessageJournalBytesFlushed()
+   {
+      return 0;
+   }
+
+   @Override
+   public long getMessageJournalCompactCount()
+   {
+      return 0;
+   }
+
+   @Override
+   public long getMessageJournalCompactReclaimedBytes()
+   {
+      return 0;
+   }
+
+   @Override
+   public long getMessageJournalCompactPauseTime()
+   {
+      return 0;
+   }
+
    @Override
    public void startReplication(final ReplicationManager replicationManager, final PagingManager pagingManager,
                                 final String nodeID, final boolean autoFailBack) throws Exception
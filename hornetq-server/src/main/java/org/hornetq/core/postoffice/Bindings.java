@@ -16,6 +16,7 @@ package org.hornetq.core.postoffice;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -28,6 +29,7 @@ import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.filter.Filter;
 import org.hornetq.core.message.impl.MessageImpl;
 import org.hornetq.core.paging.PagingStore;
+import org.hornetq.core.postoffice.impl.SelectorIndex;
 import org.hornetq.core.server.HornetQMessageBundle;
 import org.hornetq.core.server.HornetQServerLogger;
 import org.hornetq.core.server.Queue;
@@ -58,8 +60,12 @@ public final class Bindings
 
    private final List<Binding> exclusiveBindings = new CopyOnWriteArrayList<Binding>();
 
+   private final SelectorIndex selectorIndex = new SelectorIndex();
+
    private volatile boolean routeWhenNoConsumers;
 
+   private volatile BindingsLoadBalancingPolicy loadBalancingPolicy;
+
    private final GroupingHandler groupingHandler;
 
    private final PagingStore pageStore;
@@ -78,6 +84,15 @@ public final class Bindings
       this.routeWhenNoConsumers = routeWhenNoConsumers;
    }
 
+   /**
+    * @param loadBalancingPolicy the policy choosing among the bindings of a routing name, or null to
+    *           use them in round robin
+    */
+   public void setLoadBalancingPolicy(final BindingsLoadBalancingPolicy loadBalancingPolicy)
+   {
+      this.loadBalancingPolicy = loadBalancingPolicy;
+   }
+
    public Collection<Binding> getBindings()
    {
       return bindingsMap.values();
@@ -112,6 +127,8 @@ public final class Bindings
          }
 
          bindings.add(binding);
+
+         selectorIndex.addBinding(binding, bindings);
       }
 
       bindingsMap.put(binding.getID(), binding);
@@ -144,10 +161,19 @@ public final class Bindings
                routingNameBindingMap.remove(routingName);
             }
          }
+
+         selectorIndex.removeBinding(binding, bindings);
       }
 
       bindingsMap.remove(binding.getID());
 
+      BindingsLoadBalancingPolicy policy = loadBalancingPolicy;
+
+      if (policy != null)
+      {
+         policy.bindingRemoved(binding);
+      }
+
       if (isTrace)
       {
          HornetQServerLogger.LOGGER.trace("Removing binding " + binding + " into " + this + " bindingTable: " + debugBindings());
@@ -281,24 +307,22 @@ public final class Bindings
             {
                HornetQServerLogger.LOGGER.trace("Routing message " + message + " on binding=" + this);
             }
-            for (Map.Entry<SimpleString, List<Binding>> entry : routingNameBindingMap.entrySet())
-            {
-               SimpleString routingName = entry.getKey();
 
-               List<Binding> bindings = entry.getValue();
+            // Only the routing names whose filters may match the message, if their selectors are indexed
+            List<SimpleString> candidates = selectorIndex.isEmpty() ? null : selectorIndex.getCandidates(message);
 
-               if (bindings == null)
+            if (candidates != null)
+            {
+               for (SimpleString routingName : candidates)
                {
-                  // The value can become null if it's concurrently removed while we're iterating - this is expected
-                  // ConcurrentHashMap behaviour!
-                  continue;
+                  routeToNextBinding(message, context, routingName, routingNameBindingMap.get(routingName));
                }
-
-               Binding theBinding = getNextBinding(message, routingName, bindings);
-
-               if (theBinding != null)
+            }
+            else
+            {
+               for (Map.Entry<SimpleString, List<Binding>> entry : routingNameBindingMap.entrySet())
                {
-                  theBinding.route(message, context);
+                  routeToNextBinding(message, context, entry.getKey(), entry.getValue());
                }
             }
          }
@@ -311,6 +335,26 @@ public final class Bindings
       return "BindingsImpl [name=" + name + "]";
    }
 
+   private void routeToNextBinding(final ServerMessage message,
+                                   final RoutingContext context,
+                                   final SimpleString routingName,
+                                   final List<Binding> bindings) throws Exception
+   {
+      if (bindings == null)
+      {
+         // The value can become null if it's concurrently removed while we're iterating - this is expected
+         // ConcurrentHashMap behaviour!
+         return;
+      }
+
+      Binding theBinding = getNextBinding(message, routingName, bindings);
+
+      if (theBinding != null)
+      {
+         theBinding.route(message, context);
+      }
+   }
+
    /**
     * This code has a race on the assigned value to routing names.
     * <p>
@@ -323,6 +367,18 @@ public final class Bindings
                                   final SimpleString routingName,
                                   final List<Binding> bindings)
    {
+      BindingsLoadBalancingPolicy policy = loadBalancingPolicy;
+
+      if (policy != null && bindings.size() > 1)
+      {
+         Binding theBinding = selectWithPolicy(policy, message, bindings);
+
+         if (theBinding != null)
+         {
+            return theBinding;
+         }
+      }
+
       Integer ipos = routingNamePositions.get(routingName);
 
       int pos = ipos != null ? ipos : 0;
@@ -421,6 +477,40 @@ public final class Bindings
       return theBinding;
    }
 
+   /**
+    * @return the binding chosen by the policy among the bindings accepting the message, or null
+    *         when none of them has a matching consumer so the round robin decides
+    */
+   private Binding selectWithPolicy(final BindingsLoadBalancingPolicy policy,
+                                    final ServerMessage message,
+                                    final List<Binding> bindings)
+   {
+      List<Binding> candidates = new ArrayList<Binding>(bindings.size());
+
+      for (Binding binding : bindings)
+      {
+         Filter filter = binding.getFilter();
+
+         if ((filter == null || filter.match(message)) &&
+             (routeWhenNoConsumers || binding.isHighAcceptPriority(message)))
+         {
+            candidates.add(binding);
+         }
+      }
+
+      if (candidates.isEmpty())
+      {
+         return null;
+      }
+
+      if (candidates.size() == 1)
+      {
+         return candidates.get(0);
+      }
+
+      return policy.select(message, candidates);
+   }
+
    private void routeUsingStrictOrdering(final ServerMessage message,
                                          final RoutingContext context,
                                          final GroupingHandler groupingGroupingHandler) throws Exception
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.postoffice;
+
+import java.util.List;
+
+import org.hornetq.core.server.ServerMessage;
+
+/**
+ * Chooses where {@link Bindings} routes a message among the bindings sharing a routing name, such as
+ * the local and remote queues of a clustered queue.
+ * <p>
+ * Without a policy the bindings are used in round robin. A policy is only asked when more than one
+ * binding accepts the message, and when none has a matching consumer the round robin is used again.
+ */
+public interface BindingsLoadBalancingPolicy
+{
+   /**
+    * @param candidates the bindings that accept the message, at least two
+    * @return one of the candidates
+    */
+   Binding select(ServerMessage message, List<Binding> candidates);
+
+   /**
+    * Called when a binding is removed, to release anything the policy kept about it.
+    */
+   void bindingRemoved(Binding binding);
+}
@@ -0,0 +1,499 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.postoffice.impl;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hornetq.api.core.Pair;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.persistence.StorageManager;
+import org.hornetq.core.postoffice.DuplicateIDCache;
+import org.hornetq.core.server.HornetQServerLogger;
+import org.hornetq.core.server.MessageReference;
+import org.hornetq.core.transaction.Transaction;
+import org.hornetq.core.transaction.TransactionOperationAbstract;
+
+/**
+ * A fixed size rotating cache of the last X duplicate ids, with the same eviction and persistence semantics as
+ * {@link DuplicateIDCacheImpl}, kept in direct buffers allocated up front.
+ *
+ * The ring is a buffer of fixed size slots holding the hash, the journal record id and the bytes of an id. Ids longer
+ * than {@link #MAX_INLINE_ID_SIZE} keep their bytes on the heap. The ids are looked up through an open addressing
+ * table of slot numbers with linear probing, sized to twice the ring so it never fills up.
+ *
+ * Whatever the number of ids in the cache, it holds no object per id, so large caches don't add to the GC work.
+ */
+public class OffHeapDuplicateIDCache implements DuplicateIDCache
+{
+   static final int MAX_INLINE_ID_SIZE = 80;
+
+   private static final int HASH_OFFSET = 0;
+
+   // -1 for an empty slot
+   private static final int LENGTH_OFFSET = 4;
+
+   // -1 for an id that isn't persisted
+   private static final int RECORD_OFFSET = 8;
+
+   private static final int ID_OFFSET = 16;
+
+   private static final int SLOT_SIZE = ID_OFFSET + MAX_INLINE_ID_SIZE;
+
+   private static final int EMPTY = -1;
+
+   private final SimpleString address;
+
+   private final int cacheSize;
+
+   private final StorageManager storageManager;
+
+   private final boolean persist;
+
+   // The fields below are guarded by this
+
+   private final ByteBuffer slots;
+
+   // slot + 1, 0 for an empty entry
+   private final ByteBuffer table;
+
+   private final int mask;
+
+   // the ids too long to fit in their slot
+   private final Map<Integer, byte[]> overflow = new HashMap<Integer, byte[]>();
+
+   private int pos;
+
+   public OffHeapDuplicateIDCache(final SimpleString address,
+                                  final int size,
+                                  final StorageManager storageManager,
+                                  final boolean persist)
+   {
+      if (size <= 0 || size > Integer.MAX_VALUE / SLOT_SIZE)
+      {
+         throw new IllegalArgumentException("Invalid off heap id cache size " + size);
+      }
+
+      this.address = address;
+
+      cacheSize = size;
+
+      this.storageManager = storageManager;
+
+      this.persist = persist;
+
+      slots = ByteBuffer.allocateDirect(size * SLOT_SIZE);
+
+      for (int i = 0; i < size; i++)
+      {
+         slots.putInt(i * SLOT_SIZE + LENGTH_OFFSET, EMPTY);
+      }
+
+      int tableSize = Integer.highestOneBit(size) << 2;
+
+      table = ByteBuffer.allocateDirect(tableSize * 4);
+
+      mask = tableSize - 1;
+   }
+
+   public synchronized void load(final List<Pair<byte[], Long>> theIds) throws Exception
+   {
+      int count = 0;
+
+      long txID = -1;
+
+      for (Pair<byte[], Long> id : theIds)
+      {
+         if (count < cacheSize)
+         {
+            put(count, id.getA(), id.getB());
+         }
+         else
+         {
+            // cache size has been reduced in config - delete the extra records
+            if (txID == -1)
+            {
+               txID = storageManager.generateUniqueID();
+            }
+
+            storageManager.deleteDuplicateIDTransactional(txID, id.getB());
+         }
+
+         count++;
+      }
+
+      if (txID != -1)
+      {
+         storageManager.commit(txID);
+      }
+
+      pos = Math.min(count, cacheSize);
+
+      if (pos == cacheSize)
+      {
+         pos = 0;
+      }
+   }
+
+   public void deleteFromCache(final byte[] duplicateID) throws Exception
+   {
+      long recordID;
+
+      synchronized (this)
+      {
+         int index = find(duplicateID, hash(duplicateID));
+
+         if (index < 0)
+         {
+            return;
+         }
+
+         int slot = table.getInt(index << 2) - 1;
+
+         remove(index);
+
+         recordID = slots.getLong(slot * SLOT_SIZE + RECORD_OFFSET);
+
+         clear(slot);
+      }
+
+      if (recordID >= 0)
+      {
+         storageManager.deleteDuplicateID(recordID);
+      }
+   }
+
+   public synchronized boolean contains(final byte[] duplID)
+   {
+      return find(duplID, hash(duplID)) >= 0;
+   }
+
+   public synchronized void addToCache(final byte[] duplID, final Transaction tx) throws Exception
+   {
+      long recordID = -1;
+
+      if (tx == null)
+      {
+         if (persist)
+         {
+            recordID = storageManager.generateUniqueID();
+            storageManager.storeDuplicateID(address, duplID, recordID);
+         }
+
+         addToCacheInMemory(duplID, recordID);
+      }
+      else
+      {
+         if (persist)
+         {
+            recordID = storageManager.generateUniqueID();
+            storageManager.storeDuplicateIDTransactional(tx.getID(), address, duplID, recordID);
+
+            tx.setContainsPersistent();
+         }
+
+         // For a tx, it's important that the entry is not added to the cache until commit
+         // since if the client fails then resends them tx we don't want it to get rejected
+         tx.addOperation(new AddDuplicateIDOperation(duplID, recordID));
+      }
+   }
+
+   public void load(final Transaction tx, final byte[] duplID)
+   {
+      tx.addOperation(new AddDuplicateIDOperation(duplID, tx.getID()));
+   }
+
+   /**
+    * @return the number of bytes allocated off heap
+    */
+   public int getMemorySize()
+   {
+      return slots.capacity() + table.capacity();
+   }
+
+   @Override
+   public String toString()
+   {
+      return "OffHeapDuplicateIDCache [address=" + address + ", size=" + cacheSize + "]";
+   }
+
+   // Private -------------------------------------------------------
+
+   private synchronized void addToCacheInMemory(final byte[] duplID, final long recordID)
+   {
+      put(pos, duplID, recordID);
+
+      if (pos++ == cacheSize - 1)
+      {
+         pos = 0;
+      }
+   }
+
+   /**
+    * Puts the id in the slot, evicting the id it held
+    */
+   private void put(final int slot, final byte[] duplID, final long recordID)
+   {
+      int base = slot * SLOT_SIZE;
+
+      if (slots.getInt(base + LENGTH_OFFSET) != EMPTY)
+      {
+         int index = findSlot(slot);
+
+         if (index >= 0)
+         {
+            remove(index);
+         }
+
+         long oldRecordID = slots.getLong(base + RECORD_OFFSET);
+
+         clear(slot);
+
+         // Record already exists - we delete the old one and add the new one
+         // Note we can't use update since journal update doesn't let older records get
+         // reclaimed
+         if (oldRecordID >= 0)
+         {
+            try
+            {
+               storageManager.deleteDuplicateID(oldRecordID);
+            }
+            catch (Exception e)
+            {
+               HornetQServerLogger.LOGGER.errorDeletingDuplicateCache(e);
+            }
+         }
+      }
+
+      int hash = hash(duplID);
+
+      // The id was added again, it now lives in the new slot, the old one keeps its record until it is evicted
+      int existing = find(duplID, hash);
+
+      if (existing >= 0)
+      {
+         remove(existing);
+      }
+
+      slots.putInt(base + HASH_OFFSET, hash);
+      slots.putInt(base + LENGTH_OFFSET, duplID.length);
+      slots.putLong(base + RECORD_OFFSET, recordID);
+
+      if (duplID.length <= MAX_INLINE_ID_SIZE)
+      {
+         for (int i = 0; i < duplID.length; i++)
+         {
+            slots.put(base + ID_OFFSET + i, duplID[i]);
+         }
+      }
+      else
+      {
+         overflow.put(slot, duplID);
+      }
+
+      int index = hash & mask;
+
+      while (table.getInt(index << 2) != 0)
+      {
+         index = index + 1 & mask;
+      }
+
+      table.putInt(index << 2, slot + 1);
+   }
+
+   private void clear(final int slot)
+   {
+      if (slots.getInt(slot * SLOT_SIZE + LENGTH_OFFSET) > MAX_INLINE_ID_SIZE)
+      {
+         overflow.remove(slot);
+      }
+
+      slots.putInt(slot * SLOT_SIZE + LENGTH_OFFSET, EMPTY);
+   }
+
+   /**
+    * @return the table index of the id, -1 if it isn't in the cache
+    */
+   private int find(final byte[] duplID, final int hash)
+   {
+      int index = hash & mask;
+
+      while (true)
+      {
+         int entry = table.getInt(index << 2);
+
+         if (entry == 0)
+         {
+            return -1;
+         }
+
+         if (slots.getInt((entry - 1) * SLOT_SIZE + HASH_OFFSET) == hash && equalsSlot(entry - 1, duplID))
+         {
+            return index;
+         }
+
+         index = index + 1 & mask;
+      }
+   }
+
+   /**
+    * @return the table index pointing to the slot, -1 if its id has been added again since
+    */
+   private int findSlot(final int slot)
+   {
+      int index = slots.getInt(slot * SLOT_SIZE + HASH_OFFSET) & mask;
+
+      while (true)
+      {
+         int entry = table.getInt(index << 2);
+
+         if (entry == 0)
+         {
+            return -1;
+         }
+
+         if (entry == slot + 1)
+         {
+            return index;
+         }
+
+         index = index + 1 & mask;
+      }
+   }
+
+   /**
+    * Removes a table entry, shifting back the entries after it so no lookup ever stops short of its id
+    */
+   private void remove(final int index)
+   {
+      int hole = index;
+
+      int next = index;
+
+      while (true)
+      {
+         next = next + 1 & mask;
+
+         int entry = table.getInt(next << 2);
+
+         if (entry == 0)
+         {
+            break;
+         }
+
+         int home = slots.getInt((entry - 1) * SLOT_SIZE + HASH_OFFSET) & mask;
+
+         // the entry can't move before its home index
+         boolean stays = hole <= next ? hole < home && home <= next : hole < home || home <= next;
+
+         if (!stays)
+         {
+            table.putInt(hole << 2, entry);
+
+            hole = next;
+         }
+      }
+
+      table.putInt(hole << 2, 0);
+   }
+
+   private boolean equalsSlot(final int slot, final byte[] duplID)
+   {
+      int base = slot * SLOT_SIZE;
+
+      if (slots.getInt(base + LENGTH_OFFSET) != duplID.length)
+      {
+         return false;
+      }
+
+      if (duplID.length > MAX_INLINE_ID_SIZE)
+      {
+         byte[] bytes = overflow.get(slot);
+
+         for (int i = 0; i < duplID.length; i++)
+         {
+            if (bytes[i] != duplID[i])
+            {
+               return false;
+            }
+         }
+
+         return true;
+      }
+
+      for (int i = 0; i < duplID.length; i++)
+      {
+         if (slots.get(base + ID_OFFSET + i) != duplID[i])
+         {
+            return false;
+         }
+      }
+
+      return true;
+   }
+
+   private static int hash(final byte[] bytes)
+   {
+      int hash = 0;
+
+      for (byte b : bytes)
+      {
+         hash = 31 * hash + b;
+      }
+
+      // spread the low bits, the table index only uses them
+      hash ^= hash >>> 20 ^ hash >>> 12;
+
+      return hash ^ hash >>> 7 ^ hash >>> 4;
+   }
+
+   private final class AddDuplicateIDOperation extends TransactionOperationAbstract
+   {
+      final byte[] duplID;
+
+      final long recordID;
+
+      volatile boolean done;
+
+      AddDuplicateIDOperation(final byte[] duplID, final long recordID)
+      {
+         this.duplID = duplID;
+         this.recordID = recordID;
+      }
+
+      private void process()
+      {
+         if (!done)
+         {
+            addToCacheInMemory(duplID, recordID);
+
+            done = true;
+         }
+      }
+
+      @Override
+      public void afterCommit(final Transaction tx)
+      {
+         process();
+      }
+
+      @Override
+      public List<MessageReference> getRelatedMessageReferences()
+      {
+         return null;
+      }
+   }
+}
@@ -17,7 +17,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -116,6 +115,8 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
 
    private final boolean persistIDCache;
 
+   private final boolean offHeapIDCache;
+
    private final Map<SimpleString, QueueInfo> queueInfos = new HashMap<SimpleString, QueueInfo>();
 
    private final Object notificationLock = new Object();
@@ -134,6 +135,7 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
                          final boolean enableWildCardRouting,
                          final int idCacheSize,
                          final boolean persistIDCache,
+                         final boolean offHeapIDCache,
                          final HierarchicalRepository<AddressSettings> addressSettingsRepository)
 
    {
@@ -162,6 +164,8 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
 
       this.persistIDCache = persistIDCache;
 
+      this.offHeapIDCache = offHeapIDCache;
+
       this.addressSettingsRepository = addressSettingsRepository;
 
       this.server = server;
@@ -487,9 +491,6 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
 
    public synchronized Binding removeBinding(final SimpleString uniqueName) throws Exception
    {
-
-      addressSettingsRepository.clearCache();
-
       Binding binding = addressManager.removeBinding(uniqueName);
 
       if (binding == null)
@@ -497,6 +498,8 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
          throw new HornetQNonExistentQueueException();
       }
 
+      addressSettingsRepository.clearCache(binding.getAddress().toString());
+
       if (addressManager.getBindingsForRoutingAddress(binding.getAddress()) == null)
       {
          pagingManager.deletePageStore(binding.getAddress());
@@ -721,9 +724,10 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
 
       MessageReference reference = message.createReference(queue);
 
-      if (message.containsProperty(Message.HDR_SCHEDULED_DELIVERY_TIME))
+      long scheduledDeliveryTime = message.getTypedProperties().getLongProperty(Message.HDR_SCHEDULED_DELIVERY_TIME, 0);
+
+      if (scheduledDeliveryTime != 0)
       {
-         Long scheduledDeliveryTime = message.getLongProperty(Message.HDR_SCHEDULED_DELIVERY_TIME);
          reference.setScheduledDeliveryTime(scheduledDeliveryTime);
       }
 
@@ -781,13 +785,24 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
 
       if (cache == null)
       {
-         cache = new DuplicateIDCacheImpl(address, idCacheSize, storageManager, persistIDCache);
+         // an off heap cache allocates its direct buffers when created, so a cache losing a race would waste them
+         synchronized (duplicateIDCaches)
+         {
+            cache = duplicateIDCaches.get(address);
 
-         DuplicateIDCache oldCache = duplicateIDCaches.putIfAbsent(address, cache);
+            if (cache == null)
+            {
+               if (offHeapIDCache)
+               {
+                  cache = new OffHeapDuplicateIDCache(address, idCacheSize, storageManager, persistIDCache);
+               }
+               else
+               {
+                  cache = new DuplicateIDCacheImpl(address, idCacheSize, storageManager, persistIDCache);
+               }
 
-         if (oldCache != null)
-         {
-            cache = oldCache;
+               duplicateIDCaches.put(address, cache);
+            }
          }
       }
 
@@ -981,6 +996,8 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
 
       Transaction tx = context.getTransaction();
 
+      long scheduledDeliveryTime = message.getTypedProperties().getLongProperty(Message.HDR_SCHEDULED_DELIVERY_TIME, 0);
+
       for (Map.Entry<SimpleString, RouteContextList> entry : context.getContexListing().entrySet())
       {
          PagingStore store = pagingManager.getPageStore(entry.getKey());
@@ -1003,30 +1020,24 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
 
             refs.add(reference);
 
-            if (message.containsProperty(Message.HDR_SCHEDULED_DELIVERY_TIME))
+            if (scheduledDeliveryTime != 0)
             {
-               Long scheduledDeliveryTime = message.getLongProperty(Message.HDR_SCHEDULED_DELIVERY_TIME);
-
                reference.setScheduledDeliveryTime(scheduledDeliveryTime);
             }
 
             message.incrementRefCount();
          }
 
-         Iterator<Queue> iter = entry.getValue().getDurableQueues().iterator();
+         List<MessageReference> durableRefs = null;
 
-         while (iter.hasNext())
+         for (Queue queue : entry.getValue().getDurableQueues())
          {
-            Queue queue = iter.next();
-
             MessageReference reference = message.createReference(queue);
 
             refs.add(reference);
 
-            if (message.containsProperty(Message.HDR_SCHEDULED_DELIVERY_TIME))
+            if (scheduledDeliveryTime != 0)
             {
-               Long scheduledDeliveryTime = message.getLongProperty(Message.HDR_SCHEDULED_DELIVERY_TIME);
-
                reference.setScheduledDeliveryTime(scheduledDeliveryTime);
             }
 
@@ -1051,32 +1062,21 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
                   }
                }
 
-               if (tx != null)
-               {
-                  storageManager.storeReferenceTransactional(tx.getID(), queue.getID(), message.getMessageID());
-
-                  tx.setContainsPersistent();
-               }
-               else
+               if (durableRefs == null)
                {
-                  storageManager.storeReference(queue.getID(), message.getMessageID(), !iter.hasNext());
+                  durableRefs = new ArrayList<MessageReference>();
                }
 
-               if (message.containsProperty(Message.HDR_SCHEDULED_DELIVERY_TIME))
-               {
-                  if (tx != null)
-                  {
-                     storageManager.updateScheduledDeliveryTimeTransactional(tx.getID(), reference);
-                  }
-                  else
-                  {
-                     storageManager.updateScheduledDeliveryTime(reference);
-                  }
-               }
+               durableRefs.add(reference);
             }
 
             message.incrementRefCount();
          }
+
+         if (durableRefs != null)
+         {
+            storeReferences(tx, message, durableRefs);
+         }
       }
 
       if (tx != null)
@@ -1102,6 +1102,70 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
       }
    }
 
+   /**
+    * Stores the references of a durable message to the durable queues of an address, in a single record when there are
+    * several queues so a message fanned out to many subscriptions doesn't cost a journal record per subscription.
+    */
+   private void storeReferences(final Transaction tx,
+                                final ServerMessage message,
+                                final List<MessageReference> durableRefs) throws Exception
+   {
+      long messageID = message.getMessageID();
+
+      if (durableRefs.size() == 1)
+      {
+         long queueID = durableRefs.get(0).getQueue().getID();
+
+         if (tx != null)
+         {
+            storageManager.storeReferenceTransactional(tx.getID(), queueID, messageID);
+         }
+         else
+         {
+            storageManager.storeReference(queueID, messageID, true);
+         }
+      }
+      else
+      {
+         long[] queueIDs = new long[durableRefs.size()];
+
+         for (int i = 0; i < queueIDs.length; i++)
+         {
+            queueIDs[i] = durableRefs.get(i).getQueue().getID();
+         }
+
+         if (tx != null)
+         {
+            storageManager.storeReferencesTransactional(tx.getID(), queueIDs, messageID);
+         }
+         else
+         {
+            storageManager.storeReferences(queueIDs, messageID, true);
+         }
+      }
+
+      if (tx != null)
+      {
+         tx.setContainsPersistent();
+      }
+
+      // the references have to be stored before their scheduled delivery times
+      if (message.containsProperty(Message.HDR_SCHEDULED_DELIVERY_TIME))
+      {
+         for (MessageReference reference : durableRefs)
+         {
+            if (tx != null)
+            {
+               storageManager.updateScheduledDeliveryTimeTransactional(tx.getID(), reference);
+            }
+            else
+            {
+               storageManager.updateScheduledDeliveryTime(reference);
+            }
+         }
+      }
+   }
+
    /**
     * @param tx
     * @param message
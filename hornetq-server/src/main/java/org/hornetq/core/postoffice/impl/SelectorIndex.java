@@ -0,0 +1,445 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.postoffice.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.hornetq.api.core.FilterConstants;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.filter.Filter;
+import org.hornetq.core.filter.impl.FilterParser;
+import org.hornetq.core.filter.impl.Identifier;
+import org.hornetq.core.filter.impl.Operator;
+import org.hornetq.core.postoffice.Binding;
+import org.hornetq.core.server.ServerMessage;
+
+/**
+ * Indexes the routing names of an address by the equality and IN predicates of their bindings' filters, so routing
+ * only has to run the filters of the routing names that can match a message.
+ *
+ * A filter is indexed on the first predicate of its top level AND chain of the form {@code property = literal},
+ * {@code literal = property} or {@code property IN (...)}: the filter can only match a message whose property has one
+ * of these values. A routing name is indexed when all its bindings are indexed on the same property, any other
+ * routing name is always a candidate.
+ *
+ * Lookups don't take any lock. Updates are serialized and bump a version around each change, a lookup that sees the
+ * version change returns null and the caller must fall back to trying every routing name.
+ */
+public final class SelectorIndex
+{
+   // Doubles represent every integer up to this exactly, see normalize()
+   private static final long MAX_EXACT_LONG = 1L << 53;
+
+   // Routing names that can't be indexed, they are candidates for every message
+   private final Set<SimpleString> unindexed = Collections.newSetFromMap(new ConcurrentHashMap<SimpleString, Boolean>());
+
+   // property -> normalized value -> routing names
+   private final ConcurrentMap<SimpleString, ConcurrentMap<Object, Set<SimpleString>>> index = new ConcurrentHashMap<SimpleString, ConcurrentMap<Object, Set<SimpleString>>>();
+
+   // Odd while an update is in progress
+   private volatile int version;
+
+   private volatile int indexedCount;
+
+   // The fields below are guarded by this
+
+   private final Map<Long, Predicate> predicates = new HashMap<Long, Predicate>();
+
+   private final Map<SimpleString, Predicate> placements = new HashMap<SimpleString, Predicate>();
+
+   /**
+    * @param bindings all the bindings of the routing name, including the new one
+    */
+   public synchronized void addBinding(final Binding binding, final Collection<Binding> bindings)
+   {
+      predicates.put(binding.getID(), predicate(binding.getFilter()));
+
+      update(binding.getRoutingName(), bindings);
+   }
+
+   /**
+    * @param bindings the remaining bindings of the routing name, null if there are none
+    */
+   public synchronized void removeBinding(final Binding binding, final Collection<Binding> bindings)
+   {
+      predicates.remove(binding.getID());
+
+      update(binding.getRoutingName(), bindings);
+   }
+
+   /**
+    * @return true if no routing name is indexed, in which case every routing name is a candidate for every message
+    */
+   public boolean isEmpty()
+   {
+      return indexedCount == 0;
+   }
+
+   /**
+    * @return the routing names that may have a binding matching the message, or null if the index was updated while
+    *         they were looked up
+    */
+   public List<SimpleString> getCandidates(final ServerMessage message)
+   {
+      int startVersion = version;
+
+      if ((startVersion & 1) != 0)
+      {
+         return null;
+      }
+
+      List<SimpleString> candidates = new ArrayList<SimpleString>(unindexed);
+
+      for (Map.Entry<SimpleString, ConcurrentMap<Object, Set<SimpleString>>> entry : index.entrySet())
+      {
+         Object key = normalize(message.getObjectProperty(entry.getKey()), false);
+
+         if (key != null)
+         {
+            Set<SimpleString> routingNames = entry.getValue().get(key);
+
+            if (routingNames != null)
+            {
+               candidates.addAll(routingNames);
+            }
+         }
+      }
+
+      if (version != startVersion)
+      {
+         return null;
+      }
+
+      return candidates;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "SelectorIndex [indexed=" + indexedCount + ", unindexed=" + unindexed.size() + "]";
+   }
+
+   // Package protected ---------------------------------------------
+
+   /**
+    * @return the predicate the filter is indexed on, or null if it can't be indexed
+    */
+   static Predicate predicate(final Filter filter)
+   {
+      if (filter == null || filter.getFilterString() == null)
+      {
+         return null;
+      }
+
+      try
+      {
+         return predicate(new FilterParser().parse(filter.getFilterString(), new HashMap<SimpleString, Identifier>()));
+      }
+      catch (Throwable e)
+      {
+         return null;
+      }
+   }
+
+   /**
+    * Maps a value to the key it is indexed under. Two values have the same key when the filter equality operator
+    * considers them equal, so numbers of different types with the same value share a key.
+    *
+    * @param literal literals that can't be indexed return null, values of a message always have a key
+    * @return null if the value can't be equal to anything
+    */
+   static Object normalize(final Object value, final boolean literal)
+   {
+      if (value instanceof SimpleString || value instanceof Boolean)
+      {
+         return value;
+      }
+      else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)
+      {
+         long longValue = ((Number)value).longValue();
+
+         // a long this large is compared to a double literal as a rounded double
+         if (literal && Math.abs(longValue) > MAX_EXACT_LONG)
+         {
+            return null;
+         }
+
+         return Long.valueOf(longValue);
+      }
+      else if (value instanceof Double || value instanceof Float)
+      {
+         double doubleValue = ((Number)value).doubleValue();
+
+         if (doubleValue == Math.rint(doubleValue) && Math.abs(doubleValue) <= MAX_EXACT_LONG)
+         {
+            return Long.valueOf((long)doubleValue);
+         }
+
+         if (literal && doubleValue == Math.rint(doubleValue))
+         {
+            return null;
+         }
+
+         return Double.valueOf(doubleValue);
+      }
+      else
+      {
+         return null;
+      }
+   }
+
+   // Private -------------------------------------------------------
+
+   private static Predicate predicate(final Object expression)
+   {
+      if (!(expression instanceof Operator))
+      {
+         return null;
+      }
+
+      Operator operator = (Operator)expression;
+
+      switch (operator.getOperation())
+      {
+         case Operator.AND:
+         {
+            Predicate predicate = predicate(operator.getOper1());
+
+            return predicate != null ? predicate : predicate(operator.getOper2());
+         }
+         case Operator.EQUAL:
+         {
+            if (isProperty(operator.getOper1()))
+            {
+               return equality((Identifier)operator.getOper1(), operator.getOper2());
+            }
+            else if (isProperty(operator.getOper2()))
+            {
+               return equality((Identifier)operator.getOper2(), operator.getOper1());
+            }
+
+            return null;
+         }
+         case Operator.IN:
+         {
+            if (!isProperty(operator.getOper1()))
+            {
+               return null;
+            }
+
+            Set<Object> keys = new HashSet<Object>();
+
+            for (Object value : (Set<?>)operator.getOper2())
+            {
+               keys.add(normalize(value, true));
+            }
+
+            return new Predicate(((Identifier)operator.getOper1()).getName(), keys);
+         }
+         default:
+            return null;
+      }
+   }
+
+   private static Predicate equality(final Identifier identifier, final Object value)
+   {
+      if (value instanceof Operator || value instanceof Identifier)
+      {
+         return null;
+      }
+
+      Object key = normalize(value, true);
+
+      if (key == null)
+      {
+         return null;
+      }
+
+      return new Predicate(identifier.getName(), Collections.singleton(key));
+   }
+
+   /**
+    * Header identifiers are not properties, so they are never indexed
+    */
+   private static boolean isProperty(final Object expression)
+   {
+      return expression instanceof Identifier &&
+             !((Identifier)expression).getName().startsWith(FilterConstants.HORNETQ_PREFIX);
+   }
+
+   private void update(final SimpleString routingName, final Collection<Binding> bindings)
+   {
+      Predicate placement = null;
+
+      if (bindings != null && !bindings.isEmpty())
+      {
+         placement = Predicate.UNINDEXED;
+
+         Set<Object> keys = new HashSet<Object>();
+
+         SimpleString property = null;
+
+         for (Binding binding : bindings)
+         {
+            Predicate predicate = predicates.get(binding.getID());
+
+            if (predicate == null || property != null && !property.equals(predicate.property))
+            {
+               property = null;
+               break;
+            }
+
+            property = predicate.property;
+
+            keys.addAll(predicate.keys);
+         }
+
+         if (property != null)
+         {
+            placement = new Predicate(property, keys);
+         }
+      }
+
+      Predicate previous = placements.get(routingName);
+
+      if (previous == null && placement == null)
+      {
+         return;
+      }
+
+      version++;
+
+      try
+      {
+         if (previous != null)
+         {
+            remove(routingName, previous);
+         }
+
+         if (placement != null)
+         {
+            add(routingName, placement);
+
+            placements.put(routingName, placement);
+         }
+         else
+         {
+            placements.remove(routingName);
+         }
+      }
+      finally
+      {
+         version++;
+      }
+   }
+
+   private void add(final SimpleString routingName, final Predicate placement)
+   {
+      if (placement == Predicate.UNINDEXED)
+      {
+         unindexed.add(routingName);
+
+         return;
+      }
+
+      ConcurrentMap<Object, Set<SimpleString>> values = index.get(placement.property);
+
+      if (values == null)
+      {
+         values = new ConcurrentHashMap<Object, Set<SimpleString>>();
+
+         index.put(placement.property, values);
+      }
+
+      for (Object key : placement.keys)
+      {
+         Set<SimpleString> routingNames = values.get(key);
+
+         if (routingNames == null)
+         {
+            routingNames = Collections.newSetFromMap(new ConcurrentHashMap<SimpleString, Boolean>());
+
+            values.put(key, routingNames);
+         }
+
+         routingNames.add(routingName);
+      }
+
+      indexedCount++;
+   }
+
+   private void remove(final SimpleString routingName, final Predicate placement)
+   {
+      if (placement == Predicate.UNINDEXED)
+      {
+         unindexed.remove(routingName);
+
+         return;
+      }
+
+      ConcurrentMap<Object, Set<SimpleString>> values = index.get(placement.property);
+
+      for (Object key : placement.keys)
+      {
+         Set<SimpleString> routingNames = values.get(key);
+
+         routingNames.remove(routingName);
+
+         if (routingNames.isEmpty())
+         {
+            values.remove(key);
+         }
+      }
+
+      if (values.isEmpty())
+      {
+         index.remove(placement.property);
+      }
+
+      indexedCount--;
+   }
+
+   /**
+    * A property and the keys of the values it must have to match
+    */
+   static final class Predicate
+   {
+      static final Predicate UNINDEXED = new Predicate(null, Collections.emptySet());
+
+      final SimpleString property;
+
+      final Set<?> keys;
+
+      Predicate(final SimpleString property, final Set<?> keys)
+      {
+         this.property = property;
+         this.keys = keys;
+      }
+
+      @Override
+      public String toString()
+      {
+         return "Predicate [property=" + property + ", keys=" + keys + "]";
+      }
+   }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.postoffice.impl;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.hornetq.core.postoffice.Binding;
+import org.hornetq.core.postoffice.BindingsLoadBalancingPolicy;
+import org.hornetq.core.postoffice.QueueBinding;
+import org.hornetq.core.server.Queue;
+import org.hornetq.core.server.ServerMessage;
+
+/**
+ * Routes messages to the bindings in proportion to how fast they can take them.
+ * <p>
+ * The weight of a queue binding is its consumer count times the rate at which messages leave its
+ * queue, divided by the backlog of the queue. For a remote binding the queue is the store and
+ * forward queue of the node's bridge, so its rate is how fast that node accepts messages and its
+ * backlog includes the messages the bridge has sent but that weren't acknowledged yet. A slow node
+ * then gets fewer messages instead of growing a store and forward backlog.
+ * <p>
+ * Weights are sampled at most once per {@link #SAMPLE_PERIOD} for each binding and a binding is
+ * then picked at random according to them.
+ */
+public final class WeightedLoadBalancingPolicy implements BindingsLoadBalancingPolicy
+{
+   static final long SAMPLE_PERIOD = 1000;
+
+   private final Random random = new Random();
+
+   private final ConcurrentMap<Long, Weight> weights = new ConcurrentHashMap<Long, Weight>();
+
+   public Binding select(final ServerMessage message, final List<Binding> candidates)
+   {
+      int size = candidates.size();
+
+      long now = System.currentTimeMillis();
+
+      double[] values = new double[size];
+
+      double total = 0;
+
+      for (int i = 0; i < size; i++)
+      {
+         values[i] = getWeight(candidates.get(i), now);
+         total += values[i];
+      }
+
+      double r = random.nextDouble() * total;
+
+      for (int i = 0; i < size - 1; i++)
+      {
+         r -= values[i];
+
+         if (r < 0)
+         {
+            return candidates.get(i);
+         }
+      }
+
+      return candidates.get(size - 1);
+   }
+
+   public void bindingRemoved(final Binding binding)
+   {
+      weights.remove(binding.getID());
+   }
+
+   double getWeight(final Binding binding, final long now)
+   {
+      if (!(binding instanceof QueueBinding))
+      {
+         return 1;
+      }
+
+      Weight weight = weights.get(binding.getID());
+
+      if (weight == null)
+      {
+         weight = new Weight();
+
+         Weight existing = weights.putIfAbsent(binding.getID(), weight);
+
+         if (existing != null)
+         {
+            weight = existing;
+         }
+      }
+
+      return weight.get((QueueBinding)binding, now);
+   }
+
+   private static final class Weight
+   {
+      private long lastSample = -1;
+
+      private long lastConsumed;
+
+      private double rate;
+
+      private volatile double value;
+
+      synchronized double get(final QueueBinding binding, final long now)
+      {
+         if (lastSample != -1 && now - lastSample < SAMPLE_PERIOD)
+         {
+            return value;
+         }
+
+         Queue queue = binding.getQueue();
+
+         long backlog = Math.max(0, queue.getInstantMessageCount());
+
+         long consumed = queue.getInstantMessagesAdded() - backlog;
+
+         if (lastSample != -1 && now > lastSample)
+         {
+            double sampledRate = Math.max(0, consumed - lastConsumed) * 1000d / (now - lastSample);
+
+            // smooths the rate over a few periods
+            rate = (rate + sampledRate) / 2;
+         }
+
+         lastSample = now;
+
+         lastConsumed = consumed;
+
+         value = Math.max(1, binding.consumerCount()) * (1 + rate) / (1 + backlog);
+
+         return value;
+      }
+   }
+}
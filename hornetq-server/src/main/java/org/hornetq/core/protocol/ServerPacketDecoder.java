@@ -45,6 +45,8 @@ import org.hornetq.core.protocol.core.impl.wireformat.BackupReplicationStartFail
 import org.hornetq.core.protocol.core.impl.wireformat.LiveIsStoppingMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationAddMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationAddTXMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationBatchMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationBatchResponseMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationCommitMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationDeleteMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationDeleteTXMessage;
@@ -170,6 +172,16 @@ public class ServerPacketDecoder extends PacketDecoder
             packet = new ReplicationSyncFileMessage();
             break;
          }
+         case PacketImpl.REPLICATION_BATCH:
+         {
+            packet = new ReplicationBatchMessage();
+            break;
+         }
+         case PacketImpl.REPLICATION_BATCH_RESPONSE:
+         {
+            packet = new ReplicationBatchResponseMessage();
+            break;
+         }
          case PacketImpl.REPLICATION_SCHEDULED_FAILOVER:
          {
             packet = new LiveIsStoppingMessage();
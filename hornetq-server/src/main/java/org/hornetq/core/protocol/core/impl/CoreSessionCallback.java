@@ -12,12 +12,15 @@
  */
 package org.hornetq.core.protocol.core.impl;
 
+import java.io.File;
+
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.protocol.core.Channel;
 import org.hornetq.core.protocol.core.Packet;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionProducerCreditsFailMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionProducerCreditsMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionReceiveContinuationMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.SessionReceiveFileContinuationMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionReceiveLargeMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionReceiveMessage;
 import org.hornetq.core.server.ServerMessage;
@@ -67,6 +70,30 @@ public final class CoreSessionCallback implements SessionCallback
       return packet.getPacketSize();
    }
 
+   public boolean isFileTransferSupported()
+   {
+      return channel.getConnection().getTransportConnection().isFileTransferSupported();
+   }
+
+   public int sendLargeMessageContinuation(long consumerID,
+                                           File file,
+                                           long position,
+                                           int length,
+                                           boolean continues,
+                                           boolean requiresResponse)
+   {
+      Packet packet = new SessionReceiveFileContinuationMessage(consumerID,
+                                                                file,
+                                                                position,
+                                                                length,
+                                                                continues,
+                                                                requiresResponse);
+
+      channel.send(packet);
+
+      return packet.getPacketSize();
+   }
+
    public int sendMessage(ServerMessage message, long consumerID, int deliveryCount)
    {
       Packet packet = new SessionReceiveMessage(consumerID, message, deliveryCount);
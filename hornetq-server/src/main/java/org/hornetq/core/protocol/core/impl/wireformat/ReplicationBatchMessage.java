@@ -0,0 +1,160 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.protocol.core.impl.wireformat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.HornetQBuffers;
+import org.hornetq.core.protocol.core.impl.PacketImpl;
+
+/**
+ * Carries several journal operations replicated as a unit.
+ * <p>
+ * The operations are encoded as they are added, so the records they reference may change after
+ * that without changing what gets replicated. The backup applies them in order and answers with a
+ * single {@link ReplicationBatchResponseMessage} carrying the high-water mark of the batch, that
+ * is the sequence of its last operation on the live's replication stream.
+ */
+public class ReplicationBatchMessage extends PacketImpl
+{
+   private long highWaterMark;
+
+   private int count;
+
+   /** Live side, the encoded operations */
+   private HornetQBuffer entries;
+
+   /** Backup side, the decoded operations */
+   private List<PacketImpl> packets;
+
+   public ReplicationBatchMessage()
+   {
+      super(PacketImpl.REPLICATION_BATCH);
+   }
+
+   public ReplicationBatchMessage(final int initialSize)
+   {
+      this();
+      entries = HornetQBuffers.dynamicBuffer(initialSize);
+   }
+
+   /**
+    * @return whether packets of this type can be part of a batch
+    */
+   public static boolean isBatchable(final byte type)
+   {
+      switch (type)
+      {
+         case REPLICATION_APPEND:
+         case REPLICATION_APPEND_TX:
+         case REPLICATION_DELETE:
+         case REPLICATION_DELETE_TX:
+         case REPLICATION_PREPARE:
+         case REPLICATION_COMMIT_ROLLBACK:
+            return true;
+         default:
+            return false;
+      }
+   }
+
+   public void add(final PacketImpl packet)
+   {
+      entries.writeByte(packet.getType());
+      packet.encodeRest(entries);
+      count++;
+   }
+
+   public void setHighWaterMark(final long highWaterMark)
+   {
+      this.highWaterMark = highWaterMark;
+   }
+
+   public long getHighWaterMark()
+   {
+      return highWaterMark;
+   }
+
+   public int getCount()
+   {
+      return count;
+   }
+
+   /**
+    * @return the encoded size of the operations added so far
+    */
+   public int getEntriesSize()
+   {
+      return entries.writerIndex();
+   }
+
+   /**
+    * @return the operations of a decoded batch, in order
+    */
+   public List<PacketImpl> getPackets()
+   {
+      return packets;
+   }
+
+   @Override
+   public void encodeRest(final HornetQBuffer buffer)
+   {
+      buffer.writeLong(highWaterMark);
+      buffer.writeInt(count);
+      buffer.writeBytes(entries, 0, entries.writerIndex());
+   }
+
+   @Override
+   public void decodeRest(final HornetQBuffer buffer)
+   {
+      highWaterMark = buffer.readLong();
+      count = buffer.readInt();
+      packets = new ArrayList<PacketImpl>(count);
+      for (int i = 0; i < count; i++)
+      {
+         PacketImpl packet = newPacket(buffer.readByte());
+         packet.decodeRest(buffer);
+         packets.add(packet);
+      }
+   }
+
+   private static PacketImpl newPacket(final byte type)
+   {
+      switch (type)
+      {
+         case REPLICATION_APPEND:
+            return new ReplicationAddMessage();
+         case REPLICATION_APPEND_TX:
+            return new ReplicationAddTXMessage();
+         case REPLICATION_DELETE:
+            return new ReplicationDeleteMessage();
+         case REPLICATION_DELETE_TX:
+            return new ReplicationDeleteTXMessage();
+         case REPLICATION_PREPARE:
+            return new ReplicationPrepareMessage();
+         case REPLICATION_COMMIT_ROLLBACK:
+            return new ReplicationCommitMessage();
+         default:
+            throw new IllegalArgumentException("Invalid type for a replication batch: " + type);
+      }
+   }
+
+   @Override
+   public String toString()
+   {
+      return ReplicationBatchMessage.class.getSimpleName() + "[type=" + getType() + ", channel=" + getChannelID() +
+         ", count=" + count + ", highWaterMark=" + highWaterMark + "]";
+   }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.protocol.core.impl.wireformat;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.core.protocol.core.impl.PacketImpl;
+
+/**
+ * Acknowledges every replicated operation up to the high-water mark of a
+ * {@link ReplicationBatchMessage}.
+ */
+public class ReplicationBatchResponseMessage extends PacketImpl
+{
+   private long highWaterMark;
+
+   public ReplicationBatchResponseMessage()
+   {
+      super(PacketImpl.REPLICATION_BATCH_RESPONSE);
+   }
+
+   public ReplicationBatchResponseMessage(final long highWaterMark)
+   {
+      this();
+      this.highWaterMark = highWaterMark;
+   }
+
+   public long getHighWaterMark()
+   {
+      return highWaterMark;
+   }
+
+   @Override
+   public void encodeRest(final HornetQBuffer buffer)
+   {
+      buffer.writeLong(highWaterMark);
+   }
+
+   @Override
+   public void decodeRest(final HornetQBuffer buffer)
+   {
+      highWaterMark = buffer.readLong();
+   }
+
+   @Override
+   public String toString()
+   {
+      return ReplicationBatchResponseMessage.class.getSimpleName() + "[type=" + getType() + ", channel=" +
+         getChannelID() + ", highWaterMark=" + highWaterMark + "]";
+   }
+}
@@ -4,6 +4,8 @@ import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.SimpleString;
@@ -14,6 +16,13 @@ import org.hornetq.core.protocol.core.impl.PacketImpl;
 /**
  * Message is used to sync {@link SequentialFile}s to a backup server. The {@link FileType} controls
  * which extra information is sent.
+ * <p>
+ * The data may be sent {@link #ENCODING_ZEROS} when it only has zeros, as most of a journal file
+ * that isn't full, or {@link #ENCODING_DEFLATED}. Either way the backup gets the plain data from
+ * {@link #getData()}.
+ * <p>
+ * Only an encoded chunk flags its file type and carries the encoding, so the plain chunks keep the
+ * format of the versions that didn't encode the data.
  */
 public final class ReplicationSyncFileMessage extends PacketImpl
 {
@@ -32,6 +41,24 @@ public final class ReplicationSyncFileMessage extends PacketImpl
    private byte[] byteArray;
    private SimpleString pageStoreName;
    private FileType fileType;
+
+   /** The data is sent as it is */
+   public static final byte ENCODING_RAW = 0;
+
+   /** The data is only zeros, none is sent */
+   public static final byte ENCODING_ZEROS = 1;
+
+   /** The data is compressed with a {@link java.util.zip.Deflater} */
+   public static final byte ENCODING_DEFLATED = 2;
+
+   private byte encoding = ENCODING_RAW;
+
+   /** Set on the file type code of an encoded chunk */
+   private static final byte ENCODED = 0x40;
+
+   /** The number of data bytes actually sent */
+   private int encodedSize;
+
    public enum FileType
    {
       JOURNAL(0), PAGE(1), LARGE_MESSAGE(2);
@@ -66,6 +93,16 @@ public final class ReplicationSyncFileMessage extends PacketImpl
 
    public ReplicationSyncFileMessage(JournalContent content, SimpleString storeName, long id, int size,
                                      ByteBuffer buffer)
+   {
+      this(content, storeName, id, size, buffer, ENCODING_RAW);
+   }
+
+   /**
+    * @param size the size of the plain data
+    * @param buffer the data as encoded, nothing is read from it with {@link #ENCODING_ZEROS}
+    */
+   public ReplicationSyncFileMessage(JournalContent content, SimpleString storeName, long id, int size,
+                                     ByteBuffer buffer, byte encoding)
    {
       this();
       this.byteBuffer = buffer;
@@ -73,6 +110,7 @@ public final class ReplicationSyncFileMessage extends PacketImpl
       this.dataSize = size;
       this.fileId = id;
       this.journalType = content;
+      this.encoding = encoding;
       determineType();
    }
 
@@ -98,7 +136,8 @@ public final class ReplicationSyncFileMessage extends PacketImpl
       buffer.writeLong(fileId);
       if (fileId == -1)
          return;
-      buffer.writeByte(fileType.code);
+      final boolean encoded = dataSize > 0 && encoding != ENCODING_RAW;
+      buffer.writeByte(encoded ? (byte)(fileType.code | ENCODED) : fileType.code);
       switch (fileType)
       {
          case JOURNAL:
@@ -121,7 +160,19 @@ public final class ReplicationSyncFileMessage extends PacketImpl
        * sending -1 will close the file in case of a journal, but not in case of a largeMessage
        * (which might receive appends)
        */
-      if (dataSize > 0)
+      if (encoded)
+      {
+         buffer.writeByte(encoding);
+         if (encoding == ENCODING_DEFLATED)
+         {
+            buffer.writeInt(byteBuffer.remaining());
+         }
+         if (encoding != ENCODING_ZEROS)
+         {
+            buffer.writeBytes(byteBuffer);
+         }
+      }
+      else if (dataSize > 0)
       {
          buffer.writeBytes(byteBuffer);
       }
@@ -131,7 +182,9 @@ public final class ReplicationSyncFileMessage extends PacketImpl
    public void decodeRest(final HornetQBuffer buffer)
    {
       fileId = buffer.readLong();
-      switch (FileType.getFileType(buffer.readByte()))
+      byte typeCode = buffer.readByte();
+      final boolean encoded = (typeCode & ENCODED) != 0;
+      switch (FileType.getFileType((byte)(typeCode & ~ENCODED)))
       {
          case JOURNAL:
          {
@@ -155,7 +208,59 @@ public final class ReplicationSyncFileMessage extends PacketImpl
       if (size > 0)
       {
          byteArray = new byte[size];
-         buffer.readBytes(byteArray);
+         encoding = encoded ? buffer.readByte() : ENCODING_RAW;
+         switch (encoding)
+         {
+            case ENCODING_ZEROS:
+            {
+               encodedSize = 0;
+               break;
+            }
+            case ENCODING_DEFLATED:
+            {
+               encodedSize = buffer.readInt();
+               byte[] compressed = new byte[encodedSize];
+               buffer.readBytes(compressed);
+               inflate(compressed, byteArray);
+               break;
+            }
+            default:
+            {
+               encodedSize = size;
+               buffer.readBytes(byteArray);
+            }
+         }
+      }
+   }
+
+   private static void inflate(final byte[] compressed, final byte[] data)
+   {
+      Inflater inflater = new Inflater();
+      try
+      {
+         inflater.setInput(compressed);
+         int read = 0;
+         while (read < data.length && !inflater.finished())
+         {
+            int n = inflater.inflate(data, read, data.length - read);
+            if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+            {
+               break;
+            }
+            read += n;
+         }
+         if (read != data.length)
+         {
+            throw new IllegalStateException("Expected " + data.length + " bytes, but inflated " + read);
+         }
+      }
+      catch (DataFormatException e)
+      {
+         throw new IllegalStateException(e);
+      }
+      finally
+      {
+         inflater.end();
       }
    }
 
@@ -174,6 +279,20 @@ public final class ReplicationSyncFileMessage extends PacketImpl
       return byteArray;
    }
 
+   public byte getEncoding()
+   {
+      return encoding;
+   }
+
+   /**
+    * @return the number of data bytes that were actually received, which is less than the size of
+    *         {@link #getData()} if the data was compressed or only zeros
+    */
+   public int getEncodedSize()
+   {
+      return encodedSize;
+   }
+
    public FileType getFileType()
    {
       return fileType;
@@ -192,6 +311,7 @@ public final class ReplicationSyncFileMessage extends PacketImpl
       result = prime * result + Arrays.hashCode(byteArray);
       result = prime * result + ((byteBuffer == null) ? 0 : byteBuffer.hashCode());
       result = prime * result + dataSize;
+      result = prime * result + encoding;
       result = prime * result + (int)(fileId ^ (fileId >>> 32));
       result = prime * result + ((fileType == null) ? 0 : fileType.hashCode());
       result = prime * result + ((journalType == null) ? 0 : journalType.hashCode());
@@ -234,6 +354,10 @@ public final class ReplicationSyncFileMessage extends PacketImpl
       {
          return false;
       }
+      if (encoding != other.encoding)
+      {
+         return false;
+      }
       if (fileId != other.fileId)
       {
          return false;
@@ -12,6 +12,7 @@
  */
 package org.hornetq.core.protocol.stomp;
 
+import java.io.File;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -122,6 +123,21 @@ public class StompSession implements SessionCallback
       return 0;
    }
 
+   public boolean isFileTransferSupported()
+   {
+      return false;
+   }
+
+   public int sendLargeMessageContinuation(long consumerID,
+                                           File file,
+                                           long position,
+                                           int length,
+                                           boolean continues,
+                                           boolean requiresResponse)
+   {
+      return 0;
+   }
+
    public int sendLargeMessage(ServerMessage msg, long consumerID, long bodySize, int deliveryCount)
    {
       return 0;
@@ -12,6 +12,9 @@
  */
 package org.hornetq.core.remoting.impl.invm;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
@@ -23,6 +26,7 @@ import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.HornetQBuffers;
 import org.hornetq.api.core.HornetQInterruptedException;
 import org.hornetq.api.core.TransportConfiguration;
+import org.hornetq.core.client.HornetQClientMessageBundle;
 import org.hornetq.core.security.HornetQPrincipal;
 import org.hornetq.core.server.HornetQServerLogger;
 import org.hornetq.spi.core.remoting.BufferHandler;
@@ -206,6 +210,49 @@ public class InVMConnection implements Connection
 
    }
 
+   public boolean isFileTransferSupported()
+   {
+      // The buffers are handed over to the other side, there is no socket to transfer the file to
+      return false;
+   }
+
+   public void transferFile(final HornetQBuffer header,
+                            final File file,
+                            final long position,
+                            final int count,
+                            final HornetQBuffer trailer,
+                            final boolean flush)
+   {
+      // the other side needs the bytes in a buffer anyway, so they are read from the file
+      HornetQBuffer buffer = HornetQBuffers.fixedBuffer(header.readableBytes() + count + trailer.readableBytes());
+
+      buffer.writeBytes(header, header.readerIndex(), header.readableBytes());
+
+      try
+      {
+         RandomAccessFile randomFile = new RandomAccessFile(file, "r");
+         try
+         {
+            byte[] bytes = new byte[count];
+            randomFile.seek(position);
+            randomFile.readFully(bytes);
+            buffer.writeBytes(bytes);
+         }
+         finally
+         {
+            randomFile.close();
+         }
+      }
+      catch (IOException e)
+      {
+         throw HornetQClientMessageBundle.BUNDLE.errorReadingFile(file.getName(), e);
+      }
+
+      buffer.writeBytes(trailer, trailer.readerIndex(), trailer.readableBytes());
+
+      write(buffer, flush, false);
+   }
+
    public String getRemoteAddress()
    {
       return "invm:" + serverID;
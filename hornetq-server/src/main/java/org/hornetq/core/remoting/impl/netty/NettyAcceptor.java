@@ -169,6 +169,8 @@ public class NettyAcceptor implements Acceptor
 
    private final boolean directDeliver;
 
+   private final boolean fileTransferEnabled;
+
 
    public NettyAcceptor(final Map<String, Object> configuration,
                         final BufferHandler handler,
@@ -304,6 +306,12 @@ public class NettyAcceptor implements Acceptor
       directDeliver = ConfigurationHelper.getBooleanProperty(TransportConstants.DIRECT_DELIVER,
                                                              TransportConstants.DEFAULT_DIRECT_DELIVER,
                                                              configuration);
+
+      // SSL and HTTP need the bytes in memory, and there is no socket to transfer a file to with in-vm channels
+      fileTransferEnabled = !sslEnabled && !httpEnabled && !useInvm && protocol == ProtocolType.CORE &&
+                            ConfigurationHelper.getBooleanProperty(TransportConstants.LARGE_MESSAGE_FILE_TRANSFER,
+                                                                   TransportConstants.DEFAULT_LARGE_MESSAGE_FILE_TRANSFER,
+                                                                   configuration);
    }
 
    public synchronized void start() throws Exception
@@ -684,7 +692,12 @@ public class NettyAcceptor implements Acceptor
       {
          Listener connectionListener = new Listener();
 
-         NettyConnection nc = new NettyConnection(configuration, e.getChannel(), connectionListener, !httpEnabled && batchDelay > 0, directDeliver);
+         NettyConnection nc = new NettyConnection(configuration,
+                                                  e.getChannel(),
+                                                  connectionListener,
+                                                  !httpEnabled && batchDelay > 0,
+                                                  directDeliver,
+                                                  fileTransferEnabled);
 
          connectionListener.connectionCreated(NettyAcceptor.this, nc, ProtocolType.CORE);
 
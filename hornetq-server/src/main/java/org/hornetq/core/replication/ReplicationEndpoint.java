@@ -20,6 +20,7 @@ import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
@@ -51,6 +52,8 @@ import org.hornetq.core.protocol.core.impl.wireformat.BackupReplicationStartFail
 import org.hornetq.core.protocol.core.impl.wireformat.HornetQExceptionMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationAddMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationAddTXMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationBatchMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationBatchResponseMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationCommitMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationDeleteMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationDeleteTXMessage;
@@ -67,6 +70,7 @@ import org.hornetq.core.protocol.core.impl.wireformat.ReplicationSyncFileMessage
 import org.hornetq.core.server.HornetQComponent;
 import org.hornetq.core.server.HornetQMessageBundle;
 import org.hornetq.core.server.HornetQServerLogger;
+import org.hornetq.core.server.JournalType;
 import org.hornetq.core.server.ServerMessage;
 import org.hornetq.core.server.impl.HornetQServerImpl;
 import org.hornetq.core.server.impl.QuorumManager;
@@ -114,6 +118,12 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
 
    private QuorumManager quorumManager;
 
+   // statistics of the initial synchronization, written holding the lock of this endpoint
+   private volatile long syncBytes;
+   private volatile long syncBytesTransferred;
+   private volatile long syncStartTime;
+   private volatile long syncEndTime;
+
    // Constructors --------------------------------------------------
    public ReplicationEndpoint(final HornetQServerImpl server, IOCriticalErrorListener criticalErrorListener,
                               boolean wantedFailBack)
@@ -181,6 +191,10 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
             {
                handleCommitRollback((ReplicationCommitMessage) packet);
             }
+            else if (type == PacketImpl.REPLICATION_BATCH)
+            {
+               response = handleBatch((ReplicationBatchMessage) packet);
+            }
             else if (type == PacketImpl.REPLICATION_PAGE_WRITE)
             {
                handlePageWrite((ReplicationPageWriteMessage) packet);
@@ -284,7 +298,8 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
                                                                     config.getJournalBufferSize_NIO(),
                                                                     server.getScheduledPool(),
                                                                     server.getExecutorFactory(),
-                                                                    config.isJournalSyncNonTransactional(), criticalErrorListener),
+                                                                    config.isJournalSyncNonTransactional(), criticalErrorListener,
+                                                                    config.getJournalType() == JournalType.MAPPED),
                                           server.getAddressSettingsRepository());
 
       pageManager.start();
@@ -395,6 +410,39 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
 
    }
 
+   /**
+    * @return the number of bytes of journal, page and large-message files received from the live
+    *         server so far to synchronize this backup
+    */
+   public long getSyncBytes()
+   {
+      return syncBytes;
+   }
+
+   /**
+    * @return the number of bytes actually transferred for {@link #getSyncBytes()}, which is less
+    *         when chunks of zeros were skipped or the data was compressed
+    */
+   public long getSyncBytesTransferred()
+   {
+      return syncBytesTransferred;
+   }
+
+   /**
+    * @return the average number of bytes of files synchronized per second, since the
+    *         synchronization started and until it finished
+    */
+   public long getSyncThroughput()
+   {
+      long start = syncStartTime;
+      if (start == 0)
+      {
+         return 0;
+      }
+      long end = syncEndTime != 0 ? syncEndTime : System.currentTimeMillis();
+      return syncBytes * 1000 / Math.max(1, end - start);
+   }
+
    /** Used on tests only. To simulate missing page deletes*/
    public void setDeletePages(final boolean deletePages)
    {
@@ -428,6 +476,8 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
 
    private void finishSynchronization(String liveID) throws Exception
    {
+      syncEndTime = System.currentTimeMillis();
+
       for (JournalContent jc : EnumSet.allOf(JournalContent.class))
       {
          Journal journal = journalsHolder.remove(jc);
@@ -473,6 +523,16 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
    {
       Long id = Long.valueOf(msg.getId());
       byte[] data = msg.getData();
+
+      if (syncStartTime == 0)
+      {
+         syncStartTime = System.currentTimeMillis();
+      }
+      if (data != null)
+      {
+         syncBytes += data.length;
+         syncBytesTransferred += msg.getEncodedSize();
+      }
       SequentialFile channel1;
       switch (msg.getFileType())
       {
@@ -665,17 +725,75 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
     * @param packet
     */
    private void handleCommitRollback(final ReplicationCommitMessage packet) throws Exception
+   {
+      handleCommitRollback(packet, packet.getSync());
+   }
+
+   private void handleCommitRollback(final ReplicationCommitMessage packet, final boolean sync) throws Exception
    {
       Journal journalToUse = getJournal(packet.getJournalID());
 
       if (packet.isRollback())
       {
-         journalToUse.appendRollbackRecord(packet.getTxId(), packet.getSync());
+         journalToUse.appendRollbackRecord(packet.getTxId(), sync);
       }
       else
       {
-         journalToUse.appendCommitRecord(packet.getTxId(), packet.getSync());
+         journalToUse.appendCommitRecord(packet.getTxId(), sync);
+      }
+   }
+
+   /**
+    * Applies the operations of the batch in order. Only the last commit or rollback asking for a
+    * sync is appended with sync, as the journal syncs everything appended before it anyway, so the
+    * whole batch costs a single sync.
+    * @return the response acknowledging the whole batch
+    */
+   private PacketImpl handleBatch(final ReplicationBatchMessage packet) throws Exception
+   {
+      List<PacketImpl> packets = packet.getPackets();
+
+      int lastSync = -1;
+
+      for (int i = 0; i < packets.size(); i++)
+      {
+         PacketImpl op = packets.get(i);
+         if (op.getType() == PacketImpl.REPLICATION_COMMIT_ROLLBACK && ((ReplicationCommitMessage)op).getSync())
+         {
+            lastSync = i;
+         }
       }
+
+      for (int i = 0; i < packets.size(); i++)
+      {
+         PacketImpl op = packets.get(i);
+
+         switch (op.getType())
+         {
+            case PacketImpl.REPLICATION_APPEND:
+               handleAppendAddRecord((ReplicationAddMessage)op);
+               break;
+            case PacketImpl.REPLICATION_APPEND_TX:
+               handleAppendAddTXRecord((ReplicationAddTXMessage)op);
+               break;
+            case PacketImpl.REPLICATION_DELETE:
+               handleAppendDelete((ReplicationDeleteMessage)op);
+               break;
+            case PacketImpl.REPLICATION_DELETE_TX:
+               handleAppendDeleteTX((ReplicationDeleteTXMessage)op);
+               break;
+            case PacketImpl.REPLICATION_PREPARE:
+               handlePrepare((ReplicationPrepareMessage)op);
+               break;
+            case PacketImpl.REPLICATION_COMMIT_ROLLBACK:
+               handleCommitRollback((ReplicationCommitMessage)op, i == lastSync);
+               break;
+            default:
+               HornetQServerLogger.LOGGER.invalidPacketForReplication(op);
+         }
+      }
+
+      return new ReplicationBatchResponseMessage(packet.getHighWaterMark());
    }
 
    /**
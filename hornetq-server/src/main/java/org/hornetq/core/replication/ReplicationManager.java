@@ -21,6 +21,9 @@ import java.util.List;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
 
 import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.HornetQException;
@@ -43,6 +46,8 @@ import org.hornetq.core.protocol.core.impl.PacketImpl;
 import org.hornetq.core.protocol.core.impl.wireformat.LiveIsStoppingMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationAddMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationAddTXMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationBatchMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationBatchResponseMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationCommitMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationDeleteMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationDeleteTXMessage;
@@ -63,12 +68,20 @@ import org.hornetq.utils.ExecutorFactory;
  * Manages replication tasks on the live server (that is the live server side of a "remote backup"
  * use case).
  * <p>
+ * With a batch size bigger than one, journal operations are sent in {@link ReplicationBatchMessage}s
+ * instead of one packet each. A batch is sent once it is full, or by the replication executor as
+ * soon as it gets to it, so the operations added meanwhile share the packet and the backup's
+ * response. The backup acknowledges a batch with its high-water mark, and the tokens of all the
+ * operations up to it are completed in order.
+ * <p>
  * Its equivalent in the backup server is {@link ReplicationEndpoint}.
  * @author <mailto:clebert.suconic@jboss.org">Clebert Suconic</a>
  * @see ReplicationEndpoint
  */
 public class ReplicationManager implements HornetQComponent
 {
+   /** A batch is sent once its operations take this many bytes, whatever the batch size */
+   private static final int MAX_BATCH_BYTES = 100 * 1024;
 
    private final ResponseHandler responseHandler = new ResponseHandler();
 
@@ -84,6 +97,23 @@ public class ReplicationManager implements HornetQComponent
 
    private final ExecutorFactory executorFactory;
 
+   private final int batchSize;
+
+   private final boolean compressSync;
+
+   private final Executor batchExecutor;
+
+   private final Runnable batchFlusher = new BatchFlusher();
+
+   /** Guarded by the replicationLock */
+   private ReplicationBatchMessage batch;
+
+   /** The number of tokens added to pendingTokens, guarded by the replicationLock */
+   private long sequence;
+
+   /** The number of tokens completed */
+   private final AtomicLong acknowledged = new AtomicLong();
+
    private SessionFailureListener failureListener;
 
    private CoreRemotingConnection remotingConnection;
@@ -96,8 +126,24 @@ public class ReplicationManager implements HornetQComponent
     * @param remotingConnection
     */
    public ReplicationManager(CoreRemotingConnection remotingConnection, final ExecutorFactory executorFactory)
+   {
+      this(remotingConnection, executorFactory, 1, false);
+   }
+
+   /**
+    * @param batchSize the maximum number of journal operations sent in one packet, 1 or less to send
+    *           each operation on its own
+    * @param compressSync whether the files sent to synchronize the backup are compressed
+    */
+   public ReplicationManager(CoreRemotingConnection remotingConnection,
+                             final ExecutorFactory executorFactory,
+                             final int batchSize,
+                             final boolean compressSync)
    {
       this.executorFactory = executorFactory;
+      this.batchSize = batchSize;
+      this.compressSync = compressSync;
+      this.batchExecutor = batchSize > 1 ? executorFactory.getExecutor() : null;
       this.replicatingChannel = remotingConnection.getChannel(CHANNEL_ID.REPLICATION.id, -1);
       this.remotingConnection = remotingConnection;
    }
@@ -283,6 +329,7 @@ public class ReplicationManager implements HornetQComponent
       synchronized (replicationLock)
       {
          enabled = false;
+         batch = null;
          clearReplicationTokens();
       }
       if (replicatingChannel != null)
@@ -313,6 +360,7 @@ public class ReplicationManager implements HornetQComponent
          while (!pendingTokens.isEmpty())
          {
             OperationContext ctx = pendingTokens.poll();
+            acknowledged.incrementAndGet();
             try
             {
                ctx.replicationDone();
@@ -365,7 +413,18 @@ public class ReplicationManager implements HornetQComponent
          if (enabled)
          {
             pendingTokens.add(repliToken);
-            replicatingChannel.send(packet);
+            sequence++;
+
+            if (batchSize > 1 && ReplicationBatchMessage.isBatchable(packet.getType()))
+            {
+               addToBatch((PacketImpl)packet);
+            }
+            else
+            {
+               // the batched operations were issued first
+               flushBatch();
+               replicatingChannel.send(packet);
+            }
          }
          else
          {
@@ -382,6 +441,39 @@ public class ReplicationManager implements HornetQComponent
       }
    }
 
+   /**
+    * To be called holding the replicationLock
+    */
+   private void addToBatch(final PacketImpl packet)
+   {
+      if (batch == null)
+      {
+         batch = new ReplicationBatchMessage(1024);
+         batchExecutor.execute(batchFlusher);
+      }
+
+      batch.add(packet);
+      batch.setHighWaterMark(sequence);
+
+      if (batch.getCount() >= batchSize || batch.getEntriesSize() >= MAX_BATCH_BYTES)
+      {
+         flushBatch();
+      }
+   }
+
+   /**
+    * To be called holding the replicationLock
+    */
+   private void flushBatch()
+   {
+      if (batch != null)
+      {
+         ReplicationBatchMessage toSend = batch;
+         batch = null;
+         replicatingChannel.send(toSend);
+      }
+   }
+
    /**
     * @throws IllegalStateException By default, all replicated packets generate a replicated
     *            response. If your packets are triggering this exception, it may be because the
@@ -396,9 +488,22 @@ public class ReplicationManager implements HornetQComponent
          throw new IllegalStateException("Missing replication token on the queue.");
       }
 
+      acknowledged.incrementAndGet();
+
       ctx.replicationDone();
    }
 
+   /**
+    * Completes the tokens of all the operations up to the high-water mark, in order.
+    */
+   private void replicated(final long highWaterMark)
+   {
+      while (acknowledged.get() < highWaterMark)
+      {
+         replicated();
+      }
+   }
+
    // Inner classes -------------------------------------------------
 
    private final class ReplicatedSessionFailureListener implements SessionFailureListener
@@ -438,10 +543,28 @@ public class ReplicationManager implements HornetQComponent
          {
             replicated();
          }
+         else if (packet.getType() == PacketImpl.REPLICATION_BATCH_RESPONSE)
+         {
+            replicated(((ReplicationBatchResponseMessage)packet).getHighWaterMark());
+         }
       }
 
    }
 
+   private final class BatchFlusher implements Runnable
+   {
+      public void run()
+      {
+         synchronized (replicationLock)
+         {
+            if (enabled)
+            {
+               flushBatch();
+            }
+         }
+      }
+   }
+
    private static final class NullEncoding implements EncodingSupport
    {
       static final NullEncoding instance = new NullEncoding();
@@ -498,6 +621,9 @@ public class ReplicationManager implements HornetQComponent
 
    /**
     * Sends large files in reasonably sized chunks to the backup during replication synchronization.
+    * <p>
+    * If compression was configured, chunks with only zeros, as the unused end of a journal file, are
+    * sent without their data, and the others are compressed if that makes them smaller.
     * @param content journal type or {@code null} for large-messages and pages
     * @param pageStore page store name for pages, or {@code null} otherwise
     * @param id journal file id or (large) message id
@@ -515,9 +641,11 @@ public class ReplicationManager implements HornetQComponent
          file.open();
       }
       final FileChannel channel = (new FileInputStream(file.getJavaFile())).getChannel();
+      final Deflater deflater = compressSync ? new Deflater(Deflater.BEST_SPEED) : null;
       try
       {
          final ByteBuffer buffer = ByteBuffer.allocate(1 << 17);
+         final byte[] compressed = compressSync ? new byte[buffer.capacity()] : null;
          while (true)
          {
             buffer.clear();
@@ -539,7 +667,39 @@ public class ReplicationManager implements HornetQComponent
             buffer.rewind();
 
             // sending -1 or 0 bytes will close the file at the backup
-            sendReplicatePacket(new ReplicationSyncFileMessage(content, pageStore, id, toSend, buffer));
+            ReplicationSyncFileMessage message;
+
+            if (toSend > 0 && compressSync && isZeros(buffer.array(), toSend))
+            {
+               message =
+                  new ReplicationSyncFileMessage(content, pageStore, id, toSend, null,
+                                                 ReplicationSyncFileMessage.ENCODING_ZEROS);
+            }
+            else if (toSend > 0 && compressSync)
+            {
+               deflater.reset();
+               deflater.setInput(buffer.array(), 0, toSend);
+               deflater.finish();
+               int compressedSize = deflater.deflate(compressed);
+
+               if (deflater.finished() && compressedSize < toSend)
+               {
+                  message =
+                     new ReplicationSyncFileMessage(content, pageStore, id, toSend,
+                                                    ByteBuffer.wrap(compressed, 0, compressedSize),
+                                                    ReplicationSyncFileMessage.ENCODING_DEFLATED);
+               }
+               else
+               {
+                  message = new ReplicationSyncFileMessage(content, pageStore, id, toSend, buffer);
+               }
+            }
+            else
+            {
+               message = new ReplicationSyncFileMessage(content, pageStore, id, toSend, buffer);
+            }
+
+            sendReplicatePacket(message);
             if (bytesRead == -1 || bytesRead == 0 || maxBytesToSend == 0)
                break;
          }
@@ -547,7 +707,23 @@ public class ReplicationManager implements HornetQComponent
       finally
       {
          channel.close();
+         if (deflater != null)
+         {
+            deflater.end();
+         }
+      }
+   }
+
+   private static boolean isZeros(final byte[] data, final int length)
+   {
+      for (int i = 0; i < length; i++)
+      {
+         if (data[i] != 0)
+         {
+            return false;
+         }
       }
+      return true;
    }
 
    /**
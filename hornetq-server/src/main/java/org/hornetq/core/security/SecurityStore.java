@@ -28,4 +28,16 @@ public interface SecurityStore
    void check(SimpleString address, CheckType checkType, ServerSession session) throws Exception;
 
    void stop();
+
+   /**
+    * @return the number of checks granted from the cache
+    */
+   long getCacheHits();
+
+   /**
+    * @return the number of checks that went to the security manager
+    */
+   long getCacheMisses();
+
+   int getCacheSize();
 }
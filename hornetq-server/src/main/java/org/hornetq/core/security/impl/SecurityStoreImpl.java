@@ -15,9 +15,15 @@ package org.hornetq.core.security.impl;
 
 import static org.hornetq.api.core.management.NotificationType.SECURITY_AUTHENTICATION_VIOLATION;
 
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.api.core.management.ManagementHelper;
@@ -33,12 +39,18 @@ import org.hornetq.core.server.management.NotificationService;
 import org.hornetq.core.settings.HierarchicalRepository;
 import org.hornetq.core.settings.HierarchicalRepositoryChangeListener;
 import org.hornetq.spi.core.security.HornetQSecurityManager;
-import org.hornetq.utils.ConcurrentHashSet;
 import org.hornetq.utils.TypedProperties;
 
 /**
  * The HornetQ SecurityStore implementation
  *
+ * Granted checks are cached by user, check type and address for the security invalidation interval. Each entry is
+ * revalidated against the security manager on the executor at a random point between half and three quarters of its
+ * interval, so entries don't all expire together and an active user keeps hitting the cache while its access is
+ * checked again. An entry that couldn't be revalidated in time expires and the next check goes to the security
+ * manager. When the security settings change only the entries whose roles changed are dropped. Entries that are
+ * no longer used are swept from the cache on the executor at most once per interval, when a new check is cached.
+ *
  * @author <a href="mailto:tim.fox@jboss.com">Tim Fox</a>
  * @author <a href="ataylor@redhat.com">Andy Taylor</a>
  *
@@ -50,6 +62,10 @@ public class SecurityStoreImpl implements SecurityStore, HierarchicalRepositoryC
 {
    // Constants -----------------------------------------------------
 
+   private static final double MIN_REFRESH = 0.5;
+
+   private static final double MAX_REFRESH = 0.75;
+
    // Static --------------------------------------------------------
 
    // Attributes ----------------------------------------------------
@@ -60,11 +76,19 @@ public class SecurityStoreImpl implements SecurityStore, HierarchicalRepositoryC
 
    private final HornetQSecurityManager securityManager;
 
-   private final ConcurrentMap<String, ConcurrentHashSet<SimpleString>> cache = new ConcurrentHashMap<String, ConcurrentHashSet<SimpleString>>();
+   private final ConcurrentMap<CheckKey, CachedCheck> cache = new ConcurrentHashMap<CheckKey, CachedCheck>();
 
    private final long invalidationInterval;
 
-   private volatile long lastCheck;
+   private final Executor executor;
+
+   private final Random random = new Random();
+
+   private final AtomicLong cacheHits = new AtomicLong();
+
+   private final AtomicLong cacheMisses = new AtomicLong();
+
+   private final AtomicLong nextSweep;
 
    private final boolean securityEnabled;
 
@@ -77,6 +101,7 @@ public class SecurityStoreImpl implements SecurityStore, HierarchicalRepositoryC
    // Constructors --------------------------------------------------
 
    /**
+    * @param executor used to revalidate the cached checks
     * @param notificationService can be <code>null</code>
     */
    public SecurityStoreImpl(final HierarchicalRepository<Set<Role>> securityRepository,
@@ -85,7 +110,8 @@ public class SecurityStoreImpl implements SecurityStore, HierarchicalRepositoryC
                             final boolean securityEnabled,
                             final String managementClusterUser,
                             final String managementClusterPassword,
-                            final NotificationService notificationService)
+                            final NotificationService notificationService,
+                            final Executor executor)
    {
       this.securityRepository = securityRepository;
       this.securityManager = securityManager;
@@ -94,6 +120,8 @@ public class SecurityStoreImpl implements SecurityStore, HierarchicalRepositoryC
       this.managementClusterUser = managementClusterUser;
       this.managementClusterPassword = managementClusterPassword;
       this.notificationService = notificationService;
+      this.executor = executor;
+      nextSweep = new AtomicLong(System.currentTimeMillis() + invalidationInterval);
       this.securityRepository.registerListener(this);
    }
 
@@ -102,6 +130,7 @@ public class SecurityStoreImpl implements SecurityStore, HierarchicalRepositoryC
    public void stop()
    {
       securityRepository.unRegisterListener(this);
+      cache.clear();
    }
 
    public void authenticate(final String user, final String password) throws Exception
@@ -156,7 +185,10 @@ public class SecurityStoreImpl implements SecurityStore, HierarchicalRepositoryC
          }
 
          String user = session.getUsername();
-         if (checkCached(address, user, checkType))
+
+         CheckKey key = new CheckKey(user, checkType, address);
+
+         if (checkCached(key, session.getPassword()))
          {
             // OK
             return;
@@ -172,6 +204,8 @@ public class SecurityStoreImpl implements SecurityStore, HierarchicalRepositoryC
             return;
          }
 
+         cacheMisses.incrementAndGet();
+
          if (!securityManager.validateUserAndRole(user, session.getPassword(), roles, checkType))
          {
             if (notificationService != null)
@@ -190,20 +224,48 @@ public class SecurityStoreImpl implements SecurityStore, HierarchicalRepositoryC
             throw HornetQMessageBundle.BUNDLE.userNoPermissions(session.getUsername(), checkType, saddress);
          }
          // if we get here we're granted, add to the cache
-         ConcurrentHashSet<SimpleString> set = new ConcurrentHashSet<SimpleString>();
-         ConcurrentHashSet<SimpleString> act = cache.putIfAbsent(user + "." + checkType.name(), set);
-         if (act != null)
+         if (invalidationInterval > 0)
          {
-            set = act;
-         }
-         set.add(address);
+            cache.put(key, newCachedCheck(roles));
 
+            sweepIfDue();
+         }
       }
    }
 
+   public long getCacheHits()
+   {
+      return cacheHits.get();
+   }
+
+   public long getCacheMisses()
+   {
+      return cacheMisses.get();
+   }
+
+   public int getCacheSize()
+   {
+      return cache.size();
+   }
+
+   /**
+    * Drops the cached checks whose address now matches different roles.
+    */
    public void onChange()
    {
-      invalidateCache();
+      Iterator<Map.Entry<CheckKey, CachedCheck>> iter = cache.entrySet().iterator();
+
+      while (iter.hasNext())
+      {
+         Map.Entry<CheckKey, CachedCheck> entry = iter.next();
+
+         Set<Role> roles = securityRepository.getMatch(entry.getKey().address.toString());
+
+         if (roles == null ? entry.getValue().roles != null : !roles.equals(entry.getValue().roles))
+         {
+            iter.remove();
+         }
+      }
    }
 
    // Public --------------------------------------------------------
@@ -213,35 +275,181 @@ public class SecurityStoreImpl implements SecurityStore, HierarchicalRepositoryC
    // Package Private -----------------------------------------------
 
    // Private -------------------------------------------------------
-   private void invalidateCache()
+
+   private CachedCheck newCachedCheck(final Set<Role> roles)
    {
-      cache.clear();
+      long now = System.currentTimeMillis();
+
+      double refresh;
+
+      synchronized (random)
+      {
+         refresh = MIN_REFRESH + random.nextDouble() * (MAX_REFRESH - MIN_REFRESH);
+      }
+
+      return new CachedCheck(roles, now + (long)(invalidationInterval * refresh), now + invalidationInterval);
    }
 
-   private boolean checkCached(final SimpleString dest, final String user, final CheckType checkType)
+   /**
+    * Removes the expired checks once per interval, so the checks of users and addresses that are gone don't stay in
+    * the cache.
+    */
+   private void sweepIfDue()
    {
       long now = System.currentTimeMillis();
 
-      boolean granted = false;
+      long next = nextSweep.get();
 
-      if (now - lastCheck > invalidationInterval)
+      if (now < next || !nextSweep.compareAndSet(next, now + invalidationInterval))
       {
-         invalidateCache();
-
-         lastCheck = now;
+         return;
       }
-      else
+
+      executor.execute(new Runnable()
       {
-         ConcurrentHashSet<SimpleString> act = cache.get(user + "." + checkType.name());
-         if (act != null)
+         public void run()
          {
-            granted = act.contains(dest);
+            long now = System.currentTimeMillis();
+
+            for (Map.Entry<CheckKey, CachedCheck> entry : cache.entrySet())
+            {
+               if (now >= entry.getValue().expiryTime)
+               {
+                  // only if it wasn't revalidated meanwhile
+                  cache.remove(entry.getKey(), entry.getValue());
+               }
+            }
          }
+      });
+   }
+
+   private boolean checkCached(final CheckKey key, final String password)
+   {
+      if (invalidationInterval <= 0)
+      {
+         return false;
       }
 
-      return granted;
+      CachedCheck cached = cache.get(key);
+
+      if (cached == null)
+      {
+         return false;
+      }
+
+      long now = System.currentTimeMillis();
+
+      if (now >= cached.expiryTime)
+      {
+         cache.remove(key, cached);
+
+         return false;
+      }
+
+      cacheHits.incrementAndGet();
+
+      if (now >= cached.refreshTime && cached.refreshing.compareAndSet(false, true))
+      {
+         revalidate(key, password, cached);
+      }
+
+      return true;
+   }
+
+   private void revalidate(final CheckKey key, final String password, final CachedCheck cached)
+   {
+      executor.execute(new Runnable()
+      {
+         public void run()
+         {
+            try
+            {
+               Set<Role> roles = securityRepository.getMatch(key.address.toString());
+
+               if (securityManager.validateUserAndRole(key.user, password, roles, key.checkType))
+               {
+                  cache.replace(key, cached, newCachedCheck(roles));
+               }
+               else
+               {
+                  cache.remove(key, cached);
+               }
+            }
+            catch (Throwable e)
+            {
+               HornetQServerLogger.LOGGER.debug("Could not revalidate " + key, e);
+
+               cache.remove(key, cached);
+            }
+         }
+      });
    }
 
    // Inner class ---------------------------------------------------
 
+   private static final class CheckKey
+   {
+      private final String user;
+
+      private final CheckType checkType;
+
+      private final SimpleString address;
+
+      private final int hash;
+
+      CheckKey(final String user, final CheckType checkType, final SimpleString address)
+      {
+         this.user = user;
+         this.checkType = checkType;
+         this.address = address;
+         hash = 31 * (31 * (user == null ? 0 : user.hashCode()) + checkType.hashCode()) + address.hashCode();
+      }
+
+      @Override
+      public int hashCode()
+      {
+         return hash;
+      }
+
+      @Override
+      public boolean equals(final Object other)
+      {
+         if (this == other)
+         {
+            return true;
+         }
+         if (!(other instanceof CheckKey))
+         {
+            return false;
+         }
+         CheckKey key = (CheckKey)other;
+         return hash == key.hash && checkType == key.checkType &&
+                (user == null ? key.user == null : user.equals(key.user)) &&
+                address.equals(key.address);
+      }
+
+      @Override
+      public String toString()
+      {
+         return "CheckKey[user=" + user + ", checkType=" + checkType + ", address=" + address + "]";
+      }
+   }
+
+   private static final class CachedCheck
+   {
+      private final Set<Role> roles;
+
+      private final long refreshTime;
+
+      private final long expiryTime;
+
+      private final AtomicBoolean refreshing = new AtomicBoolean();
+
+      CachedCheck(final Set<Role> roles, final long refreshTime, final long expiryTime)
+      {
+         this.roles = roles;
+         this.refreshTime = refreshTime;
+         this.expiryTime = expiryTime;
+      }
+   }
 }
@@ -311,4 +311,7 @@ public interface HornetQMessageBundle
    @Message(id = 119080, value =  "Invalid Page IO, PagingManager was stopped or closed", format = Message.Format.MESSAGE_FORMAT)
    HornetQIllegalStateException invalidPageIO();
 
+   @Message(id = 119081, value = "Error instantiating load balancing policy class {0}" , format = Message.Format.MESSAGE_FORMAT)
+   IllegalArgumentException errorCreatingLoadBalancingPolicyClass(@Cause Exception e, String loadBalancingPolicyClassName);
+
 }
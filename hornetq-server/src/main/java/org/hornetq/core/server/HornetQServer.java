@@ -36,6 +36,7 @@ import org.hornetq.core.remoting.server.RemotingService;
 import org.hornetq.core.replication.ReplicationEndpoint;
 import org.hornetq.core.replication.ReplicationManager;
 import org.hornetq.core.security.Role;
+import org.hornetq.core.security.SecurityStore;
 import org.hornetq.core.server.cluster.ClusterConnection;
 import org.hornetq.core.server.cluster.ClusterManager;
 import org.hornetq.core.server.group.GroupingHandler;
@@ -88,6 +89,8 @@ public interface HornetQServer extends HornetQComponent
 
    HornetQSecurityManager getSecurityManager();
 
+   SecurityStore getSecurityStore();
+
    Version getVersion();
 
    NodeManager getNodeManager();
@@ -255,6 +255,15 @@ public interface HornetQServerLogger extends BasicLogger
             format = Message.Format.MESSAGE_FORMAT)
    void deprecatedConfigurationOption(String deprecatedOption);
 
+   @LogMessage(level = Logger.Level.INFO)
+   @Message(id = 221039, value = "Using memory mapped Journal", format = Message.Format.MESSAGE_FORMAT)
+   void journalUseMapped();
+
+   @LogMessage(level = Logger.Level.INFO)
+   @Message(id = 221040, value = "Large message: {0} no longer exists, it stops sharing the body file of message {1}",
+            format = Message.Format.MESSAGE_FORMAT)
+   void largeMessageBodyUserGone(Long messageID, Long bodyID);
+
    @LogMessage(level = Logger.Level.WARN)
    @Message(id = 222000, value = "HornetQServer is being finalized and has not been stopped. Please remember to stop the server before letting it go out of scope",
          format = Message.Format.MESSAGE_FORMAT)
@@ -983,6 +992,10 @@ public interface HornetQServerLogger extends BasicLogger
    @Message(id = 222166, value = "Error stopping naming server", format = Message.Format.MESSAGE_FORMAT)
    void unableToStopNamingServer(@Cause Exception e);
 
+   @LogMessage(level = Logger.Level.WARN)
+   @Message(id = 222167, value = "Error storing the delivery counts of redelivered messages", format = Message.Format.MESSAGE_FORMAT)
+   void errorFlushingDeliveryCounts(@Cause Exception e);
+
    @LogMessage(level = Logger.Level.ERROR)
    @Message(id = 224000, value = "Failure in initialisation", format = Message.Format.MESSAGE_FORMAT)
    void initializationError(@Cause Throwable e);
@@ -104,6 +104,16 @@ public interface Queue extends Bindable
 
    long getInstantMessagesAdded();
 
+   /**
+    * @return the number of messages moved to other nodes of the cluster by redistribution
+    */
+   long getMessagesRedistributed();
+
+   /**
+    * @return the number of messages per second currently redistributed to other nodes
+    */
+   double getRedistributionRate();
+
    MessageReference removeReferenceWithID(long id) throws Exception;
 
    MessageReference getReference(long id);
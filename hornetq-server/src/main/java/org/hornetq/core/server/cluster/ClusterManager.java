@@ -40,6 +40,7 @@ import org.hornetq.core.config.ClusterConnectionConfiguration;
 import org.hornetq.core.config.Configuration;
 import org.hornetq.core.config.ConfigurationUtils;
 import org.hornetq.core.postoffice.Binding;
+import org.hornetq.core.postoffice.BindingsLoadBalancingPolicy;
 import org.hornetq.core.postoffice.PostOffice;
 import org.hornetq.core.protocol.core.Channel;
 import org.hornetq.core.protocol.core.impl.wireformat.BackupRegistrationMessage;
@@ -706,6 +707,7 @@ public final class ClusterManager implements HornetQComponent
                                                        config.getCallFailoverTimeout(),
                                                        config.isDuplicateDetection(),
                                                        config.isForwardWhenNoConsumers(),
+                                                       instantiateLoadBalancingPolicy(config.getLoadBalancingPolicyClassName()),
                                                        config.getConfirmationWindowSize(),
                                                        executorFactory,
                                                        threadPool,
@@ -748,6 +750,7 @@ public final class ClusterManager implements HornetQComponent
                                                        config.getCallFailoverTimeout(),
                                                        config.isDuplicateDetection(),
                                                        config.isForwardWhenNoConsumers(),
+                                                       instantiateLoadBalancingPolicy(config.getLoadBalancingPolicyClassName()),
                                                        config.getConfirmationWindowSize(),
                                                        executorFactory,
                                                        threadPool,
@@ -800,6 +803,26 @@ public final class ClusterManager implements HornetQComponent
       return transformer;
    }
 
+   private BindingsLoadBalancingPolicy instantiateLoadBalancingPolicy(final String loadBalancingPolicyClassName)
+   {
+      BindingsLoadBalancingPolicy policy = null;
+
+      if (loadBalancingPolicyClassName != null)
+      {
+         ClassLoader loader = Thread.currentThread().getContextClassLoader();
+         try
+         {
+            Class<?> clz = loader.loadClass(loadBalancingPolicyClassName);
+            policy = (BindingsLoadBalancingPolicy)clz.newInstance();
+         }
+         catch (Exception e)
+         {
+            throw HornetQMessageBundle.BUNDLE.errorCreatingLoadBalancingPolicyClass(e, loadBalancingPolicyClassName);
+         }
+      }
+      return policy;
+   }
+
 
    private synchronized void deployBroadcastGroup(final BroadcastGroupConfiguration config) throws Exception
    {
@@ -51,6 +51,7 @@ import org.hornetq.core.client.impl.Topology;
 import org.hornetq.core.client.impl.TopologyMemberImpl;
 import org.hornetq.core.postoffice.Binding;
 import org.hornetq.core.postoffice.Bindings;
+import org.hornetq.core.postoffice.BindingsLoadBalancingPolicy;
 import org.hornetq.core.postoffice.PostOffice;
 import org.hornetq.core.postoffice.impl.PostOfficeImpl;
 import org.hornetq.core.protocol.core.impl.wireformat.NodeAnnounceMessage;
@@ -120,6 +121,8 @@ public final class ClusterConnectionImpl implements ClusterConnection, AfterConn
 
    private final boolean routeWhenNoConsumers;
 
+   private final BindingsLoadBalancingPolicy loadBalancingPolicy;
+
    private final int confirmationWindowSize;
 
    /**
@@ -189,6 +192,7 @@ public final class ClusterConnectionImpl implements ClusterConnection, AfterConn
                                 final long callFailoverTimeout,
                                 final boolean useDuplicateDetection,
                                 final boolean routeWhenNoConsumers,
+                                final BindingsLoadBalancingPolicy loadBalancingPolicy,
                                 final int confirmationWindowSize,
                                 final ExecutorFactory executorFactory,
                                 final ExecutorService threadPool,
@@ -229,6 +233,8 @@ public final class ClusterConnectionImpl implements ClusterConnection, AfterConn
 
       this.routeWhenNoConsumers = routeWhenNoConsumers;
 
+      this.loadBalancingPolicy = loadBalancingPolicy;
+
       this.confirmationWindowSize = confirmationWindowSize;
 
       this.executorFactory = executorFactory;
@@ -318,6 +324,7 @@ public final class ClusterConnectionImpl implements ClusterConnection, AfterConn
                                 final long callFailoverTimeout,
                                 final boolean useDuplicateDetection,
                                 final boolean routeWhenNoConsumers,
+                                final BindingsLoadBalancingPolicy loadBalancingPolicy,
                                 final int confirmationWindowSize,
                                 final ExecutorFactory executorFactory,
                                 final ExecutorService threadPool,
@@ -364,6 +371,8 @@ public final class ClusterConnectionImpl implements ClusterConnection, AfterConn
 
       this.routeWhenNoConsumers = routeWhenNoConsumers;
 
+      this.loadBalancingPolicy = loadBalancingPolicy;
+
       this.confirmationWindowSize = confirmationWindowSize;
 
       this.executorFactory = executorFactory;
@@ -1451,6 +1460,8 @@ public final class ClusterConnectionImpl implements ClusterConnection, AfterConn
 
          theBindings.setRouteWhenNoConsumers(routeWhenNoConsumers);
 
+         theBindings.setLoadBalancingPolicy(loadBalancingPolicy);
+
       }
 
       private void doBindingRemoved(final ClientMessage message) throws Exception
@@ -14,12 +14,19 @@
 package org.hornetq.core.server.cluster.impl;
 
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.hornetq.api.core.Message;
 import org.hornetq.api.core.Pair;
+import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.filter.Filter;
 import org.hornetq.core.journal.IOAsyncTask;
+import org.hornetq.core.persistence.OperationContext;
 import org.hornetq.core.persistence.StorageManager;
 import org.hornetq.core.postoffice.PostOffice;
 import org.hornetq.core.server.Consumer;
@@ -27,6 +34,7 @@ import org.hornetq.core.server.HandleStatus;
 import org.hornetq.core.server.HornetQServerLogger;
 import org.hornetq.core.server.MessageReference;
 import org.hornetq.core.server.Queue;
+import org.hornetq.core.server.RouteContextList;
 import org.hornetq.core.server.RoutingContext;
 import org.hornetq.core.server.ServerMessage;
 import org.hornetq.core.transaction.Transaction;
@@ -35,6 +43,15 @@ import org.hornetq.utils.FutureLatch;
 
 /**
  * A Redistributor
+ * <p>
+ * Moves the messages of a queue without consumers to the other nodes of the cluster. The messages
+ * are redistributed in batches, each batch being one transaction, and up to
+ * maxBatchesInFlight batches may be waiting for the storage before the redistributor stops taking
+ * messages. It also stops while the store and forward queue it sends to holds more than a window of
+ * messages, which happens when the bridge runs out of producer credits on the other node.
+ * <p>
+ * All the batches use the same operation context so they reach the store and forward queue in order
+ * even when they are completed by the storage asynchronously.
  *
  * @author <a href="mailto:tim.fox@jboss.com">Tim Fox</a>
  *
@@ -44,25 +61,83 @@ import org.hornetq.utils.FutureLatch;
  */
 public class Redistributor implements Consumer
 {
+   /** How long to wait before checking a store and forward queue again when it was full */
+   private static final long BACK_PRESSURE_RETRY = 100;
+
+   private static final long RATE_PERIOD = 1000;
+
    private boolean active;
 
+   // not taking messages until a batch is done, the target drained, or the thread was yielded
+   private boolean waiting;
+
    private final StorageManager storageManager;
 
    private final PostOffice postOffice;
 
    private final Executor executor;
 
+   private final ScheduledExecutorService scheduledExecutor;
+
    private final int batchSize;
 
+   private final int maxBatchesInFlight;
+
    private final Queue queue;
 
-   private int count;
+   private final OperationContext context;
+
+   private Transaction batch;
+
+   private int batchCount;
+
+   private int batchesInFlight;
+
+   // where the last message went, to throttle on its backlog
+   private Queue target;
+
+   // counted once each batch is stored, shared by the redistributors of the queue
+   private final AtomicLong messagesRedistributed;
+
+   private long rateStart = System.currentTimeMillis();
+
+   private long rateCount;
+
+   private volatile double rate;
+
+   private final Runnable resumer = new Runnable()
+   {
+      public void run()
+      {
+         resume();
+      }
+   };
+
+   private final Runnable flusher = new Runnable()
+   {
+      public void run()
+      {
+         commitPendingBatch();
+      }
+   };
 
    public Redistributor(final Queue queue,
                         final StorageManager storageManager,
                         final PostOffice postOffice,
                         final Executor executor,
                         final int batchSize)
+   {
+      this(queue, storageManager, postOffice, executor, null, batchSize, 1, new AtomicLong());
+   }
+
+   public Redistributor(final Queue queue,
+                        final StorageManager storageManager,
+                        final PostOffice postOffice,
+                        final Executor executor,
+                        final ScheduledExecutorService scheduledExecutor,
+                        final int batchSize,
+                        final int maxBatchesInFlight,
+                        final AtomicLong messagesRedistributed)
    {
       this.queue = queue;
 
@@ -72,7 +147,15 @@ public class Redistributor implements Consumer
 
       this.executor = executor;
 
+      this.scheduledExecutor = scheduledExecutor;
+
       this.batchSize = batchSize;
+
+      this.maxBatchesInFlight = maxBatchesInFlight;
+
+      this.messagesRedistributed = messagesRedistributed;
+
+      context = storageManager.newSingleThreadContext();
    }
 
    public Filter getFilter()
@@ -95,10 +178,16 @@ public class Redistributor implements Consumer
       active = true;
    }
 
-   public synchronized void stop() throws Exception
+   public void stop() throws Exception
    {
-      active = false;
+      synchronized (this)
+      {
+         active = false;
+      }
+
+      commitPendingBatch();
 
+      // the batches in flight are counted when they are stored, without waiting for them here
       boolean ok = flushExecutor();
 
       if (!ok)
@@ -112,8 +201,10 @@ public class Redistributor implements Consumer
       // noop
    }
 
-   public synchronized void close()
+   public void close()
    {
+      commitPendingBatch();
+
       boolean ok = flushExecutor();
 
       if (!ok)
@@ -121,7 +212,26 @@ public class Redistributor implements Consumer
          throw new IllegalStateException("Timed out waiting for executor to complete");
       }
 
-      active = false;
+      synchronized (this)
+      {
+         active = false;
+      }
+   }
+
+   /**
+    * @return the number of messages per second moved to other nodes over the last period
+    */
+   public double getRate()
+   {
+      synchronized (this)
+      {
+         if (System.currentTimeMillis() - rateStart > 2 * RATE_PERIOD)
+         {
+            // nothing was redistributed for a while
+            return 0;
+         }
+      }
+      return rate;
    }
 
    private boolean flushExecutor()
@@ -136,7 +246,7 @@ public class Redistributor implements Consumer
 
    public synchronized HandleStatus handle(final MessageReference reference) throws Exception
    {
-      if (!active)
+      if (!active || waiting)
       {
          return HandleStatus.BUSY;
       }
@@ -146,74 +256,235 @@ public class Redistributor implements Consumer
          return HandleStatus.NO_MATCH;
       }
 
-      final Transaction tx = new TransactionImpl(storageManager);
+      OperationContext formerCtx = storageManager.getContext();
 
-      final Pair<RoutingContext, ServerMessage> routingInfo = postOffice.redistribute(reference.getMessage(), queue, tx);
+      try
+      {
+         storageManager.setContext(context);
+
+         if (reference.getMessage().isLargeMessage())
+         {
+            return handleLargeMessage(reference);
+         }
+         else
+         {
+            return handleMessage(reference);
+         }
+      }
+      finally
+      {
+         storageManager.setContext(formerCtx);
+      }
+   }
+
+   private HandleStatus handleMessage(final MessageReference reference) throws Exception
+   {
+      if (batch == null)
+      {
+         batch = new TransactionImpl(storageManager);
+      }
+
+      final Pair<RoutingContext, ServerMessage> routingInfo = postOffice.redistribute(reference.getMessage(), queue, batch);
 
       if (routingInfo == null)
       {
          return HandleStatus.BUSY;
       }
 
-      if (!reference.getMessage().isLargeMessage())
+      routingInfo.getB().finishCopy();
+
+      postOffice.processRoute(routingInfo.getB(), routingInfo.getA(), false);
+
+      reference.handled();
+
+      queue.acknowledge(batch, reference);
+
+      target = getTarget(routingInfo.getA());
+
+      if (++batchCount >= batchSize)
       {
-         routingInfo.getB().finishCopy();
+         // the queue is locked already while it delivers, committing can't lock it in the other order
+         commitBatch(takeBatch());
+      }
+      else if (batchCount == 1)
+      {
+         // the batch is committed once the queue is done delivering, if it didn't fill before
+         executor.execute(flusher);
+      }
 
-         postOffice.processRoute(routingInfo.getB(), routingInfo.getA(), false);
+      return HandleStatus.HANDLED;
+   }
+
+   private HandleStatus handleLargeMessage(final MessageReference reference) throws Exception
+   {
+      if (batchCount > 0)
+      {
+         commitBatch(takeBatch());
+
+         return HandleStatus.BUSY;
+      }
+
+      final Transaction tx = new TransactionImpl(storageManager);
+
+      final Pair<RoutingContext, ServerMessage> routingInfo = postOffice.redistribute(reference.getMessage(), queue, tx);
 
-         ackRedistribution(reference, tx);
+      if (routingInfo == null)
+      {
+         return HandleStatus.BUSY;
       }
-      else
+
+      waiting = true;
+
+      executor.execute(new Runnable()
       {
-         active = false;
-         executor.execute(new Runnable()
+         public void run()
          {
-            public void run()
+            OperationContext formerCtx = storageManager.getContext();
+
+            boolean inFlight = false;
+
+            try
             {
-               try
-               {
-                  routingInfo.getB().finishCopy();
+               storageManager.setContext(context);
 
-                  postOffice.processRoute(routingInfo.getB(), routingInfo.getA(), false);
+               routingInfo.getB().finishCopy();
 
-                  ackRedistribution(reference, tx);
+               postOffice.processRoute(routingInfo.getB(), routingInfo.getA(), false);
 
-                  synchronized (Redistributor.this)
-                  {
-                     active = true;
+               reference.handled();
 
-                     count++;
+               queue.acknowledge(tx, reference);
 
-                     queue.deliverAsync();
-                  }
+               synchronized (Redistributor.this)
+               {
+                  batchesInFlight++;
                }
-               catch (Exception e)
+
+               inFlight = true;
+
+               // without the lock, the commit locks the queue
+               commit(tx, 1);
+
+               resume();
+            }
+            catch (Exception e)
+            {
+               try
                {
-                  try
-                  {
-                     tx.rollback();
-                  }
-                  catch (Exception e2)
-                  {
-                     // Nothing much we can do now
+                  tx.rollback();
+               }
+               catch (Exception e2)
+               {
+                  // Nothing much we can do now
 
-                     // TODO log
-                     HornetQServerLogger.LOGGER.warn(e2.getMessage(), e2);
-                  }
+                  // TODO log
+                  HornetQServerLogger.LOGGER.warn(e2.getMessage(), e2);
+               }
+
+               if (inFlight)
+               {
+                  batchDone(0);
                }
             }
-         });
-      }
+            finally
+            {
+               storageManager.setContext(formerCtx);
+            }
+         }
+      });
 
       return HandleStatus.HANDLED;
    }
 
-   private void ackRedistribution(final MessageReference reference, final Transaction tx) throws Exception
+   /**
+    * Commits the batch being filled, if any, from outside of the lock of the redistributor.
+    */
+   private void commitPendingBatch()
    {
-      reference.handled();
+      Pair<Transaction, Integer> pending;
+
+      synchronized (this)
+      {
+         if (batchCount == 0)
+         {
+            return;
+         }
+
+         pending = takeBatch();
+      }
 
-      queue.acknowledge(tx, reference);
+      commitBatch(pending);
+   }
+
+   /**
+    * Takes the batch being filled, to be committed by {@link #commitBatch(Pair)}. Committing locks the queue the
+    * messages are acknowledged on, so it is done after releasing the lock of the redistributor, unless the queue is
+    * locked already.
+    */
+   private synchronized Pair<Transaction, Integer> takeBatch()
+   {
+      Pair<Transaction, Integer> pending = new Pair<Transaction, Integer>(batch, batchCount);
+
+      batch = null;
+
+      batchCount = 0;
+
+      batchesInFlight++;
+
+      // We continue with the next batch on a different thread, so as not to keep the delivery thread busy for a
+      // very long time in the case there are many messages in the queue
+      waiting = true;
+
+      return pending;
+   }
 
+   private void commitBatch(final Pair<Transaction, Integer> pending)
+   {
+      Transaction tx = pending.getA();
+
+      OperationContext formerCtx = storageManager.getContext();
+
+      try
+      {
+         storageManager.setContext(context);
+
+         commit(tx, pending.getB());
+      }
+      catch (Exception e)
+      {
+         HornetQServerLogger.LOGGER.warn(e.getMessage(), e);
+
+         try
+         {
+            tx.rollback();
+         }
+         catch (Exception e2)
+         {
+            HornetQServerLogger.LOGGER.warn(e2.getMessage(), e2);
+         }
+
+         batchDone(0);
+      }
+      finally
+      {
+         storageManager.setContext(formerCtx);
+      }
+
+      try
+      {
+         executor.execute(resumer);
+      }
+      catch (RejectedExecutionException ignored)
+      {
+         // stopping
+      }
+   }
+
+   /**
+    * Commits a transaction already counted in batchesInFlight.
+    */
+   private void commit(final Transaction tx, final int count) throws Exception
+   {
       tx.commit();
 
       storageManager.afterCompleteOperations(new IOAsyncTask()
@@ -222,44 +493,103 @@ public class Redistributor implements Consumer
          public void onError(final int errorCode, final String errorMessage)
          {
             HornetQServerLogger.LOGGER.ioErrorRedistributing(errorCode, errorMessage);
+
+            batchDone(0);
          }
 
          public void done()
          {
-            execPrompter();
+            batchDone(count);
          }
       });
    }
 
-   private void execPrompter()
+   private void batchDone(final int count)
    {
-      count++;
+      messagesRedistributed.addAndGet(count);
 
-      // We use >= as the large message redistribution will set count to max_int
-      // so we are use the prompter will get called
-      if (count >= batchSize)
+      boolean wasFull;
+
+      synchronized (this)
       {
-         // We continue the next batch on a different thread, so as not to keep the delivery thread busy for a very
-         // long time in the case there are many messages in the queue
-         active = false;
+         wasFull = batchesInFlight-- >= maxBatchesInFlight;
+
+         rateCount += count;
+
+         long now = System.currentTimeMillis();
+
+         if (now - rateStart >= RATE_PERIOD)
+         {
+            rate = rateCount * 1000d / (now - rateStart);
 
-         executor.execute(new Prompter());
+            rateStart = now;
 
-         count = 0;
+            rateCount = 0;
+         }
       }
 
+      if (wasFull)
+      {
+         resume();
+      }
    }
 
-   private class Prompter implements Runnable
+   /**
+    * Takes messages again unless too many batches are in flight or the target is full.
+    */
+   private void resume()
    {
-      public void run()
+      synchronized (this)
       {
-         synchronized (Redistributor.this)
+         if (!active || !waiting || batchesInFlight >= maxBatchesInFlight)
          {
-            active = true;
+            return;
+         }
 
-            queue.deliverAsync();
+         if (target != null && scheduledExecutor != null &&
+             target.getInstantMessageCount() > (long)batchSize * maxBatchesInFlight)
+         {
+            scheduledExecutor.schedule(new Runnable()
+            {
+               public void run()
+               {
+                  try
+                  {
+                     executor.execute(resumer);
+                  }
+                  catch (RejectedExecutionException ignored)
+                  {
+                     // stopping
+                  }
+               }
+            }, BACK_PRESSURE_RETRY, TimeUnit.MILLISECONDS);
+
+            return;
+         }
+
+         waiting = false;
+      }
+
+      queue.deliverAsync();
+   }
+
+   private Queue getTarget(final RoutingContext context)
+   {
+      for (Map.Entry<SimpleString, RouteContextList> entry : context.getContexListing().entrySet())
+      {
+         RouteContextList list = entry.getValue();
+
+         if (!list.getDurableQueues().isEmpty())
+         {
+            return list.getDurableQueues().get(0);
+         }
+
+         if (!list.getNonDurableQueues().isEmpty())
+         {
+            return list.getNonDurableQueues().get(0);
          }
       }
+
+      return null;
    }
 }
@@ -850,6 +850,11 @@ public class HornetQServerImpl implements HornetQServer
       return securityManager;
    }
 
+   public SecurityStore getSecurityStore()
+   {
+      return securityStore;
+   }
+
    public ManagementService getManagementService()
    {
       return managementService;
@@ -1081,8 +1086,6 @@ public class HornetQServerImpl implements HornetQServer
 
    public void destroyQueue(final SimpleString queueName, final ServerSession session) throws Exception
    {
-      addressSettingsRepository.clearCache();
-
       Binding binding = postOffice.getBinding(queueName);
 
       if (binding == null)
@@ -1286,7 +1289,8 @@ public class HornetQServerImpl implements HornetQServer
          scheduledPool,
          executorFactory,
          configuration.isJournalSyncNonTransactional(),
-         shutdownOnCriticalIO),
+         shutdownOnCriticalIO,
+         configuration.getJournalType() == JournalType.MAPPED),
       addressSettingsRepository);
    }
 
@@ -1393,9 +1397,17 @@ public class HornetQServerImpl implements HornetQServer
          configuration.isSecurityEnabled(),
          configuration.getClusterUser(),
          configuration.getClusterPassword(),
-         managementService);
+         managementService,
+         executorFactory.getExecutor());
 
-      queueFactory = new QueueFactoryImpl(executorFactory, scheduledPool, addressSettingsRepository, storageManager);
+      queueFactory = new QueueFactoryImpl(executorFactory,
+                                          scheduledPool,
+                                          addressSettingsRepository,
+                                          storageManager,
+                                          configuration.isConcurrentQueueReferences(),
+                                          configuration.getScheduledDeliveryWheelTick(),
+                                          configuration.getRedistributionBatchSize(),
+                                          configuration.getRedistributionWindowSize());
 
       pagingManager = createPagingManager();
 
@@ -1412,6 +1424,7 @@ public class HornetQServerImpl implements HornetQServer
          configuration.isWildcardRoutingEnabled(),
          configuration.getIDCacheSize(),
          configuration.isPersistIDCache(),
+         configuration.isOffHeapIDCache(),
          addressSettingsRepository);
 
       // This can't be created until node id is set
@@ -2676,7 +2689,8 @@ public class HornetQServerImpl implements HornetQServer
          ReplicationFailureListener listener = new ReplicationFailureListener();
          rc.addCloseListener(listener);
          rc.addFailureListener(listener);
-         replicationManager = new ReplicationManager(rc, executorFactory);
+         replicationManager = new ReplicationManager(rc, executorFactory, configuration.getReplicationBatchSize(),
+                                                     configuration.isReplicationSyncCompression());
          replicationManager.start();
          Thread t = new Thread(new Runnable()
          {
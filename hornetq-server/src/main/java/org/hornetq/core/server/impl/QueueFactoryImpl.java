@@ -15,16 +15,23 @@ package org.hornetq.core.server.impl;
 
 import java.util.concurrent.ScheduledExecutorService;
 
+import org.hornetq.api.config.HornetQDefaultConfiguration;
+import org.hornetq.api.core.Message;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.filter.Filter;
 import org.hornetq.core.paging.cursor.PageSubscription;
 import org.hornetq.core.persistence.StorageManager;
 import org.hornetq.core.postoffice.PostOffice;
+import org.hornetq.core.server.MessageReference;
 import org.hornetq.core.server.Queue;
 import org.hornetq.core.server.QueueFactory;
+import org.hornetq.core.server.ScheduledDeliveryHandler;
 import org.hornetq.core.settings.HierarchicalRepository;
 import org.hornetq.core.settings.impl.AddressSettings;
+import org.hornetq.utils.ConcurrentPriorityLinkedListImpl;
 import org.hornetq.utils.ExecutorFactory;
+import org.hornetq.utils.PriorityLinkedList;
+import org.hornetq.utils.PriorityLinkedListImpl;
 
 /**
  *
@@ -47,11 +54,56 @@ public class QueueFactoryImpl implements QueueFactory
 
    private final ExecutorFactory executorFactory;
 
+   private final boolean concurrentReferences;
+
+   private final long scheduledDeliveryWheelTick;
+
+   private final int redistributionBatchSize;
+
+   private final int redistributionWindowSize;
+
    public QueueFactoryImpl(final ExecutorFactory executorFactory,
                            final ScheduledExecutorService scheduledExecutor,
                            final HierarchicalRepository<AddressSettings> addressSettingsRepository,
                            final StorageManager storageManager)
    {
+      this(executorFactory, scheduledExecutor, addressSettingsRepository, storageManager, false, -1);
+   }
+
+   public QueueFactoryImpl(final ExecutorFactory executorFactory,
+                           final ScheduledExecutorService scheduledExecutor,
+                           final HierarchicalRepository<AddressSettings> addressSettingsRepository,
+                           final StorageManager storageManager,
+                           final boolean concurrentReferences,
+                           final long scheduledDeliveryWheelTick)
+   {
+      this(executorFactory,
+           scheduledExecutor,
+           addressSettingsRepository,
+           storageManager,
+           concurrentReferences,
+           scheduledDeliveryWheelTick,
+           HornetQDefaultConfiguration.DEFAULT_REDISTRIBUTION_BATCH_SIZE,
+           HornetQDefaultConfiguration.DEFAULT_REDISTRIBUTION_WINDOW_SIZE);
+   }
+
+   public QueueFactoryImpl(final ExecutorFactory executorFactory,
+                           final ScheduledExecutorService scheduledExecutor,
+                           final HierarchicalRepository<AddressSettings> addressSettingsRepository,
+                           final StorageManager storageManager,
+                           final boolean concurrentReferences,
+                           final long scheduledDeliveryWheelTick,
+                           final int redistributionBatchSize,
+                           final int redistributionWindowSize)
+   {
+      this.concurrentReferences = concurrentReferences;
+
+      this.scheduledDeliveryWheelTick = scheduledDeliveryWheelTick;
+
+      this.redistributionBatchSize = redistributionBatchSize;
+
+      this.redistributionWindowSize = redistributionWindowSize;
+
       this.addressSettingsRepository = addressSettingsRepository;
 
       this.scheduledExecutor = scheduledExecutor;
@@ -76,7 +128,7 @@ public class QueueFactoryImpl implements QueueFactory
    {
       AddressSettings addressSettings = addressSettingsRepository.getMatch(address.toString());
 
-      Queue queue;
+      QueueImpl queue;
       if (addressSettings.isLastValueQueue())
       {
          queue = new LastValueQueue(persistenceID,
@@ -105,9 +157,60 @@ public class QueueFactoryImpl implements QueueFactory
                                postOffice,
                                storageManager,
                                addressSettingsRepository,
-                               executorFactory.getExecutor());
+                               executorFactory.getExecutor(),
+                               createReferences(),
+                               createScheduledDeliveryHandler());
       }
 
+      queue.setRedistributionWindow(redistributionBatchSize, redistributionWindowSize);
+
       return queue;
    }
+
+   private ScheduledDeliveryHandler createScheduledDeliveryHandler()
+   {
+      if (scheduledDeliveryWheelTick > 0)
+      {
+         return new TimingWheelScheduledDeliveryHandler(scheduledExecutor, scheduledDeliveryWheelTick);
+      }
+      else
+      {
+         return new ScheduledDeliveryHandlerImpl(scheduledExecutor);
+      }
+   }
+
+   private PriorityLinkedList<MessageReference> createReferences()
+   {
+      if (concurrentReferences)
+      {
+         return new ConcurrentPriorityLinkedListImpl<MessageReference>(QueueImpl.NUM_PRIORITIES,
+                                                                        Runtime.getRuntime().availableProcessors(),
+                                                                        GroupShardSelector.INSTANCE);
+      }
+      else
+      {
+         return new PriorityLinkedListImpl<MessageReference>(QueueImpl.NUM_PRIORITIES);
+      }
+   }
+
+   /**
+    * Messages from the same group always go to the same shard so they keep their order, the others are spread by
+    * producer thread.
+    */
+   private static final class GroupShardSelector implements ConcurrentPriorityLinkedListImpl.ShardSelector<MessageReference>
+   {
+      static final GroupShardSelector INSTANCE = new GroupShardSelector();
+
+      public int select(final MessageReference ref)
+      {
+         SimpleString groupID = ref.getMessage().getSimpleStringProperty(Message.HDR_GROUP_ID);
+
+         if (groupID != null)
+         {
+            return groupID.hashCode();
+         }
+
+         return ConcurrentPriorityLinkedListImpl.THREAD_SHARD_SELECTOR.select(ref);
+      }
+   }
 }
@@ -31,9 +31,11 @@ import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.hornetq.api.config.HornetQDefaultConfiguration;
 import org.hornetq.api.core.Message;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.filter.Filter;
@@ -60,6 +62,7 @@ import org.hornetq.core.transaction.TransactionOperationAbstract;
 import org.hornetq.core.transaction.TransactionPropertyIndexes;
 import org.hornetq.core.transaction.impl.TransactionImpl;
 import org.hornetq.utils.ConcurrentHashSet;
+import org.hornetq.utils.ConcurrentPriorityLinkedListImpl;
 import org.hornetq.utils.FutureLatch;
 import org.hornetq.utils.LinkedListIterator;
 import org.hornetq.utils.PriorityLinkedList;
@@ -115,7 +118,13 @@ public class QueueImpl implements Queue
    private final ConcurrentLinkedQueue<MessageReference> intermediateMessageReferences = new ConcurrentLinkedQueue<MessageReference>();
 
    // This is where messages are stored
-   private final PriorityLinkedList<MessageReference> messageReferences = new PriorityLinkedListImpl<MessageReference>(QueueImpl.NUM_PRIORITIES);
+   private final PriorityLinkedList<MessageReference> messageReferences;
+
+   // When messageReferences is thread safe producers add to it directly, skipping intermediateMessageReferences
+   private final boolean concurrentReferences;
+
+   // Set while a delivery triggered by a concurrent add is waiting on the executor
+   private final AtomicBoolean concurrentDeliveryPending = new AtomicBoolean(false);
 
    // The quantity of pagedReferences on messageReferences priority list
    private final AtomicInteger pagedReferences = new AtomicInteger(0);
@@ -127,7 +136,7 @@ public class QueueImpl implements Queue
 
    private final ScheduledDeliveryHandler scheduledDeliveryHandler;
 
-   private long messagesAdded;
+   private final AtomicLong messagesAdded = new AtomicLong(0);
 
    protected final AtomicInteger deliveringCount = new AtomicInteger(0);
 
@@ -147,6 +156,13 @@ public class QueueImpl implements Queue
 
    private Redistributor redistributor;
 
+   private int redistributionBatchSize = QueueImpl.REDISTRIBUTOR_BATCH_SIZE;
+
+   private int redistributionWindowSize = HornetQDefaultConfiguration.DEFAULT_REDISTRIBUTION_WINDOW_SIZE;
+
+   // messages moved to other nodes, added by the redistributors as their batches are stored
+   private final AtomicLong messagesRedistributed = new AtomicLong();
+
    private final Set<ScheduledFuture<?>> futures = new ConcurrentHashSet<ScheduledFuture<?>>();
 
    private ScheduledFuture<?> redistributorFuture;
@@ -169,6 +185,8 @@ public class QueueImpl implements Queue
 
    private final Runnable concurrentPoller = new ConcurrentPoller();
 
+   private final Runnable concurrentDeliverRunner = new ConcurrentDeliverRunner();
+
    private boolean internalQueue;
 
    private volatile long lastDirectDeliveryCheck = 0;
@@ -261,9 +279,49 @@ public class QueueImpl implements Queue
                     final StorageManager storageManager,
                     final HierarchicalRepository<AddressSettings> addressSettingsRepository,
                     final Executor executor)
+   {
+      this(id,
+           address,
+           name,
+           filter,
+           pageSubscription,
+           durable,
+           temporary,
+           scheduledExecutor,
+           postOffice,
+           storageManager,
+           addressSettingsRepository,
+           executor,
+           new PriorityLinkedListImpl<MessageReference>(QueueImpl.NUM_PRIORITIES),
+           new ScheduledDeliveryHandlerImpl(scheduledExecutor));
+   }
+
+   /**
+    * @param messageReferences where the references are kept. If it is a {@link ConcurrentPriorityLinkedListImpl}
+    *           producers will add to it without taking the queue lock.
+    * @param scheduledDeliveryHandler holds the references until their scheduled delivery time.
+    */
+   public QueueImpl(final long id,
+                    final SimpleString address,
+                    final SimpleString name,
+                    final Filter filter,
+                    final PageSubscription pageSubscription,
+                    final boolean durable,
+                    final boolean temporary,
+                    final ScheduledExecutorService scheduledExecutor,
+                    final PostOffice postOffice,
+                    final StorageManager storageManager,
+                    final HierarchicalRepository<AddressSettings> addressSettingsRepository,
+                    final Executor executor,
+                    final PriorityLinkedList<MessageReference> messageReferences,
+                    final ScheduledDeliveryHandler scheduledDeliveryHandler)
    {
       this.id = id;
 
+      this.messageReferences = messageReferences;
+
+      concurrentReferences = messageReferences instanceof ConcurrentPriorityLinkedListImpl;
+
       this.address = address;
 
       this.name = name;
@@ -284,7 +342,7 @@ public class QueueImpl implements Queue
 
       this.scheduledExecutor = scheduledExecutor;
 
-      scheduledDeliveryHandler = new ScheduledDeliveryHandlerImpl(scheduledExecutor);
+      this.scheduledDeliveryHandler = scheduledDeliveryHandler;
 
       if (addressSettingsRepository != null)
       {
@@ -406,7 +464,7 @@ public class QueueImpl implements Queue
 
       directDeliver = false;
 
-      messagesAdded++;
+      messagesAdded.incrementAndGet();
    }
 
    public void addTail(final MessageReference ref)
@@ -418,10 +476,7 @@ public class QueueImpl implements Queue
    {
       if (scheduledDeliveryHandler.checkAndSchedule(ref, true))
       {
-         synchronized (this)
-         {
-            messagesAdded++;
-         }
+         messagesAdded.incrementAndGet();
 
          return;
       }
@@ -458,6 +513,30 @@ public class QueueImpl implements Queue
       // We only add queueMemorySize if not being delivered directly
       queueMemorySize.addAndGet(ref.getMessageMemoryEstimate());
 
+      if (concurrentReferences)
+      {
+         internalAddTail(ref);
+
+         messagesAdded.incrementAndGet();
+
+         directDeliver = false;
+
+         // Many producers adding at the same time will share a single delivery
+         if (concurrentDeliveryPending.compareAndSet(false, true))
+         {
+            try
+            {
+               getExecutor().execute(concurrentDeliverRunner);
+            }
+            catch (RejectedExecutionException ignored)
+            {
+               concurrentDeliveryPending.set(false);
+            }
+         }
+
+         return;
+      }
+
       intermediateMessageReferences.add(ref);
 
       directDeliver = false;
@@ -646,6 +725,26 @@ public class QueueImpl implements Queue
       }
    }
 
+   /**
+    * @param batchSize the number of messages redistributed in one transaction
+    * @param windowSize the number of redistribution transactions which may wait for the storage
+    */
+   public synchronized void setRedistributionWindow(final int batchSize, final int windowSize)
+   {
+      redistributionBatchSize = batchSize;
+      redistributionWindowSize = windowSize;
+   }
+
+   public long getMessagesRedistributed()
+   {
+      return messagesRedistributed.get();
+   }
+
+   public synchronized double getRedistributionRate()
+   {
+      return redistributor != null ? redistributor.getRate() : 0;
+   }
+
    public synchronized void cancelRedistributor() throws Exception
    {
       if (redistributor != null)
@@ -1032,11 +1131,11 @@ public class QueueImpl implements Queue
       {
          if (pageSubscription != null)
          {
-            return messagesAdded + pageSubscription.getCounter().getValue() - pagedReferences.get();
+            return messagesAdded.get() + pageSubscription.getCounter().getValue() - pagedReferences.get();
          }
          else
          {
-            return messagesAdded;
+            return messagesAdded.get();
          }
       }
     }
@@ -1601,9 +1700,9 @@ public class QueueImpl implements Queue
    }
 
    /**
-    * The caller of this method requires synchronized on the queue.
-    * I'm not going to add synchronized to this method just for a precaution,
-    * as I'm not 100% sure this won't cause any extra runtime.
+    * When {@link #concurrentReferences} is set the references are thread safe, so {@link #addTail(MessageReference, boolean)}
+    * calls this without the queue lock, concurrently with other producers and with delivery. Otherwise the caller must
+    * hold the lock on the queue, as the references aren't thread safe.
     * @param ref
     */
    private void internalAddTail(final MessageReference ref)
@@ -1613,9 +1712,8 @@ public class QueueImpl implements Queue
    }
 
    /**
-    * The caller of this method requires synchronized on the queue.
-    * I'm not going to add synchronized to this method just for a precaution,
-    * as I'm not 100% sure this won't cause any extra runtime.
+    * The caller of this method must hold the lock on the queue, even with thread safe references, so a delivery can't
+    * run between adding a cancelled reference back at the head and resetting the iterators.
     * @param ref
     */
    private void internalAddHead(final MessageReference ref)
@@ -1633,7 +1731,7 @@ public class QueueImpl implements Queue
       {
          internalAddTail(ref);
 
-         messagesAdded++;
+         messagesAdded.incrementAndGet();
 
          if (consumerWithFilterCount.get() > 0 || messageReferences.size() == 1)
          {
@@ -1927,7 +2025,10 @@ public class QueueImpl implements Queue
                                            storageManager,
                                            postOffice,
                                            executor,
-                                           QueueImpl.REDISTRIBUTOR_BATCH_SIZE);
+                                           scheduledExecutor,
+                                           redistributionBatchSize,
+                                           redistributionWindowSize,
+                                           messagesRedistributed);
 
          consumerList.add(new ConsumerHolder(redistributor));
 
@@ -2167,7 +2268,7 @@ public class QueueImpl implements Queue
                groups.put(groupID, consumer);
             }
 
-            messagesAdded++;
+            messagesAdded.incrementAndGet();
 
             return true;
          }
@@ -2512,6 +2613,24 @@ public class QueueImpl implements Queue
       }
    }
 
+   private final class ConcurrentDeliverRunner implements Runnable
+   {
+      public void run()
+      {
+         // cleared before delivering so any reference added from now on schedules another run
+         concurrentDeliveryPending.set(false);
+
+         try
+         {
+            deliver();
+         }
+         catch (Exception e)
+         {
+            HornetQServerLogger.LOGGER.errorDelivering(e);
+         }
+      }
+   }
+
    /**
     * This will determine the actions that could be done while iterate the queue through iterQueue
     *
@@ -13,6 +13,7 @@
 
 package org.hornetq.core.server.impl;
 
+import java.io.File;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -29,6 +30,7 @@ import org.hornetq.api.core.management.ManagementHelper;
 import org.hornetq.api.core.management.NotificationType;
 import org.hornetq.core.client.impl.ClientConsumerImpl;
 import org.hornetq.core.filter.Filter;
+import org.hornetq.core.journal.SequentialFile;
 import org.hornetq.core.message.BodyEncoder;
 import org.hornetq.core.persistence.StorageManager;
 import org.hornetq.core.postoffice.Binding;
@@ -875,6 +877,9 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
 
       private BodyEncoder context;
 
+      /** The file of the body when the chunks are sent straight from it, null when they are read by the context */
+      private File bodyFile;
+
       public LargeMessageDeliverer(final LargeServerMessage message, final MessageReference ref) throws Exception
       {
          largeMessage = message;
@@ -912,6 +917,16 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
 
                context.open();
 
+               if (callback.isFileTransferSupported())
+               {
+                  SequentialFile file = largeMessage.getFile();
+
+                  if (file != null)
+                  {
+                     bodyFile = file.getJavaFile();
+                  }
+               }
+
                sentInitialPacket = true;
 
                int packetSize = callback.sendLargeMessage(largeMessage,
@@ -957,18 +972,30 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
 
                localChunkLen = (int)Math.min(sizePendingLargeMessage - positionPendingLargeMessage, minLargeMessageSize);
 
-               HornetQBuffer bodyBuffer = HornetQBuffers.fixedBuffer(localChunkLen);
+               boolean continues = positionPendingLargeMessage + localChunkLen < sizePendingLargeMessage;
+
+               int packetSize;
 
-               context.encode(bodyBuffer, localChunkLen);
+               if (bodyFile != null)
+               {
+                  // The chunk goes from the file to the socket without being read here
+                  packetSize = callback.sendLargeMessageContinuation(id,
+                                                                     bodyFile,
+                                                                     positionPendingLargeMessage,
+                                                                     localChunkLen,
+                                                                     continues,
+                                                                     false);
+               }
+               else
+               {
+                  HornetQBuffer bodyBuffer = HornetQBuffers.fixedBuffer(localChunkLen);
 
-               byte[] body = bodyBuffer.toByteBuffer().array();
+                  context.encode(bodyBuffer, localChunkLen);
 
-               int packetSize = callback.sendLargeMessageContinuation(id,
-                                                                      body,
-                                                                      positionPendingLargeMessage + localChunkLen < sizePendingLargeMessage,
-                                                                      false);
+                  byte[] body = bodyBuffer.toByteBuffer().array();
 
-               int chunkLen = body.length;
+                  packetSize = callback.sendLargeMessageContinuation(id, body, continues, false);
+               }
 
                if (availableCredits != null)
                {
@@ -983,7 +1010,7 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
                   }
                }
 
-               positionPendingLargeMessage += chunkLen;
+               positionPendingLargeMessage += localChunkLen;
 
                if (positionPendingLargeMessage < sizePendingLargeMessage)
                {
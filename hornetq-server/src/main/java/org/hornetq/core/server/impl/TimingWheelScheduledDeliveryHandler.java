@@ -0,0 +1,439 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.server.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.hornetq.core.filter.Filter;
+import org.hornetq.core.server.HornetQServerLogger;
+import org.hornetq.core.server.MessageReference;
+import org.hornetq.core.server.Queue;
+import org.hornetq.core.server.ScheduledDeliveryHandler;
+
+/**
+ * A ScheduledDeliveryHandler backed by a hierarchical timing wheel.
+ *
+ * Instead of one task per message on the ScheduledExecutorService, references are kept in buckets of
+ * {@code tickMillis} width and a single ticker fires every expired bucket as one batch back into the queue. The wheel
+ * has {@link #LEVELS} levels of {@link #SLOTS} buckets, each level covering {@link #SLOTS} times the range of the
+ * level below; references further away than the top level can hold are parked on its last bucket and re-inserted
+ * every time it cascades. Scheduling and removing a reference by id are O(1), the ticker only runs while there are
+ * scheduled references.
+ *
+ * References never fire early: a reference is due on the first tick at or after its scheduled delivery time, so it
+ * may be delivered up to {@code tickMillis} late.
+ */
+public class TimingWheelScheduledDeliveryHandler implements ScheduledDeliveryHandler
+{
+   private static final boolean trace = HornetQServerLogger.LOGGER.isTraceEnabled();
+
+   static final int SLOT_BITS = 8;
+
+   static final int SLOTS = 1 << SLOT_BITS;
+
+   private static final int SLOT_MASK = SLOTS - 1;
+
+   static final int LEVELS = 4;
+
+   private final ScheduledExecutorService scheduledExecutor;
+
+   private final long tickMillis;
+
+   private final Object lockDelivery = new Object();
+
+   // All the fields below are guarded by this
+
+   private final Bucket[][] wheel = new Bucket[LEVELS][SLOTS];
+
+   private final Map<Long, Entry> entries = new HashMap<Long, Entry>();
+
+   private int size;
+
+   // The last tick whose bucket was fired
+   private long currentTick;
+
+   private ScheduledFuture<?> ticker;
+
+   public TimingWheelScheduledDeliveryHandler(final ScheduledExecutorService scheduledExecutor, final long tickMillis)
+   {
+      if (tickMillis <= 0)
+      {
+         throw new IllegalArgumentException("tickMillis must be > 0");
+      }
+
+      this.scheduledExecutor = scheduledExecutor;
+
+      this.tickMillis = tickMillis;
+
+      for (int i = 0; i < LEVELS; i++)
+      {
+         for (int j = 0; j < SLOTS; j++)
+         {
+            wheel[i][j] = new Bucket();
+         }
+      }
+   }
+
+   public boolean checkAndSchedule(final MessageReference ref, final boolean tail)
+   {
+      long deliveryTime = ref.getScheduledDeliveryTime();
+
+      if (deliveryTime <= 0 || scheduledExecutor == null)
+      {
+         return false;
+      }
+
+      if (TimingWheelScheduledDeliveryHandler.trace)
+      {
+         HornetQServerLogger.LOGGER.trace("Scheduling delivery for " + ref + " to occur at " + deliveryTime);
+      }
+
+      synchronized (this)
+      {
+         if (size == 0)
+         {
+            // The wheel may have been idle for a while, there's nothing to fire in between
+            currentTick = System.currentTimeMillis() / tickMillis;
+         }
+
+         // Round up so the reference never fires before its delivery time
+         Entry entry = new Entry(ref, (deliveryTime + tickMillis - 1) / tickMillis, tail);
+
+         insert(entry);
+
+         entries.put(ref.getMessage().getMessageID(), entry);
+
+         size++;
+
+         if (ticker == null)
+         {
+            ticker = scheduledExecutor.scheduleWithFixedDelay(new Ticker(), tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+         }
+      }
+
+      return true;
+   }
+
+   public synchronized int getScheduledCount()
+   {
+      return size;
+   }
+
+   public synchronized List<MessageReference> getScheduledReferences()
+   {
+      List<MessageReference> refs = new ArrayList<MessageReference>(size);
+
+      for (Bucket[] level : wheel)
+      {
+         for (Bucket bucket : level)
+         {
+            for (Entry entry = bucket.first; entry != null; entry = entry.next)
+            {
+               refs.add(entry.ref);
+            }
+         }
+      }
+
+      return refs;
+   }
+
+   public synchronized List<MessageReference> cancel(final Filter filter)
+   {
+      List<MessageReference> refs = new ArrayList<MessageReference>();
+
+      for (Bucket[] level : wheel)
+      {
+         for (Bucket bucket : level)
+         {
+            Entry entry = bucket.first;
+
+            while (entry != null)
+            {
+               Entry next = entry.next;
+
+               if (filter == null || filter.match(entry.ref.getMessage()))
+               {
+                  remove(entry);
+                  refs.add(entry.ref);
+               }
+
+               entry = next;
+            }
+         }
+      }
+
+      return refs;
+   }
+
+   public synchronized MessageReference removeReferenceWithID(final long id)
+   {
+      Entry entry = entries.get(id);
+
+      if (entry == null)
+      {
+         return null;
+      }
+
+      remove(entry);
+
+      return entry.ref;
+   }
+
+   // Private -------------------------------------------------------
+
+   private void insert(final Entry entry)
+   {
+      long delta = entry.expirationTick - currentTick;
+
+      if (delta <= 0)
+      {
+         // Already due, fire it on the next tick
+         wheel[0][(int)((currentTick + 1) & SLOT_MASK)].add(entry);
+         return;
+      }
+
+      for (int level = 0; level < LEVELS; level++)
+      {
+         if (delta < 1L << (SLOT_BITS * (level + 1)))
+         {
+            wheel[level][(int)((entry.expirationTick >>> (SLOT_BITS * level)) & SLOT_MASK)].add(entry);
+            return;
+         }
+      }
+
+      // Beyond the range of the wheel, park it on the top level bucket that cascades last
+      int top = LEVELS - 1;
+
+      wheel[top][(int)(((currentTick >>> (SLOT_BITS * top)) - 1) & SLOT_MASK)].add(entry);
+   }
+
+   private void remove(final Entry entry)
+   {
+      entry.bucket.remove(entry);
+
+      if (entries.get(entry.ref.getMessage().getMessageID()) == entry)
+      {
+         entries.remove(entry.ref.getMessage().getMessageID());
+      }
+
+      size--;
+
+      if (size == 0)
+      {
+         stopTicker();
+      }
+   }
+
+   private void stopTicker()
+   {
+      if (ticker != null)
+      {
+         ticker.cancel(false);
+         ticker = null;
+      }
+   }
+
+   /**
+    * Advances the wheel up to now, and returns the references that are due in the order they should be added at the
+    * head of their queues.
+    */
+   private synchronized Map<Queue, LinkedList<MessageReference>> advance()
+   {
+      Map<Queue, LinkedList<MessageReference>> refs = new HashMap<Queue, LinkedList<MessageReference>>();
+
+      long nowTick = System.currentTimeMillis() / tickMillis;
+
+      while (currentTick < nowTick && size > 0)
+      {
+         currentTick++;
+
+         int slot = (int)(currentTick & SLOT_MASK);
+
+         // Moving into a new lap of a level, redistribute the matching bucket of the level above
+         for (int level = 1; level < LEVELS && slot == 0; level++)
+         {
+            slot = (int)((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+
+            Entry entry = wheel[level][slot].clear();
+
+            while (entry != null)
+            {
+               Entry next = entry.next;
+
+               if (entry.expirationTick <= currentTick)
+               {
+                  // due on this very tick, which hasn't fired yet
+                  wheel[0][(int)(currentTick & SLOT_MASK)].add(entry);
+               }
+               else
+               {
+                  insert(entry);
+               }
+
+               entry = next;
+            }
+         }
+
+         Entry entry = wheel[0][(int)(currentTick & SLOT_MASK)].clear();
+
+         while (entry != null)
+         {
+            Entry next = entry.next;
+
+            if (entries.get(entry.ref.getMessage().getMessageID()) == entry)
+            {
+               entries.remove(entry.ref.getMessage().getMessageID());
+            }
+
+            size--;
+
+            entry.ref.setScheduledDeliveryTime(0);
+
+            LinkedList<MessageReference> references = refs.get(entry.ref.getQueue());
+
+            if (references == null)
+            {
+               references = new LinkedList<MessageReference>();
+               refs.put(entry.ref.getQueue(), references);
+            }
+
+            // Queue.addHead(List) adds one by one at the head, so the list has to be built in reverse for tail refs
+            if (entry.tail)
+            {
+               references.addFirst(entry.ref);
+            }
+            else
+            {
+               references.add(entry.ref);
+            }
+
+            entry = next;
+         }
+      }
+
+      if (size == 0)
+      {
+         stopTicker();
+      }
+
+      return refs;
+   }
+
+   private final class Ticker implements Runnable
+   {
+      public void run()
+      {
+         synchronized (lockDelivery)
+         {
+            Map<Queue, LinkedList<MessageReference>> refs = advance();
+
+            // The queues are called outside of the wheel lock, they may call back into checkAndSchedule
+            for (Map.Entry<Queue, LinkedList<MessageReference>> entry : refs.entrySet())
+            {
+               entry.getKey().addHead(entry.getValue());
+            }
+         }
+      }
+   }
+
+   private static final class Entry
+   {
+      final MessageReference ref;
+
+      final long expirationTick;
+
+      final boolean tail;
+
+      Bucket bucket;
+
+      Entry prev;
+
+      Entry next;
+
+      Entry(final MessageReference ref, final long expirationTick, final boolean tail)
+      {
+         this.ref = ref;
+         this.expirationTick = expirationTick;
+         this.tail = tail;
+      }
+   }
+
+   private static final class Bucket
+   {
+      Entry first;
+
+      Entry last;
+
+      void add(final Entry entry)
+      {
+         entry.bucket = this;
+         entry.next = null;
+         entry.prev = last;
+
+         if (last == null)
+         {
+            first = entry;
+         }
+         else
+         {
+            last.next = entry;
+         }
+
+         last = entry;
+      }
+
+      void remove(final Entry entry)
+      {
+         if (entry.prev == null)
+         {
+            first = entry.next;
+         }
+         else
+         {
+            entry.prev.next = entry.next;
+         }
+
+         if (entry.next == null)
+         {
+            last = entry.prev;
+         }
+         else
+         {
+            entry.next.prev = entry.prev;
+         }
+
+         entry.prev = entry.next = null;
+         entry.bucket = null;
+      }
+
+      /**
+       * Empties the bucket, the returned entries are still chained through next
+       */
+      Entry clear()
+      {
+         Entry entry = first;
+
+         first = last = null;
+
+         return entry;
+      }
+   }
+}
@@ -69,5 +69,11 @@ public interface HierarchicalRepository<T>
 
    void clearCache();
 
+   /**
+    * remove the cached value of an address, as when the address isn't used anymore
+    * @param match the address
+    */
+   void clearCache(String match);
+
    int getCacheSize();
 }
@@ -19,10 +19,11 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 import org.hornetq.core.server.HornetQServerLogger;
 import org.hornetq.core.settings.HierarchicalRepository;
@@ -31,12 +32,17 @@ import org.hornetq.core.settings.Mergeable;
 
 /**
  * allows objects to be mapped against a regex pattern and held in order in a list
+ * <p>
+ * The matches are looked up through a {@link MatchTrie} and the values found are kept in a cache
+ * bounded to the most recently used addresses. A change of a match only removes the cached values of
+ * the addresses it matches.
  *
  * @author <a href="ataylor@redhat.com">Andy Taylor</a>
  * @author <a href="tim.fox@jboss.com">Tim Fox</a>
  */
 public class HierarchicalObjectRepository<T> implements HierarchicalRepository<T>
 {
+   public static final int DEFAULT_CACHE_SIZE = 10000;
 
    /**
     * The default Match to fall back to
@@ -62,16 +68,33 @@ public class HierarchicalObjectRepository<T> implements HierarchicalRepository<T
     */
    private final MatchComparator matchComparator = new MatchComparator();
 
+   /**
+    * the matches compiled for lookups, replaced on every change
+    */
+   private volatile MatchTrie<T> trie = new MatchTrie<T>(Collections.<Match<T>>emptyList());
+
    /**
     * a cache
     */
-   private final Map<String, T> cache = new ConcurrentHashMap<String, T>();
+   private final MatchCache<T> cache;
 
    /**
     * any registered listeners, these get fired on changes to the repository
     */
    private final ArrayList<HierarchicalRepositoryChangeListener> listeners = new ArrayList<HierarchicalRepositoryChangeListener>();
 
+   public HierarchicalObjectRepository()
+   {
+      this(DEFAULT_CACHE_SIZE);
+   }
+
+   /**
+    * @param maxCacheSize the number of addresses whose value is cached
+    */
+   public HierarchicalObjectRepository(final int maxCacheSize)
+   {
+      cache = new MatchCache<T>(maxCacheSize);
+   }
 
    public void addMatch(final String match, final T value)
    {
@@ -87,15 +110,19 @@ public class HierarchicalObjectRepository<T> implements HierarchicalRepository<T
     */
    public void addMatch(final String match, final T value, final boolean immutableMatch)
    {
-      clearCache();
-      if (immutableMatch)
-      {
-         immutables.add(match);
-      }
       Match.verify(match);
       Match<T> match1 = new Match<T>(match);
       match1.setValue(value);
-      matches.put(match, match1);
+      synchronized (this)
+      {
+         if (immutableMatch)
+         {
+            immutables.add(match);
+         }
+         matches.put(match, match1);
+         trie = new MatchTrie<T>(matches.values());
+      }
+      cache.remove(match1);
       onChange();
    }
 
@@ -117,14 +144,19 @@ public class HierarchicalObjectRepository<T> implements HierarchicalRepository<T
       {
          return cacheResult;
       }
+      MatchTrie<T> matchTrie = trie;
       T actualMatch;
-      HashMap<String, Match<T>> possibleMatches = getPossibleMatches(match);
-      List<Match<T>> orderedMatches = sort(possibleMatches);
+      List<Match<T>> orderedMatches = sort(matchTrie.getMatches(match));
       actualMatch = merge(orderedMatches);
       T value = actualMatch != null ? actualMatch : defaultmatch;
       if (value != null)
       {
          cache.put(match, value);
+         if (trie != matchTrie)
+         {
+            // the matches changed while we were looking, the value may be stale
+            cache.remove(match);
+         }
       }
       return value;
    }
@@ -161,16 +193,19 @@ public class HierarchicalObjectRepository<T> implements HierarchicalRepository<T
     * @param possibleMatches
     * @return
     */
-   private List<Match<T>> sort(final Map<String, Match<T>> possibleMatches)
+   private List<Match<T>> sort(final List<Match<T>> possibleMatches)
    {
-      List<String> keys = new ArrayList<String>(possibleMatches.keySet());
-      Collections.sort(keys, matchComparator);
-      List<Match<T>> matches = new ArrayList<Match<T>>();
-      for (String key : keys)
+      if (possibleMatches.size() > 1)
       {
-         matches.add(possibleMatches.get(key));
+         Collections.sort(possibleMatches, new Comparator<Match<T>>()
+         {
+            public int compare(final Match<T> o1, final Match<T> o2)
+            {
+               return matchComparator.compare(o1.getMatch(), o2.getMatch());
+            }
+         });
       }
-      return matches;
+      return possibleMatches;
    }
 
    /**
@@ -187,8 +222,16 @@ public class HierarchicalObjectRepository<T> implements HierarchicalRepository<T
       }
       else
       {
-         matches.remove(match);
-         clearCache();
+         Match<T> removed;
+         synchronized (this)
+         {
+            removed = matches.remove(match);
+            trie = new MatchTrie<T>(matches.values());
+         }
+         if (removed != null)
+         {
+            cache.remove(removed);
+         }
          onChange();
       }
    }
@@ -216,9 +259,13 @@ public class HierarchicalObjectRepository<T> implements HierarchicalRepository<T
 
    public void clear()
    {
+      synchronized (this)
+      {
+         matches.clear();
+         trie = new MatchTrie<T>(matches.values());
+      }
       clearCache();
       listeners.clear();
-      matches.clear();
    }
 
    public void clearListeners()
@@ -231,6 +278,11 @@ public class HierarchicalObjectRepository<T> implements HierarchicalRepository<T
       cache.clear();
    }
 
+   public void clearCache(final String match)
+   {
+      cache.remove(match);
+   }
+
    private void onChange()
    {
       for (HierarchicalRepositoryChangeListener listener : listeners)
@@ -247,22 +299,112 @@ public class HierarchicalObjectRepository<T> implements HierarchicalRepository<T
    }
 
    /**
-    * return any possible matches
-    * @param match
-    * @return
+    * The values of the most recently used addresses. It is split in segments, each one locked on
+    * its own, so lookups from many threads don't contend on a single lock.
     */
-   private HashMap<String, Match<T>> getPossibleMatches(final String match)
+   private static final class MatchCache<T>
    {
-      HashMap<String, Match<T>> possibleMatches = new HashMap<String, Match<T>>();
+      private static final int SEGMENTS = 16;
+
+      private final List<LinkedHashMap<String, T>> segments = new ArrayList<LinkedHashMap<String, T>>(SEGMENTS);
 
-      for (String key : matches.keySet())
+      MatchCache(final int maxSize)
       {
-         if (matches.get(key).getPattern().matcher(match).matches())
+         final int segmentSize = Math.max(1, maxSize / SEGMENTS);
+
+         for (int i = 0; i < SEGMENTS; i++)
          {
-            possibleMatches.put(key, matches.get(key));
+            segments.add(new LinkedHashMap<String, T>(16, 0.75f, true)
+            {
+               private static final long serialVersionUID = 4387245296133738473L;
+
+               @Override
+               protected boolean removeEldestEntry(final Map.Entry<String, T> eldest)
+               {
+                  return size() > segmentSize;
+               }
+            });
          }
       }
-      return possibleMatches;
+
+      T get(final String address)
+      {
+         LinkedHashMap<String, T> segment = segment(address);
+         synchronized (segment)
+         {
+            return segment.get(address);
+         }
+      }
+
+      void put(final String address, final T value)
+      {
+         LinkedHashMap<String, T> segment = segment(address);
+         synchronized (segment)
+         {
+            segment.put(address, value);
+         }
+      }
+
+      void remove(final String address)
+      {
+         LinkedHashMap<String, T> segment = segment(address);
+         synchronized (segment)
+         {
+            segment.remove(address);
+         }
+      }
+
+      /**
+       * removes the addresses matched by the match, the only ones whose value it changes
+       */
+      void remove(final Match<T> match)
+      {
+         for (LinkedHashMap<String, T> segment : segments)
+         {
+            synchronized (segment)
+            {
+               Iterator<String> iter = segment.keySet().iterator();
+               while (iter.hasNext())
+               {
+                  if (match.getPattern().matcher(iter.next()).matches())
+                  {
+                     iter.remove();
+                  }
+               }
+            }
+         }
+      }
+
+      void clear()
+      {
+         for (LinkedHashMap<String, T> segment : segments)
+         {
+            synchronized (segment)
+            {
+               segment.clear();
+            }
+         }
+      }
+
+      int size()
+      {
+         int size = 0;
+         for (LinkedHashMap<String, T> segment : segments)
+         {
+            synchronized (segment)
+            {
+               size += segment.size();
+            }
+         }
+         return size;
+      }
+
+      private LinkedHashMap<String, T> segment(final String address)
+      {
+         int hash = address.hashCode();
+         hash ^= hash >>> 16;
+         return segments.get((hash & 0x7fffffff) % SEGMENTS);
+      }
    }
 
    /**
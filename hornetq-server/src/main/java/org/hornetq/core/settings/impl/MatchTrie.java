@@ -0,0 +1,185 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.settings.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The matches of a {@link HierarchicalObjectRepository} compiled into a tree of words, so the matches
+ * of an address are found in time proportional to the number of words of the address instead of
+ * trying the regular expression of every match.
+ * <p>
+ * A {@link Match#WORD_WILDCARD} word matches any non empty word and a final {@link Match#WILDCARD}
+ * word matches any non empty rest of the address. Matches with wildcards inside a word or with
+ * characters which have a meaning in regular expressions still use their regular expression.
+ * <p>
+ * Instances are immutable, the repository builds a new one when its matches change.
+ */
+final class MatchTrie<T>
+{
+   private static final String REGEX_CHARACTERS = "\\[](){}?+^$|";
+
+   private final Node<T> root = new Node<T>();
+
+   private final List<Match<T>> patterns = new ArrayList<Match<T>>();
+
+   MatchTrie(final Collection<Match<T>> matches)
+   {
+      for (Match<T> match : matches)
+      {
+         add(match);
+      }
+   }
+
+   /**
+    * @return the matches of the address, in no particular order
+    */
+   List<Match<T>> getMatches(final String address)
+   {
+      List<Match<T>> result = new ArrayList<Match<T>>();
+
+      collect(root, address, 0, result);
+
+      for (Match<T> match : patterns)
+      {
+         if (match.getPattern().matcher(address).matches())
+         {
+            result.add(match);
+         }
+      }
+
+      return result;
+   }
+
+   private void add(final Match<T> match)
+   {
+      String[] words = match.getMatch().split("\\.", -1);
+
+      for (String word : words)
+      {
+         if (!isWord(word))
+         {
+            patterns.add(match);
+            return;
+         }
+      }
+
+      Node<T> node = root;
+
+      for (String word : words)
+      {
+         if (Match.WILDCARD.equals(word))
+         {
+            // Match.verify makes sure this is the last word
+            node.rest = match;
+            return;
+         }
+         else if (Match.WORD_WILDCARD.equals(word))
+         {
+            if (node.anyWord == null)
+            {
+               node.anyWord = new Node<T>();
+            }
+            node = node.anyWord;
+         }
+         else
+         {
+            Node<T> child = node.children.get(word);
+            if (child == null)
+            {
+               child = new Node<T>();
+               node.children.put(word, child);
+            }
+            node = child;
+         }
+      }
+
+      node.match = match;
+   }
+
+   private static boolean isWord(final String word)
+   {
+      if (Match.WILDCARD.equals(word) || Match.WORD_WILDCARD.equals(word))
+      {
+         return true;
+      }
+
+      for (int i = 0; i < word.length(); i++)
+      {
+         char c = word.charAt(i);
+
+         if (c == '#' || c == '*' || REGEX_CHARACTERS.indexOf(c) >= 0)
+         {
+            return false;
+         }
+      }
+
+      return true;
+   }
+
+   /**
+    * @param start where the next word of the address starts, -1 once all the words were used
+    */
+   private static <T> void collect(final Node<T> node, final String address, final int start, final List<Match<T>> result)
+   {
+      if (start < 0)
+      {
+         if (node.match != null)
+         {
+            result.add(node.match);
+         }
+         return;
+      }
+
+      if (node.rest != null && start < address.length())
+      {
+         result.add(node.rest);
+      }
+
+      int end = address.indexOf('.', start);
+
+      String word = end < 0 ? address.substring(start) : address.substring(start, end);
+
+      int next = end < 0 ? -1 : end + 1;
+
+      Node<T> child = node.children.get(word);
+
+      if (child != null)
+      {
+         collect(child, address, next, result);
+      }
+
+      if (node.anyWord != null && word.length() > 0)
+      {
+         collect(node.anyWord, address, next, result);
+      }
+   }
+
+   private static final class Node<T>
+   {
+      final Map<String, Node<T>> children = new HashMap<String, Node<T>>();
+
+      // the match ending at this word
+      Match<T> match;
+
+      // the match with a wildcard after this word
+      Match<T> rest;
+
+      Node<T> anyWord;
+   }
+}
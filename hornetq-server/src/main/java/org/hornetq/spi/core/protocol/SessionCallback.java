@@ -13,6 +13,8 @@
 
 package org.hornetq.spi.core.protocol;
 
+import java.io.File;
+
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.server.ServerMessage;
 import org.hornetq.spi.core.remoting.ReadyListener;
@@ -36,6 +38,24 @@ public interface SessionCallback
 
    int sendLargeMessageContinuation(long consumerID, byte[] body, boolean continues, boolean requiresResponse);
 
+   /**
+    * Whether {@link #sendLargeMessageContinuation(long, File, long, int, boolean, boolean)} can send the body of a large
+    * message straight from its file.
+    */
+   boolean isFileTransferSupported();
+
+   /**
+    * Sends length bytes of the file starting at position, without reading them into memory.
+    *
+    * @return the size of the packet, as for {@link #sendLargeMessageContinuation(long, byte[], boolean, boolean)}
+    */
+   int sendLargeMessageContinuation(long consumerID,
+                                    File file,
+                                    long position,
+                                    int length,
+                                    boolean continues,
+                                    boolean requiresResponse);
+
    void closed();
 
    void addReadyListener(ReadyListener listener);
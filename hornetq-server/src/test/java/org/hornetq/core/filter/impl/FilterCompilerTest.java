@@ -0,0 +1,398 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.filter.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.filter.Filter;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+
+/**
+ * Checks that the compiled filters give the same results as the {@link Operator} tree they are compiled from.
+ */
+public class FilterCompilerTest extends TestCase
+{
+   private static final Object[] VALUES = new Object[] { null,
+                                                        Integer.valueOf(1),
+                                                        Long.valueOf(2),
+                                                        Long.valueOf(-7),
+                                                        Short.valueOf((short)3),
+                                                        Byte.valueOf((byte)-1),
+                                                        Double.valueOf(1.5),
+                                                        Double.valueOf(2),
+                                                        Double.valueOf(-0.5),
+                                                        Float.valueOf(1.0f),
+                                                        new SimpleString("foo"),
+                                                        new SimpleString("bar"),
+                                                        new SimpleString("f_o%"),
+                                                        Boolean.TRUE,
+                                                        Boolean.FALSE,
+                                                        new byte[] { 1 } };
+
+   private static final int[] BINARY_OPERATIONS = new int[] { Operator.EQUAL,
+                                                             Operator.DIFFERENT,
+                                                             Operator.AND,
+                                                             Operator.OR,
+                                                             Operator.GT,
+                                                             Operator.GE,
+                                                             Operator.LT,
+                                                             Operator.LE,
+                                                             Operator.ADD,
+                                                             Operator.SUB,
+                                                             Operator.MUL,
+                                                             Operator.DIV };
+
+   private static final int[] UNARY_OPERATIONS = new int[] { Operator.NOT,
+                                                            Operator.NEG,
+                                                            Operator.IS_NULL,
+                                                            Operator.IS_NOT_NULL };
+
+   private static final SimpleString[] PATTERNS = new SimpleString[] { new SimpleString("f%"),
+                                                                      new SimpleString("_a_"),
+                                                                      new SimpleString("f!_o%"),
+                                                                      new SimpleString("%!") };
+
+   private static final SimpleString[] ESCAPES = new SimpleString[] { new SimpleString("!"), new SimpleString("!!") };
+
+   private static final int IDENTIFIERS = 4;
+
+   private final Random random = new Random(42);
+
+   private final Identifier[] identifiers = new Identifier[IDENTIFIERS];
+
+   @Override
+   protected void setUp() throws Exception
+   {
+      super.setUp();
+
+      for (int i = 0; i < IDENTIFIERS; i++)
+      {
+         identifiers[i] = new Identifier(new SimpleString("p" + i));
+      }
+   }
+
+   public void testBinaryOperations() throws Exception
+   {
+      for (int operation : BINARY_OPERATIONS)
+      {
+         for (Object value1 : VALUES)
+         {
+            for (Object value2 : VALUES)
+            {
+               assertSameResult(new Operator(operation, identifiers[0], identifiers[1]), value1, value2);
+
+               if (value2 != null)
+               {
+                  assertSameResult(new Operator(operation, identifiers[0], value2), value1);
+               }
+            }
+         }
+      }
+   }
+
+   public void testUnaryOperations() throws Exception
+   {
+      for (int operation : UNARY_OPERATIONS)
+      {
+         for (Object value : VALUES)
+         {
+            assertSameResult(new Operator(operation, identifiers[0]), value);
+         }
+      }
+   }
+
+   public void testBetween() throws Exception
+   {
+      for (int operation : new int[] { Operator.BETWEEN, Operator.NOT_BETWEEN })
+      {
+         for (Object value1 : VALUES)
+         {
+            for (Object value2 : VALUES)
+            {
+               for (Object value3 : VALUES)
+               {
+                  assertSameResult(new Operator(operation, identifiers[0], identifiers[1], identifiers[2]),
+                                   value1,
+                                   value2,
+                                   value3);
+               }
+            }
+         }
+      }
+   }
+
+   public void testLikeAndIn() throws Exception
+   {
+      Set<SimpleString> set = new HashSet<SimpleString>();
+      set.add(new SimpleString("foo"));
+      set.add(new SimpleString("baz"));
+
+      for (Object value : VALUES)
+      {
+         for (SimpleString pattern : PATTERNS)
+         {
+            assertSameResult(new Operator(Operator.LIKE, identifiers[0], pattern), value);
+            assertSameResult(new Operator(Operator.NOT_LIKE, identifiers[0], pattern), value);
+
+            for (SimpleString escape : ESCAPES)
+            {
+               assertSameResult(new Operator(Operator.LIKE_ESCAPE, identifiers[0], pattern, escape), value);
+               assertSameResult(new Operator(Operator.NOT_LIKE_ESCAPE, identifiers[0], pattern, escape), value);
+            }
+         }
+
+         assertSameResult(new Operator(Operator.IN, identifiers[0], set), value);
+         assertSameResult(new Operator(Operator.NOT_IN, identifiers[0], set), value);
+      }
+   }
+
+   public void testRandomExpressions() throws Exception
+   {
+      for (int i = 0; i < 2000; i++)
+      {
+         Object expression = randomExpression(4);
+
+         for (int j = 0; j < 10; j++)
+         {
+            Object[] values = new Object[IDENTIFIERS];
+
+            for (int k = 0; k < IDENTIFIERS; k++)
+            {
+               values[k] = VALUES[random.nextInt(VALUES.length)];
+            }
+
+            assertSameResult(expression, values);
+         }
+      }
+   }
+
+   public void testHeaders() throws Exception
+   {
+      Filter filter = FilterImpl.createFilter("HQPriority > 4 AND HQTimestamp BETWEEN 1000 AND 2000.5 AND HQSize > 0");
+
+      ServerMessage message = new ServerMessageImpl(1, 1000);
+
+      message.setPriority((byte)5);
+      message.setTimestamp(1500);
+
+      Assert.assertTrue(filter.match(message));
+
+      message.setTimestamp(2001);
+
+      Assert.assertFalse(filter.match(message));
+
+      message.setTimestamp(2000);
+      message.setPriority((byte)4);
+
+      Assert.assertFalse(filter.match(message));
+
+      message.setPriority((byte)9);
+
+      Assert.assertTrue(filter.match(message));
+
+      filter = FilterImpl.createFilter("HQPriority = 4.0 OR HQUnknown = 'x'");
+
+      message.setPriority((byte)4);
+
+      Assert.assertTrue(filter.match(message));
+
+      message.setPriority((byte)3);
+      message.putStringProperty(new SimpleString("HQUnknown"), new SimpleString("x"));
+
+      Assert.assertTrue(filter.match(message));
+   }
+
+   public void testConcurrentMatch() throws Exception
+   {
+      final Filter filter = FilterImpl.createFilter("color = 'red' AND weight > 10 AND name LIKE 'a%'");
+
+      final int threads = 8;
+
+      final CountDownLatch start = new CountDownLatch(1);
+
+      final List<Throwable> errors = new ArrayList<Throwable>();
+
+      List<Thread> workers = new ArrayList<Thread>();
+
+      for (int i = 0; i < threads; i++)
+      {
+         final boolean matching = i % 2 == 0;
+
+         workers.add(new Thread()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  ServerMessage message = new ServerMessageImpl(1, 1000);
+                  message.putStringProperty(new SimpleString("color"), new SimpleString(matching ? "red" : "blue"));
+                  message.putIntProperty(new SimpleString("weight"), 11);
+                  message.putStringProperty(new SimpleString("name"), new SimpleString("abc"));
+
+                  start.await();
+
+                  for (int j = 0; j < 100000; j++)
+                  {
+                     Assert.assertEquals(matching, filter.match(message));
+                  }
+               }
+               catch (Throwable e)
+               {
+                  synchronized (errors)
+                  {
+                     errors.add(e);
+                  }
+               }
+            }
+         });
+      }
+
+      for (Thread t : workers)
+      {
+         t.start();
+      }
+
+      start.countDown();
+
+      for (Thread t : workers)
+      {
+         t.join();
+      }
+
+      Assert.assertTrue(errors.toString(), errors.isEmpty());
+   }
+
+   // Private -------------------------------------------------------
+
+   private Object randomExpression(final int depth)
+   {
+      if (depth == 0 || random.nextInt(4) == 0)
+      {
+         if (random.nextBoolean())
+         {
+            return identifiers[random.nextInt(IDENTIFIERS)];
+         }
+
+         // any literal but null and byte[], which the parser can't produce
+         return VALUES[1 + random.nextInt(VALUES.length - 2)];
+      }
+
+      switch (random.nextInt(6))
+      {
+         case 0:
+            return new Operator(UNARY_OPERATIONS[random.nextInt(UNARY_OPERATIONS.length)],
+                                randomExpression(depth - 1));
+         case 1:
+            return new Operator(random.nextBoolean() ? Operator.BETWEEN : Operator.NOT_BETWEEN,
+                                randomExpression(depth - 1),
+                                randomExpression(depth - 1),
+                                randomExpression(depth - 1));
+         case 2:
+            return new Operator(random.nextBoolean() ? Operator.LIKE_ESCAPE : Operator.NOT_LIKE_ESCAPE,
+                                randomExpression(depth - 1),
+                                PATTERNS[random.nextInt(PATTERNS.length)],
+                                ESCAPES[random.nextInt(ESCAPES.length)]);
+         case 3:
+         {
+            Set<SimpleString> set = new HashSet<SimpleString>();
+            set.add(new SimpleString("foo"));
+            return new Operator(random.nextBoolean() ? Operator.IN : Operator.NOT_IN, randomExpression(depth - 1), set);
+         }
+         default:
+            return new Operator(BINARY_OPERATIONS[random.nextInt(BINARY_OPERATIONS.length)],
+                                randomExpression(depth - 1),
+                                randomExpression(depth - 1));
+      }
+   }
+
+   /**
+    * @param values the values of the identifiers p0, p1..., null for an absent property
+    */
+   private void assertSameResult(final Object expression, final Object... values) throws Exception
+   {
+      ServerMessage message = new ServerMessageImpl(1, 1000);
+
+      for (int i = 0; i < IDENTIFIERS; i++)
+      {
+         Object value = i < values.length ? values[i] : null;
+
+         identifiers[i].setValue(value);
+
+         if (value instanceof byte[])
+         {
+            message.putBytesProperty(identifiers[i].getName(), (byte[])value);
+         }
+         else if (value != null)
+         {
+            message.putObjectProperty(identifiers[i].getName(), value);
+         }
+      }
+
+      Object expected;
+
+      try
+      {
+         if (expression instanceof Operator)
+         {
+            expected = ((Operator)expression).apply();
+         }
+         else if (expression instanceof Identifier)
+         {
+            expected = ((Identifier)expression).getValue();
+         }
+         else
+         {
+            expected = expression;
+         }
+      }
+      catch (Exception e)
+      {
+         expected = e.getClass();
+      }
+
+      Object actual;
+
+      try
+      {
+         actual = FilterCompiler.compile(expression).evaluate(message);
+      }
+      catch (Exception e)
+      {
+         actual = e.getClass();
+      }
+
+      if (expected instanceof Class)
+      {
+         // Operator throws plain exceptions for bad types, and whatever the JDK throws otherwise
+         Assert.assertTrue(expression + " with " + Arrays.asList(values) + " = " + actual,
+                           actual instanceof Class);
+      }
+      else
+      {
+         Assert.assertEquals(expression + " with " + Arrays.asList(values), expected, actual);
+      }
+   }
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.list;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.TestCase;
+
+import org.hornetq.utils.ConcurrentPriorityLinkedListImpl;
+import org.hornetq.utils.LinkedListIterator;
+import org.hornetq.utils.PriorityLinkedList;
+
+/**
+ * Checks the lock free list keeps the ordering of {@link PriorityLinkedListTest}, with elements spread over several
+ * shards, plus a few checks with concurrent producers and consumers.
+ */
+public class ConcurrentPriorityLinkedListTest extends TestCase
+{
+   private static final ConcurrentPriorityLinkedListImpl.ShardSelector<Object> HASH_SELECTOR = new ConcurrentPriorityLinkedListImpl.ShardSelector<Object>()
+   {
+      public int select(final Object element)
+      {
+         return element.hashCode();
+      }
+   };
+
+   private PriorityLinkedList<Integer> list;
+
+   @Override
+   public void setUp() throws Exception
+   {
+      super.setUp();
+
+      list = new ConcurrentPriorityLinkedListImpl<Integer>(10, 4, HASH_SELECTOR);
+   }
+
+   @Override
+   public void tearDown() throws Exception
+   {
+      list = null;
+      super.tearDown();
+   }
+
+   public void testEmpty() throws Exception
+   {
+      assertTrue(list.isEmpty());
+
+      list.addHead(0, 0);
+
+      assertFalse(list.isEmpty());
+
+      assertEquals(0, list.poll().intValue());
+      assertTrue(list.isEmpty());
+
+      assertEquals(0, list.size());
+   }
+
+   public void testAddLastAndFirst() throws Exception
+   {
+      for (int i = 0; i < 10; i++)
+      {
+         list.addTail(i, 0);
+      }
+
+      for (int i = 10; i < 20; i++)
+      {
+         list.addHead(i, 0);
+      }
+
+      assertEquals(20, list.size());
+
+      for (int i = 19; i >= 10; i--)
+      {
+         assertEquals(i, list.poll().intValue());
+      }
+
+      for (int i = 0; i < 10; i++)
+      {
+         assertEquals(i, list.poll().intValue());
+      }
+
+      assertNull(list.poll());
+
+      assertEquals(0, list.size());
+   }
+
+   public void testPollByPriority() throws Exception
+   {
+      for (int i = 0; i < 20; i++)
+      {
+         list.addTail(i, i % 10);
+      }
+
+      for (int priority = 9; priority >= 0; priority--)
+      {
+         assertEquals(priority, list.poll().intValue());
+         assertEquals(priority + 10, list.poll().intValue());
+      }
+
+      assertNull(list.poll());
+   }
+
+   /**
+    * LinkedListImpl steps its iterator back to the previous element after a remove, the lock free list simply moves
+    * on, so this doesn't check what the iterator returns right after a removal.
+    */
+   public void testIterator()
+   {
+      int count = 26;
+
+      for (int pos = 0; pos < count; pos++)
+      {
+         list.addTail(pos, 9 - pos * 10 / count);
+      }
+
+      LinkedListIterator<Integer> iter = list.iterator();
+
+      for (int pos = 0; pos < count; pos++)
+      {
+         assertTrue(iter.hasNext());
+         assertEquals(pos, iter.next().intValue());
+         if (pos % 3 == 0)
+         {
+            iter.remove();
+         }
+      }
+
+      assertFalse(iter.hasNext());
+
+      assertEquals(17, list.size());
+
+      iter = list.iterator();
+
+      for (int pos = 0; pos < count; pos++)
+      {
+         if (pos % 3 != 0)
+         {
+            assertTrue(iter.hasNext());
+            assertEquals(pos, iter.next().intValue());
+         }
+      }
+
+      assertFalse(iter.hasNext());
+   }
+
+   public void testIteratorPicksUpHigherPriorities()
+   {
+      list.addTail(0, 4);
+      list.addTail(1, 4);
+      list.addTail(2, 4);
+
+      LinkedListIterator<Integer> iter = list.iterator();
+
+      assertEquals(0, iter.next().intValue());
+      assertEquals(1, iter.next().intValue());
+
+      list.addTail(3, 5);
+      list.addTail(4, 5);
+
+      assertTrue(iter.hasNext());
+      assertEquals(3, iter.next().intValue());
+      assertEquals(4, iter.next().intValue());
+      assertEquals(2, iter.next().intValue());
+
+      list.addTail(5, 1);
+      list.addTail(6, 9);
+
+      assertTrue(iter.hasNext());
+      assertEquals(6, iter.next().intValue());
+      assertEquals(5, iter.next().intValue());
+
+      assertFalse(iter.hasNext());
+   }
+
+   public void testClear()
+   {
+      for (int i = 0; i < 10; i++)
+      {
+         list.addTail(i, i);
+      }
+
+      list.clear();
+
+      assertNull(list.poll());
+
+      assertTrue(list.isEmpty());
+   }
+
+   public void testRemoveWhileIterating()
+   {
+      ConcurrentPriorityLinkedListImpl<Integer> list = new ConcurrentPriorityLinkedListImpl<Integer>(10, 4, HASH_SELECTOR);
+
+      for (int i = 0; i < 100; i++)
+      {
+         list.addTail(i, 0);
+      }
+
+      LinkedListIterator<Integer> iter1 = list.iterator();
+      LinkedListIterator<Integer> iter2 = list.iterator();
+
+      for (int i = 0; i < 100; i += 2)
+      {
+         assertTrue(iter1.hasNext());
+         assertEquals(i, iter1.next().intValue());
+         iter1.remove();
+         assertTrue(iter1.hasNext());
+         assertEquals(i + 1, iter1.next().intValue());
+      }
+
+      assertEquals(50, list.size());
+
+      // the second iterator must not see what the first one removed
+      for (int i = 1; i < 100; i += 2)
+      {
+         assertTrue(iter2.hasNext());
+         assertEquals(i, iter2.next().intValue());
+      }
+
+      assertFalse(iter2.hasNext());
+
+      list.addTail(100, 0);
+
+      assertTrue(iter2.hasNext());
+      assertEquals(100, iter2.next().intValue());
+
+      iter1.close();
+      iter2.close();
+   }
+
+   public void testConcurrentProducersAndConsumers() throws Exception
+   {
+      final int producers = 4;
+      final int consumers = 4;
+      final int messagesPerProducer = 20000;
+
+      final ConcurrentPriorityLinkedListImpl<Long> list = new ConcurrentPriorityLinkedListImpl<Long>(10);
+
+      final CountDownLatch start = new CountDownLatch(1);
+
+      final List<Set<Long>> received = new ArrayList<Set<Long>>();
+
+      final List<Thread> threads = new ArrayList<Thread>();
+
+      final List<Throwable> errors = new ArrayList<Throwable>();
+
+      for (int i = 0; i < producers; i++)
+      {
+         final long producerID = i;
+         threads.add(new Thread()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  start.await();
+                  for (int j = 0; j < messagesPerProducer; j++)
+                  {
+                     list.addTail(producerID << 32 | j, j % 10);
+                  }
+               }
+               catch (Throwable e)
+               {
+                  synchronized (errors)
+                  {
+                     errors.add(e);
+                  }
+               }
+            }
+         });
+      }
+
+      for (int i = 0; i < consumers; i++)
+      {
+         final Set<Long> set = new HashSet<Long>();
+         received.add(set);
+         threads.add(new Thread()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  start.await();
+                  // the last value polled from each producer on each priority, per-producer order must be kept
+                  long[][] lastSeen = new long[producers][10];
+                  for (long[] l : lastSeen)
+                  {
+                     Arrays.fill(l, -1);
+                  }
+                  int empty = 0;
+                  while (empty < 1000)
+                  {
+                     Long value = list.poll();
+                     if (value == null)
+                     {
+                        empty++;
+                        Thread.yield();
+                        continue;
+                     }
+                     empty = 0;
+                     int producer = (int)(value >>> 32);
+                     int seq = (int)(value & 0xffffffffL);
+                     assertTrue(seq > lastSeen[producer][seq % 10]);
+                     lastSeen[producer][seq % 10] = seq;
+                     set.add(value);
+                  }
+               }
+               catch (Throwable e)
+               {
+                  synchronized (errors)
+                  {
+                     errors.add(e);
+                  }
+               }
+            }
+         });
+      }
+
+      for (Thread t : threads)
+      {
+         t.start();
+      }
+
+      start.countDown();
+
+      for (Thread t : threads)
+      {
+         t.join();
+      }
+
+      assertTrue(errors.toString(), errors.isEmpty());
+
+      Set<Long> all = new HashSet<Long>();
+
+      for (Set<Long> set : received)
+      {
+         for (Long value : set)
+         {
+            assertTrue(all.add(value));
+         }
+      }
+
+      for (Long value = list.poll(); value != null; value = list.poll())
+      {
+         assertTrue(all.add(value));
+      }
+
+      assertEquals(producers * messagesPerProducer, all.size());
+
+      assertTrue(list.isEmpty());
+   }
+}
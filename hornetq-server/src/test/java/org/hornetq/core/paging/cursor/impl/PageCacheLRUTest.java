@@ -0,0 +1,168 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.paging.cursor.impl;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.hornetq.core.paging.PagedMessage;
+import org.hornetq.core.paging.cursor.PageCache;
+
+/**
+ * Checks the eviction order and limits of {@link PageCacheLRU}.
+ */
+public class PageCacheLRUTest extends TestCase
+{
+   public void testMaxElements() throws Exception
+   {
+      PageCacheLRU lru = new PageCacheLRU(3, 0);
+
+      for (long i = 0; i < 3; i++)
+      {
+         lru.put(i, new FakeCache(i, 100, false));
+      }
+
+      // 0 becomes the most recently used
+      Assert.assertNotNull(lru.get(0));
+
+      lru.put(3L, new FakeCache(3, 100, false));
+
+      Assert.assertEquals(3, lru.size());
+      Assert.assertTrue(lru.contains(0));
+      Assert.assertFalse(lru.contains(1));
+      Assert.assertEquals(1, lru.getEvictions());
+
+      lru.setMaxElements(1);
+
+      Assert.assertEquals(1, lru.size());
+      Assert.assertTrue(lru.contains(3));
+      Assert.assertEquals(3, lru.getEvictions());
+   }
+
+   public void testMaxBytes() throws Exception
+   {
+      PageCacheLRU lru = new PageCacheLRU(100, 1000);
+
+      for (long i = 0; i < 5; i++)
+      {
+         lru.put(i, new FakeCache(i, 300, false));
+      }
+
+      Assert.assertEquals(3, lru.size());
+      Assert.assertTrue(lru.contains(2));
+      Assert.assertTrue(lru.contains(4));
+
+      // bigger than the whole budget, it is still kept as the most recently used
+      lru.put(5L, new FakeCache(5, 5000, false));
+
+      Assert.assertEquals(1, lru.size());
+      Assert.assertTrue(lru.contains(5));
+      Assert.assertEquals(5, lru.getEvictions());
+   }
+
+   public void testSizeKnownAfterRead() throws Exception
+   {
+      PageCacheLRU lru = new PageCacheLRU(10, 1000);
+
+      lru.put(0L, new FakeCache(0, 600, false));
+
+      FakeCache reading = new FakeCache(1, 0, false);
+
+      lru.put(1L, reading);
+
+      Assert.assertEquals(2, lru.size());
+
+      reading.size = 600;
+
+      lru.checkSize();
+
+      Assert.assertEquals(1, lru.size());
+      Assert.assertTrue(lru.contains(1));
+   }
+
+   public void testLiveNotEvicted() throws Exception
+   {
+      PageCacheLRU lru = new PageCacheLRU(2, 1000);
+
+      lru.put(0L, new FakeCache(0, 5000, true));
+      lru.put(1L, new FakeCache(1, 600, false));
+      lru.put(2L, new FakeCache(2, 600, false));
+
+      Assert.assertEquals(2, lru.size());
+      Assert.assertTrue(lru.contains(0));
+      Assert.assertTrue(lru.contains(2));
+   }
+
+   private static final class FakeCache implements PageCache
+   {
+      private final long pageId;
+
+      private final boolean live;
+
+      long size;
+
+      FakeCache(final long pageId, final long size, final boolean live)
+      {
+         this.pageId = pageId;
+         this.size = size;
+         this.live = live;
+      }
+
+      public long getPageId()
+      {
+         return pageId;
+      }
+
+      public int getNumberOfMessages()
+      {
+         return 0;
+      }
+
+      public void setMessages(final PagedMessage[] messages)
+      {
+      }
+
+      public PagedMessage[] getMessages()
+      {
+         return new PagedMessage[0];
+      }
+
+      public long getMemoryEstimate()
+      {
+         return size;
+      }
+
+      public boolean isLive()
+      {
+         return live;
+      }
+
+      public PagedMessage getMessage(final int messageNumber)
+      {
+         return null;
+      }
+
+      public void lock()
+      {
+      }
+
+      public void unlock()
+      {
+      }
+
+      public void close()
+      {
+      }
+   }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.postoffice.impl;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.hornetq.api.core.Pair;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.persistence.impl.nullpm.NullStorageManager;
+import org.hornetq.core.postoffice.DuplicateIDCache;
+import org.hornetq.core.transaction.Transaction;
+import org.hornetq.core.transaction.impl.TransactionImpl;
+
+/**
+ * Checks that {@link OffHeapDuplicateIDCache} behaves like {@link DuplicateIDCacheImpl}, in memory and in the journal.
+ */
+public class OffHeapDuplicateIDCacheTest extends TestCase
+{
+   private static final SimpleString ADDRESS = new SimpleString("address");
+
+   private final Random random = new Random(7);
+
+   private int ids;
+
+   public void testSameAsHeapCache() throws Exception
+   {
+      for (int size : new int[] { 1, 2, 10, 100 })
+      {
+         RecordingStorageManager heapStorage = new RecordingStorageManager();
+         RecordingStorageManager offHeapStorage = new RecordingStorageManager();
+
+         DuplicateIDCache heap = new DuplicateIDCacheImpl(ADDRESS, size, heapStorage, true);
+         DuplicateIDCache offHeap = new OffHeapDuplicateIDCache(ADDRESS, size, offHeapStorage, true);
+
+         List<byte[]> added = new ArrayList<byte[]>();
+
+         for (int i = 0; i < 5000; i++)
+         {
+            int op = random.nextInt(10);
+
+            if (op < 6 || added.isEmpty())
+            {
+               byte[] id = randomID();
+
+               heap.addToCache(id, null);
+               offHeap.addToCache(id, null);
+
+               added.add(id);
+            }
+            else if (op < 9)
+            {
+               byte[] id = added.get(random.nextInt(added.size()));
+
+               Assert.assertEquals(heap.contains(id), offHeap.contains(id));
+            }
+            else
+            {
+               byte[] id = added.get(random.nextInt(added.size()));
+
+               heap.deleteFromCache(id);
+               offHeap.deleteFromCache(id);
+            }
+
+            Assert.assertEquals(heapStorage.records, offHeapStorage.records);
+         }
+
+         for (byte[] id : added)
+         {
+            Assert.assertEquals(heap.contains(id), offHeap.contains(id));
+         }
+      }
+   }
+
+   public void testEviction() throws Exception
+   {
+      RecordingStorageManager storage = new RecordingStorageManager();
+
+      DuplicateIDCache cache = new OffHeapDuplicateIDCache(ADDRESS, 10, storage, true);
+
+      List<byte[]> ids = new ArrayList<byte[]>();
+
+      for (int i = 0; i < 25; i++)
+      {
+         byte[] id = i % 2 == 0 ? new byte[] { (byte)i } : new byte[OffHeapDuplicateIDCache.MAX_INLINE_ID_SIZE + i];
+
+         id[id.length - 1] = (byte)i;
+
+         cache.addToCache(id, null);
+
+         ids.add(id);
+      }
+
+      for (int i = 0; i < 25; i++)
+      {
+         Assert.assertEquals(i >= 15, cache.contains(ids.get(i)));
+      }
+
+      Assert.assertEquals(10, storage.records.size());
+
+      cache.deleteFromCache(ids.get(20));
+
+      Assert.assertFalse(cache.contains(ids.get(20)));
+
+      Assert.assertEquals(9, storage.records.size());
+   }
+
+   public void testAddAgain() throws Exception
+   {
+      RecordingStorageManager storage = new RecordingStorageManager();
+
+      DuplicateIDCache cache = new OffHeapDuplicateIDCache(ADDRESS, 3, storage, true);
+
+      byte[] id = randomID();
+
+      cache.addToCache(id, null);
+      cache.addToCache(randomID(), null);
+      cache.addToCache(id, null);
+
+      Assert.assertEquals(3, storage.records.size());
+
+      // evicts the first copy, the id is still in the cache
+      cache.addToCache(randomID(), null);
+
+      Assert.assertTrue(cache.contains(id));
+      Assert.assertEquals(3, storage.records.size());
+
+      cache.deleteFromCache(id);
+
+      Assert.assertFalse(cache.contains(id));
+      Assert.assertEquals(2, storage.records.size());
+   }
+
+   public void testTransaction() throws Exception
+   {
+      RecordingStorageManager storage = new RecordingStorageManager();
+
+      DuplicateIDCache cache = new OffHeapDuplicateIDCache(ADDRESS, 10, storage, true);
+
+      Transaction tx = new TransactionImpl(storage);
+
+      byte[] id = randomID();
+
+      cache.addToCache(id, tx);
+
+      Assert.assertFalse(cache.contains(id));
+
+      tx.commit();
+
+      Assert.assertTrue(cache.contains(id));
+   }
+
+   public void testLoad() throws Exception
+   {
+      RecordingStorageManager storage = new RecordingStorageManager();
+
+      List<Pair<byte[], Long>> ids = new ArrayList<Pair<byte[], Long>>();
+
+      // record ids the storage manager won't generate
+      for (long i = 1000; i < 1015; i++)
+      {
+         ids.add(new Pair<byte[], Long>(randomID(), i));
+
+         storage.records.add(i);
+      }
+
+      DuplicateIDCache cache = new OffHeapDuplicateIDCache(ADDRESS, 10, storage, true);
+
+      cache.load(ids);
+
+      for (int i = 0; i < 15; i++)
+      {
+         Assert.assertEquals(i < 10, cache.contains(ids.get(i).getA()));
+      }
+
+      // the records that don't fit anymore are deleted
+      Assert.assertEquals(10, storage.records.size());
+
+      // and the next id evicts the first one loaded
+      cache.addToCache(randomID(), null);
+
+      Assert.assertFalse(cache.contains(ids.get(0).getA()));
+      Assert.assertTrue(cache.contains(ids.get(1).getA()));
+      Assert.assertFalse(storage.records.contains(1000L));
+   }
+
+   // Private -------------------------------------------------------
+
+   /**
+    * @return a new id, mostly short ones but some too long to fit in a slot
+    */
+   private byte[] randomID()
+   {
+      byte[] id = new byte[random.nextInt(10) == 0 ? 100 + random.nextInt(50) : 4 + random.nextInt(3)];
+
+      random.nextBytes(id);
+
+      int count = ids++;
+
+      for (int i = 0; i < 4; i++)
+      {
+         id[i] = (byte)(count >> i * 8);
+      }
+
+      return id;
+   }
+
+   /**
+    * Tracks the duplicate id records in the journal
+    */
+   private static final class RecordingStorageManager extends NullStorageManager
+   {
+      final Set<Long> records = new HashSet<Long>();
+
+      @Override
+      public void storeDuplicateID(final SimpleString address, final byte[] duplID, final long recordID) throws Exception
+      {
+         Assert.assertTrue(records.add(recordID));
+      }
+
+      @Override
+      public void storeDuplicateIDTransactional(final long txID,
+                                                final SimpleString address,
+                                                final byte[] duplID,
+                                                final long recordID) throws Exception
+      {
+         Assert.assertTrue(records.add(recordID));
+      }
+
+      @Override
+      public void deleteDuplicateID(final long recordID) throws Exception
+      {
+         Assert.assertTrue(records.remove(recordID));
+      }
+
+      @Override
+      public void deleteDuplicateIDTransactional(final long txID, final long recordID) throws Exception
+      {
+         Assert.assertTrue(records.remove(recordID));
+      }
+   }
+}
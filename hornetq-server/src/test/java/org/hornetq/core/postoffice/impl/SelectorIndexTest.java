@@ -0,0 +1,335 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.postoffice.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.filter.Filter;
+import org.hornetq.core.filter.impl.FilterImpl;
+import org.hornetq.core.postoffice.Binding;
+import org.hornetq.core.postoffice.BindingType;
+import org.hornetq.core.postoffice.Bindings;
+import org.hornetq.core.server.Bindable;
+import org.hornetq.core.server.RoutingContext;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+
+/**
+ * A SelectorIndexTest
+ */
+public class SelectorIndexTest extends TestCase
+{
+   private static final SimpleString REGION = new SimpleString("region");
+
+   private static final SimpleString TYPE = new SimpleString("type");
+
+   private long bindingID;
+
+   public void testPredicate() throws Exception
+   {
+      assertPredicate("region = 'EU'", REGION, new SimpleString("EU"));
+      assertPredicate("'EU' = region", REGION, new SimpleString("EU"));
+      assertPredicate("region = 'EU' AND type = 5", REGION, new SimpleString("EU"));
+      assertPredicate("type > 3 AND (region IN ('EU', 'US') AND type = 5)",
+                      REGION,
+                      new SimpleString("EU"),
+                      new SimpleString("US"));
+      assertPredicate("type = 5.0", TYPE, 5L);
+      assertPredicate("type = 5.5", TYPE, 5.5);
+      assertPredicate("type = TRUE", TYPE, Boolean.TRUE);
+
+      assertNoPredicate(null);
+      assertNoPredicate("region <> 'EU'");
+      assertNoPredicate("region = 'EU' OR type = 5");
+      assertNoPredicate("NOT (region = 'EU')");
+      assertNoPredicate("region = type");
+      assertNoPredicate("HQPriority = 4");
+      assertNoPredicate("type = 2 * 3");
+      assertNoPredicate("type = 9007199254740993");
+   }
+
+   /**
+    * Values have the same key exactly when the filters consider them equal
+    */
+   public void testNormalize() throws Exception
+   {
+      Object[] values = new Object[] { Integer.valueOf(5),
+                                      Long.valueOf(5),
+                                      Short.valueOf((short)5),
+                                      Byte.valueOf((byte)5),
+                                      Double.valueOf(5),
+                                      Float.valueOf(5),
+                                      Double.valueOf(5.5),
+                                      Float.valueOf(5.5f),
+                                      Float.valueOf(0.1f),
+                                      Double.valueOf(-0.0),
+                                      Long.valueOf(0),
+                                      Long.valueOf(Long.MAX_VALUE),
+                                      Double.valueOf(1e300),
+                                      Boolean.TRUE,
+                                      new SimpleString("5") };
+
+      String[] literals = new String[] { "5", "5.0", "5.5", "0.1", "0", "TRUE", "'5'", "1e300", "9223372036854775807" };
+
+      for (String literal : literals)
+      {
+         Filter filter = FilterImpl.createFilter("p = " + literal);
+
+         SelectorIndex.Predicate predicate = SelectorIndex.predicate(filter);
+
+         for (Object value : values)
+         {
+            ServerMessage message = new ServerMessageImpl(1, 1000);
+
+            message.putObjectProperty(new SimpleString("p"), value);
+
+            if (predicate == null)
+            {
+               continue;
+            }
+
+            Assert.assertEquals(literal + " = " + value,
+                                filter.match(message),
+                                predicate.keys.contains(SelectorIndex.normalize(value, false)));
+         }
+      }
+   }
+
+   public void testCandidates() throws Exception
+   {
+      SelectorIndex index = new SelectorIndex();
+
+      Assert.assertTrue(index.isEmpty());
+
+      List<Binding> eu = add(index, "eu", "region = 'EU' AND type = 5");
+      add(index, "us", "region = 'US'");
+      add(index, "euus", "region IN ('EU', 'US')");
+      add(index, "all", null);
+      add(index, "type", "type = 5");
+
+      Assert.assertFalse(index.isEmpty());
+
+      ServerMessage message = new ServerMessageImpl(1, 1000);
+
+      assertCandidates(index.getCandidates(message), "all");
+
+      message.putStringProperty(REGION, new SimpleString("EU"));
+
+      assertCandidates(index.getCandidates(message), "all", "eu", "euus");
+
+      message.putLongProperty(TYPE, 5);
+
+      assertCandidates(index.getCandidates(message), "all", "eu", "euus", "type");
+
+      // a second binding on the same routing name that isn't indexed on the same property
+      eu.add(new FakeBinding(new SimpleString("eu"), FilterImpl.createFilter("type = 6")));
+
+      index.addBinding(eu.get(1), eu);
+
+      message.putStringProperty(REGION, new SimpleString("US"));
+      message.putLongProperty(TYPE, 7);
+
+      assertCandidates(index.getCandidates(message), "all", "eu", "us", "euus");
+
+      index.removeBinding(eu.get(1), eu.subList(0, 1));
+
+      assertCandidates(index.getCandidates(message), "all", "us", "euus");
+
+      index.removeBinding(eu.get(0), null);
+
+      message.putStringProperty(REGION, new SimpleString("EU"));
+
+      assertCandidates(index.getCandidates(message), "all", "euus");
+   }
+
+   public void testRoute() throws Exception
+   {
+      Bindings bindings = new Bindings(new SimpleString("address"), null, null);
+
+      List<FakeBinding> all = new ArrayList<FakeBinding>();
+
+      String[] regions = new String[] { "EU", "US", "APAC" };
+
+      for (int i = 0; i < 30; i++)
+      {
+         String filter = i % 10 == 0 ? null : "region = '" + regions[i % 3] + "' AND type = " + i % 4;
+
+         FakeBinding binding = new FakeBinding(new SimpleString("queue" + i),
+                                               filter == null ? null : FilterImpl.createFilter(filter));
+
+         bindings.addBinding(binding);
+
+         all.add(binding);
+      }
+
+      for (int i = 0; i < 100; i++)
+      {
+         ServerMessage message = new ServerMessageImpl(i, 1000);
+
+         message.putStringProperty(REGION, new SimpleString(regions[i % 3]));
+
+         message.putIntProperty(TYPE, i % 5);
+
+         bindings.route(message, null);
+
+         for (FakeBinding binding : all)
+         {
+            boolean matches = binding.getFilter() == null || binding.getFilter().match(message);
+
+            Assert.assertEquals(binding.toString(), matches, binding.routed.remove(message));
+         }
+      }
+   }
+
+   // Private -------------------------------------------------------
+
+   private List<Binding> add(final SelectorIndex index, final String routingName, final String filter) throws Exception
+   {
+      List<Binding> bindings = new ArrayList<Binding>();
+
+      bindings.add(new FakeBinding(new SimpleString(routingName), filter == null ? null
+                                                                                 : FilterImpl.createFilter(filter)));
+
+      index.addBinding(bindings.get(0), bindings);
+
+      return bindings;
+   }
+
+   private void assertCandidates(final List<SimpleString> candidates, final String... expected)
+   {
+      HashSet<String> names = new HashSet<String>();
+
+      for (SimpleString candidate : candidates)
+      {
+         Assert.assertTrue("duplicate " + candidate, names.add(candidate.toString()));
+      }
+
+      Assert.assertEquals(new HashSet<String>(Arrays.asList(expected)), names);
+   }
+
+   private void assertPredicate(final String filter, final SimpleString property, final Object... keys) throws Exception
+   {
+      SelectorIndex.Predicate predicate = SelectorIndex.predicate(FilterImpl.createFilter(filter));
+
+      Assert.assertNotNull(filter, predicate);
+
+      Assert.assertEquals(property, predicate.property);
+
+      Assert.assertEquals(new HashSet<Object>(Arrays.asList(keys)), predicate.keys);
+   }
+
+   private void assertNoPredicate(final String filter) throws Exception
+   {
+      Assert.assertNull(filter, SelectorIndex.predicate(filter == null ? null : FilterImpl.createFilter(filter)));
+   }
+
+   private final class FakeBinding implements Binding
+   {
+      private final long id = bindingID++;
+
+      private final SimpleString routingName;
+
+      private final Filter filter;
+
+      final HashSet<ServerMessage> routed = new HashSet<ServerMessage>();
+
+      FakeBinding(final SimpleString routingName, final Filter filter)
+      {
+         this.routingName = routingName;
+         this.filter = filter;
+      }
+
+      public SimpleString getAddress()
+      {
+         return null;
+      }
+
+      public Bindable getBindable()
+      {
+         return null;
+      }
+
+      public BindingType getType()
+      {
+         return BindingType.LOCAL_QUEUE;
+      }
+
+      public SimpleString getUniqueName()
+      {
+         return routingName;
+      }
+
+      public SimpleString getRoutingName()
+      {
+         return routingName;
+      }
+
+      public SimpleString getClusterName()
+      {
+         return routingName;
+      }
+
+      public Filter getFilter()
+      {
+         return filter;
+      }
+
+      public boolean isHighAcceptPriority(final ServerMessage message)
+      {
+         return true;
+      }
+
+      public boolean isExclusive()
+      {
+         return false;
+      }
+
+      public long getID()
+      {
+         return id;
+      }
+
+      public int getDistance()
+      {
+         return 0;
+      }
+
+      public void route(final ServerMessage message, final RoutingContext context)
+      {
+         Assert.assertTrue(routed.add(message));
+      }
+
+      public void close()
+      {
+      }
+
+      public String toManagementString()
+      {
+         return toString();
+      }
+
+      @Override
+      public String toString()
+      {
+         return "FakeBinding [" + routingName + ", " + filter + "]";
+      }
+   }
+}
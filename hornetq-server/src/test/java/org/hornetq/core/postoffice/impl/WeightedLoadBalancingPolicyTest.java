@@ -0,0 +1,253 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.postoffice.impl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.filter.Filter;
+import org.hornetq.core.postoffice.Binding;
+import org.hornetq.core.postoffice.BindingType;
+import org.hornetq.core.postoffice.Bindings;
+import org.hornetq.core.postoffice.QueueBinding;
+import org.hornetq.core.server.Bindable;
+import org.hornetq.core.server.Queue;
+import org.hornetq.core.server.RoutingContext;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+
+/**
+ * A WeightedLoadBalancingPolicyTest
+ */
+public class WeightedLoadBalancingPolicyTest extends TestCase
+{
+   private long bindingID;
+
+   public void testWeight() throws Exception
+   {
+      WeightedLoadBalancingPolicy policy = new WeightedLoadBalancingPolicy();
+
+      FakeQueueBinding binding = new FakeQueueBinding(2);
+
+      binding.messageCount = 9;
+      binding.messagesAdded = 9;
+
+      Assert.assertEquals(2 * 1d / 10, policy.getWeight(binding, 0), 0.0001);
+
+      // 100 messages consumed in a second
+      binding.messageCount = 0;
+      binding.messagesAdded = 100;
+
+      // not sampled again before the end of the period
+      Assert.assertEquals(2 * 1d / 10, policy.getWeight(binding, WeightedLoadBalancingPolicy.SAMPLE_PERIOD / 2), 0.0001);
+
+      Assert.assertEquals(2 * (1 + 50d), policy.getWeight(binding, WeightedLoadBalancingPolicy.SAMPLE_PERIOD), 0.0001);
+
+      policy.bindingRemoved(binding);
+
+      Assert.assertEquals(2, policy.getWeight(binding, WeightedLoadBalancingPolicy.SAMPLE_PERIOD * 2), 0.0001);
+   }
+
+   public void testSelect() throws Exception
+   {
+      WeightedLoadBalancingPolicy policy = new WeightedLoadBalancingPolicy();
+
+      FakeQueueBinding fast = new FakeQueueBinding(1);
+
+      FakeQueueBinding slow = new FakeQueueBinding(1);
+
+      slow.messageCount = 99;
+      slow.messagesAdded = 99;
+
+      List<Binding> candidates = new ArrayList<Binding>();
+      candidates.add(fast);
+      candidates.add(slow);
+
+      int toFast = 0;
+
+      for (int i = 0; i < 1000; i++)
+      {
+         if (policy.select(null, candidates) == fast)
+         {
+            toFast++;
+         }
+      }
+
+      // the expected share of fast is 100 / 101
+      Assert.assertTrue("fast got " + toFast, toFast > 950);
+   }
+
+   public void testRouteWithPolicy() throws Exception
+   {
+      Bindings bindings = new Bindings(new SimpleString("address"), null, null);
+
+      bindings.setLoadBalancingPolicy(new WeightedLoadBalancingPolicy());
+
+      FakeQueueBinding local = new FakeQueueBinding(1);
+
+      FakeQueueBinding remote = new FakeQueueBinding(1);
+
+      FakeQueueBinding noConsumers = new FakeQueueBinding(0);
+
+      remote.messageCount = 999;
+      remote.messagesAdded = 999;
+
+      bindings.addBinding(local);
+      bindings.addBinding(remote);
+      bindings.addBinding(noConsumers);
+
+      for (int i = 0; i < 100; i++)
+      {
+         bindings.route(new ServerMessageImpl(i, 1000), null);
+      }
+
+      Assert.assertEquals(100, local.routed + remote.routed);
+      Assert.assertTrue("local got " + local.routed, local.routed > 90);
+      Assert.assertEquals(0, noConsumers.routed);
+
+      bindings.removeBinding(local);
+
+      int routedToRemote = remote.routed;
+
+      for (int i = 0; i < 10; i++)
+      {
+         bindings.route(new ServerMessageImpl(i, 1000), null);
+      }
+
+      Assert.assertEquals(routedToRemote + 10, remote.routed);
+      Assert.assertEquals(0, noConsumers.routed);
+   }
+
+   private final class FakeQueueBinding implements QueueBinding, InvocationHandler
+   {
+      private final long id = bindingID++;
+
+      private final SimpleString name = new SimpleString("queue");
+
+      private final int consumerCount;
+
+      private final Queue queue;
+
+      long messageCount;
+
+      long messagesAdded;
+
+      int routed;
+
+      FakeQueueBinding(final int consumerCount)
+      {
+         this.consumerCount = consumerCount;
+         queue = (Queue)Proxy.newProxyInstance(Queue.class.getClassLoader(), new Class[] { Queue.class }, this);
+      }
+
+      public Object invoke(final Object proxy, final Method method, final Object[] args)
+      {
+         if (method.getName().equals("getInstantMessageCount"))
+         {
+            return messageCount;
+         }
+         if (method.getName().equals("getInstantMessagesAdded"))
+         {
+            return messagesAdded;
+         }
+         throw new UnsupportedOperationException(method.getName());
+      }
+
+      public int consumerCount()
+      {
+         return consumerCount;
+      }
+
+      public Queue getQueue()
+      {
+         return queue;
+      }
+
+      public SimpleString getAddress()
+      {
+         return null;
+      }
+
+      public Bindable getBindable()
+      {
+         return null;
+      }
+
+      public BindingType getType()
+      {
+         return BindingType.LOCAL_QUEUE;
+      }
+
+      public SimpleString getUniqueName()
+      {
+         return new SimpleString("queue" + id);
+      }
+
+      public SimpleString getRoutingName()
+      {
+         return name;
+      }
+
+      public SimpleString getClusterName()
+      {
+         return getUniqueName();
+      }
+
+      public Filter getFilter()
+      {
+         return null;
+      }
+
+      public boolean isHighAcceptPriority(final ServerMessage message)
+      {
+         return consumerCount > 0;
+      }
+
+      public boolean isExclusive()
+      {
+         return false;
+      }
+
+      public long getID()
+      {
+         return id;
+      }
+
+      public int getDistance()
+      {
+         return 0;
+      }
+
+      public void route(final ServerMessage message, final RoutingContext context)
+      {
+         routed++;
+      }
+
+      public void close()
+      {
+      }
+
+      public String toManagementString()
+      {
+         return toString();
+      }
+   }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.security.impl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.hornetq.api.core.HornetQSecurityException;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.security.CheckType;
+import org.hornetq.core.security.Role;
+import org.hornetq.core.server.ServerSession;
+import org.hornetq.core.settings.impl.HierarchicalObjectRepository;
+import org.hornetq.spi.core.security.HornetQSecurityManagerImpl;
+
+/**
+ * Checks the caching of granted checks by {@link SecurityStoreImpl}.
+ */
+public class SecurityStoreImplTest extends TestCase
+{
+   private static final SimpleString ADDRESS_A = new SimpleString("a");
+
+   private static final SimpleString ADDRESS_B = new SimpleString("b");
+
+   private HierarchicalObjectRepository<Set<Role>> repository;
+
+   private HornetQSecurityManagerImpl securityManager;
+
+   private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+   private ServerSession session;
+
+   @Override
+   protected void setUp() throws Exception
+   {
+      super.setUp();
+
+      repository = new HierarchicalObjectRepository<Set<Role>>();
+      repository.addMatch("#", Collections.singleton(new Role("sender", true, false, false, false, false, false, false)));
+
+      securityManager = new HornetQSecurityManagerImpl();
+      securityManager.addUser("user", "pass");
+      securityManager.addRole("user", "sender");
+
+      session = (ServerSession)Proxy.newProxyInstance(getClass().getClassLoader(),
+                                                      new Class[] { ServerSession.class },
+                                                      new InvocationHandler()
+                                                      {
+                                                         public Object invoke(final Object proxy,
+                                                                              final Method method,
+                                                                              final Object[] args)
+                                                         {
+                                                            if (method.getName().equals("getUsername"))
+                                                            {
+                                                               return "user";
+                                                            }
+                                                            if (method.getName().equals("getPassword"))
+                                                            {
+                                                               return "pass";
+                                                            }
+                                                            return null;
+                                                         }
+                                                      });
+   }
+
+   public void testCachedCheck() throws Exception
+   {
+      SecurityStoreImpl store = createStore(10000);
+
+      store.check(ADDRESS_A, CheckType.SEND, session);
+      store.check(ADDRESS_A, CheckType.SEND, session);
+      store.check(ADDRESS_A, CheckType.SEND, session);
+
+      Assert.assertEquals(2, store.getCacheHits());
+      Assert.assertEquals(1, store.getCacheMisses());
+      Assert.assertTrue(tasks.isEmpty());
+   }
+
+   public void testNoCache() throws Exception
+   {
+      SecurityStoreImpl store = createStore(0);
+
+      store.check(ADDRESS_A, CheckType.SEND, session);
+      store.check(ADDRESS_A, CheckType.SEND, session);
+
+      Assert.assertEquals(0, store.getCacheHits());
+      Assert.assertEquals(2, store.getCacheMisses());
+      Assert.assertEquals(0, store.getCacheSize());
+   }
+
+   public void testRevalidation() throws Exception
+   {
+      SecurityStoreImpl store = createStore(400);
+
+      store.check(ADDRESS_A, CheckType.SEND, session);
+
+      // past three quarters of the interval the entry is being refreshed
+      Thread.sleep(320);
+
+      store.check(ADDRESS_A, CheckType.SEND, session);
+
+      Assert.assertEquals(1, store.getCacheHits());
+      Assert.assertEquals(1, tasks.size());
+
+      securityManager.removeRole("user", "sender");
+
+      // still granted until the revalidation is done
+      store.check(ADDRESS_A, CheckType.SEND, session);
+      Assert.assertEquals(1, tasks.size());
+
+      tasks.remove(0).run();
+
+      Assert.assertEquals(0, store.getCacheSize());
+
+      try
+      {
+         store.check(ADDRESS_A, CheckType.SEND, session);
+         Assert.fail("the role was removed");
+      }
+      catch (HornetQSecurityException expected)
+      {
+      }
+   }
+
+   public void testExpiredChecksAreSwept() throws Exception
+   {
+      SecurityStoreImpl store = createStore(100);
+
+      store.check(ADDRESS_A, CheckType.SEND, session);
+
+      Assert.assertTrue(tasks.isEmpty());
+
+      Thread.sleep(150);
+
+      // caching another check sweeps the expired one
+      store.check(ADDRESS_B, CheckType.SEND, session);
+
+      Assert.assertEquals(2, store.getCacheSize());
+      Assert.assertEquals(1, tasks.size());
+
+      tasks.remove(0).run();
+
+      Assert.assertEquals(1, store.getCacheSize());
+
+      // no other sweep in the same interval
+      store.check(ADDRESS_A, CheckType.SEND, session);
+
+      Assert.assertTrue(tasks.isEmpty());
+   }
+
+   public void testChangeDropsMatchingChecks() throws Exception
+   {
+      SecurityStoreImpl store = createStore(10000);
+
+      store.check(ADDRESS_A, CheckType.SEND, session);
+      store.check(ADDRESS_B, CheckType.SEND, session);
+
+      Assert.assertEquals(2, store.getCacheSize());
+
+      // the same roles under another match
+      repository.addMatch("a", Collections.singleton(new Role("sender", true, false, false, false, false, false, false)));
+
+      Assert.assertEquals(2, store.getCacheSize());
+
+      repository.addMatch("b", Collections.singleton(new Role("consumer", false, true, false, false, false, false, false)));
+
+      Assert.assertEquals(1, store.getCacheSize());
+
+      try
+      {
+         store.check(ADDRESS_B, CheckType.SEND, session);
+         Assert.fail("the sender role was removed from b");
+      }
+      catch (HornetQSecurityException expected)
+      {
+      }
+
+      store.check(ADDRESS_A, CheckType.SEND, session);
+
+      Assert.assertEquals(1, store.getCacheHits());
+   }
+
+   private SecurityStoreImpl createStore(final long invalidationInterval)
+   {
+      return new SecurityStoreImpl(repository,
+                                   securityManager,
+                                   invalidationInterval,
+                                   true,
+                                   "cluster",
+                                   "cluster-password",
+                                   null,
+                                   new Executor()
+                                   {
+                                      public void execute(final Runnable command)
+                                      {
+                                         tasks.add(command);
+                                      }
+                                   });
+   }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.settings.impl;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+/**
+ * Checks {@link MatchTrie} finds the same matches as the regular expressions of the matches.
+ */
+public class MatchTrieTest extends TestCase
+{
+   private static final String[] MATCHES = new String[] { "#",
+                                                          "*",
+                                                          "a",
+                                                          "a.#",
+                                                          "a.*",
+                                                          "a.b",
+                                                          "a.b.#",
+                                                          "a.*.c",
+                                                          "a.*.*.d",
+                                                          "*.b.*",
+                                                          "a..c",
+                                                          "",
+                                                          "ab#",
+                                                          "a*.b",
+                                                          "jms.queue.tenant-1.#",
+                                                          "jms.queue.q+" };
+
+   private static final String[] ADDRESSES = new String[] { "a",
+                                                            "a.",
+                                                            "a..",
+                                                            "a.b",
+                                                            "a.b.c",
+                                                            "a.x.c",
+                                                            "a.x.y.d",
+                                                            "a..c",
+                                                            "ab",
+                                                            "abc",
+                                                            "abc.b",
+                                                            "x.b.y",
+                                                            ".b.y",
+                                                            "",
+                                                            "zz.z.z",
+                                                            "jms.queue.tenant-1",
+                                                            "jms.queue.tenant-1.orders",
+                                                            "jms.queue.q",
+                                                            "jms.queue.qqq" };
+
+   public void testSameMatchesAsRegex() throws Exception
+   {
+      List<Match<String>> matches = new ArrayList<Match<String>>();
+
+      for (String match : MATCHES)
+      {
+         matches.add(new Match<String>(match));
+      }
+
+      MatchTrie<String> trie = new MatchTrie<String>(matches);
+
+      for (String address : ADDRESSES)
+      {
+         HashSet<String> expected = new HashSet<String>();
+
+         for (Match<String> match : matches)
+         {
+            if (match.getPattern().matcher(address).matches())
+            {
+               expected.add(match.getMatch());
+            }
+         }
+
+         HashSet<String> found = new HashSet<String>();
+
+         for (Match<String> match : trie.getMatches(address))
+         {
+            Assert.assertTrue(address + " matched " + match.getMatch() + " twice", found.add(match.getMatch()));
+         }
+
+         Assert.assertEquals(address, expected, found);
+      }
+   }
+}
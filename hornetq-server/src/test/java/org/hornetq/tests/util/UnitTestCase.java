@@ -79,6 +79,7 @@ import org.hornetq.core.journal.impl.JournalImpl;
 import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
 import org.hornetq.core.persistence.impl.journal.DescribeJournal;
 import org.hornetq.core.persistence.impl.journal.DescribeJournal.ReferenceDescribe;
+import org.hornetq.core.persistence.impl.journal.DescribeJournal.ReferencesDescribe;
 import org.hornetq.core.persistence.impl.journal.JournalRecordIds;
 import org.hornetq.core.persistence.impl.journal.OperationContextImpl;
 import org.hornetq.core.postoffice.Binding;
@@ -1549,15 +1550,13 @@ public abstract class UnitTestCase extends CoreUnitTestCase
          if (info.getUserRecordType() == JournalRecordIds.ADD_REF)
          {
             ReferenceDescribe ref = (ReferenceDescribe)o;
-            AtomicInteger count = messageRefCounts.get(ref.refEncoding.queueID);
-            if (count == null)
-            {
-               count = new AtomicInteger(1);
-               messageRefCounts.put(ref.refEncoding.queueID, count);
-            }
-            else
+            incrementRefCount(messageRefCounts, ref.refEncoding.queueID);
+         }
+         else if (info.getUserRecordType() == JournalRecordIds.ADD_REFS)
+         {
+            for (long queueID : ((ReferencesDescribe)o).refsEncoding.queueIDs)
             {
-               count.incrementAndGet();
+               incrementRefCount(messageRefCounts, queueID);
             }
          }
       }
@@ -1568,6 +1567,20 @@ public abstract class UnitTestCase extends CoreUnitTestCase
 
    }
 
+   private static void incrementRefCount(final Map<Long, AtomicInteger> messageRefCounts, final long queueID)
+   {
+      AtomicInteger count = messageRefCounts.get(queueID);
+      if (count == null)
+      {
+         count = new AtomicInteger(1);
+         messageRefCounts.put(queueID, count);
+      }
+      else
+      {
+         count.incrementAndGet();
+      }
+   }
+
    protected final ServerLocator createInVMNonHALocator()
    {
       return createNonHALocator(false);
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.concurrent.server.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hornetq.core.server.impl.QueueImpl;
+import org.hornetq.tests.unit.UnitTestLogger;
+import org.hornetq.tests.util.UnitTestCase;
+import org.hornetq.utils.ConcurrentPriorityLinkedListImpl;
+import org.hornetq.utils.LinkedListIterator;
+import org.hornetq.utils.PriorityLinkedList;
+import org.hornetq.utils.PriorityLinkedListImpl;
+
+/**
+ * Compares the throughput of the reference stores a QueueImpl can use as the number of producer threads grows: the
+ * PriorityLinkedListImpl producers add to under the queue lock, and the lock free ConcurrentPriorityLinkedListImpl
+ * they add to without it.
+ * <p>
+ * Delivery is done as QueueImpl does it, on one thread holding the queue lock, with one iterator per consumer taking
+ * turns and removing each reference it is given. Producers stop adding while the backlog is full, so the numbers
+ * are those of a queue consumed as fast as it is filled.
+ */
+public class QueueReferencesThroughputTest extends UnitTestCase
+{
+   private static final UnitTestLogger log = UnitTestLogger.LOGGER;
+
+   private static final int MESSAGES_PER_PRODUCER = 200000;
+
+   private static final int MAX_BACKLOG = 10000;
+
+   private static final int CONSUMERS = 4;
+
+   public void testThroughputAsProducersGrow() throws Exception
+   {
+      int maxProducers = Math.max(1, Runtime.getRuntime().availableProcessors() * 2);
+
+      for (int producers = 1; producers <= maxProducers; producers *= 2)
+      {
+         long locked = run(new PriorityLinkedListImpl<Integer>(QueueImpl.NUM_PRIORITIES), true, producers);
+
+         long concurrent = run(new ConcurrentPriorityLinkedListImpl<Integer>(QueueImpl.NUM_PRIORITIES),
+                               false,
+                               producers);
+
+         log.info(producers + " producers: locked=" + locked + " msgs/sec, concurrent=" + concurrent + " msgs/sec");
+      }
+   }
+
+   /**
+    * @param lockedProducers whether producers take the queue lock to add, as they do with PriorityLinkedListImpl
+    * @return the number of messages delivered per second
+    */
+   private long run(final PriorityLinkedList<Integer> list, final boolean lockedProducers, final int producers) throws Exception
+   {
+      final Object queueLock = new Object();
+
+      final CountDownLatch start = new CountDownLatch(1);
+
+      final AtomicInteger backlog = new AtomicInteger(0);
+
+      final int total = producers * MESSAGES_PER_PRODUCER;
+
+      List<Thread> threads = new ArrayList<Thread>();
+
+      for (int i = 0; i < producers; i++)
+      {
+         threads.add(new Thread()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  start.await();
+               }
+               catch (InterruptedException e)
+               {
+                  return;
+               }
+
+               Integer value = Integer.valueOf(0);
+
+               for (int j = 0; j < MESSAGES_PER_PRODUCER; j++)
+               {
+                  while (backlog.get() >= MAX_BACKLOG)
+                  {
+                     Thread.yield();
+                  }
+
+                  if (lockedProducers)
+                  {
+                     synchronized (queueLock)
+                     {
+                        list.addTail(value, j % QueueImpl.NUM_PRIORITIES);
+                     }
+                  }
+                  else
+                  {
+                     list.addTail(value, j % QueueImpl.NUM_PRIORITIES);
+                  }
+
+                  backlog.incrementAndGet();
+               }
+            }
+         });
+      }
+
+      Thread delivery = new Thread()
+      {
+         @Override
+         public void run()
+         {
+            try
+            {
+               start.await();
+            }
+            catch (InterruptedException e)
+            {
+               return;
+            }
+
+            List<LinkedListIterator<Integer>> iterators = new ArrayList<LinkedListIterator<Integer>>();
+
+            synchronized (queueLock)
+            {
+               for (int i = 0; i < CONSUMERS; i++)
+               {
+                  iterators.add(list.iterator());
+               }
+            }
+
+            int delivered = 0;
+
+            int pos = 0;
+
+            while (delivered < total)
+            {
+               int handled = 0;
+
+               synchronized (queueLock)
+               {
+                  while (handled < QueueImpl.MAX_DELIVERIES_IN_LOOP)
+                  {
+                     LinkedListIterator<Integer> iter = iterators.get(pos);
+
+                     if (!iter.hasNext())
+                     {
+                        break;
+                     }
+
+                     iter.next();
+
+                     iter.remove();
+
+                     handled++;
+
+                     pos = (pos + 1) % CONSUMERS;
+                  }
+               }
+
+               if (handled == 0)
+               {
+                  Thread.yield();
+               }
+               else
+               {
+                  delivered += handled;
+
+                  backlog.addAndGet(-handled);
+               }
+            }
+
+            for (LinkedListIterator<Integer> iter : iterators)
+            {
+               iter.close();
+            }
+         }
+      };
+
+      threads.add(delivery);
+
+      for (Thread t : threads)
+      {
+         t.start();
+      }
+
+      long begin = System.currentTimeMillis();
+
+      start.countDown();
+
+      for (Thread t : threads)
+      {
+         t.join();
+      }
+
+      long elapsed = Math.max(1, System.currentTimeMillis() - begin);
+
+      assertTrue(list.isEmpty());
+
+      return total * 1000L / elapsed;
+   }
+}
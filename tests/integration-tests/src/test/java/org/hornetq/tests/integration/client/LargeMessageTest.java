@@ -2843,7 +2843,7 @@ public class LargeMessageTest extends LargeMessageTestBase
    // The ClientConsumer should be able to also send ServerLargeMessages as that's done by the CoreBridge
    public void testSendServerMessage() throws Exception
    {
-      HornetQServer server = createServer(true);
+      HornetQServer server = createServer(true, isNetty());
 
       server.start();
 
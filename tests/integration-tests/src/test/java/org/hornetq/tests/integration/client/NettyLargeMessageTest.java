@@ -0,0 +1,148 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.integration.client;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.hornetq.api.core.HornetQException;
+import org.hornetq.api.core.Interceptor;
+import org.hornetq.api.core.Message;
+import org.hornetq.api.core.TransportConfiguration;
+import org.hornetq.api.core.client.ClientConsumer;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.ClientSessionFactory;
+import org.hornetq.api.core.client.HornetQClient;
+import org.hornetq.core.protocol.core.Packet;
+import org.hornetq.core.protocol.core.impl.wireformat.SessionReceiveFileContinuationMessage;
+import org.hornetq.core.remoting.impl.netty.TransportConstants;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.spi.core.protocol.RemotingConnection;
+import org.hornetq.tests.util.UnitTestCase;
+
+/**
+ * Runs the {@link LargeMessageTest} over Netty, where the body of large messages is sent to consumers straight from its
+ * file.
+ */
+public class NettyLargeMessageTest extends LargeMessageTest
+{
+   @Override
+   protected boolean isNetty()
+   {
+      return true;
+   }
+
+   public void testBodyTransferredFromFile() throws Exception
+   {
+      HornetQServer server = createServer(true, isNetty());
+
+      FileContinuationCounter counter = new FileContinuationCounter();
+
+      server.start();
+
+      server.getRemotingService().addOutgoingInterceptor(counter);
+
+      sendAndReceive(server);
+
+      Assert.assertEquals(11, counter.count.get());
+   }
+
+   public void testFileTransferDisabled() throws Exception
+   {
+      HornetQServer server = createServer(true, isNetty());
+
+      Map<String, Object> params = new HashMap<String, Object>();
+      params.put(TransportConstants.LARGE_MESSAGE_FILE_TRANSFER, false);
+
+      server.getConfiguration().getAcceptorConfigurations().clear();
+      server.getConfiguration()
+            .getAcceptorConfigurations()
+            .add(new TransportConfiguration(UnitTestCase.NETTY_ACCEPTOR_FACTORY, params));
+
+      FileContinuationCounter counter = new FileContinuationCounter();
+
+      server.start();
+
+      server.getRemotingService().addOutgoingInterceptor(counter);
+
+      sendAndReceive(server);
+
+      Assert.assertEquals(0, counter.count.get());
+   }
+
+   private void sendAndReceive(final HornetQServer server) throws Exception
+   {
+      // 11 chunks, with credits for only half of a chunk so the delivery keeps waiting for the consumer
+      final int messageSize = 10 * HornetQClient.DEFAULT_MIN_LARGE_MESSAGE_SIZE + 7;
+
+      locator.setConsumerWindowSize(HornetQClient.DEFAULT_MIN_LARGE_MESSAGE_SIZE / 2);
+
+      ClientSessionFactory sf = addSessionFactory(createSessionFactory(locator));
+
+      ClientSession session = addClientSession(sf.createSession(false, false, false));
+
+      session.createQueue(LargeMessageTest.ADDRESS, LargeMessageTest.ADDRESS, true);
+
+      ClientProducer producer = session.createProducer(LargeMessageTest.ADDRESS);
+
+      Message clientFile = createLargeClientMessage(session, messageSize, true);
+
+      producer.send(clientFile);
+
+      session.commit();
+
+      session.start();
+
+      ClientConsumer consumer = session.createConsumer(LargeMessageTest.ADDRESS);
+
+      ClientMessage msg = consumer.receive(10000);
+
+      Assert.assertNotNull(msg);
+
+      Assert.assertEquals(messageSize, msg.getBodySize());
+
+      for (int i = 0; i < messageSize; i++)
+      {
+         Assert.assertEquals(UnitTestCase.getSamplebyte(i), msg.getBodyBuffer().readByte());
+      }
+
+      msg.acknowledge();
+
+      session.commit();
+
+      session.close();
+
+      validateNoFilesOnLargeDir();
+   }
+
+   private static final class FileContinuationCounter implements Interceptor
+   {
+      final AtomicInteger count = new AtomicInteger();
+
+      public boolean intercept(final Packet packet, final RemotingConnection connection) throws HornetQException
+      {
+         if (packet instanceof SessionReceiveFileContinuationMessage)
+         {
+            count.incrementAndGet();
+         }
+
+         return true;
+      }
+   }
+}
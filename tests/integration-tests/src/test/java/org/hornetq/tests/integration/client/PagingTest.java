@@ -64,6 +64,7 @@ import org.hornetq.core.paging.impl.Page;
 import org.hornetq.core.persistence.OperationContext;
 import org.hornetq.core.persistence.impl.journal.DescribeJournal;
 import org.hornetq.core.persistence.impl.journal.DescribeJournal.ReferenceDescribe;
+import org.hornetq.core.persistence.impl.journal.DescribeJournal.ReferencesDescribe;
 import org.hornetq.core.persistence.impl.journal.JournalRecordIds;
 import org.hornetq.core.persistence.impl.journal.JournalStorageManager.AckDescribe;
 import org.hornetq.core.persistence.impl.journal.OperationContextImpl;
@@ -742,6 +743,18 @@ public class PagingTest extends ServiceTestBase
                deletedQueueReferences.add(new Long(info.id));
             }
          }
+         else if (info.getUserRecordType() == JournalRecordIds.ADD_REFS)
+         {
+            DescribeJournal.ReferencesDescribe refs = (ReferencesDescribe)DescribeJournal.newObjectEncoding(info);
+
+            for (long queueID : refs.refsEncoding.queueIDs)
+            {
+               if (queueID == deletedQueueID)
+               {
+                  deletedQueueReferences.add(new Long(info.id));
+               }
+            }
+         }
          else if (info.getUserRecordType() == JournalRecordIds.ACKNOWLEDGE_REF)
          {
             AckDescribe ref = (AckDescribe)DescribeJournal.newObjectEncoding(info);
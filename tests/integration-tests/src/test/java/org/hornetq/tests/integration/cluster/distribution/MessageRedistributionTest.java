@@ -28,6 +28,7 @@ import org.hornetq.api.core.client.ClientProducer;
 import org.hornetq.api.core.client.ClientSession;
 import org.hornetq.core.message.impl.MessageImpl;
 import org.hornetq.core.server.Bindable;
+import org.hornetq.core.server.Queue;
 import org.hornetq.core.server.cluster.impl.Redistributor;
 import org.hornetq.core.server.group.impl.GroupingHandlerConfiguration;
 import org.hornetq.core.server.impl.QueueImpl;
@@ -931,6 +932,54 @@ public class MessageRedistributionTest extends ClusterTestBase
       verifyReceiveAll(QueueImpl.REDISTRIBUTOR_BATCH_SIZE * 2, 1);
    }
 
+   public void testRedistributionInBatches() throws Exception
+   {
+      setupCluster(false);
+
+      getServer(0).getConfiguration().setRedistributionBatchSize(7);
+      getServer(0).getConfiguration().setRedistributionWindowSize(2);
+
+      startServers(0, 1, 2);
+
+      setupSessionFactory(0, isNetty());
+      setupSessionFactory(1, isNetty());
+      setupSessionFactory(2, isNetty());
+
+      createQueue(0, "queues.testaddress", "queue0", null, false);
+      createQueue(1, "queues.testaddress", "queue0", null, false);
+      createQueue(2, "queues.testaddress", "queue0", null, false);
+
+      addConsumer(0, 0, "queue0", null);
+
+      waitForBindings(0, "queues.testaddress", 1, 1, true);
+      waitForBindings(1, "queues.testaddress", 1, 0, true);
+      waitForBindings(2, "queues.testaddress", 1, 0, true);
+
+      waitForBindings(0, "queues.testaddress", 2, 0, false);
+      waitForBindings(1, "queues.testaddress", 2, 1, false);
+      waitForBindings(2, "queues.testaddress", 2, 1, false);
+
+      // not a multiple of the batch size, the last batch is committed when the queue is empty
+      send(0, "queues.testaddress", 100, false, null);
+
+      removeConsumer(0);
+      addConsumer(1, 1, "queue0", null);
+
+      verifyReceiveAll(100, 1);
+
+      Queue queue = (Queue)servers[0].getPostOffice().getBinding(new SimpleString("queue0")).getBindable();
+
+      long timeout = System.currentTimeMillis() + 5000;
+
+      while (queue.getMessagesRedistributed() < 100 && System.currentTimeMillis() < timeout)
+      {
+         Thread.sleep(10);
+      }
+
+      assertEquals(100, queue.getMessagesRedistributed());
+      assertEquals(0, queue.getMessageCount());
+   }
+
    /*
     * Start one node with no consumers and send some messages
     * Start another node add a consumer and verify all messages are redistribute
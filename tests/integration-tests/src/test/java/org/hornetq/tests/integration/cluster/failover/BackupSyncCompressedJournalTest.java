@@ -0,0 +1,26 @@
+package org.hornetq.tests.integration.cluster.failover;
+
+import org.hornetq.core.replication.ReplicationEndpoint;
+
+public class BackupSyncCompressedJournalTest extends BackupSyncJournalTest
+{
+
+   @Override
+   protected void createConfigs() throws Exception
+   {
+      super.createConfigs();
+      liveConfig.setReplicationSyncCompression(true);
+   }
+
+   public void testSyncStatistics() throws Exception
+   {
+      createProducerSendSomeMessages();
+      startBackupFinishSyncing();
+
+      ReplicationEndpoint endpoint = backupServer.getServer().getReplicationEndpoint();
+      assertTrue(endpoint.getSyncBytes() > 0);
+      assertTrue("journal files are mostly empty and compressible",
+                 endpoint.getSyncBytesTransferred() < endpoint.getSyncBytes() / 2);
+      assertTrue(endpoint.getSyncThroughput() > 0);
+   }
+}
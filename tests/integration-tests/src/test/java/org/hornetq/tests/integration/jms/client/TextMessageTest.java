@@ -26,6 +26,7 @@ import junit.framework.Assert;
 import org.hornetq.api.core.TransportConfiguration;
 import org.hornetq.api.core.client.HornetQClient;
 import org.hornetq.api.jms.JMSFactoryType;
+import org.hornetq.jms.client.HornetQConnectionFactory;
 import org.hornetq.tests.util.JMSTestBase;
 import org.hornetq.tests.util.RandomUtil;
 
@@ -124,16 +125,35 @@ public class TextMessageTest extends JMSTestBase
       testSendReceiveWithBody(2 * 0xffff);
    }
 
+   public void testSendReceiveCompactLatin1Body() throws Exception
+   {
+      ((HornetQConnectionFactory)cf).setCompactTextMessages(true);
+
+      testSendReceiveWithBody("{\"id\":12,\"name\":\"caf\u00e9\"}");
+   }
+
+   public void testSendReceiveCompactBody0xfffftimes2() throws Exception
+   {
+      ((HornetQConnectionFactory)cf).setCompactTextMessages(true);
+
+      testSendReceiveWithBody(2 * 0xffff);
+   }
+
    private void testSendReceiveWithBody(final int bodyLength) throws Exception
    {
-      conn = cf.createConnection();
          char[] chrs = new char[bodyLength];
 
          for (int i = 0; i < bodyLength; i++)
          {
             chrs[i] = RandomUtil.randomChar();
          }
-         String str = new String(chrs);
+
+         testSendReceiveWithBody(new String(chrs));
+   }
+
+   private void testSendReceiveWithBody(final String str) throws Exception
+   {
+      conn = cf.createConnection();
 
          Session sess = conn.createSession(false, Session.AUTO_ACKNOWLEDGE);
 
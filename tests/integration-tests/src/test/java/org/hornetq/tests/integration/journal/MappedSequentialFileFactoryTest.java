@@ -0,0 +1,127 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.integration.journal;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import org.hornetq.core.journal.SequentialFile;
+import org.hornetq.core.journal.SequentialFileFactory;
+import org.hornetq.core.journal.impl.MappedSequentialFile;
+import org.hornetq.core.journal.impl.MappedSequentialFileFactory;
+import org.hornetq.tests.unit.core.journal.impl.SequentialFileFactoryTestBase;
+import org.hornetq.tests.util.UnitTestCase;
+
+/**
+ * Runs the sequential file tests on memory mapped files
+ */
+public class MappedSequentialFileFactoryTest extends SequentialFileFactoryTestBase
+{
+
+   @Override
+   protected void setUp() throws Exception
+   {
+      super.setUp();
+
+      File file = new File(getTestDir());
+
+      deleteDirectory(file);
+
+      file.mkdir();
+   }
+
+   @Override
+   protected SequentialFileFactory createFactory()
+   {
+      return new MappedSequentialFileFactory(getTestDir(), true);
+   }
+
+   public void testGrowAndTruncate() throws Exception
+   {
+      SequentialFile file = factory.createSequentialFile("grow.page", 1);
+
+      file.open();
+
+      byte[] bytes = new byte[MappedSequentialFile.GROWTH / 3];
+
+      for (int i = 0; i < bytes.length; i++)
+      {
+         bytes[i] = UnitTestCase.getSamplebyte(i);
+      }
+
+      // written past the end of the file, as paging does
+      for (int i = 0; i < 4; i++)
+      {
+         file.writeDirect(ByteBuffer.wrap(bytes), false);
+      }
+
+      assertEquals(bytes.length * 4, file.size());
+
+      file.sync();
+
+      file.close();
+
+      assertEquals(bytes.length * 4, file.getJavaFile().length());
+
+      file.open();
+
+      assertEquals(bytes.length * 4, file.size());
+
+      ByteBuffer buffer = ByteBuffer.allocate(bytes.length * 4);
+
+      assertEquals(bytes.length * 4, file.read(buffer));
+
+      for (int i = 0; i < bytes.length * 4; i++)
+      {
+         assertEquals(bytes[i % bytes.length], buffer.get(i));
+      }
+
+      file.close();
+   }
+
+   public void testWriteAfterRead() throws Exception
+   {
+      SequentialFile file = factory.createSequentialFile("read.page", 1);
+
+      file.open();
+
+      file.writeDirect(ByteBuffer.wrap("AAAAAAAAAA".getBytes()), true);
+
+      file.close();
+
+      file.open();
+
+      file.position(0);
+
+      ByteBuffer buffer = ByteBuffer.allocate(10);
+
+      assertEquals(10, file.read(buffer));
+
+      // goes after what was read, as on a NIO file
+      file.writeDirect(ByteBuffer.wrap("BBBBB".getBytes()), true);
+
+      file.close();
+
+      file.open();
+
+      buffer = ByteBuffer.allocate(15);
+
+      assertEquals(15, file.read(buffer));
+
+      assertEquals("AAAAAAAAAABBBBB", new String(buffer.array()));
+
+      file.close();
+   }
+
+}
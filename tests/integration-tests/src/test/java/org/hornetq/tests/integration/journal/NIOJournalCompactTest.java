@@ -1238,6 +1238,54 @@ public class NIOJournalCompactTest extends JournalImplTestBase
 
    }
 
+   public void testCompactMetrics() throws Exception
+   {
+      setup(2, 60 * 1024, false);
+
+      createJournal();
+      startJournal();
+      load();
+
+      JournalImpl journalImpl = (JournalImpl)journal;
+
+      for (int i = 0; i < 1000; i++)
+      {
+         add(i);
+         if (i % 100 == 0)
+         {
+            journal.forceMoveNextFile();
+         }
+      }
+
+      // only one record in ten stays live
+      for (int i = 0; i < 1000; i++)
+      {
+         if (i % 10 != 0)
+         {
+            delete(i);
+         }
+      }
+
+      journal.forceMoveNextFile();
+
+      int filesBefore = journal.getDataFilesCount();
+
+      assertEquals(0, journalImpl.getCompactCount());
+
+      journal.testCompact();
+
+      assertEquals(1, journalImpl.getCompactCount());
+      assertTrue(journalImpl.getCompactReclaimedBytes() > 0);
+      assertEquals(0, journalImpl.getCompactReclaimedBytes() % journal.getFileSize());
+      assertTrue(journalImpl.getCompactReclaimedBytes() / journal.getFileSize() < filesBefore);
+      assertTrue(journalImpl.getCompactPauseTime() >= 0);
+
+      stopJournal();
+      createJournal();
+      startJournal();
+      loadAndCheck();
+   }
+
    public void testLiveSize() throws Exception
    {
       setup(2, 60 * 1024, true);
@@ -0,0 +1,296 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package org.hornetq.tests.integration.largemessage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.hornetq.api.core.HornetQBuffers;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.ClientConsumer;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.ClientSessionFactory;
+import org.hornetq.api.core.client.ServerLocator;
+import org.hornetq.core.config.Configuration;
+import org.hornetq.core.config.DivertConfiguration;
+import org.hornetq.core.journal.PreparedTransactionInfo;
+import org.hornetq.core.journal.RecordInfo;
+import org.hornetq.core.journal.impl.JournalImpl;
+import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
+import org.hornetq.core.persistence.impl.journal.JournalRecordIds;
+import org.hornetq.core.persistence.impl.journal.JournalStorageManager.LargeMessageBodyEncoding;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.core.settings.impl.AddressSettings;
+import org.hornetq.tests.util.ServiceTestBase;
+import org.hornetq.tests.util.UnitTestCase;
+
+/**
+ * Checks that the copies of a large message made by a divert or for the dead letter address use the body file of the
+ * original message, and that the file is only deleted with the last message using it, across a restart.
+ */
+public class SharedLargeMessageBodyTest extends ServiceTestBase
+{
+   private static final int MESSAGE_SIZE = 50 * 1024;
+
+   private static final SimpleString ADDRESS = new SimpleString("shared");
+
+   private static final SimpleString FORWARD_ADDRESS = new SimpleString("shared.forward");
+
+   private static final SimpleString DLA = new SimpleString("shared.dla");
+
+   private HornetQServer server;
+
+   private ServerLocator locator;
+
+   private ClientSessionFactory sf;
+
+   @Override
+   protected void setUp() throws Exception
+   {
+      super.setUp();
+
+      Configuration config = createDefaultConfig();
+
+      List<DivertConfiguration> diverts = new ArrayList<DivertConfiguration>();
+      diverts.add(new DivertConfiguration("divert", "divert", ADDRESS.toString(), FORWARD_ADDRESS.toString(), false,
+                                          null, null));
+      config.setDivertConfigurations(diverts);
+
+      server = createServer(true, config);
+
+      AddressSettings settings = new AddressSettings();
+      settings.setMaxDeliveryAttempts(1);
+      settings.setDeadLetterAddress(DLA);
+      server.getAddressSettingsRepository().addMatch(ADDRESS.toString(), settings);
+
+      server.start();
+
+      locator = createInVMNonHALocator();
+
+      locator.setBlockOnDurableSend(true);
+      locator.setBlockOnAcknowledge(true);
+      locator.setMinLargeMessageSize(10 * 1024);
+
+      sf = createSessionFactory(locator);
+   }
+
+   public void testDivertSharesBody() throws Exception
+   {
+      ClientSession session = addClientSession(sf.createSession(false, true, true));
+
+      session.createQueue(ADDRESS, ADDRESS, true);
+      session.createQueue(FORWARD_ADDRESS, FORWARD_ADDRESS, true);
+
+      send(session);
+
+      session.close();
+
+      validateNoFilesOnLargeDir(1);
+
+      restart();
+
+      session = addClientSession(sf.createSession(false, true, true));
+
+      session.start();
+
+      receive(session, ADDRESS);
+
+      validateNoFilesOnLargeDir(1);
+
+      receive(session, FORWARD_ADDRESS);
+
+      validateNoFilesOnLargeDir();
+   }
+
+   public void testDeadLetterSharesBody() throws Exception
+   {
+      ClientSession session = addClientSession(sf.createSession(false, true, true));
+
+      session.createQueue(ADDRESS, ADDRESS, true);
+      session.createQueue(FORWARD_ADDRESS, FORWARD_ADDRESS, true);
+      session.createQueue(DLA, DLA, true);
+
+      send(session);
+
+      session.start();
+
+      receive(session, FORWARD_ADDRESS);
+
+      session.close();
+
+      ClientSession txSession = addClientSession(sf.createSession(false, false, false));
+
+      txSession.start();
+
+      ClientConsumer consumer = txSession.createConsumer(ADDRESS);
+
+      ClientMessage message = consumer.receive(5000);
+      assertNotNull(message);
+      message.acknowledge();
+
+      // over max-delivery-attempts, copied to the dead letter address
+      txSession.rollback();
+
+      assertNull(consumer.receiveImmediate());
+
+      txSession.close();
+
+      validateNoFilesOnLargeDir(1);
+
+      restart();
+
+      session = addClientSession(sf.createSession(false, true, true));
+
+      session.start();
+
+      receive(session, DLA);
+
+      validateNoFilesOnLargeDir();
+   }
+
+   public void testGoneMessageReleasedOnLoad() throws Exception
+   {
+      ClientSession session = addClientSession(sf.createSession(false, true, true));
+
+      session.createQueue(ADDRESS, ADDRESS, true);
+      session.createQueue(FORWARD_ADDRESS, FORWARD_ADDRESS, true);
+
+      send(session);
+
+      session.close();
+
+      sf.close();
+
+      server.stop();
+
+      // as if the release of a deleted message had been lost on a crash
+      addBodyUser(Long.MAX_VALUE);
+
+      server.start();
+
+      sf = createSessionFactory(locator);
+
+      session = addClientSession(sf.createSession(false, true, true));
+
+      session.start();
+
+      receive(session, ADDRESS);
+
+      validateNoFilesOnLargeDir(1);
+
+      receive(session, FORWARD_ADDRESS);
+
+      validateNoFilesOnLargeDir();
+   }
+
+   private void addBodyUser(final long messageID) throws Exception
+   {
+      Configuration config = server.getConfiguration();
+
+      JournalImpl journal = new JournalImpl(config.getJournalFileSize(),
+                                            config.getJournalMinFiles(),
+                                            0,
+                                            0,
+                                            new NIOSequentialFileFactory(getJournalDir()),
+                                            "hornetq-data",
+                                            "hq",
+                                            1);
+
+      journal.start();
+
+      try
+      {
+         ArrayList<RecordInfo> records = new ArrayList<RecordInfo>();
+
+         journal.load(records, new ArrayList<PreparedTransactionInfo>(), null);
+
+         int found = 0;
+
+         for (RecordInfo record : records)
+         {
+            if (record.getUserRecordType() == JournalRecordIds.LARGE_MESSAGE_BODY)
+            {
+               LargeMessageBodyEncoding encoding = new LargeMessageBodyEncoding();
+
+               encoding.decode(HornetQBuffers.wrappedBuffer(record.data));
+
+               long[] users = Arrays.copyOf(encoding.users, encoding.users.length + 1);
+
+               users[encoding.users.length] = messageID;
+
+               journal.appendUpdateRecord(record.id,
+                                          JournalRecordIds.LARGE_MESSAGE_BODY,
+                                          new LargeMessageBodyEncoding(encoding.bodyID, users),
+                                          true);
+
+               found++;
+            }
+         }
+
+         assertEquals(1, found);
+      }
+      finally
+      {
+         journal.stop();
+      }
+   }
+
+   private void restart() throws Exception
+   {
+      sf.close();
+
+      server.stop();
+
+      server.start();
+
+      sf = createSessionFactory(locator);
+   }
+
+   private static void send(final ClientSession session) throws Exception
+   {
+      ClientProducer producer = session.createProducer(ADDRESS);
+
+      ClientMessage message = session.createMessage(true);
+
+      message.setBodyInputStream(UnitTestCase.createFakeLargeStream(MESSAGE_SIZE));
+
+      producer.send(message);
+   }
+
+   private static void receive(final ClientSession session, final SimpleString queue) throws Exception
+   {
+      ClientConsumer consumer = session.createConsumer(queue);
+
+      ClientMessage message = consumer.receive(5000);
+
+      assertNotNull(message);
+
+      assertEquals(MESSAGE_SIZE, message.getBodySize());
+
+      for (int i = 0; i < MESSAGE_SIZE; i++)
+      {
+         assertEquals(UnitTestCase.getSamplebyte(i), message.getBodyBuffer().readByte());
+      }
+
+      message.acknowledge();
+
+      assertNull(consumer.receiveImmediate());
+
+      consumer.close();
+   }
+}
@@ -40,6 +40,7 @@ import org.hornetq.api.core.management.RoleInfo;
 import org.hornetq.core.asyncio.impl.AsynchronousFileImpl;
 import org.hornetq.core.config.Configuration;
 import org.hornetq.core.messagecounter.impl.MessageCounterManagerImpl;
+import org.hornetq.core.persistence.impl.journal.JournalStorageManager;
 import org.hornetq.core.remoting.impl.invm.InVMAcceptorFactory;
 import org.hornetq.core.remoting.impl.invm.InVMConnectorFactory;
 import org.hornetq.core.server.HornetQServer;
@@ -148,6 +149,19 @@ public class HornetQServerControlTest extends ManagementTestBase
       Assert.assertEquals(conf.isFailoverOnServerShutdown(), serverControl.isFailoverOnServerShutdown());
    }
 
+   public void testJournalCompactMetrics() throws Exception
+   {
+      HornetQServerControl serverControl = createManagementControl();
+
+      Assert.assertEquals(0, serverControl.getJournalCompactCount());
+
+      ((JournalStorageManager)server.getStorageManager()).getMessageJournal().scheduleCompactAndBlock(60);
+
+      Assert.assertEquals(1, serverControl.getJournalCompactCount());
+      Assert.assertTrue(serverControl.getJournalCompactReclaimedBytes() >= 0);
+      Assert.assertTrue(serverControl.getJournalCompactPauseTime() >= 0);
+   }
+
    public void testGetConnectors() throws Exception
    {
       HornetQServerControl serverControl = createManagementControl();
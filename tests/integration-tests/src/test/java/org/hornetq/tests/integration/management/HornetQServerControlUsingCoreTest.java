@@ -290,6 +290,16 @@ public class HornetQServerControlUsingCoreTest extends HornetQServerControlTest
             return (Long)proxy.retrieveAttributeValue("securityInvalidationInterval", Long.class);
          }
 
+         public long getSecurityCacheHits()
+         {
+            return (Long)proxy.retrieveAttributeValue("securityCacheHits", Long.class);
+         }
+
+         public long getSecurityCacheMisses()
+         {
+            return (Long)proxy.retrieveAttributeValue("securityCacheMisses", Long.class);
+         }
+
          public long getTransactionTimeout()
          {
             return (Long)proxy.retrieveAttributeValue("transactionTimeout", Long.class);
@@ -310,6 +320,21 @@ public class HornetQServerControlUsingCoreTest extends HornetQServerControlTest
             return (Boolean)proxy.retrieveAttributeValue("backup");
          }
 
+         public long getReplicationSyncBytes()
+         {
+            return (Long)proxy.retrieveAttributeValue("replicationSyncBytes", Long.class);
+         }
+
+         public long getReplicationSyncBytesTransferred()
+         {
+            return (Long)proxy.retrieveAttributeValue("replicationSyncBytesTransferred", Long.class);
+         }
+
+         public long getReplicationSyncThroughput()
+         {
+            return (Long)proxy.retrieveAttributeValue("replicationSyncThroughput", Long.class);
+         }
+
          public boolean isClustered()
          {
             return (Boolean)proxy.retrieveAttributeValue("clustered");
@@ -465,6 +490,16 @@ public class HornetQServerControlUsingCoreTest extends HornetQServerControlTest
             return (Integer)proxy.retrieveAttributeValue("JournalBufferTimeout");
          }
 
+         public long getJournalFlushCount()
+         {
+            return (Long)proxy.retrieveAttributeValue("journalFlushCount", Long.class);
+         }
+
+         public long getJournalBytesFlushed()
+         {
+            return (Long)proxy.retrieveAttributeValue("journalBytesFlushed", Long.class);
+         }
+
          public int getJournalCompactMinFiles()
          {
             return (Integer)proxy.retrieveAttributeValue("JournalCompactMinFiles");
@@ -475,6 +510,21 @@ public class HornetQServerControlUsingCoreTest extends HornetQServerControlTest
             return (Integer)proxy.retrieveAttributeValue("JournalCompactPercentage");
          }
 
+         public long getJournalCompactCount()
+         {
+            return (Long)proxy.retrieveAttributeValue("journalCompactCount", Long.class);
+         }
+
+         public long getJournalCompactReclaimedBytes()
+         {
+            return (Long)proxy.retrieveAttributeValue("journalCompactReclaimedBytes", Long.class);
+         }
+
+         public long getJournalCompactPauseTime()
+         {
+            return (Long)proxy.retrieveAttributeValue("journalCompactPauseTime", Long.class);
+         }
+
          public boolean isPersistenceEnabled()
          {
             return (Boolean)proxy.retrieveAttributeValue("PersistenceEnabled");
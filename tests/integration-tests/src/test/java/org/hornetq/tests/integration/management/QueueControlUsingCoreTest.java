@@ -107,6 +107,16 @@ public class QueueControlUsingCoreTest extends QueueControlTest
             return (Integer)proxy.retrieveAttributeValue("messagesAdded");
          }
 
+         public long getMessagesRedistributed()
+         {
+            return ((Number)proxy.retrieveAttributeValue("messagesRedistributed")).longValue();
+         }
+
+         public double getRedistributionRate()
+         {
+            return ((Number)proxy.retrieveAttributeValue("redistributionRate")).doubleValue();
+         }
+
          public String getName()
          {
             return (String)proxy.retrieveAttributeValue("name");
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package org.hornetq.tests.integration.persistence;
+
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.ClientConsumer;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.ClientSessionFactory;
+import org.hornetq.api.core.client.ServerLocator;
+import org.hornetq.core.config.Configuration;
+import org.hornetq.core.persistence.impl.journal.JournalRecordIds;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.tests.util.ServiceTestBase;
+
+/**
+ * Checks that with a delivery count flush interval the redeliveries of a reference are stored with a single record,
+ * and that no record is stored for a reference acknowledged before the flush.
+ */
+public class DeliveryCountFlushTest extends ServiceTestBase
+{
+   private static final SimpleString QUEUE = new SimpleString("DeliveryCountFlushTestQueue");
+
+   private static final int REDELIVERIES = 5;
+
+   private HornetQServer server;
+
+   private ServerLocator locator;
+
+   private ClientSessionFactory sf;
+
+   @Override
+   protected void setUp() throws Exception
+   {
+      super.setUp();
+
+      Configuration config = createDefaultConfig();
+
+      // only flushed when the server stops
+      config.setDeliveryCountFlushInterval(60 * 60 * 1000);
+
+      server = createServer(true, config);
+
+      server.start();
+
+      locator = createInVMNonHALocator();
+
+      locator.setBlockOnDurableSend(true);
+
+      sf = createSessionFactory(locator);
+   }
+
+   public void testDeliveryCountStoredOnce() throws Exception
+   {
+      ClientSession session = addClientSession(sf.createSession(false, false, false));
+
+      session.createQueue(QUEUE, QUEUE, true);
+
+      sendAndRollback(session, 2);
+
+      session.close();
+
+      server.stop();
+
+      HashMap<Integer, AtomicInteger> records = countJournal(server.getConfiguration());
+
+      // one update for each message, whatever the number of redeliveries
+      assertEquals(2, records.get((int)JournalRecordIds.UPDATE_DELIVERY_COUNT).intValue());
+
+      server.start();
+
+      sf = createSessionFactory(locator);
+
+      session = addClientSession(sf.createSession(false, true, true));
+
+      session.start();
+
+      ClientConsumer consumer = session.createConsumer(QUEUE);
+
+      for (int i = 0; i < 2; i++)
+      {
+         ClientMessage message = consumer.receive(5000);
+         assertNotNull(message);
+         assertEquals(REDELIVERIES + 1, message.getDeliveryCount());
+         message.acknowledge();
+      }
+
+      assertNull(consumer.receiveImmediate());
+   }
+
+   public void testNoUpdateAfterAcknowledge() throws Exception
+   {
+      ClientSession session = addClientSession(sf.createSession(false, false, false));
+
+      session.createQueue(QUEUE, QUEUE, true);
+
+      sendAndRollback(session, 1);
+
+      ClientConsumer consumer = session.createConsumer(QUEUE);
+
+      ClientMessage message = consumer.receive(5000);
+      assertNotNull(message);
+      message.acknowledge();
+
+      session.commit();
+
+      session.close();
+
+      server.stop();
+
+      HashMap<Integer, AtomicInteger> records = countJournal(server.getConfiguration());
+
+      assertNull(records.get((int)JournalRecordIds.UPDATE_DELIVERY_COUNT));
+
+      server.start();
+
+      assertEquals(0, server.locateQueue(QUEUE).getMessageCount());
+   }
+
+   private void sendAndRollback(final ClientSession session, final int messages) throws Exception
+   {
+      ClientProducer producer = session.createProducer(QUEUE);
+
+      for (int i = 0; i < messages; i++)
+      {
+         producer.send(session.createMessage(true));
+      }
+
+      session.commit();
+
+      session.start();
+
+      ClientConsumer consumer = session.createConsumer(QUEUE);
+
+      for (int i = 0; i < REDELIVERIES; i++)
+      {
+         for (int j = 0; j < messages; j++)
+         {
+            ClientMessage message = consumer.receive(5000);
+            assertNotNull(message);
+            assertEquals(i + 1, message.getDeliveryCount());
+            message.acknowledge();
+         }
+
+         session.rollback();
+      }
+
+      consumer.close();
+   }
+}
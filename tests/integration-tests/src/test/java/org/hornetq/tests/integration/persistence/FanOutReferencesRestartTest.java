@@ -0,0 +1,175 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package org.hornetq.tests.integration.persistence;
+
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hornetq.api.core.Message;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.ClientConsumer;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.ClientSessionFactory;
+import org.hornetq.api.core.client.ServerLocator;
+import org.hornetq.core.persistence.impl.journal.JournalRecordIds;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.tests.util.ServiceTestBase;
+
+/**
+ * Checks that a durable message routed to several durable queues is stored with a single references record and that
+ * every queue gets its references back on restart.
+ */
+public class FanOutReferencesRestartTest extends ServiceTestBase
+{
+   private static final SimpleString ADDRESS = new SimpleString("fanout");
+
+   private static final int QUEUES = 3;
+
+   private static final int MESSAGES = 10;
+
+   private HornetQServer server;
+
+   private ServerLocator locator;
+
+   private ClientSessionFactory sf;
+
+   @Override
+   protected void setUp() throws Exception
+   {
+      super.setUp();
+
+      server = createServer(true);
+
+      server.start();
+
+      locator = createInVMNonHALocator();
+
+      locator.setBlockOnDurableSend(true);
+
+      sf = createSessionFactory(locator);
+   }
+
+   public void testReferencesAfterRestart() throws Exception
+   {
+      ClientSession session = addClientSession(sf.createSession(false, true, true));
+
+      for (int i = 0; i < QUEUES; i++)
+      {
+         session.createQueue(ADDRESS, queueName(i), true);
+      }
+
+      ClientProducer producer = session.createProducer(ADDRESS);
+
+      for (int i = 0; i < MESSAGES; i++)
+      {
+         producer.send(createMessage(session, i));
+      }
+
+      ClientSession txSession = addClientSession(sf.createSession(false, false, false));
+
+      ClientProducer txProducer = txSession.createProducer(ADDRESS);
+
+      for (int i = MESSAGES; i < 2 * MESSAGES; i++)
+      {
+         txProducer.send(createMessage(txSession, i));
+      }
+
+      txSession.commit();
+
+      ClientMessage scheduled = createMessage(session, 2 * MESSAGES);
+      scheduled.putLongProperty(Message.HDR_SCHEDULED_DELIVERY_TIME, System.currentTimeMillis() + 60000);
+      producer.send(scheduled);
+
+      session.start();
+
+      // acknowledged individually on a queue
+      ClientConsumer consumer = session.createConsumer(queueName(1));
+
+      for (int i = 0; i < 5; i++)
+      {
+         ClientMessage message = consumer.receive(5000);
+         assertNotNull(message);
+         assertEquals(i, message.getIntProperty("i").intValue());
+         message.acknowledge();
+      }
+
+      consumer.close();
+
+      // and in a transaction on another
+      txSession.start();
+
+      ClientConsumer txConsumer = txSession.createConsumer(queueName(2));
+
+      for (int i = 0; i < 3; i++)
+      {
+         ClientMessage message = txConsumer.receive(5000);
+         assertNotNull(message);
+         message.acknowledge();
+      }
+
+      txSession.commit();
+
+      txConsumer.close();
+
+      session.close();
+      txSession.close();
+
+      server.stop();
+
+      HashMap<Integer, AtomicInteger> records = countJournalLivingRecords(server.getConfiguration());
+
+      assertEquals(2 * MESSAGES + 1, records.get((int)JournalRecordIds.ADD_REFS).intValue());
+      assertNull(records.get((int)JournalRecordIds.ADD_REF));
+
+      server.start();
+
+      assertEquals(2 * MESSAGES + 1, server.locateQueue(queueName(0)).getMessageCount());
+      assertEquals(2 * MESSAGES + 1 - 5, server.locateQueue(queueName(1)).getMessageCount());
+      assertEquals(2 * MESSAGES + 1 - 3, server.locateQueue(queueName(2)).getMessageCount());
+      assertEquals(1, server.locateQueue(queueName(0)).getScheduledCount());
+
+      sf = createSessionFactory(locator);
+
+      session = addClientSession(sf.createSession(false, true, true));
+
+      session.start();
+
+      consumer = session.createConsumer(queueName(1));
+
+      for (int i = 5; i < 2 * MESSAGES; i++)
+      {
+         ClientMessage message = consumer.receive(5000);
+         assertNotNull(message);
+         assertEquals(i, message.getIntProperty("i").intValue());
+         message.acknowledge();
+      }
+
+      assertNull(consumer.receiveImmediate());
+   }
+
+   private static SimpleString queueName(final int i)
+   {
+      return ADDRESS.concat("." + i);
+   }
+
+   private static ClientMessage createMessage(final ClientSession session, final int i)
+   {
+      ClientMessage message = session.createMessage(true);
+      message.putIntProperty("i", i);
+      return message;
+   }
+}
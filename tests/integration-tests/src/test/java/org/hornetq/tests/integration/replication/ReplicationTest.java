@@ -29,6 +29,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import junit.framework.Assert;
 
+import org.hornetq.api.config.HornetQDefaultConfiguration;
 import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.HornetQBuffers;
 import org.hornetq.api.core.HornetQException;
@@ -101,6 +102,8 @@ public final class ReplicationTest extends ServiceTestBase
    private ServerLocator locator;
 
    private ReplicationManager manager;
+
+   private int replicationBatchSize = HornetQDefaultConfiguration.DEFAULT_REPLICATION_BATCH_SIZE;
    private static final SimpleString ADDRESS = new SimpleString("foobar123");
 
 
@@ -115,6 +118,7 @@ public final class ReplicationTest extends ServiceTestBase
       Configuration liveConfig = createDefaultConfig();
 
       backupConfig.setBackup(backup);
+      liveConfig.setReplicationBatchSize(replicationBatchSize);
 
       final String suffix = "_backup";
       backupConfig.setBindingsDirectory(backupConfig.getBindingsDirectory() + suffix);
@@ -273,6 +277,37 @@ public final class ReplicationTest extends ServiceTestBase
       Assert.assertEquals(0, store.getNumberOfPages());
    }
 
+   public void testSendPacketsBatched() throws Exception
+   {
+      replicationBatchSize = 10;
+      setupServer(true);
+
+      StorageManager storage = getStorage();
+
+      manager = liveServer.getReplicationManager();
+      waitForComponent(manager);
+
+      Journal replicatedJournal = new ReplicatedJournal((byte)1, new FakeJournal(), manager);
+
+      for (int i = 0; i < 25; i++)
+      {
+         replicatedJournal.appendAddRecord(i, (byte)1, new FakeData(), false);
+         replicatedJournal.appendAddRecordTransactional(100 + i, 1000 + i, (byte)1, new FakeData());
+         replicatedJournal.appendCommitRecord(100 + i, i % 2 == 0);
+      }
+
+      replicatedJournal.appendDeleteRecord(0, false);
+
+      // not batched, sent after the pending batch
+      manager.pageDeleted(new SimpleString("dummy"), 1);
+
+      replicatedJournal.appendDeleteRecord(1, false);
+
+      blockOnReplication(storage, manager);
+
+      Assert.assertTrue("Expecting no active tokens:" + manager.getActiveTokens(), manager.getActiveTokens().isEmpty());
+   }
+
    public void testSendPacketsWithFailure() throws Exception
    {
       final int nMsg = 100;
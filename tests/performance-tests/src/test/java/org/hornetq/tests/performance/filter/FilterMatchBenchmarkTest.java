@@ -0,0 +1,284 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.filter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hornetq.api.core.FilterConstants;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.filter.Filter;
+import org.hornetq.core.filter.impl.FilterImpl;
+import org.hornetq.core.filter.impl.FilterParser;
+import org.hornetq.core.filter.impl.Identifier;
+import org.hornetq.core.filter.impl.Operator;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+import org.hornetq.tests.unit.UnitTestLogger;
+import org.hornetq.tests.util.UnitTestCase;
+
+/**
+ * Measures the throughput of {@link Filter#match(ServerMessage)} over a few representative selectors, comparing the
+ * compiled filters of FilterImpl with the interpretation of the Operator tree it used to do.
+ *
+ * Each run does a number of warm up iterations that are not measured, then reports the average of the measured
+ * iterations in matches per second, with one thread and then with several threads sharing the same filter as
+ * consumers on the same address do.
+ */
+public class FilterMatchBenchmarkTest extends UnitTestCase
+{
+   private static final UnitTestLogger log = UnitTestLogger.LOGGER;
+
+   private static final String[] SELECTORS = new String[] { "color = 'red'",
+                                                           "HQPriority > 4 AND HQDurable = 'DURABLE'",
+                                                           "price BETWEEN 10 AND 100.5 AND region IN ('EU', 'US', 'APAC')",
+                                                           "name LIKE 'order-%' OR (quantity * 2 > 10 AND urgent = TRUE)",
+                                                           "NOT (color = 'blue') AND weight >= 2500 AND category <> 'test'" };
+
+   private static final int WARMUP_ITERATIONS = 3;
+
+   private static final int MEASURED_ITERATIONS = 5;
+
+   private static final long ITERATION_TIME = 1000;
+
+   private static final int MESSAGES = 64;
+
+   private ServerMessage[] messages;
+
+   @Override
+   protected void setUp() throws Exception
+   {
+      super.setUp();
+
+      String[] colors = new String[] { "red", "blue", "green" };
+      String[] regions = new String[] { "EU", "US", "LATAM" };
+
+      messages = new ServerMessage[MESSAGES];
+
+      for (int i = 0; i < MESSAGES; i++)
+      {
+         ServerMessage message = new ServerMessageImpl(i, 1000);
+         message.setPriority((byte)(i % 10));
+         message.setDurable(i % 3 != 0);
+         message.putStringProperty(new SimpleString("color"), new SimpleString(colors[i % colors.length]));
+         message.putStringProperty(new SimpleString("region"), new SimpleString(regions[i % regions.length]));
+         message.putDoubleProperty(new SimpleString("price"), i * 2.5);
+         message.putIntProperty(new SimpleString("quantity"), i % 12);
+         message.putLongProperty(new SimpleString("weight"), 2000 + i * 20);
+         message.putBooleanProperty(new SimpleString("urgent"), i % 2 == 0);
+         if (i % 4 == 0)
+         {
+            message.putStringProperty(new SimpleString("name"), new SimpleString("order-" + i));
+         }
+         messages[i] = message;
+      }
+   }
+
+   public void testSingleThread() throws Exception
+   {
+      for (String selector : SELECTORS)
+      {
+         long interpreted = measure(new InterpretedFilter(selector), 1);
+         long compiled = measure(FilterImpl.createFilter(selector), 1);
+
+         log.info("[" + selector + "] 1 thread: interpreted=" + interpreted + " ops/sec, compiled=" + compiled +
+                  " ops/sec");
+      }
+   }
+
+   public void testSharedFilter() throws Exception
+   {
+      int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+      for (String selector : SELECTORS)
+      {
+         long interpreted = measure(new InterpretedFilter(selector), threads);
+         long compiled = measure(FilterImpl.createFilter(selector), threads);
+
+         log.info("[" + selector + "] " + threads + " threads: interpreted=" + interpreted + " ops/sec, compiled=" +
+                  compiled + " ops/sec");
+      }
+   }
+
+   // Private -------------------------------------------------------
+
+   private long measure(final Filter filter, final int threads) throws Exception
+   {
+      for (int i = 0; i < WARMUP_ITERATIONS; i++)
+      {
+         iteration(filter, threads);
+      }
+
+      long total = 0;
+
+      for (int i = 0; i < MEASURED_ITERATIONS; i++)
+      {
+         total += iteration(filter, threads);
+      }
+
+      return total / MEASURED_ITERATIONS;
+   }
+
+   /**
+    * @return the number of matches per second
+    */
+   private long iteration(final Filter filter, final int threads) throws Exception
+   {
+      final CountDownLatch start = new CountDownLatch(1);
+
+      final AtomicLong ops = new AtomicLong(0);
+
+      // keeps the JIT from removing the calls
+      final AtomicLong matched = new AtomicLong(0);
+
+      final long[] end = new long[1];
+
+      List<Thread> workers = new ArrayList<Thread>();
+
+      for (int i = 0; i < threads; i++)
+      {
+         final int offset = i;
+
+         workers.add(new Thread()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  start.await();
+               }
+               catch (InterruptedException e)
+               {
+                  return;
+               }
+
+               long count = 0;
+
+               long matches = 0;
+
+               int index = offset;
+
+               while (System.currentTimeMillis() < end[0])
+               {
+                  for (int j = 0; j < 1000; j++)
+                  {
+                     if (filter.match(messages[index++ & MESSAGES - 1]))
+                     {
+                        matches++;
+                     }
+                  }
+
+                  count += 1000;
+               }
+
+               ops.addAndGet(count);
+
+               matched.addAndGet(matches);
+            }
+         });
+      }
+
+      for (Thread t : workers)
+      {
+         t.start();
+      }
+
+      end[0] = System.currentTimeMillis() + ITERATION_TIME;
+
+      start.countDown();
+
+      for (Thread t : workers)
+      {
+         t.join();
+      }
+
+      assertTrue(matched.get() >= 0);
+
+      return ops.get() * 1000 / ITERATION_TIME;
+   }
+
+   /**
+    * Evaluates the Operator tree under a lock, the way FilterImpl did before it compiled its expression
+    */
+   private static final class InterpretedFilter implements Filter
+   {
+      private final SimpleString filterString;
+
+      private final Map<SimpleString, Identifier> identifiers = new HashMap<SimpleString, Identifier>();
+
+      private final Object result;
+
+      InterpretedFilter(final String filter) throws Exception
+      {
+         filterString = new SimpleString(filter);
+
+         result = new FilterParser().parse(filterString, identifiers);
+      }
+
+      public synchronized boolean match(final ServerMessage message)
+      {
+         try
+         {
+            for (Identifier id : identifiers.values())
+            {
+               Object val = null;
+
+               if (id.getName().startsWith(FilterConstants.HORNETQ_PREFIX))
+               {
+                  val = getHeaderFieldValue(message, id.getName());
+               }
+
+               if (val == null)
+               {
+                  val = message.getObjectProperty(id.getName());
+               }
+
+               id.setValue(val);
+            }
+
+            return (Boolean)((Operator)result).apply();
+         }
+         catch (Exception e)
+         {
+            return false;
+         }
+      }
+
+      public SimpleString getFilterString()
+      {
+         return filterString;
+      }
+
+      private Object getHeaderFieldValue(final ServerMessage msg, final SimpleString fieldName)
+      {
+         if (FilterConstants.HORNETQ_PRIORITY.equals(fieldName))
+         {
+            return Integer.valueOf(msg.getPriority());
+         }
+         else if (FilterConstants.HORNETQ_DURABLE.equals(fieldName))
+         {
+            return msg.isDurable() ? FilterConstants.DURABLE : FilterConstants.NON_DURABLE;
+         }
+         else
+         {
+            return null;
+         }
+      }
+   }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.timing.core.server.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import junit.framework.Assert;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.server.MessageReference;
+import org.hornetq.core.server.impl.QueueImpl;
+import org.hornetq.core.server.impl.TimingWheelScheduledDeliveryHandler;
+import org.hornetq.tests.unit.core.server.impl.fakes.FakeConsumer;
+import org.hornetq.tests.util.UnitTestCase;
+import org.hornetq.utils.PriorityLinkedListImpl;
+
+/**
+ * Scheduled delivery through a QueueImpl using the timing wheel.
+ */
+public class TimingWheelScheduledDeliveryHandlerTest extends UnitTestCase
+{
+   private static final long TIMEOUT = 10000;
+
+   private static final long TICK = 10;
+
+   private ScheduledExecutorService scheduledExecutor;
+
+   private ExecutorService executor;
+
+   @Override
+   public void setUp() throws Exception
+   {
+      super.setUp();
+
+      scheduledExecutor = new ScheduledThreadPoolExecutor(1);
+
+      executor = Executors.newSingleThreadExecutor();
+   }
+
+   @Override
+   public void tearDown() throws Exception
+   {
+      scheduledExecutor.shutdownNow();
+
+      executor.shutdownNow();
+
+      super.tearDown();
+   }
+
+   private QueueImpl createQueue()
+   {
+      return new QueueImpl(1,
+                           new SimpleString("address1"),
+                           new SimpleString("queue1"),
+                           null,
+                           null,
+                           false,
+                           true,
+                           scheduledExecutor,
+                           null,
+                           null,
+                           null,
+                           executor,
+                           new PriorityLinkedListImpl<MessageReference>(QueueImpl.NUM_PRIORITIES),
+                           new TimingWheelScheduledDeliveryHandler(scheduledExecutor, TICK));
+   }
+
+   public void testScheduled() throws Exception
+   {
+      QueueImpl queue = createQueue();
+
+      long now = System.currentTimeMillis();
+
+      MessageReference ref1 = generateReference(queue, 1);
+      ref1.setScheduledDeliveryTime(now + 1500);
+      queue.addTail(ref1);
+
+      MessageReference ref2 = generateReference(queue, 2);
+      queue.addTail(ref2);
+
+      MessageReference ref3 = generateReference(queue, 3);
+      ref3.setScheduledDeliveryTime(now + 500);
+      queue.addTail(ref3);
+
+      MessageReference ref4 = generateReference(queue, 4);
+      ref4.setScheduledDeliveryTime(now + 1000);
+      queue.addTail(ref4);
+
+      Assert.assertEquals(3, queue.getScheduledCount());
+
+      FakeConsumer consumer = new FakeConsumer();
+
+      queue.addConsumer(consumer);
+
+      queue.deliverNow();
+
+      List<MessageReference> refs = new ArrayList<MessageReference>();
+
+      refs.add(ref2);
+
+      assertRefListsIdenticalRefs(refs, consumer.getReferences());
+
+      consumer.getReferences().clear();
+
+      MessageReference ref = consumer.waitForNextReference(TIMEOUT);
+      Assert.assertEquals(ref3, ref);
+      Assert.assertTrue(System.currentTimeMillis() - now >= 500);
+
+      ref = consumer.waitForNextReference(TIMEOUT);
+      Assert.assertEquals(ref4, ref);
+      Assert.assertTrue(System.currentTimeMillis() - now >= 1000);
+
+      ref = consumer.waitForNextReference(TIMEOUT);
+      Assert.assertEquals(ref1, ref);
+      Assert.assertTrue(System.currentTimeMillis() - now >= 1500);
+
+      Assert.assertEquals(0, queue.getScheduledCount());
+   }
+
+   public void testSameTickKeepsOrder() throws Exception
+   {
+      QueueImpl queue = createQueue();
+
+      long deliveryTime = System.currentTimeMillis() + 500;
+
+      List<MessageReference> refs = new ArrayList<MessageReference>();
+
+      for (int i = 0; i < 100; i++)
+      {
+         MessageReference ref = generateReference(queue, i);
+         ref.setScheduledDeliveryTime(deliveryTime);
+         queue.addTail(ref);
+         refs.add(ref);
+      }
+
+      Thread.sleep(1000);
+
+      FakeConsumer consumer = new FakeConsumer();
+
+      queue.addConsumer(consumer);
+
+      queue.deliverNow();
+
+      assertRefListsIdenticalRefs(refs, consumer.getReferences());
+   }
+
+   public void testRemoveAndCancel() throws Exception
+   {
+      QueueImpl queue = createQueue();
+
+      TimingWheelScheduledDeliveryHandler handler = new TimingWheelScheduledDeliveryHandler(scheduledExecutor, TICK);
+
+      long now = System.currentTimeMillis();
+
+      for (int i = 0; i < 10; i++)
+      {
+         MessageReference ref = generateReference(queue, i);
+         // spread over the levels of the wheel, and beyond
+         ref.setScheduledDeliveryTime(now + TICK * (1L << (i * 4)));
+         Assert.assertTrue(handler.checkAndSchedule(ref, true));
+      }
+
+      Assert.assertEquals(10, handler.getScheduledCount());
+
+      Assert.assertEquals(10, handler.getScheduledReferences().size());
+
+      Assert.assertNotNull(handler.removeReferenceWithID(5));
+
+      Assert.assertNull(handler.removeReferenceWithID(5));
+
+      Assert.assertEquals(9, handler.getScheduledCount());
+
+      Assert.assertEquals(9, handler.cancel(null).size());
+
+      Assert.assertEquals(0, handler.getScheduledCount());
+
+      Assert.assertTrue(handler.getScheduledReferences().isEmpty());
+   }
+}
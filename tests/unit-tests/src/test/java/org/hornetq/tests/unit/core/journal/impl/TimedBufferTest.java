@@ -397,4 +397,196 @@ public class TimedBufferTest extends UnitTestCase
          timedBuffer.stop();
       }
    }
+
+   /**
+    * An adaptive timeout shorter than a sleep can be is spun, instead of sleeping much longer than asked
+    */
+   public void testShortAdaptiveTimeoutSpins() throws Exception
+   {
+      class TestObserver implements TimedBufferObserver
+      {
+         public void flushBuffer(final ByteBuffer buffer, final boolean sync, final List<IOAsyncTask> callbacks)
+         {
+            for (IOAsyncTask callback : callbacks)
+            {
+               callback.done();
+            }
+         }
+
+         public ByteBuffer newBuffer(final int minSize, final int maxSize)
+         {
+            return ByteBuffer.allocate(maxSize);
+         }
+
+         public int getRemainingBytes()
+         {
+            return 1024 * 1024;
+         }
+      }
+
+      final AtomicInteger shortSleeps = new AtomicInteger();
+
+      TimedBuffer timedBuffer = new TimedBuffer(100, TimedBufferTest.ONE_SECOND_IN_NANOS / 20, false, true)
+      {
+         @Override
+         protected void stopSpin()
+         {
+            // keeps spinning forever
+         }
+
+         @Override
+         protected void sleep(int sleepMillis, int sleepNanos) throws InterruptedException
+         {
+            if (sleepMillis == 0 && sleepNanos == TimedBuffer.MIN_ADAPTIVE_TIMEOUT)
+            {
+               shortSleeps.incrementAndGet();
+            }
+            // the granularity of a sleep
+            Thread.sleep(Math.max(1, sleepMillis), sleepNanos);
+         }
+      };
+
+      timedBuffer.start();
+
+      try
+      {
+         timedBuffer.setObserver(new TestObserver());
+
+         byte[] bytes = new byte[10];
+
+         for (int i = 0; i < 20; i++)
+         {
+            final CountDownLatch latch = new CountDownLatch(1);
+
+            timedBuffer.checkSize(10);
+            timedBuffer.addBytes(HornetQBuffers.wrappedBuffer(bytes), true, new IOAsyncTask()
+            {
+               public void done()
+               {
+                  latch.countDown();
+               }
+
+               public void onError(final int errorCode, final String errorMessage)
+               {
+               }
+            });
+
+            Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+            Thread.sleep(10);
+         }
+
+         Assert.assertEquals(TimedBuffer.MIN_ADAPTIVE_TIMEOUT, timedBuffer.getTimeout());
+
+         // the first sleep overshot the timeout
+         Assert.assertEquals(1, shortSleeps.get());
+
+         Assert.assertTrue(timedBuffer.isUseSleep());
+      }
+      finally
+      {
+         timedBuffer.stop();
+      }
+   }
+
+   public void testAdaptiveTimeout() throws Exception
+   {
+      class TestObserver implements TimedBufferObserver
+      {
+         public void flushBuffer(final ByteBuffer buffer, final boolean sync, final List<IOAsyncTask> callbacks)
+         {
+            if (sync)
+            {
+               try
+               {
+                  // a slow disk
+                  Thread.sleep(2);
+               }
+               catch (InterruptedException e)
+               {
+                  throw new RuntimeException(e);
+               }
+            }
+
+            for (IOAsyncTask callback : callbacks)
+            {
+               callback.done();
+            }
+         }
+
+         public ByteBuffer newBuffer(final int minSize, final int maxSize)
+         {
+            return ByteBuffer.allocate(maxSize);
+         }
+
+         public int getRemainingBytes()
+         {
+            return 1024 * 1024;
+         }
+      }
+
+      final int maxTimeout = TimedBufferTest.ONE_SECOND_IN_NANOS / 20;
+
+      TimedBuffer timedBuffer = new TimedBuffer(100, maxTimeout, false, true);
+
+      timedBuffer.start();
+
+      try
+      {
+         timedBuffer.setObserver(new TestObserver());
+
+         byte[] bytes = new byte[10];
+
+         int records = 0;
+
+         // syncs requested faster than the disk does them are grouped
+         long end = System.currentTimeMillis() + 500;
+
+         while (System.currentTimeMillis() < end)
+         {
+            timedBuffer.checkSize(10);
+            timedBuffer.addBytes(HornetQBuffers.wrappedBuffer(bytes), true, dummyCallback);
+            records++;
+         }
+
+         Assert.assertTrue("timeout " + timedBuffer.getTimeout(), timedBuffer.getTimeout() < maxTimeout);
+         Assert.assertTrue("timeout " + timedBuffer.getTimeout(),
+                           timedBuffer.getTimeout() > TimedBuffer.MIN_ADAPTIVE_TIMEOUT);
+         Assert.assertTrue(timedBuffer.getFlushCount() < records);
+
+         // waiting for syncs requested every now and then only adds latency
+         for (int i = 0; i < 20; i++)
+         {
+            final CountDownLatch latch = new CountDownLatch(1);
+
+            timedBuffer.checkSize(10);
+            timedBuffer.addBytes(HornetQBuffers.wrappedBuffer(bytes), true, new IOAsyncTask()
+            {
+               public void done()
+               {
+                  latch.countDown();
+               }
+
+               public void onError(final int errorCode, final String errorMessage)
+               {
+               }
+            });
+            records++;
+
+            Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+            Thread.sleep(10);
+         }
+
+         Assert.assertEquals(TimedBuffer.MIN_ADAPTIVE_TIMEOUT, timedBuffer.getTimeout());
+
+         timedBuffer.flush();
+
+         Assert.assertEquals(records * 10, timedBuffer.getBytesFlushed());
+      }
+      finally
+      {
+         timedBuffer.stop();
+      }
+   }
 }
@@ -710,6 +710,18 @@ public class FakeSequentialFileFactory implements SequentialFileFactory
    {
    }
 
+   @Override
+   public long getFlushCount()
+   {
+      return 0;
+   }
+
+   @Override
+   public long getBytesFlushed()
+   {
+      return 0;
+   }
+
    @Override
    public void onIOError(Exception exception, String message, SequentialFile file)
    {
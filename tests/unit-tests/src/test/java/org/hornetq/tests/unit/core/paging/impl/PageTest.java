@@ -13,6 +13,7 @@
 
 package org.hornetq.tests.unit.core.paging.impl;
 
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
@@ -23,9 +24,12 @@ import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.journal.SequentialFile;
 import org.hornetq.core.journal.SequentialFileFactory;
+import org.hornetq.core.journal.impl.MappedSequentialFile;
+import org.hornetq.core.journal.impl.MappedSequentialFileFactory;
 import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
 import org.hornetq.core.paging.PagedMessage;
 import org.hornetq.core.paging.impl.Page;
+import org.hornetq.core.paging.impl.PageReader;
 import org.hornetq.core.paging.impl.PagedMessageImpl;
 import org.hornetq.core.persistence.impl.nullpm.NullStorageManager;
 import org.hornetq.core.server.ServerMessage;
@@ -73,6 +77,118 @@ public class PageTest extends UnitTestCase
       testDamagedPage(new FakeSequentialFileFactory(1, false), 100);
    }
 
+   public void testReaderWithNIO() throws Exception
+   {
+      recreateDirectory(getTestDir());
+      testReader(new NIOSequentialFileFactory(getTestDir()), 1000, true);
+   }
+
+   public void testReaderWithoutIndexWithNIO() throws Exception
+   {
+      recreateDirectory(getTestDir());
+      testReader(new NIOSequentialFileFactory(getTestDir()), 1000, false);
+   }
+
+   public void testReaderFake() throws Exception
+   {
+      testReader(new FakeSequentialFileFactory(1, false), 10, true);
+   }
+
+   public void testReaderWithoutIndexFake() throws Exception
+   {
+      testReader(new FakeSequentialFileFactory(1, false), 10, false);
+   }
+
+   /** The page is reopened as the current page on restart, after a crash left the zeros it was grown with */
+   public void testReopenGrownMappedPage() throws Exception
+   {
+      recreateDirectory(getTestDir());
+
+      SequentialFileFactory factory = new MappedSequentialFileFactory(getTestDir(), false);
+
+      SequentialFile file = factory.createSequentialFile("00010.page", 1);
+
+      Page impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+
+      impl.open();
+
+      SimpleString simpleDestination = new SimpleString("Test");
+
+      ArrayList<HornetQBuffer> buffers = addPageElements(simpleDestination, impl, 100);
+
+      impl.sync();
+
+      int size = impl.getSize();
+
+      impl.close();
+
+      RandomAccessFile grown = new RandomAccessFile(file.getJavaFile(), "rw");
+      grown.setLength(MappedSequentialFile.GROWTH);
+      grown.close();
+
+      file = factory.createSequentialFile("00010.page", 1);
+      impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+      impl.open();
+
+      Assert.assertEquals(100, impl.read(new NullStorageManager()).size());
+
+      Assert.assertEquals(size, impl.getSize());
+
+      buffers.addAll(addPageElements(simpleDestination, impl, 10));
+
+      impl.close();
+
+      file = factory.createSequentialFile("00010.page", 1);
+      file.open();
+      impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+
+      List<PagedMessage> msgs = impl.read(new NullStorageManager());
+
+      Assert.assertEquals(110, msgs.size());
+
+      for (int i = 0; i < msgs.size(); i++)
+      {
+         UnitTestCase.assertEqualsByteArrays(buffers.get(i).toByteBuffer().array(), msgs.get(i)
+                                                                                        .getMessage()
+                                                                                        .getBodyBuffer()
+                                                                                        .toByteBuffer()
+                                                                                        .array());
+      }
+
+      impl.delete(null);
+   }
+
+   public void testZerosOnNIOPageAreSuspect() throws Exception
+   {
+      recreateDirectory(getTestDir());
+
+      SequentialFileFactory factory = new NIOSequentialFileFactory(getTestDir());
+
+      SequentialFile file = factory.createSequentialFile("00010.page", 1);
+
+      Page impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+
+      impl.open();
+
+      addPageElements(new SimpleString("Test"), impl, 10);
+
+      impl.close();
+
+      RandomAccessFile zeroed = new RandomAccessFile(file.getJavaFile(), "rw");
+      zeroed.setLength(zeroed.length() + 1024);
+      zeroed.close();
+
+      file = factory.createSequentialFile("00010.page", 1);
+      file.open();
+      impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+
+      Assert.assertEquals(10, impl.read(new NullStorageManager()).size());
+
+      impl.delete(null);
+
+      Assert.assertEquals(1, factory.listFiles("invalidPage").size());
+   }
+
    /** Validate if everything we add is recovered */
    protected void testAdd(final SequentialFileFactory factory, final int numberOfElements) throws Exception
    {
@@ -195,6 +311,68 @@ public class PageTest extends UnitTestCase
 
    }
 
+   /** Validate if the messages can be read one by one, with or without the index written when the page is closed */
+   protected void testReader(final SequentialFileFactory factory, final int numberOfElements, final boolean close) throws Exception
+   {
+      SequentialFile file = factory.createSequentialFile("00010.page", 1);
+
+      Page impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+
+      impl.open();
+
+      SimpleString simpleDestination = new SimpleString("Test");
+
+      ArrayList<HornetQBuffer> buffers = addPageElements(simpleDestination, impl, numberOfElements);
+
+      impl.sync();
+
+      if (close)
+      {
+         impl.close();
+
+         Assert.assertEquals(1, factory.listFiles(Page.INDEX_EXTENSION).size());
+      }
+      else
+      {
+         // as if the server crashed before the page was closed
+         file.close();
+
+         Assert.assertEquals(0, factory.listFiles(Page.INDEX_EXTENSION).size());
+      }
+
+      file = factory.createSequentialFile("00010.page", 1);
+
+      PageReader reader = PageReader.open(new Page(new SimpleString("something"),
+                                                   new NullStorageManager(),
+                                                   factory,
+                                                   file,
+                                                   10));
+
+      Assert.assertEquals(numberOfElements, reader.getNumberOfMessages());
+
+      for (int i = numberOfElements - 1; i >= 0; i--)
+      {
+         PagedMessage msg = reader.getMessage(i, new NullStorageManager());
+
+         Assert.assertEquals(simpleDestination, msg.getMessage().getAddress());
+
+         UnitTestCase.assertEqualsByteArrays(buffers.get(i).toByteBuffer().array(), msg.getMessage()
+                                                                                       .getBodyBuffer()
+                                                                                       .toByteBuffer()
+                                                                                       .array());
+      }
+
+      Assert.assertNull(reader.getMessage(numberOfElements, new NullStorageManager()));
+
+      Assert.assertFalse(file.isOpen());
+
+      impl.delete(null);
+
+      Assert.assertEquals(0, factory.listFiles("page").size());
+
+      Assert.assertEquals(0, factory.listFiles(Page.INDEX_EXTENSION).size());
+   }
+
    /**
     * @param simpleDestination
     * @param page
@@ -510,6 +510,18 @@ public class FakeQueue implements Queue
       return 0;
    }
 
+   public long getMessagesRedistributed()
+   {
+      // no-op
+      return 0;
+   }
+
+   public double getRedistributionRate()
+   {
+      // no-op
+      return 0;
+   }
+
    /* (non-Javadoc)
    * @see org.hornetq.core.server.Queue#destroyPaging()
    */
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.unit.core.remoting.impl.invm;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import junit.framework.Assert;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.HornetQBuffers;
+import org.hornetq.core.remoting.impl.invm.InVMConnection;
+import org.hornetq.spi.core.remoting.BufferHandler;
+import org.hornetq.tests.util.UnitTestCase;
+
+/**
+ * A InVMConnectionTest
+ */
+public class InVMConnectionTest extends UnitTestCase
+{
+   public void testTransferFile() throws Exception
+   {
+      final List<HornetQBuffer> received = new ArrayList<HornetQBuffer>();
+
+      InVMConnection conn = new InVMConnection(0, new BufferHandler()
+      {
+         public void bufferReceived(final Object connectionID, final HornetQBuffer buffer)
+         {
+            received.add(buffer);
+         }
+      }, null, new Executor()
+      {
+         public void execute(final Runnable command)
+         {
+            command.run();
+         }
+      });
+
+      Assert.assertFalse(conn.isFileTransferSupported());
+
+      recreateDirectory(getTemporaryDir());
+
+      File file = new File(getTemporaryDir(), "transfer.bin");
+
+      FileOutputStream out = new FileOutputStream(file);
+      try
+      {
+         for (int i = 0; i < 100; i++)
+         {
+            out.write(UnitTestCase.getSamplebyte(i));
+         }
+      }
+      finally
+      {
+         out.close();
+      }
+
+      HornetQBuffer header = HornetQBuffers.fixedBuffer(8);
+      header.writeInt(4 + 10 + 1);
+      header.writeInt(1234);
+
+      HornetQBuffer trailer = HornetQBuffers.fixedBuffer(1);
+      trailer.writeByte((byte)5);
+
+      conn.transferFile(header, file, 20, 10, trailer, true);
+
+      Assert.assertEquals(1, received.size());
+
+      // the size was read by the connection
+      HornetQBuffer buffer = received.get(0);
+      Assert.assertEquals(15, buffer.readableBytes());
+      Assert.assertEquals(1234, buffer.readInt());
+      for (int i = 20; i < 30; i++)
+      {
+         Assert.assertEquals(UnitTestCase.getSamplebyte(i), buffer.readByte());
+      }
+      Assert.assertEquals(5, buffer.readByte());
+   }
+}
@@ -156,6 +156,40 @@ public class RepositoryTest extends UnitTestCase
       DummyMergeable.reset();
    }
 
+   public void testCacheBounded()
+   {
+      HierarchicalRepository<String> repository = new HierarchicalObjectRepository<String>(160);
+      repository.addMatch("#", "#");
+      for (int i = 0; i < 1000; i++)
+      {
+         Assert.assertEquals("#", repository.getMatch("temp." + i));
+      }
+      Assert.assertTrue(repository.getCacheSize() <= 160);
+      Assert.assertTrue(repository.getCacheSize() > 0);
+   }
+
+   public void testChangeInvalidatesMatchedAddresses()
+   {
+      HierarchicalRepository<String> repository = new HierarchicalObjectRepository<String>();
+      repository.addMatch("#", "#");
+      repository.getMatch("a.x");
+      repository.getMatch("b.y");
+      repository.getMatch("b.z");
+      Assert.assertEquals(3, repository.getCacheSize());
+
+      repository.addMatch("b.*", "b.*");
+      Assert.assertEquals(1, repository.getCacheSize());
+      Assert.assertEquals("b.*", repository.getMatch("b.y"));
+      Assert.assertEquals("#", repository.getMatch("a.x"));
+
+      repository.removeMatch("b.*");
+      Assert.assertEquals(1, repository.getCacheSize());
+      Assert.assertEquals("#", repository.getMatch("b.y"));
+
+      repository.clearCache("a.x");
+      Assert.assertEquals(1, repository.getCacheSize());
+   }
+
    public void testIllegalMatches()
    {
       HierarchicalRepository<String> repository = new HierarchicalObjectRepository<String>();